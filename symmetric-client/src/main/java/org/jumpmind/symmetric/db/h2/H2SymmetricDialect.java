@@ -30,8 +30,10 @@ import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.AbstractEmbeddedSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.db.MultiRowDataEventWriter;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.service.IParameterService;
 
@@ -46,6 +48,8 @@ public class H2SymmetricDialect extends AbstractEmbeddedSymmetricDialect impleme
     public H2SymmetricDialect(IParameterService parameterService, IDatabasePlatform platform) {
         super(parameterService, platform);
         this.triggerTemplate = new H2TriggerTemplate(this);
+        this.dataEventWriter = new MultiRowDataEventWriter(TableConstants.getTableName(getTablePrefix(),
+                TableConstants.SYM_DATA_EVENT));
     }
 
     @Override
@@ -31,8 +31,10 @@ import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.Version;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.db.MultiRowDataEventWriter;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.symmetric.util.SymmetricUtils;
@@ -60,6 +62,8 @@ public class MySqlSymmetricDialect extends AbstractSymmetricDialect implements I
     public MySqlSymmetricDialect(IParameterService parameterService, IDatabasePlatform platform) {
         super(parameterService, platform);
         this.triggerTemplate = new MySqlTriggerTemplate(this);
+        this.dataEventWriter = new MultiRowDataEventWriter(TableConstants.getTableName(getTablePrefix(),
+                TableConstants.SYM_DATA_EVENT));
         this.parameterService = parameterService;
         
         int[] versions = Version.parseVersion(getProductVersion());        
@@ -0,0 +1,134 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db.postgresql;
+
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.util.List;
+
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.JdbcSqlTransaction;
+import org.jumpmind.db.sql.JdbcUtils;
+import org.jumpmind.symmetric.db.MultiRowDataEventWriter;
+import org.jumpmind.symmetric.model.DataEvent;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
+
+/**
+ * Inserts data events with the PostgreSQL COPY command, streaming all of the
+ * rows over the connection of the routing transaction. Multiple row inserts
+ * are used when the native connection is not available.
+ */
+public class PostgreSqlCopyDataEventWriter extends MultiRowDataEventWriter {
+
+    protected static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The create time comes from the database, like the current_timestamp of
+     * the insert statements, and is formatted by the same session that parses
+     * the copied rows
+     */
+    protected static final String CREATE_TIME_SQL = "select cast(localtimestamp as varchar)";
+
+    protected IDatabasePlatform platform;
+
+    protected NativeJdbcExtractor jdbcExtractor;
+
+    protected String copySql;
+
+    public PostgreSqlCopyDataEventWriter(IDatabasePlatform platform, String tableName) {
+        super(tableName);
+        this.platform = platform;
+        this.jdbcExtractor = JdbcUtils.getNativeJdbcExtractory();
+        this.copySql = "COPY " + tableName + " (data_id, batch_id, router_id, create_time) FROM STDIN";
+    }
+
+    @Override
+    public void insertDataEvents(ISqlTransaction transaction, List<DataEvent> events) {
+        BaseConnection connection = getConnection(transaction);
+        if (connection == null) {
+            super.insertDataEvents(transaction, events);
+            return;
+        }
+        CopyIn copyIn = null;
+        try {
+            String createTime = transaction.queryForObject(CREATE_TIME_SQL, String.class);
+            copyIn = new CopyManager(connection).copyIn(copySql);
+            StringBuilder row = new StringBuilder(64);
+            for (DataEvent dataEvent : events) {
+                row.setLength(0);
+                row.append(dataEvent.getDataId()).append('\t').append(dataEvent.getBatchId()).append('\t');
+                appendEscaped(row, getRouterId(dataEvent));
+                row.append('\t').append(createTime).append('\n');
+                byte[] bytes = row.toString().getBytes(CHARSET);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            }
+            copyIn.endCopy();
+        } catch (Exception ex) {
+            if (copyIn != null && copyIn.isActive()) {
+                try {
+                    copyIn.cancelCopy();
+                } catch (Exception e) {
+                }
+            }
+            throw platform.getSqlTemplate().translate(ex);
+        }
+    }
+
+    protected BaseConnection getConnection(ISqlTransaction transaction) {
+        if (transaction instanceof JdbcSqlTransaction) {
+            try {
+                Connection connection = jdbcExtractor.getNativeConnection(((JdbcSqlTransaction) transaction).getConnection());
+                if (connection instanceof BaseConnection) {
+                    return (BaseConnection) connection;
+                }
+            } catch (Exception ex) {
+                throw platform.getSqlTemplate().translate(ex);
+            }
+        }
+        return null;
+    }
+
+    protected void appendEscaped(StringBuilder row, String value) {
+        if (value == null) {
+            row.append("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                row.append("\\\\");
+            } else if (c == '\t') {
+                row.append("\\t");
+            } else if (c == '\n') {
+                row.append("\\n");
+            } else if (c == '\r') {
+                row.append("\\r");
+            } else {
+                row.append(c);
+            }
+        }
+    }
+
+}
@@ -28,6 +28,7 @@ import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.Trigger;
@@ -55,6 +56,8 @@ public class PostgreSqlSymmetricDialect extends AbstractSymmetricDialect impleme
     public PostgreSqlSymmetricDialect(IParameterService parameterService, IDatabasePlatform platform) {
         super(parameterService, platform);
         this.triggerTemplate = new PostgreSqlTriggerTemplate(this);
+        this.dataEventWriter = new PostgreSqlCopyDataEventWriter(platform,
+                TableConstants.getTableName(getTablePrefix(), TableConstants.SYM_DATA_EVENT));
     }
     
     @Override
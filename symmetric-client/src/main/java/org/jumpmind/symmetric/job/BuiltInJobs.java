@@ -62,6 +62,7 @@ public class BuiltInJobs {
         builtInJobs.add(new InitialLoadExtractorJob(engine,taskScheduler));
         builtInJobs.add(new MonitorJob(engine, taskScheduler));
         builtInJobs.add(new ReportStatusJob(engine, taskScheduler));
+        builtInJobs.add(new PreExtractJob(engine, taskScheduler));
 
         for (IJob builtInJob : builtInJobs) {
             setBuiltInDefaults(builtInJob);
@@ -0,0 +1,59 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.jmx;
+
+import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.ext.ISymmetricEngineAware;
+import org.jumpmind.symmetric.service.IDataExtractorService;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "The management interface for extract statistics")
+public class ExtractManagementService implements IBuiltInExtensionPoint, ISymmetricEngineAware {
+
+    private IDataExtractorService dataExtractorService;
+
+    public ExtractManagementService() {
+    }
+
+    public void setSymmetricEngine(ISymmetricEngine engine) {
+        this.dataExtractorService = engine.getDataExtractorService();
+    }
+
+    @ManagedAttribute(description = "The number of times a table for extracting data was found in the table cache")
+    public long getTableCacheHits() {
+        return dataExtractorService.getTableCacheHits();
+    }
+
+    @ManagedAttribute(description = "The number of times a table for extracting data had to be built because it was not in the table cache")
+    public long getTableCacheMisses() {
+        return dataExtractorService.getTableCacheMisses();
+    }
+
+    @ManagedAttribute(description = "The fraction of table lookups for extracting data that were answered from the table cache")
+    public double getTableCacheHitRate() {
+        long hits = dataExtractorService.getTableCacheHits();
+        long misses = dataExtractorService.getTableCacheMisses();
+        return hits + misses > 0 ? (double) hits / (double) (hits + misses) : 0;
+    }
+
+}
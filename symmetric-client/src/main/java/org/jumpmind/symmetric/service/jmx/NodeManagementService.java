@@ -181,6 +181,21 @@ public class NodeManagementService implements IBuiltInExtensionPoint, ISymmetric
         return engine.getStagingManager().clean(timeToLiveInMS);
     }
 
+    @ManagedAttribute(description = "Get the number of bytes used by files in the staging directory that are done")
+    public long getStagingUsedBytes() {
+        return engine.getStagingManager().getQuota().getUsedBytes();
+    }
+
+    @ManagedAttribute(description = "Get the most bytes the staging directory should use, or 0 if there is no quota")
+    public long getStagingQuotaBytes() {
+        return engine.getStagingManager().getQuota().getQuotaBytes();
+    }
+
+    @ManagedAttribute(description = "Get the number of staging files that were evicted to stay under the quota")
+    public long getStagingEvictedCount() {
+        return engine.getStagingManager().getQuota().getEvictedCount();
+    }
+
     @ManagedAttribute(description = "Get a list of nodes that have been added to the white list, a list of node ids that always get through the concurrency manager.")
     public String getNodesInWhiteList() {
         StringBuilder ret = new StringBuilder();
@@ -0,0 +1,96 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.jmx;
+
+import java.util.Map;
+
+import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.ext.ISymmetricEngineAware;
+import org.jumpmind.symmetric.route.IDataRouter;
+import org.jumpmind.symmetric.route.SubSelectDataRouter;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.symmetric.statistic.LatencyHistogram;
+import org.jumpmind.symmetric.statistic.StatisticConstants;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "The management interface for routing statistics")
+public class RouterManagementService implements IBuiltInExtensionPoint, ISymmetricEngineAware {
+
+    private IStatisticManager statisticManager;
+
+    private IExtensionService extensionService;
+
+    public RouterManagementService() {
+    }
+
+    public void setSymmetricEngine(ISymmetricEngine engine) {
+        this.statisticManager = engine.getStatisticManager();
+        this.extensionService = engine.getExtensionService();
+    }
+
+    @ManagedAttribute(description = "Latencies in microseconds for reading data, running each router and inserting data events by channel")
+    public String getRouterLatencies() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("<pre>");
+        for (Map.Entry<String, LatencyHistogram> entry : statisticManager.getRouterLatencies().entrySet()) {
+            buffer.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        buffer.append("</pre>");
+        return buffer.toString();
+    }
+
+    @ManagedOperation(description = "Get the latencies in microseconds of a router on a channel")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "channelId", description = "The channel that was routed"),
+            @ManagedOperationParameter(name = "routerId", description = "The id of the router") })
+    public String getRouterLatency(String channelId, String routerId) {
+        return statisticManager.getRouterLatency(StatisticConstants.ROUTER_LATENCY_ROUTER, channelId, routerId).toString();
+    }
+
+    @ManagedOperation(description = "Get the 99th percentile latency in microseconds of a router on a channel")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "channelId", description = "The channel that was routed"),
+            @ManagedOperationParameter(name = "routerId", description = "The id of the router") })
+    public long getRouterLatencyP99(String channelId, String routerId) {
+        return statisticManager.getRouterLatency(StatisticConstants.ROUTER_LATENCY_ROUTER, channelId, routerId)
+                .getPercentileNanos(99) / 1000;
+    }
+
+    @ManagedAttribute(description = "The fraction of subselect router lookups that were answered from the subselect cache")
+    public double getSubSelectCacheHitRate() {
+        IDataRouter router = extensionService.getExtensionPointMap(IDataRouter.class).get("subselect");
+        return router instanceof SubSelectDataRouter ? ((SubSelectDataRouter) router).getCacheHitRate() : 0;
+    }
+
+    @ManagedOperation(description = "Clear the routing latencies")
+    public void resetRouterLatencies() {
+        for (LatencyHistogram histogram : statisticManager.getRouterLatencies().values()) {
+            histogram.reset();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db.postgresql;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PostgreSqlCopyDataEventWriterTest {
+
+    PostgreSqlCopyDataEventWriter writer = new PostgreSqlCopyDataEventWriter(null, "sym_data_event");
+
+    @Test
+    public void testEscapeSpecialCharacters() {
+        assertEquals("a\\tb\\nc\\\\d\\re", escape("a\tb\nc\\d\re"));
+    }
+
+    @Test
+    public void testEscapeNull() {
+        assertEquals("\\N", escape(null));
+    }
+
+    @Test
+    public void testEscapePlainValue() {
+        assertEquals("router_1", escape("router_1"));
+        assertEquals("", escape(""));
+    }
+
+    protected String escape(String value) {
+        StringBuilder row = new StringBuilder();
+        writer.appendEscaped(row, value);
+        return row.toString();
+    }
+
+}
@@ -74,6 +74,7 @@ final public class ParameterConstants {
     public final static String START_FILE_SYNC_TRACKER_JOB = "start.file.sync.tracker.job";
     public final static String START_FILE_SYNC_PUSH_JOB = "start.file.sync.push.job";
     public final static String START_FILE_SYNC_PULL_JOB = "start.file.sync.pull.job";   
+    public final static String START_PRE_EXTRACT_JOB = "start.pre.extract.job";
     
     public final static String ROUTE_ON_EXTRACT = "route.on.extract";
 
@@ -101,6 +102,10 @@ final public class ParameterConstants {
     public final static String FILE_PUSH_MINIMUM_PERIOD_MS = "file.push.period.minimum.ms";
     public final static String FILE_PUSH_LOCK_TIMEOUT_MS = "file.push.lock.timeout.ms";
 
+    public final static String PRE_EXTRACT_THREAD_COUNT_PER_SERVER = "pre.extract.thread.per.server.count";
+    public final static String PRE_EXTRACT_LOCK_TIMEOUT_MS = "pre.extract.lock.timeout.ms";
+    public final static String PRE_EXTRACT_MAX_BYTES_PER_NODE = "pre.extract.max.bytes.per.node";
+
     public final static String JOB_RANDOM_MAX_START_TIME_MS = "job.random.max.start.time.ms";
     public final static String JOB_PULL_PERIOD_TIME_MS = "job.pull.period.time.ms";
     public final static String JOB_PUSH_PERIOD_TIME_MS = "job.push.period.time.ms";
@@ -161,6 +166,8 @@ final public class ParameterConstants {
     public final static String INITIAL_LOAD_EXTRACT_AND_SEND_WHEN_STAGED = "initial.load.extract.and.send.when.staged";
     public final static String INITIAL_LOAD_TRANSPORT_MAX_BYTES_TO_SYNC = "initial.load.transport.max.bytes.to.sync";
     public final static String INITIAL_LOAD_USE_ESTIMATED_COUNTS = "initial.load.use.estimated.counts";
+    public final static String INITIAL_LOAD_EXTRACT_PARTITION_COUNT = "initial.load.extract.partition.count";
+    public final static String INITIAL_LOAD_EXTRACT_THREAD_COUNT_PER_NODE = "initial.load.extract.thread.per.node.count";
     
     public final static String CREATE_TABLE_WITHOUT_DEFAULTS = "create.table.without.defaults";
     public final static String CREATE_TABLE_WITHOUT_FOREIGN_KEYS = "create.table.without.foreign.keys";
@@ -169,10 +176,21 @@ final public class ParameterConstants {
     public final static String CREATE_TABLE_NOT_NULL_COLUMNS = "create.table.not.null.columns.supported";
     
     public final static String STREAM_TO_FILE_ENABLED = "stream.to.file.enabled";
+    public final static String EXTRACT_THREAD_COUNT_PER_NODE = "extract.thread.per.node.count";
+    public final static String EXTRACT_TABLE_CACHE_SIZE = "extract.table.cache.size";
+    public final static String EXTRACT_DATA_PAGE_SIZE = "extract.data.page.size";
     public final static String STREAM_TO_FILE_THRESHOLD = "stream.to.file.threshold.bytes";
+    public final static String STREAM_TO_FILE_MEMORY_BUDGET = "stream.to.file.memory.budget.bytes";
+    public final static String STREAM_TO_FILE_QUOTA = "stream.to.file.quota.bytes";
+    public final static String STREAM_TO_FILE_QUOTA_NEAR_LIMIT_PERCENT = "stream.to.file.quota.near.limit.percent";
     public final static String STREAM_TO_FILE_TIME_TO_LIVE_MS = "stream.to.file.ttl.ms";
     public final static String STREAM_TO_FILE_MIN_TIME_TO_LIVE_MS = "stream.to.file.min.ttl.ms";    
     public final static String STREAM_TO_FILE_PURGE_ON_TTL_ENABLED = "stream.to.file.purge.on.ttl.enabled";
+    public final static String STREAM_TO_FILE_TRANSFER_BYTES_ENABLED = "stream.to.file.transfer.bytes.enabled";
+    public final static String STREAM_TO_FILE_COMPRESSION_ENABLED = "stream.to.file.compression.enabled";
+    public final static String STREAM_TO_FILE_COMPRESSION_LEVEL = "stream.to.file.compression.level";
+    public final static String STREAM_TO_FILE_MAPPED_READ_ENABLED = "stream.to.file.mapped.read.enabled";
+    public final static String STREAM_TO_FILE_MAPPED_READ_THRESHOLD = "stream.to.file.mapped.read.threshold.bytes";
 
     public final static String PARAMETER_REFRESH_PERIOD_IN_MS = "parameter.reload.timeout.ms";
 
@@ -192,13 +210,22 @@ final public class ParameterConstants {
 //    public final static String ROUTING_DATA_READER_TYPE_GAP_RETENTION_MINUTES = "routing.data.reader.type.gap.retention.period.minutes";
     public final static String ROUTING_DATA_READER_ORDER_BY_DATA_ID_ENABLED = "routing.data.reader.order.by.gap.id.enabled";
     public final static String ROUTING_DATA_READER_INTO_MEMORY_ENABLED = "routing.data.reader.into.memory.enabled";
+    public final static String ROUTING_DATA_READER_INTO_MEMORY_MAX_BYTES = "routing.data.reader.into.memory.max.bytes";
     public final static String ROUTING_DATA_READER_THRESHOLD_GAPS_TO_USE_GREATER_QUERY = "routing.data.reader.threshold.gaps.to.use.greater.than.query";
     public final static String ROUTING_LOG_STATS_ON_BATCH_ERROR = "routing.log.stats.on.batch.error";
     public final static String ROUTING_COLLECT_STATS_UNROUTED = "routing.collect.stats.unrouted";
     public final static String ROUTING_USE_FAST_GAP_DETECTOR = "routing.use.fast.gap.detector";
+    public final static String ROUTING_USE_RANGE_GAP_DETECTOR = "routing.use.range.gap.detector";
     public final static String ROUTING_DETECT_INVALID_GAPS = "routing.detect.invalid.gaps";
     public final static String ROUTING_QUERY_CHANNELS_FIRST = "routing.query.channels.first";
     public final static String ROUTING_MAX_GAP_CHANGES = "routing.max.gap.changes";
+    public final static String ROUTING_THREAD_COUNT_PER_SERVER = "routing.thread.count.per.server";
+    public final static String ROUTING_BSH_COMPILE_ENABLED = "routing.bsh.compile.enabled";
+    public final static String ROUTING_SUBSELECT_CACHE_SIZE = "routing.subselect.cache.size";
+    public final static String ROUTING_SUBSELECT_CACHE_TTL_MS = "routing.subselect.cache.ttl.ms";
+    public final static String ROUTING_DATA_EVENT_BULK_INSERT_ENABLED = "routing.data.event.bulk.insert.enabled";
+    public final static String ROUTING_PIPELINE_WORKER_COUNT = "routing.pipeline.worker.count";
+    public final static String ROUTING_WINDOW_SIZE = "routing.window.size";
 
     public final static String INCOMING_BATCH_SKIP_DUPLICATE_BATCHES_ENABLED = "incoming.batches.skip.duplicates";
     @Deprecated
@@ -249,6 +276,7 @@ final public class ParameterConstants {
     public final static String TRANSPORT_HTTP_COMPRESSION_STRATEGY = "compression.strategy";
     public final static String TRANSPORT_HTTP_BASIC_AUTH_USERNAME = "http.basic.auth.username";
     public final static String TRANSPORT_HTTP_BASIC_AUTH_PASSWORD = "http.basic.auth.password";
+    public final static String TRANSPORT_HTTP_BINARY_PROTOCOL_ENABLED = "http.binary.protocol.enabled";
     public final static String TRANSPORT_TYPE = "transport.type";
     public final static String TRANSPORT_MAX_BYTES_TO_SYNC = "transport.max.bytes.to.sync";
     public final static String TRANSPORT_MAX_ERROR_MILLIS = "transport.max.error.millis";
@@ -276,6 +304,7 @@ final public class ParameterConstants {
     public final static String DB_NATIVE_EXTRACTOR = "db.native.extractor";
     public final static String DB_QUERY_TIMEOUT_SECS = "db.sql.query.timeout.seconds";
     public final static String DB_FETCH_SIZE = "db.jdbc.streaming.results.fetch.size";
+    public final static String DB_LOB_CHUNK_SIZE = "db.jdbc.lob.chunk.size";
     public final static String DB_DELIMITED_IDENTIFIER_MODE = "db.delimited.identifier.mode";
     public final static String DB_JNDI_NAME = "db.jndi.name";
     public final static String DB_SPRING_BEAN_NAME = "db.spring.bean.name";
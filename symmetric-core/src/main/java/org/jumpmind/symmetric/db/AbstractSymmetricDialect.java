@@ -81,6 +81,8 @@ abstract public class AbstractSymmetricDialect implements ISymmetricDialect {
     
     protected AbstractTriggerTemplate triggerTemplate;
 
+    protected IDataEventWriter dataEventWriter;
+
     protected IParameterService parameterService;
 
     protected IExtensionService extensionService;
@@ -915,6 +917,9 @@ abstract public class AbstractSymmetricDialect implements ISymmetricDialect {
     public void setTargetPlatform(IDatabasePlatform targetPlatform) {
 		this.targetPlatform = targetPlatform;
 	}
-    
-    
+
+    public IDataEventWriter getDataEventWriter() {
+        return dataEventWriter;
+    }
+
 }
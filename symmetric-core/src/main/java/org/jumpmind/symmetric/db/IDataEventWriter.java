@@ -0,0 +1,37 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db;
+
+import java.util.List;
+
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.model.DataEvent;
+
+/**
+ * Writes data events to the data event table using a method that is faster
+ * than a JDBC batch of single row inserts on the platform. A dialect provides
+ * one from {@link ISymmetricDialect#getDataEventWriter()}.
+ */
+public interface IDataEventWriter {
+
+    public void insertDataEvents(ISqlTransaction transaction, List<DataEvent> events);
+
+}
@@ -263,4 +263,11 @@ public interface ISymmetricDialect {
     public void setExtensionService(IExtensionService extensionService);
     
     public PermissionType[] getSymTablePermissions();
+
+    /**
+     * @return a writer that inserts data events faster than a JDBC batch
+     *         does on this platform, or null if the JDBC batch should be
+     *         used
+     */
+    public IDataEventWriter getDataEventWriter();
 }
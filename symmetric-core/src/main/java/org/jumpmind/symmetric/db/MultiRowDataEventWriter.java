@@ -0,0 +1,92 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db;
+
+import java.sql.Types;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.model.DataEvent;
+
+/**
+ * Inserts data events using insert statements with multiple rows in the values
+ * clause, which is supported by platforms like MySQL, where it is known as an
+ * extended insert, PostgreSQL and H2.
+ */
+public class MultiRowDataEventWriter implements IDataEventWriter {
+
+    public static final int DEFAULT_ROWS_PER_STATEMENT = 500;
+
+    protected String tableName;
+
+    protected int rowsPerStatement;
+
+    protected String fullStatementSql;
+
+    public MultiRowDataEventWriter(String tableName) {
+        this(tableName, DEFAULT_ROWS_PER_STATEMENT);
+    }
+
+    public MultiRowDataEventWriter(String tableName, int rowsPerStatement) {
+        this.tableName = tableName;
+        this.rowsPerStatement = rowsPerStatement;
+        this.fullStatementSql = buildSql(rowsPerStatement);
+    }
+
+    public void insertDataEvents(ISqlTransaction transaction, List<DataEvent> events) {
+        for (int start = 0; start < events.size(); start += rowsPerStatement) {
+            int rowCount = Math.min(rowsPerStatement, events.size() - start);
+            Object[] args = new Object[rowCount * 3];
+            int[] types = new int[rowCount * 3];
+            for (int i = 0; i < rowCount; i++) {
+                DataEvent dataEvent = events.get(start + i);
+                args[i * 3] = dataEvent.getDataId();
+                args[i * 3 + 1] = dataEvent.getBatchId();
+                args[i * 3 + 2] = getRouterId(dataEvent);
+                types[i * 3] = Types.NUMERIC;
+                types[i * 3 + 1] = Types.NUMERIC;
+                types[i * 3 + 2] = Types.VARCHAR;
+            }
+            transaction.prepareAndExecute(rowCount == rowsPerStatement ? fullStatementSql : buildSql(rowCount),
+                    args, types);
+        }
+    }
+
+    protected String buildSql(int rowCount) {
+        StringBuilder sql = new StringBuilder(128 + rowCount * 32);
+        sql.append("insert into ").append(tableName).append(" (data_id, batch_id, router_id, create_time) values ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(",");
+            }
+            sql.append("(?, ?, ?, current_timestamp)");
+        }
+        return sql.toString();
+    }
+
+    protected String getRouterId(DataEvent dataEvent) {
+        String routerId = dataEvent.getRouterId();
+        return StringUtils.isBlank(routerId) ? Constants.UNKNOWN_ROUTER_ID : routerId;
+    }
+
+}
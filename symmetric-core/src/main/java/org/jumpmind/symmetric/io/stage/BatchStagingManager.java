@@ -3,35 +3,101 @@ package org.jumpmind.symmetric.io.stage;
 import static org.jumpmind.symmetric.common.Constants.STAGING_CATEGORY_INCOMING;
 
 import static org.jumpmind.symmetric.common.Constants.STAGING_CATEGORY_OUTGOING;
+import static org.jumpmind.symmetric.common.Constants.STAGING_CATEGORY_ROUTING;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.io.stage.IStagedResource.State;
-import org.jumpmind.symmetric.model.BatchId;
 import org.jumpmind.symmetric.service.ClusterConstants;
+import org.jumpmind.util.LongList;
 
 public class BatchStagingManager extends StagingManager {
 
     ISymmetricEngine engine;
 
+    long startTime = System.currentTimeMillis();
+
     public BatchStagingManager(ISymmetricEngine engine, String directory) {
         super(directory,engine.getParameterService().is(ParameterConstants.CLUSTER_LOCKING_ENABLED));
         this.engine = engine;
+        refreshQuota();
+    }
+
+    protected void refreshQuota() {
+        quota.setQuotaBytes(engine.getParameterService().getLong(ParameterConstants.STREAM_TO_FILE_QUOTA, 0));
+        quota.setNearLimitPercent(engine.getParameterService().getInt(ParameterConstants.STREAM_TO_FILE_QUOTA_NEAR_LIMIT_PERCENT, 80));
+    }
+    
+    @Override
+    public StagingMemoryBuffer createMemoryBuffer() {
+        memoryPool.setBudget(engine.getParameterService().getLong(ParameterConstants.STREAM_TO_FILE_MEMORY_BUDGET,
+                StagingMemoryPool.DEFAULT_BUDGET));
+        return super.createMemoryBuffer();
+    }
+
+    @Override
+    public boolean isMappedReadEnabled() {
+        return engine.getParameterService().is(ParameterConstants.STREAM_TO_FILE_MAPPED_READ_ENABLED, false);
+    }
+
+    @Override
+    public long getMappedReadThreshold() {
+        return engine.getParameterService().getLong(ParameterConstants.STREAM_TO_FILE_MAPPED_READ_THRESHOLD, 8388608);
+    }
+
+    /**
+     * Incoming batches that have not been loaded yet cannot be staged again,
+     * so only outgoing batches are evicted
+     */
+    @Override
+    protected boolean shouldEvict(IStagedResource resource) {
+        return resource.getPath().startsWith(STAGING_CATEGORY_OUTGOING + "/") && super.shouldEvict(resource);
+    }
+
+    /**
+     * Routing removes its sorted runs when it finishes with them, so runs that
+     * were written before this engine started were left behind by a routing
+     * job that stopped before it could clean up
+     */
+    @Override
+    protected boolean isAbandoned(IStagedResource resource) {
+        return (resource.getPath().startsWith(STAGING_CATEGORY_ROUTING + "/") && resource.getLastUpdateTime() < startTime)
+                || super.isAbandoned(resource);
+    }
+
+    @Override
+    public boolean isCompressionEnabled() {
+        return engine.getParameterService().is(ParameterConstants.STREAM_TO_FILE_COMPRESSION_ENABLED, false);
+    }
+
+    /**
+     * Only batches are compressed. Other categories, like the files that bulk
+     * loaders hand to their database, are read by tools that expect plain
+     * text.
+     */
+    @Override
+    public boolean isCompressionEnabled(String path) {
+        return isCompressionEnabled() && (path.startsWith(STAGING_CATEGORY_OUTGOING + "/")
+                || path.startsWith(STAGING_CATEGORY_INCOMING + "/"));
+    }
+
+    @Override
+    public int getCompressionLevel() {
+        return engine.getParameterService().getInt(ParameterConstants.STREAM_TO_FILE_COMPRESSION_LEVEL, 1);
     }
     
-    protected Map<String, Long> getBiggestBatchIds(Set<BatchId> batches) {
+    protected Map<String, Long> getBiggestBatchIds(Map<String, LongList> batchesByNode) {
         Map<String,Long> biggest = new HashMap<String,Long>();
-        for (BatchId batchId : batches) {
-            Long batchNumber = biggest.get(batchId.getNodeId());
-            if (batchNumber == null || batchNumber < batchId.getBatchId()) {
-                biggest.put(batchId.getNodeId(), batchId.getBatchId());
+        for (Map.Entry<String, LongList> entry : batchesByNode.entrySet()) {
+            LongList batchIds = entry.getValue();
+            if (!batchIds.isEmpty()) {
+                batchIds.sort();
+                biggest.put(entry.getKey(), batchIds.get(batchIds.size() - 1));
             }
         }        
         return biggest;
@@ -54,11 +120,12 @@ public class BatchStagingManager extends StagingManager {
             // during setup or un-install, it's possible sym_lock table isn't available yet
         }
         try {
+            refreshQuota();
             boolean purgeBasedOnTTL = engine.getParameterService().is(ParameterConstants.STREAM_TO_FILE_PURGE_ON_TTL_ENABLED, false);
             boolean recordIncomingBatchesEnabled = engine.getIncomingBatchService().isRecordOkBatchesEnabled();
             long minTtlInMs = engine.getParameterService().getLong(ParameterConstants.STREAM_TO_FILE_MIN_TIME_TO_LIVE_MS,600000);
-            Set<Long> outgoingBatches = ttlInMs == 0 ? new HashSet<Long>() : new HashSet<Long>(engine.getOutgoingBatchService().getAllBatches());
-            Set<BatchId> incomingBatches =  ttlInMs == 0 ? new HashSet<BatchId>() : new HashSet<BatchId>(engine.getIncomingBatchService().getAllBatches());
+            LongList outgoingBatches = ttlInMs == 0 ? new LongList() : engine.getOutgoingBatchService().getAllBatchIds();
+            Map<String, LongList> incomingBatches = ttlInMs == 0 ? new HashMap<String, LongList>() : engine.getIncomingBatchService().getAllBatchIdsByNode();
             Map<String, Long> biggestIncomingByNode = getBiggestBatchIds(incomingBatches);
             
             StagingPurgeContext context = new StagingPurgeContext();
@@ -107,9 +174,9 @@ public class BatchStagingManager extends StagingManager {
     
     protected boolean shouldCleanOutgoingPath(IStagedResource resource, long ttlInMs, StagingPurgeContext context, String[] path,
             boolean resourceIsOld) {
-        Set<Long> outgoingBatches = (Set<Long>) context.getContextValue("outgoingBatches");
+        LongList outgoingBatches = (LongList) context.getContextValue("outgoingBatches");
         try {
-            Long batchId = new Long(path[path.length - 1]);
+            long batchId = Long.parseLong(path[path.length - 1]);
             if (!outgoingBatches.contains(batchId) || ttlInMs == 0) {
                 return true;
             }
@@ -124,14 +191,16 @@ public class BatchStagingManager extends StagingManager {
     
     protected boolean shouldCleanIncomingPath(IStagedResource resource, long ttlInMs, StagingPurgeContext context, String[] path, boolean resourceIsOld,
             boolean resourceClearsMinTimeHurdle) {
-        Set<BatchId> incomingBatches = (Set<BatchId>) context.getContextValue("incomingBatches");
+        Map<String, LongList> incomingBatches = (Map<String, LongList>) context.getContextValue("incomingBatches");
         Map<String, Long> biggestIncomingByNode = (Map<String, Long>) context.getContextValue("biggestIncomingByNode");
         boolean recordIncomingBatchesEnabled = context.getBoolean("recordIncomingBatchesEnabled");
         try {
-            BatchId batchId = new BatchId(new Long(path[path.length - 1]), path[1]);
-            Long biggestBatchId = biggestIncomingByNode.get(batchId.getNodeId());
-            if ((recordIncomingBatchesEnabled && !incomingBatches.contains(batchId) && 
-                    biggestBatchId != null && biggestBatchId > batchId.getBatchId() &&
+            long batchId = Long.parseLong(path[path.length - 1]);
+            String nodeId = path[1];
+            LongList nodeBatchIds = incomingBatches.get(nodeId);
+            Long biggestBatchId = biggestIncomingByNode.get(nodeId);
+            if ((recordIncomingBatchesEnabled && (nodeBatchIds == null || !nodeBatchIds.contains(batchId)) && 
+                    biggestBatchId != null && biggestBatchId > batchId &&
                     resourceClearsMinTimeHurdle)
                     || (!recordIncomingBatchesEnabled && resourceIsOld) || ttlInMs == 0) {
                 return true;
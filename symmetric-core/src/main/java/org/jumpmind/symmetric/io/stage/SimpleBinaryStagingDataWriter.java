@@ -0,0 +1,332 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.BinaryProtocolConstants;
+import org.jumpmind.symmetric.io.data.CsvConstants;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.writer.IProtocolDataWriterListener;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.model.ProcessInfo.ProcessStatus;
+import org.jumpmind.util.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a stream in the binary form of the data protocol into one staged
+ * resource per batch, like {@link SimpleStagingDataWriter} does for the csv
+ * form. Records are copied as they were received. Only the records that
+ * describe a batch are decoded. Every batch defines its own tables, so no table
+ * records need to be added.
+ */
+public class SimpleBinaryStagingDataWriter {
+
+    private static final Charset CHARSET = Charset.forName(IoConstants.ENCODING);
+
+    protected static final int NODEID = BinaryProtocolConstants.getRecordType(CsvConstants.NODEID);
+    protected static final int BINARY = BinaryProtocolConstants.getRecordType(CsvConstants.BINARY);
+    protected static final int CHANNEL = BinaryProtocolConstants.getRecordType(CsvConstants.CHANNEL);
+    protected static final int BATCH = BinaryProtocolConstants.getRecordType(CsvConstants.BATCH);
+    protected static final int COMMIT = BinaryProtocolConstants.getRecordType(CsvConstants.COMMIT);
+    protected static final int STATS_COLUMNS = BinaryProtocolConstants.getRecordType(CsvConstants.STATS_COLUMNS);
+    protected static final int STATS = BinaryProtocolConstants.getRecordType(CsvConstants.STATS);
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    protected DataInputStream in;
+    protected IStagingManager stagingManager;
+    protected IProtocolDataWriterListener[] listeners;
+    protected String category;
+    protected BatchType batchType;
+    protected String targetNodeId;
+    protected DataContext context;
+    protected ProcessInfo processInfo;
+    protected OutputStream out;
+    protected Batch batch;
+    protected ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+    protected byte[] buffer = new byte[1024];
+
+    public SimpleBinaryStagingDataWriter(ProcessInfo processInfo, InputStream in, IStagingManager stagingManager, String category,
+            BatchType batchType, String targetNodeId, DataContext context, IProtocolDataWriterListener... listeners) {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+        this.stagingManager = stagingManager;
+        this.category = category;
+        this.batchType = batchType;
+        this.targetNodeId = targetNodeId;
+        this.listeners = listeners;
+        this.context = context;
+        this.processInfo = processInfo;
+    }
+
+    public void process() throws IOException {
+        IStagedResource resource = null;
+        try {
+            byte[] header = readHeader();
+            byte[] nodeRecord = null, binaryRecord = null, channelRecord = null;
+            String[] batchStatsColumns = null;
+            Statistics batchStats = null;
+            long startTime = System.currentTimeMillis(), ts = startTime, recordCount = 0;
+            int recordType = -1;
+
+            while (header != null && (recordType = readRecord()) >= 0) {
+                if (recordType == NODEID) {
+                    nodeRecord = record.toByteArray();
+                } else if (recordType == BINARY) {
+                    binaryRecord = record.toByteArray();
+                } else if (recordType == CHANNEL) {
+                    channelRecord = record.toByteArray();
+                } else if (recordType == BATCH) {
+                    batch = new Batch(batchType, Long.parseLong(getField(record.toByteArray())), getField(channelRecord),
+                            getBinaryEncoding(binaryRecord), getField(nodeRecord), targetNodeId, false);
+                    processInfo.incrementBatchCount();
+                    resource = stagingManager.create(category, batch.getStagedLocation(), batch.getBatchId());
+                    out = resource.getOutputStream();
+                    writeRecord(header);
+                    writeRecord(nodeRecord);
+                    writeRecord(binaryRecord);
+                    writeRecord(channelRecord);
+                    record.writeTo(out);
+
+                    if (listeners != null) {
+                        for (IProtocolDataWriterListener listener : listeners) {
+                            listener.start(context, batch);
+                        }
+                    }
+                } else if (recordType == COMMIT) {
+                    if (out != null) {
+                        record.writeTo(out);
+                        resource.close();
+                        resource.setState(State.DONE);
+                        out = null;
+                    }
+
+                    batch.setStatistics(batchStats);
+                    batchStats = null;
+                    if (listeners != null) {
+                        for (IProtocolDataWriterListener listener : listeners) {
+                            listener.end(context, batch, resource);
+                        }
+                    }
+                    resource = null;
+                } else if (recordType == STATS_COLUMNS) {
+                    batchStatsColumns = getFields(record.toByteArray());
+                } else if (recordType == STATS) {
+                    batchStats = new Statistics();
+                    putStats(batchStats, batchStatsColumns, getFields(record.toByteArray()));
+                } else {
+                    if (out == null) {
+                        throw new IllegalStateException("Invalid batch data was received with record type " + recordType);
+                    }
+                    if (isData(recordType)) {
+                        processInfo.incrementCurrentDataCount();
+                    }
+                    record.writeTo(out);
+                }
+
+                recordCount++;
+                if (System.currentTimeMillis() - ts > 60000) {
+                    log.info(
+                            "Batch '{}', for node '{}', for process 'transfer to stage' has been processing for {} seconds.  The following stats have been gathered: {}",
+                            new Object[] { (batch != null ? batch.getBatchId() : "?"), (batch != null ? batch.getTargetNodeId() : "?"),
+                                    (System.currentTimeMillis() - startTime) / 1000,
+                                    "RECORDS=" + recordCount + ", BYTES=" + ((resource == null) ? 0 : resource.getSize()) });
+                    ts = System.currentTimeMillis();
+                }
+            }
+
+            processInfo.setStatus(ProcessStatus.OK);
+        } catch (IOException ex) {
+            if (resource != null) {
+                resource.delete();
+            }
+
+            processInfo.setStatus(ProcessStatus.ERROR);
+
+            /*
+             * Just log an error here.  We want batches that come before us to continue to process and to be acknowledged
+             */
+            log.error("Failed to process batch. Context: " + context.getContext(), ex);
+        }
+    }
+
+    /**
+     * @return the magic bytes and version that start every staged batch or
+     *         null if the stream is empty
+     */
+    protected byte[] readHeader() throws IOException {
+        byte[] magic = new byte[BinaryProtocolConstants.MAGIC.length];
+        int length = in.read(magic);
+        if (length < 0) {
+            return null;
+        } else if (length < magic.length) {
+            in.readFully(magic, length, magic.length - length);
+        }
+        if (!Arrays.equals(magic, BinaryProtocolConstants.MAGIC)) {
+            throw new IOException("The input does not start with the binary protocol header");
+        }
+        record.reset();
+        record.write(magic);
+        copyVarint();
+        return record.toByteArray();
+    }
+
+    /**
+     * Read the next record into {@link #record} without decoding its values
+     * 
+     * @return the record type or -1 at the end of the stream
+     */
+    protected int readRecord() throws IOException {
+        int recordType = in.read();
+        record.reset();
+        if (recordType >= 0) {
+            record.write(recordType);
+            if (recordType == BinaryProtocolConstants.TABLE_DEFINITION) {
+                copyVarint();
+                copyFields();
+                copyFields();
+                copyFields();
+            } else if (recordType == BinaryProtocolConstants.TABLE_REFERENCE) {
+                copyVarint();
+            } else {
+                copyFields();
+            }
+        }
+        return recordType;
+    }
+
+    protected void copyFields() throws IOException {
+        int count = (int) copyVarint();
+        byte[] nullBitmap = new byte[(count + 7) / 8];
+        in.readFully(nullBitmap);
+        record.write(nullBitmap);
+        for (int i = 0; i < count; i++) {
+            if ((nullBitmap[i / 8] & (1 << (i % 8))) == 0) {
+                int length = (int) copyVarint();
+                while (length > 0) {
+                    int read = in.read(buffer, 0, Math.min(length, buffer.length));
+                    if (read < 0) {
+                        throw new IOException("The stream ended in the middle of a record");
+                    }
+                    record.write(buffer, 0, read);
+                    length -= read;
+                }
+            }
+        }
+    }
+
+    protected long copyVarint() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            record.write(b);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Decode the fields of a record that was copied by {@link #readRecord()}
+     */
+    protected String[] getFields(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            return null;
+        }
+        DataInputStream fields = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+        int count = (int) readVarint(fields);
+        String[] values = new String[count];
+        byte[] nullBitmap = new byte[(count + 7) / 8];
+        fields.readFully(nullBitmap);
+        for (int i = 0; i < count; i++) {
+            if ((nullBitmap[i / 8] & (1 << (i % 8))) == 0) {
+                byte[] value = new byte[(int) readVarint(fields)];
+                fields.readFully(value);
+                values[i] = new String(value, CHARSET);
+            }
+        }
+        return values;
+    }
+
+    protected String getField(byte[] bytes) throws IOException {
+        String[] values = getFields(bytes);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    protected long readVarint(DataInputStream is) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = is.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    protected BinaryEncoding getBinaryEncoding(byte[] bytes) throws IOException {
+        String value = getField(bytes);
+        if (value != null) {
+            return BinaryEncoding.valueOf(value);
+        }
+        return null;
+    }
+
+    protected boolean isData(int recordType) {
+        String key = BinaryProtocolConstants.getKey(recordType);
+        return CsvConstants.INSERT.equals(key) || CsvConstants.DELETE.equals(key) || CsvConstants.UPDATE.equals(key)
+                || CsvConstants.CREATE.equals(key) || CsvConstants.SQL.equals(key) || CsvConstants.BSH.equals(key);
+    }
+
+    protected void writeRecord(byte[] bytes) throws IOException {
+        if (bytes != null) {
+            out.write(bytes);
+        }
+    }
+
+    protected void putStats(Statistics stats, String[] statsColumns, String[] statsValues) {
+        if (statsValues != null && statsColumns != null) {
+            for (int i = 0; i < statsColumns.length; i++) {
+                if (i < statsValues.length) {
+                    stats.set(statsColumns[i], Long.parseLong(statsValues[i]));
+                }
+            }
+        }
+    }
+
+}
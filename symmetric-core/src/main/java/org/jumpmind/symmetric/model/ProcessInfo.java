@@ -81,6 +81,10 @@ public class ProcessInfo implements Serializable, Comparable<ProcessInfo>, Clone
 
     private long currentLoadId;
 
+    private long memoryUsedInBytes;
+
+    private long timeUsedInMs;
+
     private Date startTime = new Date();
 
     private Date lastStatusChangeTime = new Date();
@@ -307,6 +311,22 @@ public class ProcessInfo implements Serializable, Comparable<ProcessInfo>, Clone
         }
     }
 
+    public long getMemoryUsedInBytes() {
+        return memoryUsedInBytes;
+    }
+
+    public void setMemoryUsedInBytes(long memoryUsedInBytes) {
+        this.memoryUsedInBytes = memoryUsedInBytes;
+    }
+
+    public long getTimeUsedInMs() {
+        return timeUsedInMs;
+    }
+
+    public void setTimeUsedInMs(long timeUsedInMs) {
+        this.timeUsedInMs = timeUsedInMs;
+    }
+
     public long getTotalDataCount() {
         return totalDataCount;
     }
@@ -22,7 +22,10 @@ package org.jumpmind.symmetric.model;
 
 import java.io.Serializable;
 import java.io.StringReader;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.jumpmind.db.model.Table;
 import org.jumpmind.symmetric.SymmetricException;
@@ -59,6 +62,8 @@ public class TriggerHistory implements Serializable {
 
     private String[] parsedColumnNames;
 
+    private transient Map<String, Integer> columnOrdinals;
+
     private String pkColumnNames;
 
     private String[] parsedPkColumnNames;
@@ -163,6 +168,27 @@ public class TriggerHistory implements Serializable {
         return parsedColumnNames;
     }
 
+    /**
+     * Maps each captured column name, both as recorded and upper cased, to its
+     * position in the row data. The map is built once per history so that
+     * routers can look up values without rebuilding a map for every row.
+     */
+    public Map<String, Integer> getColumnOrdinals() {
+        if (columnOrdinals == null) {
+            String[] columnNames = getParsedColumnNames();
+            Map<String, Integer> ordinals = new HashMap<String, Integer>(
+                    columnNames != null ? columnNames.length * 4 : 1);
+            if (columnNames != null) {
+                for (int i = 0; i < columnNames.length; i++) {
+                    ordinals.put(columnNames[i], i);
+                    ordinals.put(columnNames[i].toUpperCase(), i);
+                }
+            }
+            columnOrdinals = Collections.unmodifiableMap(ordinals);
+        }
+        return columnOrdinals;
+    }
+
     public int indexOfColumnName(String columnName, boolean ignoreCase) {
         String[] columnNames = getParsedColumnNames();
         int i = 0;
@@ -210,6 +236,7 @@ public class TriggerHistory implements Serializable {
 
     public void setColumnNames(String allColumnData) {
         this.columnNames = allColumnData;
+        this.columnOrdinals = null;
     }
 
     public Date getCreateTime() {
@@ -31,9 +31,11 @@ import org.jumpmind.db.platform.DatabaseNamesConstants;
 import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.TriggerHistory;
 import org.jumpmind.util.LinkedCaseInsensitiveMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,45 +45,59 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class AbstractDataRouter implements IDataRouter {
 
-    private static final String OLD_ = "OLD_";
+    protected static final String OLD_ = "OLD_";
 
     protected Logger log = LoggerFactory.getLogger(getClass());
 
     public void contextCommitted(SimpleRouterContext context) {
     }
 
+    /**
+     * Returns the new, old and external data of the row being routed keyed by
+     * column name. Rows that have captured column data are returned as a
+     * {@link DataRowMap} that reads values in place.
+     */
     protected Map<String, String> getDataMap(DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
-        Map<String, String> data = null;
-        DataEventType dml = dataMetaData.getData().getDataEventType();
-        switch (dml) {
+        Data data = dataMetaData.getData();
+        TriggerHistory triggerHistory = dataMetaData.getTriggerHistory();
+        String[] columnNames = triggerHistory.getParsedColumnNames();
+        String[] newData = null;
+        String[] oldData = null;
+        boolean hasOldColumns = false;
+        switch (data.getDataEventType()) {
             case UPDATE:
-                data = new LinkedCaseInsensitiveMap<String>(dataMetaData.getTable().getColumnCount() * 4);
-                data.putAll(getNewDataAsString(null, dataMetaData, symmetricDialect));
-                data.putAll(getOldDataAsString(OLD_, dataMetaData, symmetricDialect));
+                newData = data.toParsedRowData();
+                oldData = data.toParsedOldData();
+                hasOldColumns = oldData != null;
                 break;
             case INSERT:
-                data = new LinkedCaseInsensitiveMap<String>(dataMetaData.getTable().getColumnCount() * 4);
-                data.putAll(getNewDataAsString(null, dataMetaData, symmetricDialect));
-                Map<String, String> map = getNullData(OLD_, dataMetaData);
-                data.putAll(map);
+                newData = data.toParsedRowData();
+                hasOldColumns = true;
                 break;
             case DELETE:
-                data = new LinkedCaseInsensitiveMap<String>(dataMetaData.getTable().getColumnCount() * 4);
-                data.putAll(getOldDataAsString(null, dataMetaData, symmetricDialect));
-                data.putAll(getOldDataAsString(OLD_, dataMetaData, symmetricDialect));
+                oldData = data.toParsedOldData();
+                newData = oldData;
+                hasOldColumns = oldData != null;
                 break;
             default:
-                data = new LinkedCaseInsensitiveMap<String>(1);
                 break;
         }
 
-        if (data != null) {
-            if (data.size() == 0) {
-                data.putAll(getPkDataAsString(dataMetaData, symmetricDialect));
+        if (columnNames != null && columnNames.length > 0 && (newData != null || hasOldColumns)) {
+            if (newData != null) {
+                testColumnNamesMatchValues(dataMetaData, symmetricDialect, columnNames, newData);
             }
-            data.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
+            if (oldData != null && oldData != newData) {
+                testColumnNamesMatchValues(dataMetaData, symmetricDialect, columnNames, oldData);
+            }
+            return new DataRowMap(columnNames, triggerHistory.getColumnOrdinals(), newData,
+                    oldData, hasOldColumns, data.getExternalData());
+        } else {
+            Map<String, String> map = new LinkedCaseInsensitiveMap<String>(1);
+            map.putAll(getPkDataAsString(dataMetaData, symmetricDialect));
+            map.put("EXTERNAL_DATA", data.getExternalData());
+            return map;
         }
-        return data;
     }
 
     protected Map<String, String> getNewDataAsString(String prefix, DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
@@ -23,15 +23,25 @@ package org.jumpmind.symmetric.route;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import javax.lang.model.SourceVersion;
+
+import org.apache.commons.lang.StringUtils;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.slf4j.Logger;
 
 import bsh.EvalError;
 import bsh.Interpreter;
@@ -48,6 +58,13 @@ import bsh.TargetError;
  * using upper case. Also bound to the interpreter is a {@link Collection} of
  * targetNodes. The script is expected to add the the list of target nodes a
  * list of the node_ids that should be routed to.
+ * <P/>
+ * When routing.bsh.compile.enabled is on, the script is translated into the
+ * body of a Java method that has the same variables available to it. The
+ * class is compiled once and cached by router id, router last update time and
+ * trigger history, keeping only the most recently used scripts. Scripts that do
+ * not compile as Java, or whose string literals and comments cannot be told
+ * apart from the code, are interpreted.
  */
 public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensionPoint {
 
@@ -55,6 +72,27 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
 
     final String INTERPRETER_KEY = String.format("%d.BshInterpreter", hashCode());
 
+    public final static String CODE_START = "import org.jumpmind.symmetric.*;\n"
+            + "import org.jumpmind.symmetric.route.*;\n"
+            + "import org.jumpmind.symmetric.model.*;\n"
+            + "import org.jumpmind.symmetric.service.*;\n"
+            + "import org.slf4j.Logger;\n"
+            + "import java.util.*;\n"
+            + "public class BshDataRouterScript implements BshDataRouter.IRouterScript { \n"
+            + "   @SuppressWarnings({\"rawtypes\", \"unchecked\"})\n"
+            + "   public Object route(Logger log, boolean initialLoad, DataMetaData dataMetaData, Set<Node> nodes,\n"
+            + "      Set<String> nodeIds, String identityNodeId, Set targetNodes, ISymmetricEngine engine,\n"
+            + "      Map<String, Object> columns) throws Exception {\n";
+
+    public final static String CODE_END = "\n      }\n      return null;\n   }\n}\n";
+
+    protected final static Pattern VOID_PATTERN = Pattern.compile("\\b([A-Za-z_$][\\w$]*)\\s*(!=|==)\\s*void\\b");
+
+    protected final static Pattern STATEMENT_PATTERN = Pattern.compile(
+            "\\s*(return|throw|break|continue|else|if|for|while|do|switch|try|synchronized|assert)\\b");
+
+    protected CompiledScripts compiledScripts = new CompiledScripts();
+
     public BshDataRouter(ISymmetricEngine engine) {
         this.engine = engine;
     }
@@ -62,6 +100,13 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
     public Set<String> routeToNodes(SimpleRouterContext context, DataMetaData dataMetaData,
             Set<Node> nodes, boolean initialLoad, boolean initialLoadSelectUsed,
             TriggerRouter triggerRouter) {
+        if (engine.getParameterService().is(ParameterConstants.ROUTING_BSH_COMPILE_ENABLED)) {
+            IRouterScript script = getCompiledScript(context, dataMetaData);
+            if (script != null) {
+                return routeToNodes(script, context, dataMetaData, nodes, initialLoad);
+            }
+        }
+
         Set<String> boundVariableNames = new LinkedHashSet<String>();
         try {
             long ts = System.currentTimeMillis();
@@ -89,6 +134,227 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
         }
     }
 
+    protected Set<String> routeToNodes(IRouterScript script, SimpleRouterContext context, DataMetaData dataMetaData,
+            Set<Node> nodes, boolean initialLoad) {
+        long ts = System.currentTimeMillis();
+        HashSet<String> targetNodes = new HashSet<String>();
+        Map<String, Object> columns = getDataObjectMap(dataMetaData, engine.getSymmetricDialect(), true);
+        if (columns == null) {
+            columns = Collections.emptyMap();
+        }
+        context.incrementStat(System.currentTimeMillis() - ts, "bsh.bind.ms");
+        ts = System.currentTimeMillis();
+        Object returnValue = null;
+        try {
+            returnValue = script.route(log, initialLoad, dataMetaData, nodes, toNodeIds(nodes, null),
+                    engine.getNodeService().findIdentityNodeId(), targetNodes, engine, columns);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Compiled routing script failed for router " + dataMetaData.getRouter().getRouterId(), e);
+        }
+        context.incrementStat(System.currentTimeMillis() - ts, "bsh.exec.ms");
+        return eval(returnValue, nodes, targetNodes);
+    }
+
+    protected IRouterScript getCompiledScript(SimpleRouterContext context, DataMetaData dataMetaData) {
+        Router router = dataMetaData.getRouter();
+        TriggerHistory triggerHistory = dataMetaData.getTriggerHistory();
+        String key = router.getRouterId() + "-" + (triggerHistory != null ? triggerHistory.getTriggerHistoryId() : -1);
+        long lastUpdateTime = router.getLastUpdateTime() != null ? router.getLastUpdateTime().getTime() : 0;
+        CompiledScript compiledScript = compiledScripts.getScript(key);
+        if (compiledScript == null || compiledScript.lastUpdateTime != lastUpdateTime
+                || !StringUtils.equals(compiledScript.routerExpression, router.getRouterExpression())) {
+            long ts = System.currentTimeMillis();
+            compiledScript = new CompiledScript(lastUpdateTime, router.getRouterExpression());
+            String javaCode = toJavaCode(router.getRouterExpression(),
+                    triggerHistory != null ? triggerHistory.getParsedColumnNames() : null);
+            if (javaCode == null) {
+                log.info("The bsh expression for router '{}' has an unterminated string literal or comment and will be interpreted",
+                        router.getRouterId());
+            } else {
+                try {
+                    synchronized (engine.getExtensionService()) {
+                        compiledScript.script = (IRouterScript) engine.getExtensionService().getCompiledClass(javaCode);
+                    }
+                } catch (Exception e) {
+                    log.info("The bsh expression for router '{}' could not be compiled as Java and will be interpreted.  {}",
+                            router.getRouterId(), e.getMessage());
+                }
+            }
+            compiledScripts.putScript(key, compiledScript);
+            context.incrementStat(System.currentTimeMillis() - ts, "bsh.compile.ms");
+        }
+        return compiledScript.script;
+    }
+
+    /**
+     * Returns the source of a class that runs the router expression, or null
+     * when the expression cannot be scanned safely and should be interpreted.
+     */
+    protected String toJavaCode(String routerExpression, String[] columnNames) {
+        String[] scanned = blankCommentsAndLiterals(routerExpression);
+        if (scanned == null) {
+            return null;
+        }
+        String expression = scanned[0];
+        String blanked = scanned[1];
+
+        StringBuilder code = new StringBuilder(CODE_START);
+        Set<String> names = new LinkedHashSet<String>();
+        if (columnNames != null) {
+            for (String columnName : columnNames) {
+                names.add(columnName.toUpperCase());
+            }
+            for (String columnName : columnNames) {
+                names.add(AbstractDataRouter.OLD_ + columnName.toUpperCase());
+            }
+        }
+        names.add("EXTERNAL_DATA");
+        Set<String> declaredNames = new HashSet<String>();
+        for (String name : names) {
+            if (SourceVersion.isName(name) && !name.equals("columns")) {
+                code.append("      Object ").append(name).append(" = columns.get(\"").append(name).append("\");\n");
+                declaredNames.add(name);
+            }
+        }
+
+        /*
+         * bean shell lets a script check whether a column was bound with "!= void".
+         * The script is inspected with its literals blanked out so that text in a
+         * string is never mistaken for code.
+         */
+        StringBuilder script = new StringBuilder();
+        StringBuilder blankedScript = new StringBuilder();
+        Matcher matcher = VOID_PATTERN.matcher(blanked);
+        int copied = 0;
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (declaredNames.contains(name)) {
+                String containsKey = "columns.containsKey(\"" + name + "\")";
+                String replacement = matcher.group(2).equals("==") ? "!" + containsKey : containsKey;
+                script.append(expression, copied, matcher.start()).append(replacement);
+                blankedScript.append(blanked, copied, matcher.start()).append(replacement);
+                copied = matcher.end();
+            }
+        }
+        script.append(expression, copied, expression.length());
+        blankedScript.append(blanked, copied, blanked.length());
+
+        int start = 0;
+        int end = blankedScript.length();
+        while (start < end && blankedScript.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && blankedScript.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end > start && blankedScript.charAt(end - 1) == ';') {
+            end--;
+            while (end > start && blankedScript.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+        String body = script.substring(start, end);
+        String blankedBody = blankedScript.substring(start, end);
+        code.append("      if (true) {\n");
+        int last = lastStatementStart(blankedBody);
+        String lastStatement = blankedBody.substring(last);
+        if (lastStatement.trim().length() == 0) {
+            code.append(body);
+        } else if (STATEMENT_PATTERN.matcher(lastStatement).lookingAt()) {
+            code.append(body).append(";");
+        } else {
+            /* like bean shell, the value of a trailing expression is the value of the script */
+            code.append(body, 0, last).append("return (").append(body, last, body.length()).append(");");
+        }
+        code.append(CODE_END);
+        return code.toString();
+    }
+
+    /**
+     * Returns where the last statement of a script with its literals blanked
+     * out starts, which is just past the last semicolon or closing brace that
+     * is not nested in parentheses, brackets or braces.
+     */
+    protected static int lastStatementStart(String blankedBody) {
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < blankedBody.length(); i++) {
+            char c = blankedBody.charAt(i);
+            if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+                if (c == '}' && depth == 0) {
+                    start = i + 1;
+                }
+            } else if (c == ';' && depth == 0) {
+                start = i + 1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Returns the expression with its comments blanked out, followed by a copy
+     * that also has the contents of its string and character literals blanked
+     * out. Line breaks are kept so that line numbers still match. Returns null
+     * if a literal or comment is not terminated.
+     */
+    protected static String[] blankCommentsAndLiterals(String expression) {
+        StringBuilder code = new StringBuilder(expression);
+        StringBuilder blanked = new StringBuilder(expression);
+        int length = expression.length();
+        int i = 0;
+        while (i < length) {
+            char c = expression.charAt(i);
+            char next = i + 1 < length ? expression.charAt(i + 1) : 0;
+            if (c == '/' && next == '/') {
+                int end = expression.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                blank(code, i, end);
+                blank(blanked, i, end);
+                i = end;
+            } else if (c == '/' && next == '*') {
+                int end = expression.indexOf("*/", i + 2);
+                if (end < 0) {
+                    return null;
+                }
+                end += 2;
+                blank(code, i, end);
+                blank(blanked, i, end);
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                int end = i + 1;
+                while (end < length && expression.charAt(end) != c) {
+                    if (expression.charAt(end) == '\n') {
+                        return null;
+                    } else if (expression.charAt(end) == '\\') {
+                        end++;
+                    }
+                    end++;
+                }
+                if (end >= length) {
+                    return null;
+                }
+                blank(blanked, i + 1, end);
+                i = end + 1;
+            } else {
+                i++;
+            }
+        }
+        return new String[] { code.toString(), blanked.toString() };
+    }
+
+    private static void blank(StringBuilder text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                text.setCharAt(i, ' ');
+            }
+        }
+    }
+
     protected Interpreter getInterpreter(SimpleRouterContext context) {
         Interpreter interpreter = (Interpreter) context.getContextCache().get(INTERPRETER_KEY);
         if (interpreter == null) {
@@ -145,4 +411,49 @@ public class BshDataRouter extends AbstractDataRouter implements IBuiltInExtensi
         interpreter.set(name, value);
         boundVariableNames.add(name);        
     }   
+
+    /**
+     * Implemented by the class that a bsh router expression is compiled into.
+     */
+    public interface IRouterScript {
+        @SuppressWarnings("rawtypes")
+        public Object route(Logger log, boolean initialLoad, DataMetaData dataMetaData, Set<Node> nodes,
+                Set<String> nodeIds, String identityNodeId, Set targetNodes, ISymmetricEngine engine,
+                Map<String, Object> columns) throws Exception;
+    }
+
+    static class CompiledScripts extends LinkedHashMap<String, CompiledScript> {
+
+        private static final long serialVersionUID = 1L;
+
+        static final int MAX_SIZE = 100;
+
+        CompiledScripts() {
+            super(16, 0.75f, true);
+        }
+
+        synchronized CompiledScript getScript(String key) {
+            return get(key);
+        }
+
+        synchronized void putScript(String key, CompiledScript compiledScript) {
+            put(key, compiledScript);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledScript> eldest) {
+            return size() > MAX_SIZE;
+        }
+    }
+
+    static class CompiledScript {
+        long lastUpdateTime;
+        String routerExpression;
+        IRouterScript script;
+
+        CompiledScript(long lastUpdateTime, String routerExpression) {
+            this.lastUpdateTime = lastUpdateTime;
+            this.routerExpression = routerExpression;
+        }
+    }
 }
@@ -40,6 +40,7 @@ import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.NodeChannel;
 import org.jumpmind.symmetric.model.OutgoingBatch;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.statistic.LatencyHistogram;
 import org.slf4j.Logger;
 
 public class ChannelRouterContext extends SimpleRouterContext {
@@ -57,6 +58,7 @@ public class ChannelRouterContext extends SimpleRouterContext {
 
     private Map<String, OutgoingBatch> batchesByNodes = new HashMap<String, OutgoingBatch>();
     private Map<TriggerRouter, Set<Node>> availableNodes = new HashMap<TriggerRouter, Set<Node>>();
+    private Map<String, LatencyHistogram> routerLatencies = new HashMap<String, LatencyHistogram>();
     private Set<IDataRouter> usedDataRouters = new HashSet<IDataRouter>();
     private ISqlTransaction sqlTransaction;
     private boolean needsCommitted = false;
@@ -108,6 +110,14 @@ public class ChannelRouterContext extends SimpleRouterContext {
         return availableNodes;
     }
 
+    /**
+     * The latency histogram of each router used by this context, keyed by
+     * router id, so they only have to be looked up once per context.
+     */
+    public Map<String, LatencyHistogram> getRouterLatencies() {
+        return routerLatencies;
+    }
+
     public void commit() {
         try {
             sqlTransaction.commit();
@@ -22,6 +22,9 @@ package org.jumpmind.symmetric.route;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -75,8 +78,13 @@ import org.jumpmind.symmetric.service.IConfigurationService;
  * the store_id would be the external_id of a node in the registration_redirect
  * table and the router_expression for trigger entry for the 'price' table would
  * be 'store_id=:REDIRECT_NODE' and the router_type would be 'column'.
+ * <P>
+ * Equals and contains expressions on NODE_ID, EXTERNAL_ID and NODE_GROUP_ID are
+ * answered from hash indexes of the available nodes that are built once per
+ * set of nodes in a routing context, so the cost of routing a row does not grow with the number
+ * of nodes.
  */
-public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRouter, IBuiltInExtensionPoint {
+public class ColumnMatchDataRouter extends AbstractDataRouter implements IThreadSafeDataRouter, IBuiltInExtensionPoint {
 
     private static final String NULL_VALUE = "NULL";
 
@@ -86,6 +94,9 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
 
     final static String EXPRESSION_KEY = String.format("%s.Expression.", ColumnMatchDataRouter.class
             .getName());        
+
+    final static String NODE_INDEX_KEY = String.format("%s.NodeIndex", ColumnMatchDataRouter.class
+            .getName());
     
     public ColumnMatchDataRouter() {
     }
@@ -110,26 +121,16 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
                     String value = e.tokens[1];
                     String columnValue = columnValues.get(column);
 
-                    if (value.equalsIgnoreCase(TokenConstants.NODE_ID)) {
-                        for (Node node : nodes) {
-                            nodeIds = runExpression(e, columnValue, node.getNodeId(), nodes,
-                                    nodeIds, node);
-                        }
-                    } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
-                        for (Node node : nodes) {
-                            nodeIds = runExpression(e, columnValue, node.getExternalId(), nodes,
-                                    nodeIds, node);
-                        }
-                    } else if (value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
-                        for (Node node : nodes) {
-                            nodeIds = runExpression(e, columnValue, node.getNodeGroupId(), nodes,
-                                    nodeIds, node);
-                        }
+                    if (value.equalsIgnoreCase(TokenConstants.NODE_ID)
+                            || value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)
+                            || value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
+                        nodeIds = runNodeExpression(e, columnValue, value, nodes, nodeIds,
+                                getNodeIndex(routingContext, dataMetaData.getRouter(), nodes));
                     } else if (e.hasEquals && value.equalsIgnoreCase(TokenConstants.REDIRECT_NODE)) {
                         Map<String, String> redirectMap = getRedirectMap(routingContext);
                         String nodeId = redirectMap.get(columnValue);
                         if (nodeId != null) {
-                            nodeIds = addNodeId(nodeId, nodeIds, nodes);
+                            nodeIds = addNodeIds(getNodeIndex(routingContext, dataMetaData.getRouter(), nodes).get(TokenConstants.NODE_ID, nodeId), nodeIds);
                         }
                     } else {
                         String compareValue = value;
@@ -176,7 +177,8 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         }
         if (result) {
             if (node != null) {
-                nodeIds = addNodeId(node.getNodeId(), nodeIds, nodes);
+                nodeIds = nodeIds == null ? new HashSet<String>(1) : nodeIds;
+                nodeIds.add(node.getNodeId());
             } else {
                 nodeIds = toNodeIds(nodes, nodeIds);
             }
@@ -184,6 +186,53 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         return nodeIds;
     }
 
+    protected Set<String> runNodeExpression(Expression e, String columnValue, String nodeToken, Set<Node> nodes,
+            Set<String> nodeIds, NodeIndex nodeIndex) {
+        if (e.hasEquals) {
+            nodeIds = addNodeIds(nodeIndex.get(nodeToken, columnValue), nodeIds);
+        } else if (e.hasContains) {
+            if (columnValue != null) {
+                for (String token : columnValue.split(",")) {
+                    nodeIds = addNodeIds(nodeIndex.get(nodeToken, token), nodeIds);
+                }
+            }
+        } else {
+            for (Node node : nodes) {
+                nodeIds = runExpression(e, columnValue, NodeIndex.getValue(nodeToken, node), nodes, nodeIds, node);
+            }
+        }
+        return nodeIds;
+    }
+
+    protected Set<String> addNodeIds(List<Node> matchingNodes, Set<String> nodeIds) {
+        nodeIds = nodeIds == null ? new HashSet<String>(matchingNodes != null ? matchingNodes.size() : 1) : nodeIds;
+        if (matchingNodes != null) {
+            for (Node node : matchingNodes) {
+                nodeIds.add(node.getNodeId());
+            }
+        }
+        return nodeIds;
+    }
+
+    /**
+     * Cache indexes of the available nodes in the context for each router.
+     * Grouplets hand a new set of nodes to the router for every row, so the
+     * indexes are kept by the ids of the nodes in the set. Only the most
+     * recently used are kept.
+     */
+    protected NodeIndex getNodeIndex(SimpleRouterContext context, Router router, Set<Node> nodes) {
+        String key = NODE_INDEX_KEY + router.getRouterId();
+        NodeIndexes indexes = null;
+        synchronized (context) {
+            indexes = (NodeIndexes) context.getContextCache().get(key);
+            if (indexes == null) {
+                indexes = new NodeIndexes();
+                context.getContextCache().put(key, indexes);
+            }
+        }
+        return indexes.get(nodes);
+    }
+
     /**
      * Cache parsed expressions in the context to minimize the amount of parsing
      * we have to do when we have lots of throughput.
@@ -275,6 +324,95 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         return redirectMap;
     }
 
+    @SuppressWarnings("serial")
+    static class NodeIndexes extends LinkedHashMap<Set<String>, NodeIndex> {
+
+        static final int MAX_SIZE = 16;
+
+        Set<Node> lastNodes;
+
+        NodeIndex lastIndex;
+
+        NodeIndexes() {
+            super(MAX_SIZE, 0.75f, true);
+        }
+
+        synchronized NodeIndex get(Set<Node> nodes) {
+            if (nodes == lastNodes && lastIndex.size == nodes.size()) {
+                return lastIndex;
+            }
+            Set<String> nodeIds = new HashSet<String>(nodes.size());
+            for (Node node : nodes) {
+                nodeIds.add(node.getNodeId());
+            }
+            NodeIndex nodeIndex = super.get(nodeIds);
+            if (nodeIndex == null) {
+                nodeIndex = new NodeIndex(nodes);
+                put(nodeIds, nodeIndex);
+            }
+            lastNodes = nodes;
+            lastIndex = nodeIndex;
+            return nodeIndex;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Set<String>, NodeIndex> eldest) {
+            return size() > MAX_SIZE;
+        }
+    }
+
+    static class NodeIndex {
+
+        int size;
+
+        Map<String, List<Node>> byNodeId;
+
+        Map<String, List<Node>> byExternalId;
+
+        Map<String, List<Node>> byNodeGroupId;
+
+        NodeIndex(Set<Node> nodes) {
+            size = nodes.size();
+            byNodeId = new HashMap<String, List<Node>>(nodes.size());
+            byExternalId = new HashMap<String, List<Node>>(nodes.size());
+            byNodeGroupId = new HashMap<String, List<Node>>();
+            for (Node node : nodes) {
+                add(byNodeId, node.getNodeId(), node);
+                add(byExternalId, node.getExternalId(), node);
+                add(byNodeGroupId, node.getNodeGroupId(), node);
+            }
+        }
+
+        protected void add(Map<String, List<Node>> index, String value, Node node) {
+            List<Node> list = index.get(value);
+            if (list == null) {
+                list = new ArrayList<Node>(1);
+                index.put(value, list);
+            }
+            list.add(node);
+        }
+
+        List<Node> get(String nodeToken, String value) {
+            if (nodeToken.equalsIgnoreCase(TokenConstants.NODE_ID)) {
+                return byNodeId.get(value);
+            } else if (nodeToken.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
+                return byExternalId.get(value);
+            } else {
+                return byNodeGroupId.get(value);
+            }
+        }
+
+        static String getValue(String nodeToken, Node node) {
+            if (nodeToken.equalsIgnoreCase(TokenConstants.NODE_ID)) {
+                return node.getNodeId();
+            } else if (nodeToken.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
+                return node.getExternalId();
+            } else {
+                return node.getNodeGroupId();
+            }
+        }
+    }
+
     public class Expression {
         public static final String EQUALS = "=";
         public static final String NOT_EQUALS = "!=";
@@ -124,7 +124,7 @@ public class DataGapFastDetector extends DataGapDetector implements ISqlRowMappe
                 if (detectInvalidGaps) {
                     fixOverlappingGaps(gaps, processInfo);
                 }
-                queryDataIdMap();
+                queryDataIdMap(processInfo);
                 processInfo.setStatus(ProcessStatus.OK);
                 log.info("Querying data in gaps from database took {} ms", System.currentTimeMillis() - ts);
                 isAllDataRead = false;
@@ -210,11 +210,11 @@ public class DataGapFastDetector extends DataGapDetector implements ISqlRowMappe
             int rangeChecked = 0;
             int expireChecked = 0;
             gapsAll.addAll(gaps);
-            Map<DataGap, List<Long>> dataIdMap = getDataIdMap();
+            Map<DataGap, List<Long>> dataIdMap = getDataIdMap(processInfo);
 
             if (System.currentTimeMillis() - ts > 30000) {
                 log.info("It took {}ms to map {} data IDs into {} gaps", new Object[] { System.currentTimeMillis() - ts,
-                        dataIds.size(), gaps.size() });
+                        getDataIdCount(), gaps.size() });
             }
 
             for (final DataGap dataGap : gaps) {
@@ -334,7 +334,7 @@ public class DataGapFastDetector extends DataGapDetector implements ISqlRowMappe
         return isOkay;
     }
     
-    private void printGapState() {
+    protected void printGapState() {
         StringBuilder buff = new StringBuilder();
         buff.append("\nData IDs: " + dataIds).append("\n");
         buff.append("Data Gaps: " + gaps).append("\n");
@@ -421,7 +421,7 @@ public class DataGapFastDetector extends DataGapDetector implements ISqlRowMappe
         return printStats;
     }
 
-    protected void queryDataIdMap() {
+    protected void queryDataIdMap(ProcessInfo processInfo) {
         String sql = routerService.getSql("selectDistinctDataIdFromDataEventUsingGapsSql");
         ISqlTemplate sqlTemplate = symmetricDialect.getPlatform().getSqlTemplate();
 
@@ -437,7 +437,11 @@ public class DataGapFastDetector extends DataGapDetector implements ISqlRowMappe
         }
     }
 
-    protected Map<DataGap, List<Long>> getDataIdMap() {
+    protected int getDataIdCount() {
+        return dataIds.size();
+    }
+
+    protected Map<DataGap, List<Long>> getDataIdMap(ProcessInfo processInfo) {
         HashMap<DataGap, List<Long>> map = new HashMap<DataGap, List<Long>>();
         Collections.sort(dataIds);
 
@@ -608,14 +612,18 @@ public class DataGapFastDetector extends DataGapDetector implements ISqlRowMappe
         return gaps;
     }
 
-    public void addDataIds(List<Long> dataIds) {
+    /**
+     * Called once for each channel that is routed.  Channels can be routed by more than one thread at the same time, 
+     * so the data ids are merged under a lock.
+     */
+    public synchronized void addDataIds(List<Long> dataIds) {
         this.dataIds.addAll(dataIds);
     }
 
     /**
      * This method is called for each channel that is routed.  Once it is set for a routing pass it should remain set until the routing pass is done.
      */
-    public void setIsAllDataRead(boolean isAllDataRead) {
+    public synchronized void setIsAllDataRead(boolean isAllDataRead) {
         this.isAllDataRead &= isAllDataRead;
     }
 
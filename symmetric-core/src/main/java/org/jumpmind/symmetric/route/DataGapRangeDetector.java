@@ -0,0 +1,195 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.DataGap;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.service.IContextService;
+import org.jumpmind.symmetric.service.IDataService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.IRouterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.util.LongList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A variation of the {@link DataGapFastDetector} that keeps data ids in a
+ * sorted primitive {@link LongList} instead of boxed lists. A full gap analysis
+ * reads the data ids for all gaps with one range query that is streamed from
+ * the database, and data ids are matched to gaps with a single merge pass over
+ * the sorted gaps and ids.
+ */
+public class DataGapRangeDetector extends DataGapFastDetector {
+
+    private static final Logger log = LoggerFactory.getLogger(DataGapRangeDetector.class);
+
+    protected LongList sortedDataIds = new LongList();
+
+    public DataGapRangeDetector(IDataService dataService, IParameterService parameterService, IContextService contextService,
+            ISymmetricDialect symmetricDialect, IRouterService routerService, IStatisticManager statisticManager, INodeService nodeService) {
+        super(dataService, parameterService, contextService, symmetricDialect, routerService, statisticManager, nodeService);
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        sortedDataIds = new LongList();
+    }
+
+    @Override
+    public synchronized void addDataIds(List<Long> dataIds) {
+        sortedDataIds.addAll(dataIds);
+    }
+
+    @Override
+    protected int getDataIdCount() {
+        return sortedDataIds.size();
+    }
+
+    /**
+     * Select the data ids from the start of the first gap to the end of the last
+     * gap with one query. The rows come back in data_id order, so only the ids
+     * that fall inside a gap are kept while walking the gaps alongside the
+     * cursor.
+     */
+    @Override
+    protected void queryDataIdMap(ProcessInfo processInfo) {
+        if (gaps.size() == 0) {
+            return;
+        }
+        String sql = routerService.getSql("selectDistinctDataIdFromDataEventUsingGapsSql");
+        ISqlTemplate sqlTemplate = symmetricDialect.getPlatform().getSqlTemplate();
+        int dataIdSqlType = symmetricDialect.getSqlTypeForIds();
+        long startId = gaps.get(0).getStartId();
+        long endId = gaps.get(gaps.size() - 1).getEndId();
+
+        long ts = System.currentTimeMillis();
+        long rowsRead = 0;
+        Iterator<DataGap> gapIterator = gaps.iterator();
+        DataGap gap = gapIterator.next();
+        ISqlReadCursor<Long> cursor = sqlTemplate.queryForCursor(sql, this, new Object[] { startId, endId },
+                new int[] { dataIdSqlType, dataIdSqlType });
+        try {
+            Long dataId = null;
+            while (gap != null && (dataId = cursor.next()) != null) {
+                rowsRead++;
+                while (gap != null && dataId > gap.getEndId()) {
+                    gap = gapIterator.hasNext() ? gapIterator.next() : null;
+                }
+                if (gap != null && dataId >= gap.getStartId()) {
+                    sortedDataIds.add(dataId);
+                    processInfo.incrementCurrentDataCount();
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        ts = System.currentTimeMillis() - ts;
+        processInfo.setMemoryUsedInBytes(sortedDataIds.getSizeInBytes());
+        processInfo.setTimeUsedInMs(ts);
+        if (ts > Constants.LONG_OPERATION_THRESHOLD) {
+            log.info("It took {}ms to read {} rows for {} gaps from {} to {}, of which {} were in gaps.  {}", new Object[] { ts, rowsRead,
+                    gaps.size(), startId, endId, sortedDataIds.size(), sql });
+        }
+    }
+
+    /**
+     * Sort the data ids and walk them alongside the sorted gaps once. Each gap
+     * gets a view of its range of the sorted ids, so nothing is copied.
+     */
+    @Override
+    protected Map<DataGap, List<Long>> getDataIdMap(ProcessInfo processInfo) {
+        long ts = System.currentTimeMillis();
+        sortedDataIds.sort();
+        Map<DataGap, List<Long>> map = new HashMap<DataGap, List<Long>>(gaps.size() * 2);
+        int size = sortedDataIds.size();
+        int index = 0;
+        for (DataGap gap : gaps) {
+            if (!map.containsKey(gap)) {
+                while (index < size && sortedDataIds.get(index) < gap.getStartId()) {
+                    index++;
+                }
+                int fromIndex = index;
+                while (index < size && sortedDataIds.get(index) <= gap.getEndId()) {
+                    index++;
+                }
+                map.put(gap, new DataIdRange(fromIndex, index));
+            }
+        }
+
+        ts = System.currentTimeMillis() - ts;
+        processInfo.setTotalDataCount(size);
+        processInfo.setMemoryUsedInBytes(sortedDataIds.getSizeInBytes());
+        processInfo.setTimeUsedInMs(ts);
+        log.debug("Mapped {} data ids into {} gaps using {} bytes in {} ms",
+                new Object[] { size, gaps.size(), sortedDataIds.getSizeInBytes(), ts });
+        return map;
+    }
+
+    @Override
+    protected void printGapState() {
+        StringBuilder buff = new StringBuilder();
+        buff.append("\nData IDs: " + sortedDataIds).append("\n");
+        buff.append("Data Gaps: " + gaps).append("\n");
+        buff.append("Added Data Gaps: " + gapsAdded).append("\n");
+        buff.append("Deleted Data Gaps: " + gapsDeleted).append("\n");
+        log.info(buff.toString());
+    }
+
+    /**
+     * A read only view of the sorted data ids that belong to one gap
+     */
+    class DataIdRange extends AbstractList<Long> {
+
+        int fromIndex;
+
+        int toIndex;
+
+        DataIdRange(int fromIndex, int toIndex) {
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+        }
+
+        @Override
+        public Long get(int index) {
+            return sortedDataIds.get(fromIndex + index);
+        }
+
+        @Override
+        public int size() {
+            return toIndex - fromIndex;
+        }
+    }
+
+}
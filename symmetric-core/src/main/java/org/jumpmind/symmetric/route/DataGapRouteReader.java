@@ -27,11 +27,11 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -98,7 +98,7 @@ public class DataGapRouteReader implements IDataToRouteReader {
 
     protected String lastTransactionId = null;
     
-    protected static Map<String, Boolean> lastSelectUsedGreaterThanQueryByEngineName = new HashMap<String, Boolean>(); 
+    protected static Map<String, Boolean> lastSelectUsedGreaterThanQueryByEngineName = new ConcurrentHashMap<String, Boolean>(); 
     
     long lastStatsPrintOutBaselineInMs = System.currentTimeMillis();
 
@@ -139,8 +139,10 @@ public class DataGapRouteReader implements IDataToRouteReader {
         long maxPeekAheadSizeInBytes = (long)(Runtime.getRuntime().maxMemory() * percentOfHeapToUse);
         ISymmetricDialect symmetricDialect = engine.getSymmetricDialect();
         ISqlReadCursor<Data> cursor = null;
+        String queue = engine.getParameterService().getInt(ParameterConstants.ROUTING_THREAD_COUNT_PER_SERVER, 1) > 1 ? 
+                context.getChannel().getChannelId() : null;
         processInfo = engine.getStatisticManager().newProcessInfo(
-                new ProcessInfoKey(engine.getNodeService().findIdentityNodeId(), null,
+                new ProcessInfoKey(engine.getNodeService().findIdentityNodeId(), queue, null,
                         ProcessType.ROUTER_READER));
         processInfo.setCurrentChannelId(context.getChannel().getChannelId());
         try {
@@ -392,7 +394,8 @@ public class DataGapRouteReader implements IDataToRouteReader {
                 comparator = DataMemoryCursor.SORT_BY_ID;
             }
 
-            cursor = new DataMemoryCursor(cursor, context, comparator);
+            cursor = new DataMemoryCursor(cursor, context, comparator, engine.getStagingManager(),
+                    parameterService.getLong(ParameterConstants.ROUTING_DATA_READER_INTO_MEMORY_MAX_BYTES));
         }
 
         return cursor;
@@ -22,15 +22,39 @@ package org.jumpmind.symmetric.route;
 
 import static org.jumpmind.symmetric.common.Constants.LOG_PROCESS_SUMMARY_THRESHOLD;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.exception.IoException;
+import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagingManager;
 import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.TriggerHistory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reads all data from a cursor and sorts it in memory. When a staging manager
+ * and a maximum number of bytes are given, data is sorted in runs that are
+ * written to staging whenever the limit is reached. The runs are then merged
+ * back together as the cursor is read, so heap use stays bounded no matter
+ * how much data there is to route.
+ */
 public class DataMemoryCursor implements ISqlReadCursor<Data> {
 
     protected final static Logger log = LoggerFactory.getLogger(DataMemoryCursor.class);
@@ -39,34 +63,197 @@ public class DataMemoryCursor implements ISqlReadCursor<Data> {
     
     public final static Comparator<Data> SORT_BY_ID = new DataByIdComparator();
     
+    protected final static Charset CHARSET = Charset.forName("UTF-8");
+
+    protected final static int DATA_OVERHEAD_IN_BYTES = 512;
+
     protected Iterator<Data> iter;
+
+    protected IStagingManager stagingManager;
+
+    protected List<IStagedResource> runs = new ArrayList<IStagedResource>();
+
+    protected Map<Integer, TriggerHistory> triggerHistories = new HashMap<Integer, TriggerHistory>();
     
     public DataMemoryCursor(ISqlReadCursor<Data> cursor, ChannelRouterContext context, Comparator<Data> comparator) {
+        this(cursor, context, comparator, null, 0);
+    }
+
+    public DataMemoryCursor(ISqlReadCursor<Data> cursor, ChannelRouterContext context, Comparator<Data> comparator,
+            IStagingManager stagingManager, long maxMemoryInBytes) {
+        this.stagingManager = stagingManager;
+        boolean isSpillEnabled = stagingManager != null && maxMemoryInBytes > 0;
+        String channelId = context.getChannel().getChannelId();
         ArrayList<Data> datas = new ArrayList<Data>();
         Data data = null;
+        long dataCount = 0;
+        long memoryInBytes = 0;
         long ts = System.currentTimeMillis();
-        while ((data = cursor.next()) != null) {
-            datas.add(data);
-            long totalTimeInMs = System.currentTimeMillis() - ts;
-            if (totalTimeInMs > LOG_PROCESS_SUMMARY_THRESHOLD) {
-                log.info(
-                        "Reading data to route for channel '{}' has been processing for {} seconds. The following stats have been gathered: dataCount={}",
-                        context.getChannel().getChannelId(), (System.currentTimeMillis() - context.getCreatedTimeInMs()) / 1000,
-                        datas.size());
-                ts = System.currentTimeMillis();
+        try {
+            while ((data = cursor.next()) != null) {
+                datas.add(data);
+                dataCount++;
+                if (isSpillEnabled) {
+                    memoryInBytes += estimateSizeInBytes(data);
+                    if (memoryInBytes >= maxMemoryInBytes) {
+                        sort(datas, comparator);
+                        writeRun(datas, channelId);
+                        datas.clear();
+                        memoryInBytes = 0;
+                    }
+                }
+                long totalTimeInMs = System.currentTimeMillis() - ts;
+                if (totalTimeInMs > LOG_PROCESS_SUMMARY_THRESHOLD) {
+                    log.info(
+                            "Reading data to route for channel '{}' has been processing for {} seconds. The following stats have been gathered: dataCount={}, sortedRuns={}",
+                            channelId, (System.currentTimeMillis() - context.getCreatedTimeInMs()) / 1000,
+                            dataCount, runs.size());
+                    ts = System.currentTimeMillis();
+                }
+            }
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        } finally {
+            cursor.close();
+        }
+        sort(datas, comparator);
+        if (runs.size() == 0) {
+            this.iter = datas.iterator();
+        } else {
+            log.info("Merging {} sorted runs of data from staging for channel '{}'", runs.size() + 1, channelId);
+            List<Iterator<Data>> sources = new ArrayList<Iterator<Data>>(runs.size() + 1);
+            for (IStagedResource run : runs) {
+                sources.add(new RunIterator(run));
             }
+            sources.add(datas.iterator());
+            this.iter = new MergeIterator(sources, comparator);
         }
-        cursor.close();
-        if (comparator != null) {
+    }
+
+    protected void sort(List<Data> datas, Comparator<Data> comparator) {
+        if (comparator != null && datas.size() > 1) {
             log.debug("Sorting in memory with {}", comparator.getClass().getSimpleName());
             datas.sort(comparator);
         }
-        this.iter = datas.iterator();
+    }
+
+    protected long estimateSizeInBytes(Data data) {
+        long size = DATA_OVERHEAD_IN_BYTES;
+        size += 2 * length(data.getRowData());
+        size += 2 * length(data.getPkData());
+        size += 2 * length(data.getOldData());
+        return size;
+    }
+
+    protected void writeRun(List<Data> datas, String channelId) {
+        long ts = System.currentTimeMillis();
+        IStagedResource run = stagingManager.create(Constants.STAGING_CATEGORY_ROUTING, channelId,
+                "sort-" + runs.size());
+        runs.add(run);
+        try {
+            DataOutputStream out = new DataOutputStream(run.getOutputStream());
+            for (Data data : datas) {
+                writeData(out, data);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IoException(e);
+        } finally {
+            run.close();
+        }
+        log.debug("Wrote sorted run of {} rows to {} in {}ms", datas.size(), run.getPath(), System.currentTimeMillis() - ts);
+    }
+
+    protected void writeData(DataOutputStream out, Data data) throws IOException {
+        out.writeLong(data.getDataId());
+        writeString(out, data.getRowData());
+        writeString(out, data.getPkData());
+        writeString(out, data.getOldData());
+        writeString(out, data.getDataEventType() != null ? data.getDataEventType().getCode() : null);
+        writeString(out, data.getTableName());
+        writeString(out, data.getChannelId());
+        writeString(out, data.getTransactionId());
+        writeString(out, data.getSourceNodeId());
+        writeString(out, data.getExternalData());
+        writeString(out, data.getNodeList());
+        writeString(out, (String) data.getAttribute(CsvData.ATTRIBUTE_ROUTER_ID));
+        Date createTime = data.getCreateTime();
+        out.writeLong(createTime != null ? createTime.getTime() : Long.MIN_VALUE);
+        Integer tableId = data.getAttribute(CsvData.ATTRIBUTE_TABLE_ID);
+        out.writeInt(tableId != null ? tableId : Integer.MIN_VALUE);
+        TriggerHistory triggerHistory = data.getTriggerHistory();
+        if (triggerHistory != null) {
+            out.writeBoolean(true);
+            out.writeInt(triggerHistory.getTriggerHistoryId());
+            if (!triggerHistories.containsKey(triggerHistory.getTriggerHistoryId())) {
+                triggerHistories.put(triggerHistory.getTriggerHistoryId(), triggerHistory);
+            }
+        } else {
+            out.writeBoolean(false);
+        }
+    }
+
+    protected Data readData(DataInputStream in) throws IOException {
+        long dataId;
+        try {
+            dataId = in.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        Data data = new Data();
+        data.putCsvData(CsvData.ROW_DATA, readString(in));
+        data.putCsvData(CsvData.PK_DATA, readString(in));
+        data.putCsvData(CsvData.OLD_DATA, readString(in));
+        String eventType = readString(in);
+        data.setDataEventType(eventType != null ? DataEventType.getEventType(eventType) : null);
+        data.putAttribute(CsvData.ATTRIBUTE_TABLE_NAME, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_CHANNEL_ID, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_TX_ID, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_SOURCE_NODE_ID, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_EXTERNAL_DATA, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_NODE_LIST, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_ROUTER_ID, readString(in));
+        data.putAttribute(CsvData.ATTRIBUTE_DATA_ID, dataId);
+        long createTime = in.readLong();
+        data.putAttribute(CsvData.ATTRIBUTE_CREATE_TIME, createTime != Long.MIN_VALUE ? new Date(createTime) : null);
+        int tableId = in.readInt();
+        if (tableId != Integer.MIN_VALUE) {
+            data.putAttribute(CsvData.ATTRIBUTE_TABLE_ID, tableId);
+        }
+        if (in.readBoolean()) {
+            data.setTriggerHistory(triggerHistories.get(in.readInt()));
+        }
+        return data;
+    }
+
+    protected void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(CHARSET);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    protected static int length(String value) {
+        return value != null ? value.length() : 0;
     }
     
     @Override
     public Data next() {
-        if (this.iter.hasNext()) {
+        if (this.iter != null && this.iter.hasNext()) {
             return this.iter.next();
         }
         return null;
@@ -75,6 +262,126 @@ public class DataMemoryCursor implements ISqlReadCursor<Data> {
     @Override
     public void close() {
         this.iter = null;
+        for (IStagedResource run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
+    protected int getNumberOfRuns() {
+        return runs.size();
+    }
+
+    class RunIterator implements Iterator<Data> {
+
+        IStagedResource run;
+
+        DataInputStream in;
+
+        Data next;
+
+        RunIterator(IStagedResource run) {
+            this.run = run;
+            this.in = new DataInputStream(run.getInputStream());
+            this.next = read();
+        }
+
+        protected Data read() {
+            try {
+                Data data = readData(in);
+                if (data == null) {
+                    run.close();
+                }
+                return data;
+            } catch (IOException e) {
+                throw new IoException(e);
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Data next() {
+            Data data = next;
+            next = read();
+            return data;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class MergeIterator implements Iterator<Data> {
+
+        List<Iterator<Data>> sources;
+
+        PriorityQueue<MergeEntry> queue;
+
+        int currentSource;
+
+        MergeIterator(List<Iterator<Data>> sources, final Comparator<Data> comparator) {
+            this.sources = sources;
+            if (comparator != null) {
+                this.queue = new PriorityQueue<MergeEntry>(sources.size(), new Comparator<MergeEntry>() {
+                    public int compare(MergeEntry o1, MergeEntry o2) {
+                        int compare = comparator.compare(o1.data, o2.data);
+                        if (compare == 0) {
+                            /* keep the order the data was read in for equal values */
+                            compare = o1.source < o2.source ? -1 : (o1.source == o2.source ? 0 : 1);
+                        }
+                        return compare;
+                    }
+                });
+                for (int i = 0; i < sources.size(); i++) {
+                    offer(i);
+                }
+            }
+        }
+
+        protected void offer(int source) {
+            Iterator<Data> iterator = sources.get(source);
+            if (iterator.hasNext()) {
+                queue.add(new MergeEntry(iterator.next(), source));
+            }
+        }
+
+        public boolean hasNext() {
+            if (queue != null) {
+                return queue.size() > 0;
+            } else {
+                while (currentSource < sources.size() && !sources.get(currentSource).hasNext()) {
+                    currentSource++;
+                }
+                return currentSource < sources.size();
+            }
+        }
+
+        public Data next() {
+            if (queue != null) {
+                MergeEntry entry = queue.poll();
+                offer(entry.source);
+                return entry.data;
+            } else {
+                hasNext();
+                return sources.get(currentSource).next();
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class MergeEntry {
+        Data data;
+        int source;
+
+        MergeEntry(Data data, int source) {
+            this.data = data;
+            this.source = source;
+        }
     }
 
     static protected class DataByTimeComparator implements Comparator<Data> {
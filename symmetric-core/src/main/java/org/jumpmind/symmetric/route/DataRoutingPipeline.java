@@ -0,0 +1,240 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.symmetric.SymmetricException;
+import org.jumpmind.symmetric.model.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the data routers for a channel on a number of worker threads while the
+ * routing thread keeps assigning batches and data events in data order.
+ * <p/>
+ * A dispatcher takes {@link Data} from the {@link IDataToRouteReader} and hands
+ * each row to a worker chosen by its transaction id, so all the rows of a
+ * database transaction are routed by the same worker, in order, with the same
+ * {@link ChannelRouterContext}. {@link #take()} returns the rows in the order
+ * they were read, once their routers have run, so the peek ahead used to
+ * detect transaction boundaries and the batches that are produced are the same
+ * as when routing on a single thread.
+ */
+public class DataRoutingPipeline implements IDataToRouteReader {
+
+    /**
+     * Runs the routers for a {@link Data} and records the outcome on the
+     * {@link RoutedData}.
+     */
+    public interface IDataResolver {
+        public void resolve(RoutedData routedData, ChannelRouterContext workerContext);
+    }
+
+    protected static final RoutedData END = new RoutedData(null);
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    protected IDataToRouteReader reader;
+
+    protected IDataResolver resolver;
+
+    protected List<ChannelRouterContext> workerContexts;
+
+    protected List<BlockingQueue<RoutedData>> workerQueues;
+
+    protected BlockingQueue<RoutedData> orderedQueue;
+
+    protected LinkedList<RoutedData> taken = new LinkedList<RoutedData>();
+
+    protected volatile boolean reading = true;
+
+    protected volatile Throwable dispatchError;
+
+    /**
+     * @param reader
+     *            the reader the rows to route are taken from
+     * @param resolver
+     *            runs the routers for a row
+     * @param workerContexts
+     *            one context per worker that is passed to the routers
+     * @param queueSize
+     *            the number of rows that may be waiting on each worker, and
+     *            the number of rows that may be routed ahead of the routing
+     *            thread
+     */
+    public DataRoutingPipeline(IDataToRouteReader reader, IDataResolver resolver,
+            List<ChannelRouterContext> workerContexts, int queueSize) {
+        this.reader = reader;
+        this.resolver = resolver;
+        this.workerContexts = workerContexts;
+        this.workerQueues = new ArrayList<BlockingQueue<RoutedData>>(workerContexts.size());
+        for (int i = 0; i < workerContexts.size(); i++) {
+            this.workerQueues.add(new LinkedBlockingQueue<RoutedData>(queueSize));
+        }
+        this.orderedQueue = new LinkedBlockingQueue<RoutedData>(queueSize * workerContexts.size());
+    }
+
+    /**
+     * Submit the dispatcher and the workers. The executor needs a thread for
+     * each worker plus one for the dispatcher.
+     */
+    public void start(ExecutorService executor) {
+        for (int i = 0; i < workerQueues.size(); i++) {
+            final BlockingQueue<RoutedData> queue = workerQueues.get(i);
+            final ChannelRouterContext workerContext = workerContexts.get(i);
+            executor.execute(new Runnable() {
+                public void run() {
+                    resolve(queue, workerContext);
+                }
+            });
+        }
+        executor.execute(this);
+    }
+
+    /**
+     * Dispatch the rows from the reader to the workers until the reader is
+     * done or the pipeline is stopped.
+     */
+    public void run() {
+        try {
+            Data data = reader.take();
+            while (data != null && reading) {
+                RoutedData routedData = new RoutedData(data);
+                if (!put(orderedQueue, routedData)
+                        || !put(workerQueues.get(partition(data)), routedData)) {
+                    break;
+                }
+                data = reader.take();
+            }
+        } catch (Throwable ex) {
+            dispatchError = ex;
+        } finally {
+            put(orderedQueue, END);
+            for (BlockingQueue<RoutedData> queue : workerQueues) {
+                put(queue, END);
+            }
+        }
+    }
+
+    protected void resolve(BlockingQueue<RoutedData> queue, ChannelRouterContext workerContext) {
+        try {
+            while (reading) {
+                RoutedData routedData = queue.poll(1, TimeUnit.SECONDS);
+                if (routedData == END) {
+                    break;
+                } else if (routedData != null) {
+                    try {
+                        resolver.resolve(routedData, workerContext);
+                    } catch (RuntimeException ex) {
+                        routedData.setError(ex);
+                    } catch (Throwable ex) {
+                        routedData.setError(new SymmetricException(ex));
+                    } finally {
+                        routedData.setResolved();
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.debug("A routing worker was interrupted");
+        }
+    }
+
+    protected int partition(Data data) {
+        String transactionId = data.getTransactionId();
+        int hash = transactionId != null ? transactionId.hashCode() : (int) data.getDataId();
+        return (hash & Integer.MAX_VALUE) % workerQueues.size();
+    }
+
+    protected boolean put(BlockingQueue<RoutedData> queue, RoutedData routedData) {
+        try {
+            while (!queue.offer(routedData, 1, TimeUnit.SECONDS)) {
+                if (!reading) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the next row, in the order it was read, once its routers have
+     * run. Returns null when there is no more data.
+     */
+    public Data take() throws InterruptedException {
+        RoutedData routedData = orderedQueue.take();
+        if (routedData == END) {
+            if (dispatchError instanceof RuntimeException) {
+                throw (RuntimeException) dispatchError;
+            } else if (dispatchError instanceof InterruptedException) {
+                throw (InterruptedException) dispatchError;
+            } else if (dispatchError != null) {
+                throw new SymmetricException(dispatchError);
+            }
+            return null;
+        }
+        routedData.awaitResolved();
+        taken.add(routedData);
+        return routedData.getData();
+    }
+
+    /**
+     * Returns the routing outcome for a row that was returned by
+     * {@link #take()}. Rows have to be asked for in the order they were taken.
+     */
+    public RoutedData getRoutedData(Data data) {
+        while (!taken.isEmpty()) {
+            RoutedData routedData = taken.removeFirst();
+            if (routedData.getData() == data) {
+                return routedData;
+            }
+        }
+        throw new IllegalStateException("Data " + data.getDataId() + " was not taken from the routing pipeline");
+    }
+
+    public List<ChannelRouterContext> getWorkerContexts() {
+        return workerContexts;
+    }
+
+    public boolean isReading() {
+        return reading;
+    }
+
+    /**
+     * Setting reading to false stops the dispatcher and the workers and stops
+     * the underlying reader.
+     */
+    public void setReading(boolean reading) {
+        this.reading = reading;
+        if (!reading) {
+            reader.setReading(false);
+        }
+    }
+
+}
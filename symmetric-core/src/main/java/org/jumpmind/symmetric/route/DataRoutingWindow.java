@@ -0,0 +1,111 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jumpmind.symmetric.model.Data;
+
+/**
+ * Takes {@link Data} from an {@link IDataToRouteReader} a window at a time so
+ * that {@link IWindowedDataRouter}s can resolve the rows of the window
+ * together before they are routed. The rows are returned in the order they
+ * were read. The window does not read on a thread of its own. The rows are
+ * prepared by the thread that takes them, which is the dispatcher of the
+ * {@link DataRoutingPipeline} when routing workers are used.
+ */
+public class DataRoutingWindow implements IDataToRouteReader {
+
+    /**
+     * Prepares the rows of a window before they are routed.
+     */
+    public interface IWindowPreparer {
+        public void prepare(List<Data> window, SimpleRouterContext windowContext);
+    }
+
+    protected IDataToRouteReader reader;
+
+    protected IWindowPreparer preparer;
+
+    protected SimpleRouterContext windowContext;
+
+    protected int windowSize;
+
+    protected LinkedList<Data> window = new LinkedList<Data>();
+
+    protected boolean endOfData;
+
+    /**
+     * @param reader
+     *            the reader the rows to route are taken from
+     * @param preparer
+     *            prepares each window of rows
+     * @param windowContext
+     *            the context that is passed to the preparer
+     * @param windowSize
+     *            the number of rows to take from the reader at a time
+     */
+    public DataRoutingWindow(IDataToRouteReader reader, IWindowPreparer preparer,
+            SimpleRouterContext windowContext, int windowSize) {
+        this.reader = reader;
+        this.preparer = preparer;
+        this.windowContext = windowContext;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * The window is filled from the reader when it is empty, so the reader is
+     * not taken from again once it has returned null.
+     */
+    public Data take() throws InterruptedException {
+        if (window.isEmpty() && !endOfData) {
+            List<Data> next = new ArrayList<Data>(windowSize);
+            Data data = null;
+            while (next.size() < windowSize && (data = reader.take()) != null) {
+                next.add(data);
+            }
+            endOfData = data == null;
+            if (next.size() > 0) {
+                preparer.prepare(next, windowContext);
+                window.addAll(next);
+            }
+        }
+        return window.poll();
+    }
+
+    public void run() {
+    }
+
+    public SimpleRouterContext getWindowContext() {
+        return windowContext;
+    }
+
+    public boolean isReading() {
+        return reader.isReading();
+    }
+
+    public void setReading(boolean reading) {
+        reader.setReading(reading);
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.jumpmind.util.LinkedCaseInsensitiveMap;
+
+/**
+ * A read mostly, case insensitive view of a captured row that data routers use
+ * to look up column values. Values are read straight out of the parsed row
+ * arrays using the column ordinals cached on the trigger history, so looking up
+ * a column does not require a map to be built for each row. New values are
+ * keyed by column name, old values are keyed by column name prefixed with
+ * <code>OLD_</code> and the external data is keyed by <code>EXTERNAL_DATA</code>.
+ * <p/>
+ * Operations that need the full set of entries, or that modify the map, copy
+ * the row into a {@link LinkedCaseInsensitiveMap} the first time they are
+ * called and delegate to it from then on.
+ */
+public class DataRowMap extends AbstractMap<String, String> {
+
+    protected static final String OLD_ = "OLD_";
+
+    protected static final String EXTERNAL_DATA = "EXTERNAL_DATA";
+
+    private final String[] columnNames;
+
+    private final Map<String, Integer> columnOrdinals;
+
+    private final String[] newData;
+
+    private final String[] oldData;
+
+    private final boolean hasOldColumns;
+
+    private final String externalData;
+
+    private Map<String, String> materialized;
+
+    /**
+     * @param columnNames
+     *            the captured column names, in row data order
+     * @param columnOrdinals
+     *            column name, as captured and upper cased, to row data position
+     * @param newData
+     *            the values keyed by column name, or null if there are none
+     * @param oldData
+     *            the values keyed by <code>OLD_</code> column name. Null values
+     *            are used when this is null and hasOldColumns is set.
+     * @param hasOldColumns
+     *            whether <code>OLD_</code> columns are part of the map
+     * @param externalData
+     *            the value of <code>EXTERNAL_DATA</code>
+     */
+    public DataRowMap(String[] columnNames, Map<String, Integer> columnOrdinals, String[] newData,
+            String[] oldData, boolean hasOldColumns, String externalData) {
+        this.columnNames = columnNames;
+        this.columnOrdinals = columnOrdinals;
+        this.newData = newData;
+        this.oldData = oldData;
+        this.hasOldColumns = hasOldColumns;
+        this.externalData = externalData;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (materialized != null) {
+            return materialized.get(key);
+        }
+        if (key instanceof String) {
+            String name = (String) key;
+            if (EXTERNAL_DATA.equalsIgnoreCase(name)) {
+                return externalData;
+            }
+            int ordinal = oldOrdinalOf(name);
+            if (ordinal >= 0) {
+                return oldData != null ? oldData[ordinal] : null;
+            }
+            if (newData != null) {
+                ordinal = ordinalOf(name);
+                if (ordinal >= 0) {
+                    return newData[ordinal];
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (materialized != null) {
+            return materialized.containsKey(key);
+        }
+        if (key instanceof String) {
+            String name = (String) key;
+            return EXTERNAL_DATA.equalsIgnoreCase(name) || oldOrdinalOf(name) >= 0
+                    || (newData != null && ordinalOf(name) >= 0);
+        }
+        return false;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return materialize().entrySet();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    protected int ordinalOf(String name) {
+        Integer ordinal = columnOrdinals.get(name);
+        if (ordinal == null) {
+            ordinal = columnOrdinals.get(name.toUpperCase());
+        }
+        return ordinal != null ? ordinal : -1;
+    }
+
+    protected int oldOrdinalOf(String name) {
+        if (hasOldColumns && name.length() > OLD_.length()
+                && name.regionMatches(true, 0, OLD_, 0, OLD_.length())) {
+            return ordinalOf(name.substring(OLD_.length()));
+        }
+        return -1;
+    }
+
+    protected Map<String, String> materialize() {
+        if (materialized == null) {
+            Map<String, String> map = new LinkedCaseInsensitiveMap<String>(columnNames.length * 4);
+            if (newData != null) {
+                for (int i = 0; i < columnNames.length; i++) {
+                    map.put(columnNames[i], newData[i]);
+                    map.put(columnNames[i].toUpperCase(), newData[i]);
+                }
+            }
+            if (hasOldColumns) {
+                for (int i = 0; i < columnNames.length; i++) {
+                    String columnName = OLD_ + columnNames[i];
+                    String value = oldData != null ? oldData[i] : null;
+                    map.put(columnName, value);
+                    map.put(columnName.toUpperCase(), value);
+                }
+            }
+            map.put(EXTERNAL_DATA, externalData);
+            materialized = map;
+        }
+        return materialized;
+    }
+
+}
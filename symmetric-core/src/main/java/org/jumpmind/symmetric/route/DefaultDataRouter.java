@@ -31,7 +31,7 @@ import org.jumpmind.symmetric.model.TriggerRouter;
 /**
  * This data router will route data to all of the nodes that are passed to it.
  */
-public class DefaultDataRouter extends AbstractDataRouter implements IBuiltInExtensionPoint {
+public class DefaultDataRouter extends AbstractDataRouter implements IThreadSafeDataRouter, IBuiltInExtensionPoint {
 
     public Set<String> routeToNodes(SimpleRouterContext routingContext, DataMetaData dataMetaData, Set<Node> nodes,
             boolean initialLoad, boolean initialLoadSelectUsed, TriggerRouter triggerRouter) {
@@ -0,0 +1,36 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+/**
+ * Marks a data router that may be called by several routing workers at the
+ * same time, each with a {@link ChannelRouterContext} of its own. The router
+ * must not keep anything in the context that
+ * {@link IDataRouter#completeBatch(SimpleRouterContext, org.jumpmind.symmetric.model.OutgoingBatch)}
+ * or {@link IDataRouter#contextCommitted(SimpleRouterContext)} act on, because
+ * those are only called with the routing thread's context. Data that is routed
+ * by a router without this marker is always routed on the routing thread.
+ * 
+ * @see DataRoutingPipeline
+ */
+public interface IThreadSafeDataRouter extends IDataRouter {
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.List;
+
+import org.jumpmind.symmetric.model.DataMetaData;
+
+/**
+ * A data router that can resolve a window of rows together, for example with
+ * one query for the whole window instead of one query per row. When
+ * routing.window.size is greater than one, the rows are read a window at a
+ * time and the rows that this router will route are handed to
+ * {@link #prepareToRoute(SimpleRouterContext, List)} before
+ * {@link #routeToNodes(SimpleRouterContext, DataMetaData, java.util.Set, boolean, boolean, org.jumpmind.symmetric.model.TriggerRouter)}
+ * is called for any of them.
+ * 
+ * @see DataRoutingWindow
+ */
+public interface IWindowedDataRouter extends IDataRouter {
+
+    /**
+     * Called with the rows of a window in data order. This is called by the
+     * thread that reads the data, which is not the thread that routes it when
+     * routing workers are used, so the context is one of its own and only its
+     * stats are kept. The rows are still routed one at a time afterwards, so
+     * a router that could not prepare a row is expected to route it as usual.
+     */
+    public void prepareToRoute(SimpleRouterContext context, List<DataMetaData> dataMetaData);
+
+}
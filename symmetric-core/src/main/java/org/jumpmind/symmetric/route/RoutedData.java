@@ -0,0 +1,117 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+
+/**
+ * The outcome of running the routers for one {@link Data}: the target node
+ * ids for each trigger router and the data routers that were used. Routing
+ * decisions are recorded here so that batches and data events can be assigned
+ * afterwards, in data order, by the thread that owns the
+ * {@link ChannelRouterContext}.
+ */
+public class RoutedData {
+
+    private Data data;
+
+    private List<DataMetaData> dataMetaData = new ArrayList<DataMetaData>(1);
+
+    private List<Collection<String>> nodeIds = new ArrayList<Collection<String>>(1);
+
+    private Set<IDataRouter> usedDataRouters = new HashSet<IDataRouter>(1);
+
+    private RuntimeException error;
+
+    private boolean deferred;
+
+    private CountDownLatch resolved = new CountDownLatch(1);
+
+    public RoutedData(Data data) {
+        this.data = data;
+    }
+
+    public Data getData() {
+        return data;
+    }
+
+    public void add(DataMetaData dataMetaData, Collection<String> nodeIds) {
+        this.dataMetaData.add(dataMetaData);
+        this.nodeIds.add(nodeIds);
+    }
+
+    public List<DataMetaData> getDataMetaData() {
+        return dataMetaData;
+    }
+
+    public List<Collection<String>> getNodeIds() {
+        return nodeIds;
+    }
+
+    public void addUsedDataRouter(IDataRouter dataRouter) {
+        usedDataRouters.add(dataRouter);
+    }
+
+    public Set<IDataRouter> getUsedDataRouters() {
+        return usedDataRouters;
+    }
+
+    public void setError(RuntimeException error) {
+        this.error = error;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Set when the routers of the data are not thread safe, so they have to
+     * be run by the routing thread instead of a worker
+     */
+    public void setDeferred(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    public void setResolved() {
+        resolved.countDown();
+    }
+
+    public boolean isResolved() {
+        return resolved.getCount() == 0;
+    }
+
+    public void awaitResolved() throws InterruptedException {
+        resolved.await();
+    }
+
+}
@@ -88,6 +88,19 @@ public class SimpleRouterContext extends Context {
         stats.put(name, val);
     }
 
+    /**
+     * Add the stats gathered by another context to this one.
+     */
+    public void incrementStats(SimpleRouterContext context) {
+        Map<String, Long> otherStats = null;
+        synchronized (context) {
+            otherStats = new HashMap<String, Long>(context.stats);
+        }
+        for (Map.Entry<String, Long> stat : otherStats.entrySet()) {
+            incrementStat(stat.getValue(), stat.getKey());
+        }
+    }
+
     synchronized public long getStat(String name) {
         Long val = (Long) stats.get(name);
         if (val == null) {
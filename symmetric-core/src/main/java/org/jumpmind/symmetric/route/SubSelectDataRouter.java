@@ -20,28 +20,41 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.InvalidSqlException;
+import org.jumpmind.db.sql.NamedParameterUtils;
+import org.jumpmind.db.sql.ParsedSql;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.util.FormatUtils;
 
 /**
  * This data router is invoked when the router_type is 'subselect'. The
  * router_expression is always a SQL expression that is used to find the list of
- * nodes a row of data will be routed to. This router should never be used for
- * high throughput tables because it makes a call back to the database for each
- * row that is routed.
+ * nodes a row of data will be routed to. Unless routing.window.size is set,
+ * this router makes a call back to the database for each row that is routed,
+ * so it should not be used for high throughput tables without it.
  * <P/>
  * The query that is used to select the nodes is as follows:
  * <P/>
@@ -59,35 +72,84 @@ import org.jumpmind.util.FormatUtils;
  * <code>
  * c.external_id in (select home_store from employee where employee_id in (:EMPLOYEE_ID, :OLD_EMPLOYEE_ID))
  * </code>
+ * <P/>
+ * When routing.window.size is set, the rows are handed to
+ * {@link #prepareToRoute(SimpleRouterContext, List)} a window at a time. The
+ * distinct values of the parameters that the expression references are
+ * resolved with one query per window, which is a union of the above query for
+ * each set of values tagged with its position, and the results are put in the
+ * result cache for the rows to pick up when they are routed.
+ * <P/>
+ * When routing.subselect.cache.size is set, the nodes that are selected are
+ * cached by the values of the parameters that the expression references. Rows
+ * that bind the same values reuse the result until it is older than
+ * routing.subselect.cache.ttl.ms. The hit rate is available through the router
+ * management bean.
  */
-public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInExtensionPoint {
+public class SubSelectDataRouter extends AbstractDataRouter implements IThreadSafeDataRouter, IWindowedDataRouter,
+        IBuiltInExtensionPoint {
+
+    private static final String SELECT_SQL = "select c.node_id ";
+
+    private static final String FROM_SQL = "from $(prefixName)_node c where c.node_group_id=:NODE_GROUP_ID and c.sync_enabled=1 and ";
+
+    private static final Pattern PARAMETER_PATTERN = Pattern.compile(":(\\w+)");
 
-    private static final String SQL = "select c.node_id from $(prefixName)_node c where c.node_group_id=:NODE_GROUP_ID and c.sync_enabled=1 and ";
+    /**
+     * The most bind variables to use in one window query. The values for a
+     * window are split over more queries when they need more.
+     */
+    private static final int MAX_PARAMETERS_PER_WINDOW_QUERY = 1000;
 
     private ISymmetricDialect symmetricDialect;
 
+    private IParameterService parameterService;
+
+    private Map<String, List<String>> parameterNamesBySql = new ConcurrentHashMap<String, List<String>>();
+
+    private Set<String> queriesNotWindowed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private ResultCache cache = new ResultCache();
+
     public SubSelectDataRouter(ISymmetricDialect symmetricDialect) {
+        this(symmetricDialect, null);
+    }
+
+    public SubSelectDataRouter(ISymmetricDialect symmetricDialect, IParameterService parameterService) {
         this.symmetricDialect = symmetricDialect;
+        this.parameterService = parameterService;
     }
 
     public Set<String> routeToNodes(SimpleRouterContext routingContext, DataMetaData dataMetaData,
             Set<Node> nodes, boolean initialLoad, boolean initialLoadSelectUsed, TriggerRouter triggerRouter) {
-        String sql = FormatUtils.replaceToken(SQL, "prefixName", symmetricDialect.getTablePrefix(),
-                true);
         String subSelect = dataMetaData.getRouter().getRouterExpression();
         Set<String> nodeIds = null;
         if (!StringUtils.isBlank(subSelect) && !initialLoadSelectUsed) {
             try {
-                Map<String, Object> sqlParams = getDataObjectMap(dataMetaData, symmetricDialect, true);
-                sqlParams.put("NODE_GROUP_ID", dataMetaData.getRouter().getNodeGroupLink()
-                        .getTargetNodeGroupId());
-                sqlParams.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
+                Map<String, Object> sqlParams = getSqlParams(dataMetaData);
+                String query = getFromSql(subSelect);
+                int cacheSize = getCacheSize();
+                List<Object> cacheKey = null;
+                if (cacheSize > 0) {
+                    cacheKey = getCacheKey(query, sqlParams);
+                    Set<String> cachedNodeIds = cache.get(cacheKey, cacheSize,
+                            parameterService.getLong(ParameterConstants.ROUTING_SUBSELECT_CACHE_TTL_MS));
+                    if (cachedNodeIds != null) {
+                        routingContext.incrementStat(1, "subselect.cache.hit");
+                        return new HashSet<String>(cachedNodeIds);
+                    }
+                    routingContext.incrementStat(1, "subselect.cache.miss");
+                }
                 ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
-                List<String> ids = template.query(String.format("%s%s", sql, subSelect),
-                        new StringMapper(), sqlParams);
+                long ts = System.currentTimeMillis();
+                List<String> ids = template.query(SELECT_SQL + query, new StringMapper(), sqlParams);
+                routingContext.incrementStat(System.currentTimeMillis() - ts, "subselect.query.ms");
                 if (ids != null) {
                     nodeIds = new HashSet<String>(ids);
                 }
+                if (cacheKey != null) {
+                    cache.put(cacheKey, nodeIds != null ? new HashSet<String>(nodeIds) : new HashSet<String>(0), cacheSize);
+                }
             } catch (InvalidSqlException ex) {
                 log.error("The subselect expression was invalid for the {} subselect router for the '{}' event for table '{}'",
                         new Object[] {dataMetaData.getRouter().getRouterId(), 
@@ -103,4 +165,212 @@ public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInE
         return nodeIds;
     }
 
-}
\ No newline at end of file
+    /**
+     * Resolve the distinct parameter values of the rows that are not cached
+     * yet, with one query per router expression, and cache the results. A
+     * window query that fails is not tried again for the expression, and its
+     * rows are queried one at a time when they are routed.
+     */
+    public void prepareToRoute(SimpleRouterContext context, List<DataMetaData> dataMetaData) {
+        int cacheSize = getCacheSize();
+        if (cacheSize <= 0) {
+            return;
+        }
+        long ttlInMs = parameterService.getLong(ParameterConstants.ROUTING_SUBSELECT_CACHE_TTL_MS);
+        Map<String, Map<List<Object>, Map<String, Object>>> sqlParamsByKeyByQuery = new LinkedHashMap<String, Map<List<Object>, Map<String, Object>>>();
+        for (DataMetaData rowMetaData : dataMetaData) {
+            String subSelect = rowMetaData.getRouter().getRouterExpression();
+            if (StringUtils.isBlank(subSelect)) {
+                continue;
+            }
+            String query = getFromSql(subSelect);
+            if (queriesNotWindowed.contains(query)) {
+                continue;
+            }
+            Map<String, Object> sqlParams = getSqlParams(rowMetaData);
+            List<Object> cacheKey = getCacheKey(query, sqlParams);
+            if (!cache.contains(cacheKey, ttlInMs)) {
+                Map<List<Object>, Map<String, Object>> sqlParamsByKey = sqlParamsByKeyByQuery.get(query);
+                if (sqlParamsByKey == null) {
+                    sqlParamsByKey = new LinkedHashMap<List<Object>, Map<String, Object>>();
+                    sqlParamsByKeyByQuery.put(query, sqlParamsByKey);
+                }
+                sqlParamsByKey.put(cacheKey, sqlParams);
+            }
+        }
+
+        for (Map.Entry<String, Map<List<Object>, Map<String, Object>>> entry : sqlParamsByKeyByQuery.entrySet()) {
+            String query = entry.getKey();
+            try {
+                queryWindow(context, query, entry.getValue(), cacheSize);
+            } catch (SqlException ex) {
+                queriesNotWindowed.add(query);
+                log.info("The subselect expression could not be resolved for a window of rows, so each row will be queried on its own: {}",
+                        ex.getMessage());
+            }
+        }
+    }
+
+    protected void queryWindow(SimpleRouterContext context, String query,
+            Map<List<Object>, Map<String, Object>> sqlParamsByKey, int cacheSize) {
+        ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(query);
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<Object>();
+        List<List<Object>> keys = new ArrayList<List<Object>>();
+        for (Map.Entry<List<Object>, Map<String, Object>> entry : sqlParamsByKey.entrySet()) {
+            Object[] rowArgs = NamedParameterUtils.buildValueArray(parsedSql, entry.getValue());
+            if (keys.size() > 0 && args.size() + rowArgs.length > MAX_PARAMETERS_PER_WINDOW_QUERY) {
+                queryWindow(context, template, sql.toString(), args, keys, cacheSize);
+                sql.setLength(0);
+                args.clear();
+                keys.clear();
+            }
+            if (keys.size() > 0) {
+                sql.append(" union all ");
+            }
+            sql.append("select ").append(keys.size()).append(" as window_row, c.node_id ");
+            sql.append(NamedParameterUtils.substituteNamedParameters(parsedSql, entry.getValue()));
+            args.addAll(Arrays.asList(rowArgs));
+            keys.add(entry.getKey());
+        }
+        if (keys.size() > 0) {
+            queryWindow(context, template, sql.toString(), args, keys, cacheSize);
+        }
+    }
+
+    protected void queryWindow(SimpleRouterContext context, ISqlTemplate template, String sql, List<Object> args,
+            List<List<Object>> keys, int cacheSize) {
+        List<Set<String>> nodeIds = new ArrayList<Set<String>>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            nodeIds.add(new HashSet<String>());
+        }
+        long ts = System.currentTimeMillis();
+        List<Row> rows = template.query(sql, args.toArray(), null);
+        context.incrementStat(System.currentTimeMillis() - ts, "subselect.window.query.ms");
+        context.incrementStat(1, "subselect.window.query.count");
+        context.incrementStat(keys.size(), "subselect.window.values.count");
+        for (Row row : rows) {
+            nodeIds.get(row.getInt("window_row")).add(row.getString("node_id"));
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            cache.put(keys.get(i), nodeIds.get(i), cacheSize);
+        }
+    }
+
+    /**
+     * The window needs room in the cache for the values of every row in it
+     * until the rows are routed.
+     */
+    protected int getCacheSize() {
+        if (parameterService == null) {
+            return 0;
+        }
+        int cacheSize = parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_SIZE);
+        int windowSize = parameterService.getInt(ParameterConstants.ROUTING_WINDOW_SIZE, 0);
+        return windowSize > 1 ? Math.max(cacheSize, windowSize) : cacheSize;
+    }
+
+    protected String getFromSql(String subSelect) {
+        return FormatUtils.replaceToken(FROM_SQL, "prefixName", symmetricDialect.getTablePrefix(), true) + subSelect;
+    }
+
+    protected Map<String, Object> getSqlParams(DataMetaData dataMetaData) {
+        Map<String, Object> sqlParams = getDataObjectMap(dataMetaData, symmetricDialect, true);
+        sqlParams.put("NODE_GROUP_ID", dataMetaData.getRouter().getNodeGroupLink()
+                .getTargetNodeGroupId());
+        sqlParams.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
+        return sqlParams;
+    }
+
+    /**
+     * The key is the query followed by the values of the parameters it references, so
+     * rows that differ only in columns the query does not use share a result.
+     */
+    protected List<Object> getCacheKey(String query, Map<String, Object> sqlParams) {
+        List<String> parameterNames = parameterNamesBySql.get(query);
+        if (parameterNames == null) {
+            parameterNames = new ArrayList<String>();
+            Matcher matcher = PARAMETER_PATTERN.matcher(query);
+            while (matcher.find()) {
+                if (!parameterNames.contains(matcher.group(1))) {
+                    parameterNames.add(matcher.group(1));
+                }
+            }
+            parameterNamesBySql.put(query, parameterNames);
+        }
+        List<Object> key = new ArrayList<Object>(parameterNames.size() + 1);
+        key.add(query);
+        for (String parameterName : parameterNames) {
+            key.add(sqlParams.get(parameterName));
+        }
+        return key;
+    }
+
+    public double getCacheHitRate() {
+        return cache.getHitRate();
+    }
+
+    static class CachedResult {
+        Set<String> nodeIds;
+        long cachedTime;
+
+        CachedResult(Set<String> nodeIds) {
+            this.nodeIds = nodeIds;
+            this.cachedTime = System.currentTimeMillis();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static class ResultCache extends LinkedHashMap<List<Object>, CachedResult> {
+
+        int maxSize;
+
+        long hits;
+
+        long misses;
+
+        ResultCache() {
+            super(16, 0.75f, true);
+        }
+
+        synchronized Set<String> get(List<Object> key, int maxSize, long ttlInMs) {
+            this.maxSize = maxSize;
+            CachedResult result = super.get(key);
+            if (result != null && System.currentTimeMillis() - result.cachedTime > ttlInMs) {
+                remove(key);
+                result = null;
+            }
+            if (result != null) {
+                hits++;
+                return result.nodeIds;
+            } else {
+                misses++;
+                return null;
+            }
+        }
+
+        /**
+         * Checks for a result without counting a hit or a miss.
+         */
+        synchronized boolean contains(List<Object> key, long ttlInMs) {
+            CachedResult result = super.get(key);
+            return result != null && System.currentTimeMillis() - result.cachedTime <= ttlInMs;
+        }
+
+        synchronized void put(List<Object> key, Set<String> nodeIds, int maxSize) {
+            this.maxSize = maxSize;
+            super.put(key, new CachedResult(nodeIds));
+        }
+
+        synchronized double getHitRate() {
+            return hits + misses > 0 ? (double) hits / (double) (hits + misses) : 0;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedResult> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+}
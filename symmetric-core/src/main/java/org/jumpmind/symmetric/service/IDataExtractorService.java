@@ -54,6 +54,15 @@ public interface IDataExtractorService {
     public List<OutgoingBatch> extract(ProcessInfo processInfo, Node node, IOutgoingTransport transport);    
     
     public List<OutgoingBatch> extract(ProcessInfo processInfo, Node node, String channelId, IOutgoingTransport transport);    
+
+    /**
+     * @param binaryProtocol
+     *            whether to write the batches to the transport's stream in the
+     *            binary form of the data protocol instead of as csv
+     * @return a list of batches that were extracted
+     */
+    public List<OutgoingBatch> extract(ProcessInfo processInfo, Node node, String channelId, IOutgoingTransport transport,
+            boolean binaryProtocol);
     
     public boolean extractBatchRange(Writer writer, String nodeId, long startBatchId, long endBatchId);
     
@@ -64,10 +73,24 @@ public interface IDataExtractorService {
     
     public RemoteNodeStatuses queueWork(boolean force);
     
+    public RemoteNodeStatuses preExtract(boolean force);
+    
     public void requestExtractRequest(ISqlTransaction transaction, String nodeId, String channelId, TriggerRouter triggerRouter, long startBatchId, long endBatchId);
     
     public void resetExtractRequest(OutgoingBatch batch);
     
     public void removeBatchFromStaging(OutgoingBatch batch);
+
+    /**
+     * @return the number of times a table for extracting a trigger history
+     *         was found in the table cache
+     */
+    public long getTableCacheHits();
+
+    /**
+     * @return the number of times a table for extracting a trigger history
+     *         had to be built because it was not in the table cache
+     */
+    public long getTableCacheMisses();
     
 }
\ No newline at end of file
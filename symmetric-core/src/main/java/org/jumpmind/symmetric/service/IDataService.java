@@ -177,6 +177,14 @@ public interface IDataService {
     public long findMinDataId();
     
     public ISqlReadCursor<Data> selectDataFor(Batch batch);
+
+    /**
+     * Select the data for a batch that comes after the passed in data id.  Only meaningful when
+     * {@link #isDataOrderedByDataId()} is true.
+     */
+    public ISqlReadCursor<Data> selectDataFor(Batch batch, long startAfterDataId);
+
+    public boolean isDataOrderedByDataId();
     
     public ISqlReadCursor<Data> selectDataFor(Long batchId, String channelId);
 
@@ -32,6 +32,7 @@ import org.jumpmind.symmetric.model.IncomingBatchSummary;
 import org.jumpmind.symmetric.model.OutgoingBatch;
 import org.jumpmind.symmetric.model.OutgoingBatchSummary;
 import org.jumpmind.symmetric.model.AbstractBatch.Status;
+import org.jumpmind.util.LongList;
 
 /**
  * This service provides an API to access to the incoming batch table. 
@@ -90,5 +91,9 @@ public interface IIncomingBatchService {
     
     public Map<String, Date> findLastUpdatedByChannel();
     
-    public List<BatchId> getAllBatches();
+    /**
+     * @return the id of every incoming batch, sorted and grouped by the node
+     *         it came from
+     */
+    public Map<String, LongList> getAllBatchIdsByNode();
 }
\ No newline at end of file
@@ -36,6 +36,7 @@ import org.jumpmind.symmetric.model.OutgoingBatches;
 import org.jumpmind.symmetric.model.OutgoingLoadSummary;
 import org.jumpmind.symmetric.model.AbstractBatch.Status;
 import org.jumpmind.symmetric.service.impl.OutgoingBatchService.LoadStatusSummary;
+import org.jumpmind.util.LongList;
 
 /**
  * This service provides an API to access to the outgoing batch table. 
@@ -135,6 +136,9 @@ public interface IOutgoingBatchService {
     
     public void copyOutgoingBatches(String channelId, long startBatchId, String fromNodeId, String toNodeId);
     
-    public List<Long> getAllBatches();
+    /**
+     * @return the id of every outgoing batch, sorted
+     */
+    public LongList getAllBatchIds();
 
 }
\ No newline at end of file
@@ -29,6 +29,7 @@ import static org.jumpmind.symmetric.service.ClusterConstants.INITIAL_LOAD_EXTRA
 import static org.jumpmind.symmetric.service.ClusterConstants.MONITOR;
 import static org.jumpmind.symmetric.service.ClusterConstants.OFFLINE_PULL;
 import static org.jumpmind.symmetric.service.ClusterConstants.OFFLINE_PUSH;
+import static org.jumpmind.symmetric.service.ClusterConstants.PRE_EXTRACT;
 import static org.jumpmind.symmetric.service.ClusterConstants.PULL;
 import static org.jumpmind.symmetric.service.ClusterConstants.PURGE_DATA_GAPS;
 import static org.jumpmind.symmetric.service.ClusterConstants.PURGE_INCOMING;
@@ -83,7 +84,8 @@ public class ClusterService extends AbstractService implements IClusterService {
 
     private static final String[] actions = new String[] { ROUTE, PULL, PUSH, HEARTBEAT, PURGE_INCOMING, PURGE_OUTGOING,
             PURGE_STATISTICS, SYNC_TRIGGERS, PURGE_DATA_GAPS, STAGE_MANAGEMENT, WATCHDOG, STATISTICS, FILE_SYNC_PULL,
-            FILE_SYNC_PUSH, FILE_SYNC_TRACKER, INITIAL_LOAD_EXTRACT, OFFLINE_PUSH, OFFLINE_PULL, MONITOR, SYNC_CONFIG };
+            FILE_SYNC_PUSH, FILE_SYNC_TRACKER, INITIAL_LOAD_EXTRACT, OFFLINE_PUSH, OFFLINE_PULL, MONITOR, SYNC_CONFIG,
+            PRE_EXTRACT };
     
     private static final String[] sharedActions = new String[] { FILE_SYNC_SHARED };
 
@@ -25,10 +25,13 @@ import static org.jumpmind.symmetric.common.Constants.LOG_PROCESS_SUMMARY_THRESH
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -36,13 +39,17 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
@@ -56,8 +63,12 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DurationFormatUtils;
 import org.jumpmind.db.io.DatabaseXmlUtil;
@@ -85,6 +96,8 @@ import org.jumpmind.symmetric.Version;
 import org.jumpmind.symmetric.common.Constants;
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.common.TableConstants;
+import org.jumpmind.symmetric.config.TriggerCreationAdapter;
+import org.jumpmind.symmetric.io.IoConstants;
 import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.Batch.BatchType;
 import org.jumpmind.symmetric.io.data.CsvConstants;
@@ -103,7 +116,9 @@ import org.jumpmind.symmetric.io.data.reader.IExtractDataReaderSource;
 import org.jumpmind.symmetric.io.data.reader.ProtocolDataReader;
 import org.jumpmind.symmetric.io.data.transform.TransformPoint;
 import org.jumpmind.symmetric.io.data.transform.TransformTable;
+import org.jumpmind.symmetric.io.data.writer.BinaryProtocolDataWriter;
 import org.jumpmind.symmetric.io.data.writer.DataWriterStatisticConstants;
+import org.jumpmind.symmetric.io.data.writer.NestedDataWriter;
 import org.jumpmind.symmetric.io.data.writer.ProtocolDataWriter;
 import org.jumpmind.symmetric.io.data.writer.StagingDataWriter;
 import org.jumpmind.symmetric.io.data.writer.StructureDataWriter;
@@ -161,6 +176,7 @@ import org.jumpmind.symmetric.service.impl.TransformService.TransformTableNodeGr
 import org.jumpmind.symmetric.statistic.IStatisticManager;
 import org.jumpmind.symmetric.transport.BatchBufferedWriter;
 import org.jumpmind.symmetric.transport.IOutgoingTransport;
+import org.jumpmind.symmetric.transport.StreamBufferedWriter;
 import org.jumpmind.symmetric.transport.TransportUtils;
 import org.jumpmind.symmetric.util.SymmetricUtils;
 import org.jumpmind.util.AppUtils;
@@ -210,6 +226,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     
     private CustomizableThreadFactory threadPoolFactory;
 
+    private TableCache tableCache = new TableCache();
+
     public DataExtractorService(ISymmetricEngine engine) {
         super(engine.getParameterService(), engine.getSymmetricDialect());
         this.outgoingBatchService = engine.getOutgoingBatchService();
@@ -227,6 +245,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         this.extensionService = engine.getExtensionService();
         setSqlMap(new DataExtractorServiceSqlMap(symmetricDialect.getPlatform(),
                 createSqlReplacementTokens()));
+        this.extensionService.addExtensionPoint(TableCacheInvalidator.class.getName(), new TableCacheInvalidator());
     }
 
     /**
@@ -521,6 +540,11 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     
     public List<OutgoingBatch> extract(ProcessInfo extractInfo, Node targetNode, String queue, 
             IOutgoingTransport transport) {
+        return extract(extractInfo, targetNode, queue, transport, false);
+    }
+
+    public List<OutgoingBatch> extract(ProcessInfo extractInfo, Node targetNode, String queue, 
+            IOutgoingTransport transport, boolean binaryProtocol) {
 
         /*
          * make sure that data is routed before extracting if the route job is
@@ -538,7 +562,18 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             routerService.routeData(true);
         }
         
-        OutgoingBatches batches = loadPendingBatches(extractInfo, targetNode, queue, transport);
+        Runnable keepAlive = null;
+        BinaryExtractDataWriter binaryWriter = null;
+        if (binaryProtocol) {
+            binaryWriter = new BinaryExtractDataWriter(targetNode, transport.openStream());
+            keepAlive = binaryWriter::writeKeepAlive;
+        } else if (transport.getWriter() != null) {
+            BufferedWriter writer = transport.getWriter();
+            boolean streamToFileEnabled = parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED);
+            Node sourceNode = nodeService.findIdentity();
+            keepAlive = () -> writeKeepAliveAck(writer, sourceNode, streamToFileEnabled);
+        }
+        OutgoingBatches batches = loadPendingBatches(extractInfo, targetNode, queue, keepAlive);
 
         if (batches != null && batches.containsBatches()) {
 
@@ -547,7 +582,14 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
 
             List<OutgoingBatch> activeBatches = filterBatchesForExtraction(batches, channelMap);
 
-            if (activeBatches.size() > 0) {
+            if (activeBatches.size() > 0 && binaryWriter != null) {
+                /*
+                 * Staged batches are converted to the binary form as they are
+                 * sent, so there is no character writer to copy them with
+                 */
+                binaryWriter.setOutgoingBatches(activeBatches);
+                return extract(extractInfo, targetNode, activeBatches, binaryWriter, null, ExtractMode.FOR_SYM_CLIENT);
+            } else if (activeBatches.size() > 0) {
                 BufferedWriter writer = transport.openWriter();
                 IDataWriter dataWriter = new ProtocolDataWriter(nodeService.findIdentityNodeId(),
                         writer, targetNode.requires13Compatiblity());
@@ -561,9 +603,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
 
     }
 
-    protected OutgoingBatches loadPendingBatches(ProcessInfo extractInfo, Node targetNode, String queue, IOutgoingTransport transport) {
-        
-        BufferedWriter writer = transport.getWriter();         
+    protected OutgoingBatches loadPendingBatches(ProcessInfo extractInfo, Node targetNode, String queue, Runnable keepAlive) {
         
         Callable<OutgoingBatches> getOutgoingBatches = () -> {                            
             OutgoingBatches batches = null;
@@ -592,10 +632,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             return batches;
         };
         
-        if (writer != null) {
-            final boolean streamToFileEnabled = parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED);
+        if (keepAlive != null) {
             long keepAliveMillis = parameterService.getLong(ParameterConstants.DATA_LOADER_SEND_ACK_KEEPALIVE);
-            Node sourceNode = nodeService.findIdentity();
             FutureTask<OutgoingBatches> getOutgoingBatchesTask = new FutureTask<OutgoingBatches>(getOutgoingBatches);            
             ExecutorService executor = Executors.newFixedThreadPool(1);
             executor.execute(getOutgoingBatchesTask);
@@ -605,7 +643,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     try {
                         return getOutgoingBatchesTask.get(keepAliveMillis, TimeUnit.MILLISECONDS);
                     } catch (TimeoutException ex) {
-                        writeKeepAliveAck(writer, sourceNode, streamToFileEnabled);
+                        keepAlive.run();
                     } catch (Exception ex) {
                         throw new SymmetricException("Failed to execute getOutgoingBatchesTask ", ex);
                     }
@@ -657,17 +695,29 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             long batchesSelectedAtMs = System.currentTimeMillis();
             OutgoingBatch currentBatch = null;
             ExecutorService executor = null;
+            List<ProcessInfo> workerInfos = null;
+            final FutureExtractStatus status = new FutureExtractStatus();
             try {
                 final boolean streamToFileEnabled = parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED);
                 long keepAliveMillis = parameterService.getLong(ParameterConstants.DATA_LOADER_SEND_ACK_KEEPALIVE);
                 Node sourceNode = nodeService.findIdentity();
-                final FutureExtractStatus status = new FutureExtractStatus();
 
                 if (this.threadPoolFactory == null) {
                     this.threadPoolFactory = new CustomizableThreadFactory(String.format("%s-dataextractor", parameterService.getEngineName().toLowerCase()));
                 }
                 
-                executor = streamToFileEnabled ? Executors.newFixedThreadPool(1, this.threadPoolFactory) : null;
+                /*
+                 * Batches may be extracted by more than one thread, but they
+                 * are always sent in order by the loop over the futures below
+                 */
+                int extractThreadCount = Math.min(activeBatches.size(),
+                        Math.max(1, parameterService.getInt(ParameterConstants.EXTRACT_THREAD_COUNT_PER_NODE, 1)));
+                executor = streamToFileEnabled ? Executors.newFixedThreadPool(extractThreadCount, this.threadPoolFactory) : null;
+                if (executor != null && extractThreadCount > 1) {
+                    workerInfos = newExtractWorkerInfos(extractInfo, extractThreadCount);
+                }
+                final BlockingQueue<ProcessInfo> availableWorkerInfos = workerInfos != null
+                        ? new ArrayBlockingQueue<ProcessInfo>(workerInfos.size(), false, workerInfos) : null;
 
                 List<Future<FutureOutgoingBatch>> futures = new ArrayList<Future<FutureOutgoingBatch>>();
 
@@ -680,7 +730,18 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     final OutgoingBatch extractBatch = currentBatch;
                     Callable<FutureOutgoingBatch> callable = () -> {
                         OutgoingBatch refreshedBatch = requeryIfEnoughTimeHasPassed(batchesSelectedAtMs, extractBatch);
-                        return extractBatch(refreshedBatch, status, extractInfo, targetNode, dataWriter, mode, activeBatches);                            
+                        if (availableWorkerInfos == null) {
+                            return extractBatch(refreshedBatch, status, extractInfo, targetNode, dataWriter, mode, activeBatches);
+                        }
+                        ProcessInfo workerInfo = availableWorkerInfos.take();
+                        try {
+                            return extractBatch(refreshedBatch, status, workerInfo, targetNode, dataWriter, mode, activeBatches);
+                        } catch (Exception e) {
+                            workerInfo.setStatus(ProcessStatus.ERROR);
+                            throw e;
+                        } finally {
+                            availableWorkerInfos.add(workerInfo);
+                        }
                     };
                     
                     if (status.shouldExtractSkip) {
@@ -711,7 +772,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                             throw new RuntimeException(e);
                         }
                         if (!isProcessed) {
-                            writeKeepAliveAck(writer, sourceNode, streamToFileEnabled);
+                            writeKeepAlive(dataWriter, writer, sourceNode, streamToFileEnabled);
                         }
                     }
                 }
@@ -744,7 +805,15 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                                 break;
                             }
 
-                            if (streamToFileEnabled || mode == ExtractMode.FOR_PAYLOAD_CLIENT || (currentBatch.isExtractJobFlag() && parameterService.is(ParameterConstants.INITIAL_LOAD_USE_EXTRACT_JOB))) {
+                            /*
+                             * Batches that are already staged are not extracted
+                             * again when staging is off, so they still need to
+                             * be sent from staging
+                             */
+                            boolean sendBinaryFromStaging = dataWriter instanceof BinaryProtocolDataWriter
+                                    && currentBatch.getStatus() != Status.IG && isPreviouslyExtracted(currentBatch, false);
+
+                            if (streamToFileEnabled || sendBinaryFromStaging || mode == ExtractMode.FOR_PAYLOAD_CLIENT || (currentBatch.isExtractJobFlag() && parameterService.is(ParameterConstants.INITIAL_LOAD_USE_EXTRACT_JOB))) {
                                 
                                 if(totalBytesSend > initialLoadMaxBytesToSync) {
                                     if(!logMaxBytesReached) {
@@ -761,6 +830,10 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                                 transferInfo.setStatus(ProcessInfo.ProcessStatus.TRANSFERRING);
                                 transferInfo.setCurrentLoadId(currentBatch.getLoadId());
                                 boolean isRetry = extractBatch.isRetry() && extractBatch.getOutgoingBatch().getStatus() != OutgoingBatch.Status.IG;
+                                if (dataWriter instanceof BinaryExtractDataWriter) {
+                                    /* the statistics sent with the batch come from the batch as it was extracted */
+                                    ((BinaryExtractDataWriter) dataWriter).putOutgoingBatch(currentBatch);
+                                }
                                 
                                 currentBatch = sendOutgoingBatch(transferInfo, targetNode, currentBatch, isRetry, 
                                         dataWriter, writer, mode);                                
@@ -780,7 +853,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                             
                             isProcessed = true;
                         } catch (TimeoutException e) {
-                            writeKeepAliveAck(writer, sourceNode, streamToFileEnabled);                            
+                            writeKeepAlive(dataWriter, writer, sourceNode, streamToFileEnabled);
                         } catch (Exception e) {
                             if (transferInfo != null && transferInfo.getStatus() != ProcessStatus.OK) {
                                 transferInfo.setStatus(ProcessStatus.ERROR);
@@ -802,6 +875,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     }
                 }
             } catch (RuntimeException e) {
+                /* let any batches that are still queued for extraction be skipped */
+                status.shouldExtractSkip = true;
                 SQLException se = ExceptionUtils.unwrapSqlException(e);              
                 if (currentBatch != null) {
                     try {
@@ -849,6 +924,13 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 if (executor != null) {                    
                     executor.shutdown(); 
                 }
+                if (workerInfos != null) {
+                    for (ProcessInfo workerInfo : workerInfos) {
+                        if (workerInfo.getStatus() != ProcessStatus.ERROR) {
+                            workerInfo.setStatus(ProcessStatus.OK);
+                        }
+                    }
+                }
             } 
 
             // Next, we update the node channel controls to the
@@ -870,6 +952,30 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
     }
     
+    /**
+     * Each thread that extracts batches for the same node at the same time
+     * reports its progress on a process info of its own, which is told apart
+     * from the others by the worker number on its queue. The process info
+     * that was passed in only tracks the batches as they are sent.
+     */
+    protected List<ProcessInfo> newExtractWorkerInfos(ProcessInfo extractInfo, int workerCount) {
+        List<ProcessInfo> workerInfos = new ArrayList<ProcessInfo>(workerCount);
+        for (int i = 1; i <= workerCount; i++) {
+            ProcessInfo workerInfo = statisticManager.newProcessInfo(new ProcessInfoKey(extractInfo.getSourceNodeId(),
+                    getWorkerQueue(extractInfo.getKey().getQueue(), i), extractInfo.getTargetNodeId(), extractInfo.getProcessType()));
+            workerInfos.add(workerInfo);
+        }
+        return workerInfos;
+    }
+
+    /**
+     * @return the queue that tells the process info of a worker apart from the
+     *         process infos of the other workers on the same queue
+     */
+    protected String getWorkerQueue(String queue, int worker) {
+        return queue != null ? queue + "-" + worker : Integer.toString(worker);
+    }
+
     protected FutureOutgoingBatch extractBatch(OutgoingBatch extractBatch, FutureExtractStatus status, ProcessInfo extractInfo,
             Node targetNode, IDataWriter dataWriter, ExtractMode mode, List<OutgoingBatch> activeBatches) throws Exception {
         extractInfo.setThread(Thread.currentThread());
@@ -902,21 +1008,29 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     extractBatch.setStatus(Status.NE);
                     extractBatch.setExtractJobFlag(false);
                 }
+            } else if (streamToFileEnabled && isStagingOverQuota(extractBatch, status)) {
+                log.info("Staging is over its quota after {} of {} batches were extracted for node '{}'.  "
+                        + "The remaining batches will be extracted on a subsequent sync.",
+                        new Object[] { status.batchExtractCount, activeBatches.size(), targetNode.getNodeId() });
+                status.shouldExtractSkip = outgoingBatch.isExtractSkipped = true;
             } else {
                 try {
                     boolean isRetry = isRetry(extractBatch, targetNode);
                     outgoingBatch = new FutureOutgoingBatch(
                             extractOutgoingBatch(extractInfo, targetNode, dataWriter, extractBatch, streamToFileEnabled, true, mode, null),
                             isRetry);
-                    status.batchExtractCount++;
-                    status.byteExtractCount += extractBatch.getByteCount();
-
-                    if (status.byteExtractCount >= maxBytesToSync && status.batchExtractCount < activeBatches.size()) {
-                        log.info(
-                                "Reached the total byte threshold after {} of {} batches were extracted for node '{}' (extracted {} bytes, the max is {}).  "
-                                        + "The remaining batches will be extracted on a subsequent sync.",
-                                new Object[] { status.batchExtractCount, activeBatches.size(), targetNode.getNodeId(), status.byteExtractCount, maxBytesToSync });
-                        status.shouldExtractSkip = true;
+                    synchronized (status) {
+                        status.batchExtractCount++;
+                        status.byteExtractCount += extractBatch.getByteCount();
+
+                        if (!status.shouldExtractSkip && status.byteExtractCount >= maxBytesToSync
+                                && status.batchExtractCount < activeBatches.size()) {
+                            log.info(
+                                    "Reached the total byte threshold after {} of {} batches were extracted for node '{}' (extracted {} bytes, the max is {}).  "
+                                            + "The remaining batches will be extracted on a subsequent sync.",
+                                    new Object[] { status.batchExtractCount, activeBatches.size(), targetNode.getNodeId(), status.byteExtractCount, maxBytesToSync });
+                            status.shouldExtractSkip = true;
+                        }
                     }
                 } catch (Exception e) {
                     status.shouldExtractSkip = outgoingBatch.isExtractSkipped = true;
@@ -929,6 +1043,27 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         return outgoingBatch;
     }
 
+    /**
+     * Staging that is over its quota only slows extraction down to one new
+     * batch per sync, so a node can always make progress.
+     */
+    protected boolean isStagingOverQuota(OutgoingBatch batch, FutureExtractStatus status) {
+        synchronized (status) {
+            if (status.batchExtractCount == 0) {
+                return false;
+            }
+        }
+        return !isPreviouslyExtracted(batch, false) && stagingManager.isOverQuota();
+    }
+
+    protected void writeKeepAlive(IDataWriter dataWriter, BufferedWriter writer, Node sourceNode, boolean streamToFileEnabled) {
+        if (dataWriter instanceof BinaryProtocolDataWriter) {
+            ((BinaryProtocolDataWriter) dataWriter).writeKeepAlive();
+        } else {
+            writeKeepAliveAck(writer, sourceNode, streamToFileEnabled);
+        }
+    }
+
     protected void writeKeepAliveAck(BufferedWriter writer, Node sourceNode, boolean streamToFileEnabled) {
         try {
             if (writer != null && streamToFileEnabled) {
@@ -996,6 +1131,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 cleanupIgnoredBatch(sourceNode, targetNode, currentBatch, writer);
             } else if (!isPreviouslyExtracted(currentBatch, true)) {
                 BatchLock lock = null;
+                boolean resumable = false;
                 try {
                     log.debug("{} attempting to acquire lock for batch {}", targetNode.getNodeId(), currentBatch.getBatchId());
                     lock = acquireLock(currentBatch, useStagingDataWriter);
@@ -1024,7 +1160,15 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                         extractInfo.setTotalDataCount(currentBatch.getDataRowCount());
                         currentBatch.resetStats();
 
-                        IDataReader dataReader = buildExtractDataReader(sourceNode, targetNode, currentBatch, extractInfo);
+                        IDataReader dataReader = null;
+                        if (useStagingDataWriter && writer instanceof NestedDataWriter
+                                && parameterService.getInt(ParameterConstants.EXTRACT_DATA_PAGE_SIZE) > 0
+                                && dataService.isDataOrderedByDataId()) {
+                            StagingDataWriter stagingWriter = ((NestedDataWriter) writer).getNestedWriterOfType(StagingDataWriter.class);
+                            dataReader = buildExtractDataReader(sourceNode, targetNode, currentBatch, extractInfo, stagingWriter);
+                        } else {
+                            dataReader = buildExtractDataReader(sourceNode, targetNode, currentBatch, extractInfo);
+                        }
                         new DataProcessor(dataReader, writer, listener, "extract").process(ctx);
                         extractTimeInMs = System.currentTimeMillis() - ts;
                         Statistics stats = getExtractStats(writer);
@@ -1052,13 +1196,19 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     IStagedResource resource = getStagedResource(currentBatch);
                     if (resource != null) {
                         resource.close();
-                        resource.delete();
+                        if (resource.getCheckpoint() != null) {
+                            log.info("Keeping the partially extracted batch {} so the next extraction can resume from its last checkpoint",
+                                    currentBatch.getNodeBatchId());
+                            resumable = true;
+                        } else {
+                            resource.delete();
+                        }
                     }
                     throw ex;
                 } finally { 
                     try {                        
                         IStagedResource resource = getStagedResource(currentBatch);
-                        if (resource != null) {
+                        if (resource != null && !resumable) {
                             resource.setState(State.DONE);
                         }
                     } finally {                        
@@ -1215,6 +1365,17 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 new SelectFromSymDataSource(currentBatch, sourceNode, targetNode, processInfo));
     }
 
+    /**
+     * Build a reader that checkpoints the staged batch as it goes and resumes
+     * from the last checkpoint if a previous extraction of the batch failed
+     * part way through.
+     */
+    protected ExtractDataReader buildExtractDataReader(Node sourceNode, Node targetNode, OutgoingBatch currentBatch, ProcessInfo processInfo,
+            StagingDataWriter stagingWriter) {
+        return new ExtractDataReader(symmetricDialect.getPlatform(), 
+                new SelectFromSymDataSource(currentBatch, sourceNode, targetNode, processInfo, stagingWriter));
+    }
+
     protected Statistics getExtractStats(IDataWriter writer) {
         Map<Batch, Statistics> statisticsMap = null;
         if (writer instanceof TransformWriter) {
@@ -1345,7 +1506,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                                     
                                  if (currentBatch.getSentCount() == 1) {
 	                                	statisticManager.incrementDataSent(currentBatch.getChannelId(), currentBatch.getDataRowCount());
-	                            		statisticManager.incrementDataBytesSent(currentBatch.getChannelId(), extractedBatch.getFile().length());
+	                            		statisticManager.incrementDataBytesSent(currentBatch.getChannelId(), extractedBatch.isCompressed() ?
+	                            		        currentBatch.getByteCount() : extractedBatch.getFile().length());
                                  }
                                 } catch (Exception e) {   
                                     FileUtils.deleteQuietly(targetResource.getFile());
@@ -1366,8 +1528,14 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     DataContext ctx = new DataContext();
                     ctx.put(Constants.DATA_CONTEXT_TARGET_NODE, targetNode);
                     ctx.put(Constants.DATA_CONTEXT_SOURCE_NODE, nodeService.findIdentity());
-                    new DataProcessor(dataReader, new ProcessInfoDataWriter(dataWriter, processInfo), "send from stage")
-                            .process(ctx);
+                    try {
+                        new DataProcessor(dataReader, new ProcessInfoDataWriter(dataWriter, processInfo), "send from stage")
+                                .process(ctx);
+                    } finally {
+                        if (mode == ExtractMode.FOR_SYM_CLIENT) {
+                            releaseStagedResource(extractedBatch);
+                        }
+                    }
                     if (dataReader.getStatistics().size() > 0 && currentBatch.getSentCount() == 1) {
                         Statistics stats = dataReader.getStatistics().values().iterator().next();
                         statisticManager.incrementDataSent(currentBatch.getChannelId(),
@@ -1396,11 +1564,28 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     protected void transferFromStaging(ExtractMode mode, BatchType batchType, OutgoingBatch batch, boolean isRetry, IStagedResource stagedResource,
             BufferedWriter writer, DataContext context, BigDecimal maxKBytesPerSec) {
         final int MAX_WRITE_LENGTH = 32768;
-        BufferedReader reader = stagedResource.getReader();
+        boolean isThrottled = maxKBytesPerSec != null && maxKBytesPerSec.compareTo(BigDecimal.ZERO) > 0;
         try {
-            // Retry means we've sent this batch before, so let's ask to
-            // retry the batch from the target's staging
-            if (isRetry) {
+            long totalBytesTransferred = -1;
+            if (!isRetry && !isThrottled && writer instanceof StreamBufferedWriter && stagedResource.isFileResource()
+                    && ((StreamBufferedWriter) writer).getCharset().name().equals(IoConstants.ENCODING)
+                    && parameterService.is(ParameterConstants.STREAM_TO_FILE_TRANSFER_BYTES_ENABLED, true)) {
+                if (!stagedResource.isCompressed()) {
+                    totalBytesTransferred = transferBytesFromStaging(mode, batch, stagedResource, (StreamBufferedWriter) writer);
+                } else if (((StreamBufferedWriter) writer).isGzipMembersAccepted()) {
+                    totalBytesTransferred = transferGzipMembersFromStaging(mode, batch, stagedResource, (StreamBufferedWriter) writer);
+                }
+            }
+
+            if (totalBytesTransferred >= 0) {
+                if (batch.getSentCount() == 1) {
+                    statisticManager.incrementDataSent(batch.getChannelId(), batch.getDataRowCount());
+                    statisticManager.incrementDataBytesSent(batch.getChannelId(), totalBytesTransferred);
+                }
+            } else if (isRetry) {
+                // Retry means we've sent this batch before, so let's ask to
+                // retry the batch from the target's staging
+                BufferedReader reader = stagedResource.getReader();
                 String line = null;
                 while ((line = reader.readLine()) != null) {
                     if (line.startsWith(CsvConstants.BATCH)) {
@@ -1424,10 +1609,10 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 
                 writer.flush();
             } else {
+                BufferedReader reader = stagedResource.getReader();
                 long totalCharsRead = 0, totalBytesRead = 0;
                 int numCharsRead = 0, numBytesRead = 0;
                 long startTime = System.currentTimeMillis(), ts = startTime, bts = startTime;
-                boolean isThrottled = maxKBytesPerSec != null && maxKBytesPerSec.compareTo(BigDecimal.ZERO) > 0;
                 long totalThrottleTime = 0;
                 int bufferSize = MAX_WRITE_LENGTH;
 
@@ -1501,18 +1686,182 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         } catch (Throwable t) {
             throw new RuntimeException(t);
         } finally {
-            stagedResource.close();
-            stagedResource.dereference();
-            if (!stagedResource.isFileResource() && !stagedResource.isInUse()) {
-                synchronized(DataExtractorService.this) {
-                    if (!stagedResource.isFileResource() && !stagedResource.isInUse()) {
-                        stagedResource.delete();
-                    }
+            releaseStagedResource(stagedResource);
+        }
+    }
+
+    /**
+     * Let go of a staged batch once it has been sent. A batch that was staged
+     * in memory is deleted when nothing else is using it.
+     */
+    protected void releaseStagedResource(IStagedResource stagedResource) {
+        stagedResource.close();
+        stagedResource.dereference();
+        if (!stagedResource.isFileResource() && !stagedResource.isInUse()) {
+            synchronized(DataExtractorService.this) {
+                if (!stagedResource.isFileResource() && !stagedResource.isInUse()) {
+                    stagedResource.delete();
                 }
             }
         }
     }
     
+    /**
+     * Copy a staged batch to the transport stream without decoding it. The
+     * batch stats are written after the batch line of the header, the same as
+     * when the batch is copied as characters.
+     * 
+     * @return the number of bytes copied from staging, or -1 if the batch line
+     *         could not be found and the batch should be copied as characters
+     */
+    protected long transferBytesFromStaging(ExtractMode mode, OutgoingBatch batch, IStagedResource stagedResource,
+            StreamBufferedWriter writer) throws IOException {
+        final int MAX_HEADER_LENGTH = 32768;
+        final long MAX_TRANSFER_LENGTH = 1048576;
+        FileInputStream is = new FileInputStream(stagedResource.getFile());
+        try {
+            FileChannel channel = is.getChannel();
+            long size = channel.size();
+            long position = 0;
+            if (nodeService.findNode(batch.getNodeId()).isVersionGreaterThanOrEqualTo(3, 9, 0)) {
+                ByteBuffer header = ByteBuffer.allocate((int) Math.min(size, MAX_HEADER_LENGTH));
+                while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                }
+                int index = findStatsIndex(new String(header.array(), 0, header.position(), "ISO-8859-1"), "");
+                if (index < 0) {
+                    return -1;
+                }
+                position = writer.transferFrom(channel, 0, index);
+                writer.write(getBatchStatsColumns() + System.lineSeparator() + getBatchStats(batch) + System.lineSeparator());
+            }
+
+            long startTime = System.currentTimeMillis(), ts = startTime;
+            while (position < size) {
+                long transferred = writer.transferFrom(channel, position, Math.min(MAX_TRANSFER_LENGTH, size - position));
+                if (transferred <= 0) {
+                    throw new IoException("Failed to copy staged batch " + batch.getNodeBatchId() + " at byte " + position);
+                }
+                position += transferred;
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IoException("This thread was interrupted");
+                }
+
+                long batchStatusUpdateMillis = parameterService.getLong(ParameterConstants.OUTGOING_BATCH_UPDATE_STATUS_MILLIS);
+                if (System.currentTimeMillis() - ts > batchStatusUpdateMillis && batch.getStatus() != Status.SE && batch.getStatus() != Status.RS) {
+                    changeBatchStatus(Status.SE, batch, mode);
+                }
+                if (System.currentTimeMillis() - ts > LOG_PROCESS_SUMMARY_THRESHOLD) {
+                    log.info(
+                            "Batch '{}', for node '{}', for process 'send from stage' has been processing for {} seconds.  "
+                                    + "The following stats have been gathered: {}",
+                            new Object[] { batch.getBatchId(), batch.getNodeId(), (System.currentTimeMillis() - startTime) / 1000,
+                                    "BYTES=" + position });
+                    ts = System.currentTimeMillis();
+                }
+            }
+            return size;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Send a compressed staged batch to a transport that is compressed in
+     * gzip format without decompressing all of it. The first gzip member of
+     * the file holds the batch header. It is decompressed so the batch stats
+     * can be added after the batch line, and the members that follow are
+     * copied as is.
+     * 
+     * @return the uncompressed size of the batch, or -1 if the header is not
+     *         in a gzip member of its own and nothing was sent
+     */
+    protected long transferGzipMembersFromStaging(ExtractMode mode, OutgoingBatch batch, IStagedResource stagedResource,
+            StreamBufferedWriter writer) throws IOException {
+        final int MAX_HEADER_LENGTH = 32768;
+        final int GZIP_HEADER_LENGTH = 10;
+        final int GZIP_TRAILER_LENGTH = 8;
+        final long MAX_TRANSFER_LENGTH = 1048576;
+        FileInputStream is = new FileInputStream(stagedResource.getFile());
+        try {
+            FileChannel channel = is.getChannel();
+            long size = channel.size();
+            ByteBuffer compressed = ByteBuffer.allocate((int) Math.min(size, MAX_HEADER_LENGTH));
+            while (compressed.hasRemaining() && channel.read(compressed, compressed.position()) > 0) {
+            }
+            byte[] bytes = compressed.array();
+            // Only the fixed header written by GZIPOutputStream, without optional fields
+            if (compressed.position() <= GZIP_HEADER_LENGTH || bytes[0] != (byte) 0x1f || bytes[1] != (byte) 0x8b || bytes[3] != 0) {
+                return -1;
+            }
+
+            byte[] header = new byte[MAX_HEADER_LENGTH];
+            int headerLength = 0;
+            long position = 0;
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(bytes, GZIP_HEADER_LENGTH, compressed.position() - GZIP_HEADER_LENGTH);
+                while (!inflater.finished() && headerLength < header.length) {
+                    int inflated = inflater.inflate(header, headerLength, header.length - headerLength);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    headerLength += inflated;
+                }
+                if (!inflater.finished()) {
+                    return -1;
+                }
+                position = GZIP_HEADER_LENGTH + inflater.getBytesRead() + GZIP_TRAILER_LENGTH;
+            } catch (DataFormatException ex) {
+                return -1;
+            } finally {
+                inflater.end();
+            }
+
+            String headerString = new String(header, 0, headerLength, IoConstants.ENCODING);
+            if (nodeService.findNode(batch.getNodeId()).isVersionGreaterThanOrEqualTo(3, 9, 0)) {
+                int index = findStatsIndex(headerString, "");
+                if (index < 0) {
+                    return -1;
+                }
+                writer.write(headerString, 0, index);
+                writer.write(getBatchStatsColumns() + System.lineSeparator() + getBatchStats(batch) + System.lineSeparator());
+                writer.write(headerString, index, headerString.length() - index);
+            } else {
+                writer.write(headerString);
+            }
+
+            long startTime = System.currentTimeMillis(), ts = startTime;
+            while (position < size) {
+                long transferred = writer.transferGzipMembers(channel, position, Math.min(MAX_TRANSFER_LENGTH, size - position));
+                if (transferred <= 0) {
+                    throw new IoException("Failed to copy staged batch " + batch.getNodeBatchId() + " at byte " + position);
+                }
+                position += transferred;
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IoException("This thread was interrupted");
+                }
+
+                long batchStatusUpdateMillis = parameterService.getLong(ParameterConstants.OUTGOING_BATCH_UPDATE_STATUS_MILLIS);
+                if (System.currentTimeMillis() - ts > batchStatusUpdateMillis && batch.getStatus() != Status.SE && batch.getStatus() != Status.RS) {
+                    changeBatchStatus(Status.SE, batch, mode);
+                }
+                if (System.currentTimeMillis() - ts > LOG_PROCESS_SUMMARY_THRESHOLD) {
+                    log.info(
+                            "Batch '{}', for node '{}', for process 'send from stage' has been processing for {} seconds.  "
+                                    + "The following stats have been gathered: {}",
+                            new Object[] { batch.getBatchId(), batch.getNodeId(), (System.currentTimeMillis() - startTime) / 1000,
+                                    "COMPRESSED_BYTES=" + position });
+                    ts = System.currentTimeMillis();
+                }
+            }
+            return batch.getByteCount();
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
     protected int findStatsIndex(String bufferString, String prevBuffer) {
         int index = -1;
         String fullBuffer = prevBuffer + bufferString;
@@ -1756,6 +2105,108 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
     }
 
+    public RemoteNodeStatuses preExtract(boolean force) {
+        final RemoteNodeStatuses statuses = new RemoteNodeStatuses(configurationService.getChannels(false));
+        Node identity = nodeService.findIdentity();
+        if (identity != null && identity.isSyncEnabled()) {
+            if (force || !clusterService.isInfiniteLocked(ClusterConstants.PRE_EXTRACT)) {
+                List<NodeCommunication> nodes = nodeCommunicationService.list(CommunicationType.PRE_XTRCT);
+                int availableThreads = nodeCommunicationService.getAvailableThreads(CommunicationType.PRE_XTRCT);
+                for (NodeCommunication nodeCommunication : nodes) {
+                    if (availableThreads > 0) {
+                        if (nodeCommunicationService.execute(nodeCommunication, statuses, new PreExtractExecutor())) {
+                            availableThreads--;
+                        }
+                    }
+                }
+            } else {
+                log.debug("Did not run the pre-extract process because it has been stopped");
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Stage new batches for a node that pulls from this node, so the pull only
+     * has to send them. Batches are staged in channel processing order until
+     * the unsent batches staged for the node reach
+     * {@link ParameterConstants#PRE_EXTRACT_MAX_BYTES_PER_NODE} or staging is
+     * near its quota.
+     */
+    protected void preExtract(NodeCommunication nodeCommunication) {
+        Node identity = nodeService.findIdentity();
+        Node targetNode = nodeService.findNode(nodeCommunication.getNodeId(), true);
+        if (identity == null || targetNode == null) {
+            return;
+        }
+
+        NodeGroupLink link = configurationService.getNodeGroupLinkFor(identity.getNodeGroupId(),
+                targetNode.getNodeGroupId(), false);
+        if (link == null) {
+            return;
+        }
+
+        OutgoingBatches batches = outgoingBatchService.getOutgoingBatches(targetNode.getNodeId(), nodeCommunication.getQueue(),
+                NodeGroupLinkAction.W, link.getDataEventAction(), false);
+        ChannelMap channelMap = configurationService.getSuspendIgnoreChannelLists(targetNode.getNodeId());
+        final Map<String, Channel> channels = configurationService.getChannels(false);
+        List<OutgoingBatch> newBatches = new ArrayList<OutgoingBatch>();
+        for (OutgoingBatch batch : batches.getBatches()) {
+            Channel channel = channels.get(batch.getChannelId());
+            if (batch.getStatus() == Status.NE && !batch.isExtractJobFlag() && channel != null && !channel.isFileSyncFlag()
+                    && !channelMap.getSuspendChannels().contains(batch.getChannelId())
+                    && !channelMap.getIgnoreChannels().contains(batch.getChannelId())) {
+                newBatches.add(batch);
+            }
+        }
+
+        Collections.sort(newBatches, new Comparator<OutgoingBatch>() {
+            public int compare(OutgoingBatch b1, OutgoingBatch b2) {
+                return Integer.compare(channels.get(b1.getChannelId()).getProcessingOrder(),
+                        channels.get(b2.getChannelId()).getProcessingOrder());
+            }
+        });
+
+        long maxBytes = parameterService.getLong(ParameterConstants.PRE_EXTRACT_MAX_BYTES_PER_NODE, 104857600);
+        long stagedBytes = 0;
+        ProcessInfo processInfo = statisticManager.newProcessInfo(new ProcessInfoKey(identity.getNodeId(),
+                nodeCommunication.getQueue(), targetNode.getNodeId(), ProcessType.PRE_EXTRACT_JOB));
+        processInfo.setTotalBatchCount(newBatches.size());
+        try {
+            for (OutgoingBatch batch : newBatches) {
+                IStagedResource resource = getStagedResource(batch);
+                if (resource == null || !resource.exists()) {
+                    if (stagedBytes >= maxBytes) {
+                        break;
+                    } else if (stagingManager.isNearQuota()) {
+                        log.debug("Stopped pre-extracting for node '{}' because staging is near its quota", targetNode.getNodeId());
+                        break;
+                    }
+                    processInfo.setStatus(ProcessStatus.EXTRACTING);
+                    processInfo.setCurrentBatchId(batch.getBatchId());
+                    processInfo.setCurrentChannelId(batch.getChannelId());
+                    extractOutgoingBatch(processInfo, targetNode, null, batch, true, false, ExtractMode.EXTRACT_ONLY, null);
+                    processInfo.incrementCurrentBatchCount();
+                    resource = getStagedResource(batch);
+                }
+                if (resource != null) {
+                    stagedBytes += resource.getSize();
+                }
+            }
+            processInfo.setStatus(ProcessStatus.OK);
+        } finally {
+            if (processInfo.getStatus() != ProcessStatus.OK) {
+                processInfo.setStatus(ProcessStatus.ERROR);
+            }
+        }
+    }
+
+    class PreExtractExecutor implements INodeCommunicationExecutor {
+        public void execute(NodeCommunication nodeCommunication, RemoteNodeStatus status) {
+            preExtract(nodeCommunication);
+        }
+    }
+
     public List<NodeQueuePair> getExtractRequestNodes() {
         return sqlTemplate.query(getSql("selectNodeIdsForExtractSql"), new NodeQueuePairMapper(),
                 ExtractStatus.NE.name());
@@ -1857,161 +2308,234 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
         
         List<ExtractRequest> requests = getExtractRequestsForNode(nodeCommunication);
-        long ts = System.currentTimeMillis();
-        /*
-         * Process extract requests until it has taken longer than 30 seconds, and then
-         * allow the process to return so progress status can be seen.
-         */
-        for (int i = 0; i < requests.size()
-                && (System.currentTimeMillis() - ts) <= Constants.LONG_OPERATION_THRESHOLD; i++) {
-            ExtractRequest request = requests.get(i);
-            if (!canProcessExtractRequest(request, nodeCommunication.getCommunicationType())){
-                continue;
-            }                
-            Node identity = nodeService.findIdentity();
-            Node targetNode = nodeService.findNode(nodeCommunication.getNodeId());
-            log.info(
-                    "Extracting batches for request {}. Starting at batch {}.  Ending at batch {}",
-                    new Object[] { request.getRequestId(), request.getStartBatchId(),
-                            request.getEndBatchId() });
-            List<OutgoingBatch> batches = outgoingBatchService.getOutgoingBatchRange(
-                    request.getStartBatchId(), request.getEndBatchId()).getBatches();
+        final long ts = System.currentTimeMillis();
+        int threadCount = Math.min(requests.size(),
+                parameterService.getInt(ParameterConstants.INITIAL_LOAD_EXTRACT_THREAD_COUNT_PER_NODE, 1));
+        if (threadCount <= 1) {
+            /*
+             * Process extract requests until it has taken longer than 30 seconds, and then
+             * allow the process to return so progress status can be seen.
+             */
+            for (int i = 0; i < requests.size()
+                    && (System.currentTimeMillis() - ts) <= Constants.LONG_OPERATION_THRESHOLD; i++) {
+                ExtractRequest request = requests.get(i);
+                if (!canProcessExtractRequest(request, nodeCommunication.getCommunicationType())){
+                    continue;
+                }
+                processExtractRequest(nodeCommunication, request);
+            }
+        } else {
+            if (this.threadPoolFactory == null) {
+                this.threadPoolFactory = new CustomizableThreadFactory(String.format("%s-dataextractor", parameterService.getEngineName().toLowerCase()));
+            }
 
-            ProcessInfo processInfo = statisticManager.newProcessInfo(new ProcessInfoKey(identity
-                    .getNodeId(), nodeCommunication.getQueue(), nodeCommunication.getNodeId(),
-                    getProcessType()));
-            processInfo.setTotalBatchCount(batches.size());
+            /*
+             * Requests for separate ranges of a table are independent of each
+             * other, so several of them can be extracted at once. Requests that
+             * have not started after 30 seconds wait for the next run.
+             */
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount, this.threadPoolFactory);
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            final BlockingQueue<String> workerQueues = new ArrayBlockingQueue<String>(threadCount);
+            for (int i = 1; i <= threadCount; i++) {
+                workerQueues.add(getWorkerQueue(nodeCommunication.getQueue(), i));
+            }
             try {
-                boolean areBatchesOk = true;
-
-                /*
-                 * check to see if batches have been OK'd by another reload
-                 * request 
-                 */
-                for (OutgoingBatch outgoingBatch : batches) {
-                    if (outgoingBatch.getStatus() != Status.OK) {
-                        areBatchesOk = false;
-                        break;
+                for (final ExtractRequest request : requests) {
+                    if (!canProcessExtractRequest(request, nodeCommunication.getCommunicationType())) {
+                        continue;
                     }
+                    futures.add(executor.submit(new Callable<Object>() {
+                        public Object call() throws Exception {
+                            if ((System.currentTimeMillis() - ts) <= Constants.LONG_OPERATION_THRESHOLD) {
+                                String workerQueue = workerQueues.take();
+                                try {
+                                    processExtractRequest(nodeCommunication, request, workerQueue);
+                                } finally {
+                                    workerQueues.add(workerQueue);
+                                }
+                            }
+                            return null;
+                        }
+                    }));
                 }
 
-                if (!areBatchesOk) {
-
-                    Channel channel = configurationService
-                            .getChannel(batches.get(0).getChannelId());
-                    /*
-                     * "Trick" the extractor to extract one reload batch, but we
-                     * will split it across the N batches when writing it
-                     */
-                    OutgoingBatch firstBatch = batches.get(0);
-                    processInfo.setCurrentLoadId(firstBatch.getLoadId());
-                    IStagedResource resource = getStagedResource(firstBatch);
-                    if (resource != null && resource.exists() && resource.getState() != State.CREATE) {
-                        resource.delete();
-                    }
-                    
-                    MultiBatchStagingWriter multiBatchStagingWriter = 
-                            buildMultiBatchStagingWriter(request, identity, targetNode, batches, processInfo, channel);
-                    
-                    extractOutgoingBatch(processInfo, targetNode, multiBatchStagingWriter, 
-                            firstBatch, false, false, ExtractMode.FOR_SYM_CLIENT, new ClusterLockRefreshListener(clusterService));
-                    
-                    for (OutgoingBatch outgoingBatch : batches) {
-                        resource = getStagedResource(outgoingBatch);  
-                        if (resource != null) {
-                            resource.setState(State.DONE);        
+                RuntimeException failure = null;
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ex) {
+                        if (failure == null) {
+                            failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                                    : new SymmetricException(ex.getCause());
                         }
+                    } catch (InterruptedException ex) {
+                        throw new SymmetricException(ex);
                     }
-
-                } else {
-                    log.info("Batches already had an OK status for request {}, batches {} to {}.  Not extracting", new Object[] { request.getRequestId(), request.getStartBatchId(),
-                            request.getEndBatchId() });
                 }
+                if (failure != null) {
+                    throw failure;
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
 
-                /*
-                 * re-query the batches to see if they have been OK'd while
-                 * extracting
-                 */
-                List<OutgoingBatch> checkBatches = outgoingBatchService.getOutgoingBatchRange(
-                        request.getStartBatchId(), request.getEndBatchId()).getBatches();
+    protected void processExtractRequest(NodeCommunication nodeCommunication, ExtractRequest request) {
+        processExtractRequest(nodeCommunication, request, nodeCommunication.getQueue());
+    }
 
-                areBatchesOk = true;
+    /**
+     * @param processQueue
+     *            the queue of the process info that tracks the request, which
+     *            has to differ between requests that are extracted at the
+     *            same time
+     */
+    protected void processExtractRequest(NodeCommunication nodeCommunication, ExtractRequest request, String processQueue) {
+        Node identity = nodeService.findIdentity();
+        Node targetNode = nodeService.findNode(nodeCommunication.getNodeId());
+        log.info(
+                "Extracting batches for request {}. Starting at batch {}.  Ending at batch {}",
+                new Object[] { request.getRequestId(), request.getStartBatchId(),
+                        request.getEndBatchId() });
+        List<OutgoingBatch> batches = outgoingBatchService.getOutgoingBatchRange(
+                request.getStartBatchId(), request.getEndBatchId()).getBatches();
 
+        ProcessInfo processInfo = statisticManager.newProcessInfo(new ProcessInfoKey(identity
+                .getNodeId(), processQueue, nodeCommunication.getNodeId(),
+                getProcessType()));
+        processInfo.setTotalBatchCount(batches.size());
+        try {
+            boolean areBatchesOk = true;
+
+            /*
+             * check to see if batches have been OK'd by another reload
+             * request 
+             */
+            for (OutgoingBatch outgoingBatch : batches) {
+                if (outgoingBatch.getStatus() != Status.OK) {
+                    areBatchesOk = false;
+                    break;
+                }
+            }
+
+            if (!areBatchesOk) {
+
+                Channel channel = configurationService
+                        .getChannel(batches.get(0).getChannelId());
                 /*
-                 * check to see if batches have been OK'd by another reload
-                 * request while extracting
+                 * "Trick" the extractor to extract one reload batch, but we
+                 * will split it across the N batches when writing it
                  */
-                for (OutgoingBatch outgoingBatch : checkBatches) {
-                    if (outgoingBatch.getStatus() != Status.OK) {
-                        areBatchesOk = false;
-                        break;
+                OutgoingBatch firstBatch = batches.get(0);
+                processInfo.setCurrentLoadId(firstBatch.getLoadId());
+                IStagedResource resource = getStagedResource(firstBatch);
+                if (resource != null && resource.exists() && resource.getState() != State.CREATE) {
+                    resource.delete();
+                }
+                
+                MultiBatchStagingWriter multiBatchStagingWriter = 
+                        buildMultiBatchStagingWriter(request, identity, targetNode, batches, processInfo, channel);
+                
+                extractOutgoingBatch(processInfo, targetNode, multiBatchStagingWriter, 
+                        firstBatch, false, false, ExtractMode.FOR_SYM_CLIENT, new ClusterLockRefreshListener(clusterService));
+                
+                for (OutgoingBatch outgoingBatch : batches) {
+                    resource = getStagedResource(outgoingBatch);  
+                    if (resource != null) {
+                        resource.setState(State.DONE);        
                     }
                 }
 
-                ISqlTransaction transaction = null;
-                try {
-                    transaction = sqlTemplate.startSqlTransaction();
-                    updateExtractRequestStatus(transaction, request.getRequestId(),
-                            ExtractStatus.OK);
-
-                    if (!areBatchesOk) {
-                        for (OutgoingBatch outgoingBatch : batches) {
-                            if (!parameterService.is(ParameterConstants.INITIAL_LOAD_EXTRACT_AND_SEND_WHEN_STAGED, false)) {
-                                outgoingBatch.setStatus(Status.NE);
-                                outgoingBatchService.updateOutgoingBatch(transaction, outgoingBatch);
-                            } else if (outgoingBatch.getStatus() == Status.RQ) {
-                                log.info("Batch {} was empty after extract in background and will be ignored.",
-                                        new Object[] { outgoingBatch.getNodeBatchId() });
-                                outgoingBatch.setStatus(Status.IG);
-                                outgoingBatchService.updateOutgoingBatch(transaction, outgoingBatch);
+            } else {
+                log.info("Batches already had an OK status for request {}, batches {} to {}.  Not extracting", new Object[] { request.getRequestId(), request.getStartBatchId(),
+                        request.getEndBatchId() });
+            }
+
+            /*
+             * re-query the batches to see if they have been OK'd while
+             * extracting
+             */
+            List<OutgoingBatch> checkBatches = outgoingBatchService.getOutgoingBatchRange(
+                    request.getStartBatchId(), request.getEndBatchId()).getBatches();
+
+            areBatchesOk = true;
+
+            /*
+             * check to see if batches have been OK'd by another reload
+             * request while extracting
+             */
+            for (OutgoingBatch outgoingBatch : checkBatches) {
+                if (outgoingBatch.getStatus() != Status.OK) {
+                    areBatchesOk = false;
+                    break;
+                }
+            }
+
+            ISqlTransaction transaction = null;
+            try {
+                transaction = sqlTemplate.startSqlTransaction();
+                updateExtractRequestStatus(transaction, request.getRequestId(),
+                        ExtractStatus.OK);
+
+                if (!areBatchesOk) {
+                    for (OutgoingBatch outgoingBatch : batches) {
+                        if (!parameterService.is(ParameterConstants.INITIAL_LOAD_EXTRACT_AND_SEND_WHEN_STAGED, false)) {
+                            outgoingBatch.setStatus(Status.NE);
+                            outgoingBatchService.updateOutgoingBatch(transaction, outgoingBatch);
+                        } else if (outgoingBatch.getStatus() == Status.RQ) {
+                            log.info("Batch {} was empty after extract in background and will be ignored.",
+                                    new Object[] { outgoingBatch.getNodeBatchId() });
+                            outgoingBatch.setStatus(Status.IG);
+                            outgoingBatchService.updateOutgoingBatch(transaction, outgoingBatch);
 
-                            }
                         }
-                    } else {
-                        log.info("Batches already had an OK status for request {}, batches {} to {}.  Not updating the status to NE",
-                                new Object[] { request.getRequestId(), request.getStartBatchId(), request.getEndBatchId() });
-                    }
-                    transaction.commit();
-                    log.info("Done extracting {} batches for request {}", (request.getEndBatchId() - request.getStartBatchId()) + 1, request.getRequestId());
-                } catch (Error ex) {
-                    if (transaction != null) {
-                        transaction.rollback();
-                    }
-                    throw ex;
-                } catch (RuntimeException ex) {
-                    if (transaction != null) {
-                        transaction.rollback();
                     }
-                    throw ex;
-                } finally {
-                    close(transaction);
+                } else {
+                    log.info("Batches already had an OK status for request {}, batches {} to {}.  Not updating the status to NE",
+                            new Object[] { request.getRequestId(), request.getStartBatchId(), request.getEndBatchId() });
                 }
-                processInfo.setStatus(ProcessInfo.ProcessStatus.OK);
-
-            } catch (CancellationException ex) {
-                log.info("Cancelled extract request {}. Starting at batch {}.  Ending at batch {}",
-                        new Object[] { request.getRequestId(), request.getStartBatchId(),
-                        request.getEndBatchId() });
-                processInfo.setStatus(ProcessInfo.ProcessStatus.OK);
+                transaction.commit();
+                log.info("Done extracting {} batches for request {}", (request.getEndBatchId() - request.getStartBatchId()) + 1, request.getRequestId());
+            } catch (Error ex) {
+                if (transaction != null) {
+                    transaction.rollback();
+                }
+                throw ex;
             } catch (RuntimeException ex) {
-                log.warn(
-                        "Failed to extract batches for request {}. Starting at batch {}.  Ending at batch {}",
-                        new Object[] { request.getRequestId(), request.getStartBatchId(),
-                                request.getEndBatchId() });
-                processInfo.setStatus(ProcessInfo.ProcessStatus.ERROR);
-                List<OutgoingBatch> checkBatches = outgoingBatchService.getOutgoingBatchRange(
-                        request.getStartBatchId(), request.getEndBatchId()).getBatches();
-                for (OutgoingBatch outgoingBatch : checkBatches) {
-                    outgoingBatch.setStatus(Status.RQ);
-                    IStagedResource resource = getStagedResource(outgoingBatch);
-                    if (resource != null) {
-                        resource.close();
-                        resource.delete();
-                    }
-                    outgoingBatchService.updateOutgoingBatch(outgoingBatch);
-                }                
+                if (transaction != null) {
+                    transaction.rollback();
+                }
                 throw ex;
+            } finally {
+                close(transaction);
             }
+            processInfo.setStatus(ProcessInfo.ProcessStatus.OK);
+
+        } catch (CancellationException ex) {
+            log.info("Cancelled extract request {}. Starting at batch {}.  Ending at batch {}",
+                    new Object[] { request.getRequestId(), request.getStartBatchId(),
+                    request.getEndBatchId() });
+            processInfo.setStatus(ProcessInfo.ProcessStatus.OK);
+        } catch (RuntimeException ex) {
+            log.warn(
+                    "Failed to extract batches for request {}. Starting at batch {}.  Ending at batch {}",
+                    new Object[] { request.getRequestId(), request.getStartBatchId(),
+                            request.getEndBatchId() });
+            processInfo.setStatus(ProcessInfo.ProcessStatus.ERROR);
+            List<OutgoingBatch> checkBatches = outgoingBatchService.getOutgoingBatchRange(
+                    request.getStartBatchId(), request.getEndBatchId()).getBatches();
+            for (OutgoingBatch outgoingBatch : checkBatches) {
+                outgoingBatch.setStatus(Status.RQ);
+                IStagedResource resource = getStagedResource(outgoingBatch);
+                if (resource != null) {
+                    resource.close();
+                    resource.delete();
+                }
+                outgoingBatchService.updateOutgoingBatch(outgoingBatch);
+            }                
+            throw ex;
         }
     }
     
@@ -2066,54 +2590,6 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     }
 
     class ColumnsAccordingToTriggerHistory {
-        class CacheKey{
-            private String routerId;
-            private int triggerHistoryId;
-            private boolean setTargetTableName;
-            private boolean useDatabaseDefinition;
-            
-            public CacheKey(String routerId, int triggerHistoryId, boolean setTargetTableName,
-                    boolean useDatabaseDefinition) {
-                 this.routerId = routerId;
-                 this.triggerHistoryId = triggerHistoryId;
-                 this.setTargetTableName = setTargetTableName;
-                 this.useDatabaseDefinition = useDatabaseDefinition;
-            }
-            @Override
-            public int hashCode() {
-                final int prime = 31;
-                int result = 1;
-                result = prime * result + ((routerId == null) ? 0 : routerId.hashCode());
-                result = prime * result + (setTargetTableName ? 1231 : 1237);
-                result = prime * result + triggerHistoryId;
-                result = prime * result + (useDatabaseDefinition ? 1231 : 1237);
-                return result;
-            }
-            @Override
-            public boolean equals(Object obj) {
-                if (this == obj)
-                    return true;
-                if (obj == null)
-                    return false;
-                if (getClass() != obj.getClass())
-                    return false;
-                CacheKey other = (CacheKey) obj;
-                if (routerId == null) {
-                    if (other.routerId != null)
-                        return false;
-                } else if (!routerId.equals(other.routerId))
-                    return false;
-                if (setTargetTableName != other.setTargetTableName)
-                    return false;
-                if (triggerHistoryId != other.triggerHistoryId)
-                    return false;
-                if (useDatabaseDefinition != other.useDatabaseDefinition)
-                    return false;
-                return true;
-            }
-        }
-        
-        Map<CacheKey, Table> cache = new HashMap<CacheKey, Table>();
         Node sourceNode;
         Node targetNode;
         
@@ -2121,17 +2597,177 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             this.sourceNode = sourceNode;
             this.targetNode = targetNode;
         }
-        public Table lookup(String routerId, TriggerHistory triggerHistory, boolean setTargetTableName, boolean useDatabaseDefinition) {            
-            CacheKey key = new CacheKey(routerId, triggerHistory.getTriggerHistoryId(), setTargetTableName, useDatabaseDefinition);
-            Table table = cache.get(key);
+
+        public Table lookup(String routerId, TriggerHistory triggerHistory, boolean setTargetTableName, boolean useDatabaseDefinition) {
+            return lookup(routerId, triggerHistory, setTargetTableName, useDatabaseDefinition, false);
+        }
+
+        public Table lookup(String routerId, TriggerHistory triggerHistory, boolean setTargetTableName, boolean useDatabaseDefinition,
+                boolean refresh) {
+            TableCacheKey key = new TableCacheKey(sourceNode.getNodeId(), targetNode.getNodeId(), routerId, triggerHistory,
+                    setTargetTableName, useDatabaseDefinition);
+            Router router = setTargetTableName ? triggerRouterService.getRouterById(routerId, false) : null;
+            Date routerLastUpdateTime = router != null ? router.getLastUpdateTime() : null;
+            Table table = refresh ? null : tableCache.get(key, routerLastUpdateTime);
             if (table == null) {
                 table = lookupAndOrderColumnsAccordingToTriggerHistory(routerId, triggerHistory, sourceNode,
                         targetNode, setTargetTableName, useDatabaseDefinition);
-                cache.put(key, table);
+                tableCache.put(key, table, routerLastUpdateTime,
+                        parameterService.getInt(ParameterConstants.EXTRACT_TABLE_CACHE_SIZE, 1000));
             }
             return table;
         }
     }
+
+    /**
+     * Identifies a table computed from a trigger history.  Trigger histories built on the fly (for configuration
+     * extracts and file parsing routers) reuse ids, so the table and column names are part of the key.
+     */
+    static class TableCacheKey {
+        private String sourceNodeId;
+        private String targetNodeId;
+        private String routerId;
+        private int triggerHistoryId;
+        private String tableName;
+        private String columnNames;
+        private String pkColumnNames;
+        private boolean setTargetTableName;
+        private boolean useDatabaseDefinition;
+
+        public TableCacheKey(String sourceNodeId, String targetNodeId, String routerId, TriggerHistory triggerHistory,
+                boolean setTargetTableName, boolean useDatabaseDefinition) {
+            this.sourceNodeId = sourceNodeId;
+            this.targetNodeId = targetNodeId;
+            this.routerId = routerId;
+            this.triggerHistoryId = triggerHistory.getTriggerHistoryId();
+            this.tableName = triggerHistory.getFullyQualifiedSourceTableName();
+            this.columnNames = triggerHistory.getColumnNames();
+            this.pkColumnNames = triggerHistory.getPkColumnNames();
+            this.setTargetTableName = setTargetTableName;
+            this.useDatabaseDefinition = useDatabaseDefinition;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((sourceNodeId == null) ? 0 : sourceNodeId.hashCode());
+            result = prime * result + ((targetNodeId == null) ? 0 : targetNodeId.hashCode());
+            result = prime * result + ((routerId == null) ? 0 : routerId.hashCode());
+            result = prime * result + triggerHistoryId;
+            result = prime * result + ((tableName == null) ? 0 : tableName.hashCode());
+            result = prime * result + ((columnNames == null) ? 0 : columnNames.hashCode());
+            result = prime * result + ((pkColumnNames == null) ? 0 : pkColumnNames.hashCode());
+            result = prime * result + (setTargetTableName ? 1231 : 1237);
+            result = prime * result + (useDatabaseDefinition ? 1231 : 1237);
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            TableCacheKey other = (TableCacheKey) obj;
+            return triggerHistoryId == other.triggerHistoryId && setTargetTableName == other.setTargetTableName
+                    && useDatabaseDefinition == other.useDatabaseDefinition
+                    && StringUtils.equals(sourceNodeId, other.sourceNodeId)
+                    && StringUtils.equals(targetNodeId, other.targetNodeId)
+                    && StringUtils.equals(routerId, other.routerId) && StringUtils.equals(tableName, other.tableName)
+                    && StringUtils.equals(columnNames, other.columnNames)
+                    && StringUtils.equals(pkColumnNames, other.pkColumnNames);
+        }
+    }
+
+    /**
+     * Clears the cached tables for a source table when its trigger history changes, which usually means the table
+     * definition changed too.
+     */
+    class TableCacheInvalidator extends TriggerCreationAdapter {
+        @Override
+        public void triggerCreated(Trigger trigger, TriggerHistory history) {
+            tableCache.invalidate(history.getFullyQualifiedSourceTableName());
+        }
+
+        @Override
+        public void triggerInactivated(Trigger trigger, TriggerHistory oldHistory) {
+            tableCache.invalidate(oldHistory.getFullyQualifiedSourceTableName());
+        }
+    }
+
+    static class CachedTable {
+        Table table;
+        Date routerLastUpdateTime;
+
+        CachedTable(Table table, Date routerLastUpdateTime) {
+            this.table = table;
+            this.routerLastUpdateTime = routerLastUpdateTime;
+        }
+    }
+
+    /**
+     * Tables computed from trigger histories, shared by all extract threads.  The least recently used entries are
+     * evicted once the cache is full, and an entry is discarded when the router it was computed for has been
+     * updated since.
+     */
+    @SuppressWarnings("serial")
+    static class TableCache extends LinkedHashMap<TableCacheKey, CachedTable> {
+
+        int maxSize;
+
+        long hits;
+
+        long misses;
+
+        TableCache() {
+            super(16, 0.75f, true);
+        }
+
+        synchronized Table get(TableCacheKey key, Date routerLastUpdateTime) {
+            CachedTable cached = super.get(key);
+            if (cached != null && !ObjectUtils.equals(cached.routerLastUpdateTime, routerLastUpdateTime)) {
+                remove(key);
+                cached = null;
+            }
+            if (cached != null) {
+                hits++;
+                return cached.table;
+            } else {
+                misses++;
+                return null;
+            }
+        }
+
+        synchronized void put(TableCacheKey key, Table table, Date routerLastUpdateTime, int maxSize) {
+            this.maxSize = maxSize;
+            super.put(key, new CachedTable(table, routerLastUpdateTime));
+        }
+
+        synchronized void invalidate(String tableName) {
+            Iterator<TableCacheKey> keys = keySet().iterator();
+            while (keys.hasNext()) {
+                if (StringUtils.equals(keys.next().tableName, tableName)) {
+                    keys.remove();
+                }
+            }
+        }
+
+        synchronized long getHits() {
+            return hits;
+        }
+
+        synchronized long getMisses() {
+            return misses;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TableCacheKey, CachedTable> eldest) {
+            return size() > maxSize;
+        }
+    }
     
     class SelectFromSymDataSource implements IExtractDataReaderSource {
 
@@ -2159,6 +2795,36 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         
         private ColumnsAccordingToTriggerHistory columnsAccordingToTriggerHistory;
 
+        private StagingDataWriter stagingWriter;
+
+        private int checkpointInterval;
+
+        private long startAfterDataId = -1;
+
+        private long lastDataId = -1;
+
+        private long rowsSinceCheckpoint;
+
+        public SelectFromSymDataSource(OutgoingBatch outgoingBatch, 
+                Node sourceNode, Node targetNode, ProcessInfo processInfo, StagingDataWriter stagingWriter) {
+            this(outgoingBatch, sourceNode, targetNode, processInfo);
+            if (stagingWriter != null) {
+                this.stagingWriter = stagingWriter;
+                this.checkpointInterval = parameterService.getInt(ParameterConstants.EXTRACT_DATA_PAGE_SIZE);
+                String marker = stagingWriter.resume(batch);
+                if (marker != null) {
+                    String[] values = marker.split(",");
+                    this.startAfterDataId = Long.parseLong(values[0]);
+                    this.lastDataId = startAfterDataId;
+                    this.outgoingBatch.setExtractRowCount(Long.parseLong(values[1]));
+                    this.outgoingBatch.setExtractInsertRowCount(Long.parseLong(values[2]));
+                    this.outgoingBatch.setExtractUpdateRowCount(Long.parseLong(values[3]));
+                    this.outgoingBatch.setExtractDeleteRowCount(Long.parseLong(values[4]));
+                    log.info("Resuming the extraction of batch {} after data id {}", outgoingBatch.getNodeBatchId(), startAfterDataId);
+                }
+            }
+        }
+
         public SelectFromSymDataSource(OutgoingBatch outgoingBatch, 
                 Node sourceNode, Node targetNode, ProcessInfo processInfo) {
             this.processInfo = processInfo;
@@ -2185,7 +2851,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
 
         public CsvData next() {
             if (this.cursor == null) {
-                this.cursor = dataService.selectDataFor(batch);
+                this.cursor = dataService.selectDataFor(batch, startAfterDataId);
             }
 
             Data data = null;
@@ -2198,6 +2864,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     reloadSource = null;
                 } else {
                     this.requiresLobSelectedFromSource = this.reloadSource.requiresLobsSelectedFromSource(data);
+                    rowsSinceCheckpoint++;
                 }
                 lastTriggerHistory = null;
             }
@@ -2205,6 +2872,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             if (data == null) {
                 data = this.cursor.next();
                 if (data != null) {
+                    checkpointIfNeeded(data);
                     String routerId = data.getAttribute(CsvData.ATTRIBUTE_ROUTER_ID);
 
                     if (data.getDataEventType() == DataEventType.RELOAD) {
@@ -2311,7 +2979,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                                     sourceTable.getSchema(), sourceTable.getName(), true);
                             
                             this.targetTable = columnsAccordingToTriggerHistory.lookup(
-                                    routerId, triggerHistory, true, true);
+                                    routerId, triggerHistory, true, true, true);
                             Table copyTargetTable = this.targetTable.copy();
                             
                             Database db = new Database();
@@ -2368,6 +3036,25 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             return data;
         }
 
+        /**
+         * Everything for the data ids before this one has been written by the
+         * time it is read, so that is where a checkpoint is taken.
+         */
+        protected void checkpointIfNeeded(Data data) {
+            if (stagingWriter != null) {
+                if (data.getDataId() != lastDataId) {
+                    if (lastDataId >= 0 && rowsSinceCheckpoint >= checkpointInterval) {
+                        stagingWriter.checkpoint(batch, String.format("%d,%d,%d,%d,%d", lastDataId,
+                                outgoingBatch.getExtractRowCount(), outgoingBatch.getExtractInsertRowCount(),
+                                outgoingBatch.getExtractUpdateRowCount(), outgoingBatch.getExtractDeleteRowCount()));
+                        rowsSinceCheckpoint = 0;
+                    }
+                    lastDataId = data.getDataId();
+                }
+                rowsSinceCheckpoint++;
+            }
+        }
+
         public boolean requiresLobsSelectedFromSource(CsvData data) {
             return requiresLobSelectedFromSource;
         }
@@ -2666,6 +3353,14 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
     }
 
+    public long getTableCacheHits() {
+        return tableCache.getHits();
+    }
+
+    public long getTableCacheMisses() {
+        return tableCache.getMisses();
+    }
+
     class SelectFromTableEvent {
 
         private TriggerRouter triggerRouter;
@@ -2718,9 +3413,61 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     }
 
     class FutureExtractStatus {
-        boolean shouldExtractSkip;
+        volatile boolean shouldExtractSkip;
         int batchExtractCount;
-        int byteExtractCount;
+        long byteExtractCount;
+    }
+
+    /**
+     * Writes batches in the binary form of the protocol. Nodes of version 3.9
+     * or newer are sent the statistics of each batch, as they are when batches
+     * are sent from staging in the csv form.
+     */
+    class BinaryExtractDataWriter extends BinaryProtocolDataWriter {
+        Map<Long, OutgoingBatch> outgoingBatches = new HashMap<Long, OutgoingBatch>();
+        boolean batchStatsEnabled;
+        long batchStartTime;
+
+        public BinaryExtractDataWriter(Node targetNode, OutputStream out) {
+            super(nodeService.findIdentityNodeId(), out);
+            this.batchStatsEnabled = targetNode.isVersionGreaterThanOrEqualTo(3, 9, 0);
+        }
+
+        public void setOutgoingBatches(List<OutgoingBatch> batches) {
+            for (OutgoingBatch batch : batches) {
+                putOutgoingBatch(batch);
+            }
+        }
+
+        public void putOutgoingBatch(OutgoingBatch batch) {
+            outgoingBatches.put(batch.getBatchId(), batch);
+        }
+
+        @Override
+        public void start(Batch batch) {
+            batchStartTime = System.currentTimeMillis();
+            super.start(batch);
+        }
+
+        @Override
+        protected void printStats(Batch batch) {
+            OutgoingBatch outgoingBatch = outgoingBatches.get(batch.getBatchId());
+            if (batchStatsEnabled && outgoingBatch != null) {
+                /* the counts come from the rows that were written for the batch */
+                Statistics stats = statistics.get(batch);
+                if (stats.get(DataWriterStatisticConstants.ROWCOUNT) > 0) {
+                    outgoingBatch.setDataRowCount(stats.get(DataWriterStatisticConstants.ROWCOUNT));
+                    outgoingBatch.setDataInsertRowCount(stats.get(DataWriterStatisticConstants.INSERTCOUNT));
+                    outgoingBatch.setDataUpdateRowCount(stats.get(DataWriterStatisticConstants.UPDATECOUNT));
+                    outgoingBatch.setDataDeleteRowCount(stats.get(DataWriterStatisticConstants.DELETECOUNT));
+                }
+                if (outgoingBatch.getExtractMillis() == 0) {
+                    outgoingBatch.setExtractMillis(System.currentTimeMillis() - batchStartTime);
+                }
+                writeLine(StringUtils.split(getBatchStatsColumns(), ','));
+                writeLine(StringUtils.split(getBatchStats(outgoingBatch), ','));
+            }
+        }
     }
 
     class FutureOutgoingBatch {
@@ -74,7 +74,9 @@ import org.jumpmind.symmetric.io.data.Batch.BatchType;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.DataProcessor;
+import org.jumpmind.symmetric.io.data.IDataReader;
 import org.jumpmind.symmetric.io.data.IDataWriter;
+import org.jumpmind.symmetric.io.data.reader.BinaryProtocolDataReader;
 import org.jumpmind.symmetric.io.data.reader.DataReaderStatistics;
 import org.jumpmind.symmetric.io.data.reader.ProtocolDataReader;
 import org.jumpmind.symmetric.io.data.transform.TransformPoint;
@@ -92,6 +94,7 @@ import org.jumpmind.symmetric.io.data.writer.TransformWriter;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.symmetric.io.stage.IStagedResource.State;
 import org.jumpmind.symmetric.io.stage.IStagingManager;
+import org.jumpmind.symmetric.io.stage.SimpleBinaryStagingDataWriter;
 import org.jumpmind.symmetric.io.stage.SimpleStagingDataWriter;
 import org.jumpmind.symmetric.load.ConfigurationChangedDatabaseWriterFilter;
 import org.jumpmind.symmetric.load.DefaultDataLoaderFactory;
@@ -131,6 +134,8 @@ import org.jumpmind.symmetric.transport.IIncomingTransport;
 import org.jumpmind.symmetric.transport.ITransportManager;
 import org.jumpmind.symmetric.transport.ServiceUnavailableException;
 import org.jumpmind.symmetric.transport.SyncDisabledException;
+import org.jumpmind.symmetric.transport.TransportUtils;
+import org.jumpmind.symmetric.transport.http.HttpIncomingTransport;
 import org.jumpmind.symmetric.transport.internal.InternalIncomingTransport;
 import org.jumpmind.symmetric.web.WebConstants;
 import org.jumpmind.util.CustomizableThreadFactory;
@@ -273,6 +278,9 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                 requestProperties.put(WebConstants.IGNORED_CHANNELS,
                         suspendIgnoreChannels.getIgnoreChannelsAsString());
                 requestProperties.put(WebConstants.CHANNEL_QUEUE, status.getQueue());
+                if (parameterService.is(ParameterConstants.TRANSPORT_HTTP_BINARY_PROTOCOL_ENABLED)) {
+                    requestProperties.put(WebConstants.HEADER_ACCEPT_PROTOCOL, WebConstants.PROTOCOL_BINARY);
+                }
                 transport = transportManager.getPullTransport(remote, local,
                         localSecurity.getNodePassword(), requestProperties,
                         parameterService.getRegistrationUrl());
@@ -554,6 +562,23 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
             String targetNodeId = nodeService.findIdentityNodeId();
             
             boolean streamToFile = parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED);
+
+            BufferedReader reader = null;
+            InputStream binaryStream = null;
+            if (parameterService.is(ParameterConstants.TRANSPORT_HTTP_BINARY_PROTOCOL_ENABLED)
+                    && transport instanceof HttpIncomingTransport) {
+                /* the response to a pull says which form its batches are in */
+                InputStream is = transport.openStream();
+                Map<String, String> headers = transport.getHeaders();
+                if (headers != null && WebConstants.PROTOCOL_BINARY.equals(headers.get(WebConstants.HEADER_PROTOCOL))) {
+                    binaryStream = is;
+                } else {
+                    reader = TransportUtils.toReader(is);
+                }
+            } else {
+                reader = transport.openReader();
+            }
+
             if (streamToFile) {
                 transferInfo.setStatus(ProcessStatus.TRANSFERRING);
                 
@@ -567,8 +592,13 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                         sourceNode.getNodeId(), listener, executor);
                 
                 try {
-                    new SimpleStagingDataWriter(transferInfo, transport.openReader(), stagingManager, Constants.STAGING_CATEGORY_INCOMING, 
-                            memoryThresholdInBytes, BatchType.LOAD, targetNodeId, ctx, loadListener).process();
+                    if (binaryStream != null) {
+                        new SimpleBinaryStagingDataWriter(transferInfo, binaryStream, stagingManager,
+                                Constants.STAGING_CATEGORY_INCOMING, BatchType.LOAD, targetNodeId, ctx, loadListener).process();
+                    } else {
+                        new SimpleStagingDataWriter(transferInfo, reader, stagingManager, Constants.STAGING_CATEGORY_INCOMING, 
+                                memoryThresholdInBytes, BatchType.LOAD, targetNodeId, ctx, loadListener).process();
+                    }
                 } finally {
                     /* Previously submitted tasks will still be executed */
                     executor.shutdown();
@@ -596,8 +626,10 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                 ProcessInfo loadInfo = statisticManager.newProcessInfo(new ProcessInfoKey(sourceNode.getNodeId()
                         , transferInfo.getQueue(), nodeService.findIdentityNodeId(), PULL_JOB_LOAD));
                 try {
-                    DataProcessor processor = new DataProcessor(new ProtocolDataReader(BatchType.LOAD,
-                            targetNodeId, transport.openReader(), streamToFile), null, listener, "data load") {
+                    IDataReader dataReader = binaryStream != null ? new BinaryProtocolDataReader(BatchType.LOAD,
+                            targetNodeId, binaryStream) : new ProtocolDataReader(BatchType.LOAD, targetNodeId, reader,
+                            streamToFile);
+                    DataProcessor processor = new DataProcessor(dataReader, null, listener, "data load") {
                         @Override
                         protected IDataWriter chooseDataWriter(Batch batch) {
                             return buildDataWriter(loadInfo, sourceNode.getNodeId(),
@@ -990,25 +1022,43 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         }
 
         protected ProtocolDataReader buildDataReader(final Batch batchInStaging, final IStagedResource resource) {
+            if (BinaryProtocolDataReader.isBinary(resource)) {
+                return new BinaryProtocolDataReader(BatchType.LOAD, batchInStaging.getTargetNodeId(), resource) {
+                    @Override
+                    public Table nextTable() {
+                        return countTable(super.nextTable());
+                    }
+
+                    public Batch nextBatch() {
+                        return setStagedStatistics(super.nextBatch(), batchInStaging);
+                    }
+                };
+            }
             return new ProtocolDataReader(BatchType.LOAD, batchInStaging.getTargetNodeId(), resource) {
                 @Override
                 public Table nextTable() {
-                    Table table = super.nextTable();
-                    if (table != null && listener.currentBatch != null) {
-                        listener.currentBatch.incrementTableCount(table.getNameLowerCase());
-                    }
-                    return table;
+                    return countTable(super.nextTable());
                 }        
                 
                 public Batch nextBatch() {
-                    Batch nextBatch = super.nextBatch();
-                    if (nextBatch != null) {
-                        nextBatch.setStatistics(batchInStaging.getStatistics());
-                    }
-                    return nextBatch;
+                    return setStagedStatistics(super.nextBatch(), batchInStaging);
                 }
             };
         }
+
+        protected Table countTable(Table table) {
+            if (table != null && listener.currentBatch != null) {
+                listener.currentBatch.incrementTableCount(table.getNameLowerCase());
+            }
+            return table;
+        }
+
+        protected Batch setStagedStatistics(Batch nextBatch, Batch batchInStaging) {
+            if (nextBatch != null) {
+                nextBatch.setStatistics(batchInStaging.getStatistics());
+            }
+            return nextBatch;
+        }
         
         public void end(final DataContext ctx, final Batch batchInStaging, final IStagedResource resource) {
             final long networkMillis = System.currentTimeMillis() - batchStartsToArriveTimeInMs;
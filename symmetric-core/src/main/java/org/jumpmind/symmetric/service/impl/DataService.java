@@ -22,6 +22,8 @@ package org.jumpmind.symmetric.service.impl;
 
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.DataTruncation;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -30,6 +32,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -61,6 +64,7 @@ import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.common.Constants;
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.common.TableConstants;
+import org.jumpmind.symmetric.db.IDataEventWriter;
 import org.jumpmind.symmetric.db.SequenceIdentifier;
 import org.jumpmind.symmetric.ext.IHeartbeatListener;
 import org.jumpmind.symmetric.io.data.Batch;
@@ -963,29 +967,29 @@ public class DataService extends AbstractService implements IDataService {
                             long rowCount = getDataCountForReload(table, targetNode, selectSql);
                             long transformMultiplier = getTransformMultiplier(table, triggerRouter);
 
-                            // calculate the number of batches needed for table.
-                            long numberOfBatches = 1;
-                            long lastBatchSize = channel.getMaxBatchSize();
-
-                            if (rowCount > 0) {
-                                numberOfBatches = (rowCount * transformMultiplier / channel.getMaxBatchSize()) + 1;
-                                lastBatchSize = rowCount % numberOfBatches;
+                            Map<String, Long> rangeSelects = null;
+                            int partitionCount = parameterService.getInt(ParameterConstants.INITIAL_LOAD_EXTRACT_PARTITION_COUNT, 1);
+                            if (partitionCount > 1 && rowCount > channel.getMaxBatchSize()) {
+                                rangeSelects = getPrimaryKeyRangesForReload(table, targetNode, selectSql, rowCount, partitionCount);
                             }
 
-                            long startBatchId = -1;
-                            long endBatchId = -1;
-                            for (int i = 0; i < numberOfBatches; i++) {
-                                long batchSize = i == numberOfBatches - 1 ? lastBatchSize : channel.getMaxBatchSize();
-                                // needs to grab the start and end batch id
-                                endBatchId = insertReloadEvent(transaction, targetNode, triggerRouter, triggerHistory, selectSql, true,
-                                        loadId, createBy, Status.RQ, null, batchSize);
-                                if (startBatchId == -1) {
-                                    startBatchId = endBatchId;
+                            if (rangeSelects != null && rangeSelects.size() > 1) {
+                                /*
+                                 * Each primary key range gets its own batches
+                                 * and extract request so the initial load
+                                 * extract job can select the ranges at the
+                                 * same time
+                                 */
+                                log.info("Splitting the load of table {} for node {} into {} primary key ranges",
+                                        new Object[] { table.getName(), targetNode.getNodeId(), rangeSelects.size() });
+                                for (Map.Entry<String, Long> rangeSelect : rangeSelects.entrySet()) {
+                                    insertReloadBatchesForExtract(transaction, targetNode, triggerRouter, triggerHistory, channel,
+                                            rangeSelect.getKey(), rangeSelect.getValue(), transformMultiplier, loadId, createBy);
                                 }
+                            } else {
+                                insertReloadBatchesForExtract(transaction, targetNode, triggerRouter, triggerHistory, channel,
+                                        selectSql, rowCount, transformMultiplier, loadId, createBy);
                             }
-
-                            engine.getDataExtractorService().requestExtractRequest(transaction, targetNode.getNodeId(), channel.getQueue(),
-                                    triggerRouter, startBatchId, endBatchId);
                         } else {
                             log.warn("The table defined by trigger_hist row %d no longer exists.  A load will not be queue'd up for the table", triggerHistory.getTriggerHistoryId());
                             
@@ -1004,6 +1008,134 @@ public class DataService extends AbstractService implements IDataService {
         }
     }
     
+    protected void insertReloadBatchesForExtract(ISqlTransaction transaction, Node targetNode, TriggerRouter triggerRouter,
+            TriggerHistory triggerHistory, Channel channel, String selectSql, long rowCount, long transformMultiplier,
+            long loadId, String createBy) {
+        // calculate the number of batches needed for table.
+        long numberOfBatches = 1;
+        long lastBatchSize = channel.getMaxBatchSize();
+
+        if (rowCount > 0) {
+            numberOfBatches = (rowCount * transformMultiplier / channel.getMaxBatchSize()) + 1;
+            lastBatchSize = rowCount % numberOfBatches;
+        }
+
+        long startBatchId = -1;
+        long endBatchId = -1;
+        for (int i = 0; i < numberOfBatches; i++) {
+            long batchSize = i == numberOfBatches - 1 ? lastBatchSize : channel.getMaxBatchSize();
+            // needs to grab the start and end batch id
+            endBatchId = insertReloadEvent(transaction, targetNode, triggerRouter, triggerHistory, selectSql, true,
+                    loadId, createBy, Status.RQ, null, batchSize);
+            if (startBatchId == -1) {
+                startBatchId = endBatchId;
+            }
+        }
+
+        engine.getDataExtractorService().requestExtractRequest(transaction, targetNode.getNodeId(), channel.getQueue(),
+                triggerRouter, startBatchId, endBatchId);
+    }
+
+    /**
+     * Split the rows selected for reload into ranges of the primary key by
+     * dividing the span between the smallest and largest key value evenly.
+     * Only the min and max of the key are selected, so the database can answer
+     * from the primary key index without reading the rows. The ranges are
+     * even by key value, not by row count, so a sparse or skewed key can put
+     * most of the rows in one range. The number of rows in each range is an
+     * estimate that assumes the keys are spread evenly.
+     * 
+     * @return the select for each range mapped to the estimated number of rows
+     *         in it, or null if the table does not have a single integer
+     *         primary key column
+     */
+    protected Map<String, Long> getPrimaryKeyRangesForReload(Table table, Node targetNode, String selectSql,
+            long rowCount, int partitionCount) {
+        Column[] pkColumns = table.getPrimaryKeyColumns();
+        if (pkColumns == null || pkColumns.length != 1 || !isIntegerType(pkColumns[0])) {
+            return null;
+        }
+
+        Column pkColumn = pkColumns[0];
+        DatabaseInfo dbInfo = platform.getDatabaseInfo();
+        String quote = dbInfo.getDelimiterToken();
+        String columnName = "t." + quote + pkColumn.getName() + quote;
+        String sql = String.format("select min(%s) as min_value, max(%s) as max_value from %s t where %s", columnName,
+                columnName, table.getQualifiedTableName(quote, dbInfo.getCatalogSeparator(), dbInfo.getSchemaSeparator()),
+                selectSql);
+        sql = replaceReloadVariables(sql, targetNode, table);
+
+        BigDecimal minValue = null;
+        BigDecimal maxValue = null;
+        try {
+            Row row = sqlTemplate.queryForRow(sql);
+            if (row != null && row.getString("min_value", false) != null && row.getString("max_value", false) != null) {
+                minValue = new BigDecimal(row.getString("min_value", false));
+                maxValue = new BigDecimal(row.getString("max_value", false));
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Failed to find primary key ranges for table {}.  The table will be loaded with a single select: {}",
+                    table.getName(), ex.getMessage());
+            return null;
+        }
+
+        if (minValue == null || maxValue == null
+                || maxValue.subtract(minValue).compareTo(BigDecimal.valueOf(partitionCount)) < 0) {
+            return null;
+        }
+
+        BigDecimal rangeWidth = maxValue.subtract(minValue).add(BigDecimal.ONE)
+                .divide(BigDecimal.valueOf(partitionCount), 0, RoundingMode.CEILING);
+        long rowsPerRange = rowCount / partitionCount;
+        Map<String, Long> rangeSelects = new LinkedHashMap<String, Long>();
+        String lowerBound = null;
+        for (int i = 1; i < partitionCount; i++) {
+            String upperBound = minValue.add(rangeWidth.multiply(BigDecimal.valueOf(i))).subtract(BigDecimal.ONE)
+                    .toPlainString();
+            rangeSelects.put(getRangeSelectForReload(selectSql, columnName, lowerBound, upperBound), rowsPerRange);
+            lowerBound = upperBound;
+        }
+        rangeSelects.put(getRangeSelectForReload(selectSql, columnName, lowerBound, null),
+                rowCount - rowsPerRange * (partitionCount - 1));
+        return rangeSelects;
+    }
+
+    protected boolean isIntegerType(Column column) {
+        switch (column.getMappedTypeCode()) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return true;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return column.getScale() == 0;
+            default:
+                return false;
+        }
+    }
+
+    protected String getRangeSelectForReload(String selectSql, String columnName, String lowerBound, String upperBound) {
+        StringBuilder sql = new StringBuilder("(").append(selectSql).append(")");
+        if (lowerBound != null) {
+            sql.append(" and ").append(columnName).append(" > ").append(lowerBound);
+        }
+        if (upperBound != null) {
+            sql.append(" and ").append(columnName).append(" <= ").append(upperBound);
+        }
+        return sql.toString();
+    }
+
+    protected String replaceReloadVariables(String sql, Node targetNode, Table table) {
+        sql = FormatUtils.replace("groupId", targetNode.getNodeGroupId(), sql);
+        sql = FormatUtils.replace("externalId", targetNode.getExternalId(), sql);
+        sql = FormatUtils.replace("nodeId", targetNode.getNodeId(), sql);
+        for (IReloadVariableFilter filter : extensionService.getExtensionPointList(IReloadVariableFilter.class)) {
+            sql = filter.filterPurgeSql(sql, targetNode, table);
+        }
+        return sql;
+    }
+
     protected long getDataCountForReload(Table table, Node targetNode, String selectSql) {
         long rowCount = -1;
         if (parameterService.is(ParameterConstants.INITIAL_LOAD_USE_ESTIMATED_COUNTS) &&
@@ -1019,12 +1151,7 @@ public class DataService extends AbstractService implements IDataService {
                                               
             String sql = String.format("select count(*) from %s t where %s", table
                     .getQualifiedTableName(quote, catalogSeparator, schemaSeparator), selectSql);
-            sql = FormatUtils.replace("groupId", targetNode.getNodeGroupId(), sql);
-            sql = FormatUtils.replace("externalId", targetNode.getExternalId(), sql);
-            sql = FormatUtils.replace("nodeId", targetNode.getNodeId(), sql);
-            for (IReloadVariableFilter filter : extensionService.getExtensionPointList(IReloadVariableFilter.class)) {
-                sql = filter.filterPurgeSql(sql, targetNode, table);
-            }
+            sql = replaceReloadVariables(sql, targetNode, table);
             
             try {            
                 rowCount = sqlTemplate.queryForLong(sql);
@@ -1436,7 +1563,13 @@ public class DataService extends AbstractService implements IDataService {
     }
 
     public void insertDataEvents(ISqlTransaction transaction, final List<DataEvent> events) {
-        if (events.size() > 0) {
+        IDataEventWriter dataEventWriter = null;
+        if (events.size() > 0 && parameterService.is(ParameterConstants.ROUTING_DATA_EVENT_BULK_INSERT_ENABLED)) {
+            dataEventWriter = symmetricDialect.getDataEventWriter();
+        }
+        if (dataEventWriter != null) {
+            dataEventWriter.insertDataEvents(transaction, events);
+        } else if (events.size() > 0) {
             transaction.prepare(getSql("insertIntoDataEventSql"));
             for (DataEvent dataEvent : events) {
                 String routerId = dataEvent.getRouterId();
@@ -2324,10 +2457,24 @@ public class DataService extends AbstractService implements IDataService {
     }
 
     public ISqlReadCursor<Data> selectDataFor(Batch batch) {
-        return sqlTemplateDirty.queryForCursor(
-                getDataSelectSql(batch.getBatchId(), -1l, batch.getChannelId()), dataMapper,
-                new Object[] { batch.getBatchId(), batch.getTargetNodeId() },
-                new int[] { symmetricDialect.getSqlTypeForIds(), Types.VARCHAR });
+        return selectDataFor(batch, -1l);
+    }
+
+    public ISqlReadCursor<Data> selectDataFor(Batch batch, long startAfterDataId) {
+        int pageSize = parameterService.getInt(ParameterConstants.EXTRACT_DATA_PAGE_SIZE);
+        if (pageSize > 0 && isDataOrderedByDataId()) {
+            return new DataPageCursor(batch, startAfterDataId, pageSize);
+        } else if (startAfterDataId >= 0) {
+            return sqlTemplateDirty.queryForCursor(
+                    getDataSelectSql(batch.getBatchId(), startAfterDataId, batch.getChannelId()), dataMapper,
+                    new Object[] { batch.getBatchId(), batch.getTargetNodeId(), startAfterDataId + 1 },
+                    new int[] { symmetricDialect.getSqlTypeForIds(), Types.VARCHAR, symmetricDialect.getSqlTypeForIds() });
+        } else {
+            return sqlTemplateDirty.queryForCursor(
+                    getDataSelectSql(batch.getBatchId(), -1l, batch.getChannelId()), dataMapper,
+                    new Object[] { batch.getBatchId(), batch.getTargetNodeId() },
+                    new int[] { symmetricDialect.getSqlTypeForIds(), Types.VARCHAR });
+        }
     }
 
     public ISqlReadCursor<Data> selectDataFor(Long batchId, String channelId) {
@@ -2344,9 +2491,7 @@ public class DataService extends AbstractService implements IDataService {
 
     protected String getDataSelectSql(long batchId, long startDataId, String channelId) {
         String startAtDataIdSql = startDataId >= 0l ? " and d.data_id >= ? " : "";
-        return symmetricDialect.massageDataExtractionSql(
-                getSql("selectEventDataToExtractSql", startAtDataIdSql, getDataOrderBy()),
-                engine.getConfigurationService().getNodeChannel(channelId, false).getChannel());
+        return getDataSelectSql(startAtDataIdSql, getDataOrderBy(), channelId);
     }
 
     protected String getDataOrderBy() {
@@ -2359,6 +2504,11 @@ public class DataService extends AbstractService implements IDataService {
         return orderBy;
     }
 
+    public boolean isDataOrderedByDataId() {
+        return !parameterService.is(ParameterConstants.DBDIALECT_ORACLE_SEQUENCE_NOORDER, false)
+                && parameterService.is(ParameterConstants.ROUTING_DATA_READER_ORDER_BY_DATA_ID_ENABLED, true);
+    }
+
     public long findMaxDataId() {
         return sqlTemplateDirty.queryForLong(getSql("selectMaxDataIdSql"));
     }
@@ -2575,6 +2725,93 @@ public class DataService extends AbstractService implements IDataService {
         }
     }
     
+    /**
+     * Reads the data for a batch in pages of (data_id, router_id) order so that no single cursor stays open for the
+     * whole batch.  The database stops each page after the page size, and the next page starts after the last key
+     * that was read (the same data can be in a batch once per router).
+     */
+    class DataPageCursor implements ISqlReadCursor<Data> {
+
+        private Batch batch;
+
+        private int pageSize;
+
+        private ISqlReadCursor<Data> cursor;
+
+        private int pageCount;
+
+        private boolean lastPage;
+
+        private long startAfterDataId;
+
+        private long lastDataId = -1;
+
+        private String lastRouterId;
+
+        public DataPageCursor(Batch batch, long startAfterDataId, int pageSize) {
+            this.batch = batch;
+            this.pageSize = pageSize;
+            this.startAfterDataId = startAfterDataId;
+        }
+
+        public Data next() {
+            while (true) {
+                if (cursor == null) {
+                    if (lastPage) {
+                        return null;
+                    }
+                    cursor = openPage();
+                    pageCount = 0;
+                }
+
+                Data data = cursor.next();
+                if (data == null) {
+                    lastPage = pageCount < pageSize;
+                    close();
+                } else {
+                    lastDataId = data.getDataId();
+                    lastRouterId = data.getAttribute(CsvData.ATTRIBUTE_ROUTER_ID);
+                    pageCount++;
+                    return data;
+                }
+            }
+        }
+
+        protected ISqlReadCursor<Data> openPage() {
+            String orderBy = " order by d.data_id asc, e.router_id asc";
+            String channelId = batch.getChannelId();
+            int idType = symmetricDialect.getSqlTypeForIds();
+            if (lastRouterId != null) {
+                return sqlTemplateDirty.queryForCursor(getDataSelectSql(
+                        " and (d.data_id > ? or (d.data_id = ? and e.router_id > ?)) ", orderBy, channelId),
+                        pageSize, dataMapper,
+                        new Object[] { batch.getBatchId(), batch.getTargetNodeId(), lastDataId, lastDataId, lastRouterId },
+                        new int[] { idType, Types.VARCHAR, idType, idType, Types.VARCHAR });
+            } else if (startAfterDataId >= 0) {
+                return sqlTemplateDirty.queryForCursor(getDataSelectSql(" and d.data_id > ? ", orderBy, channelId),
+                        pageSize, dataMapper,
+                        new Object[] { batch.getBatchId(), batch.getTargetNodeId(), startAfterDataId },
+                        new int[] { idType, Types.VARCHAR, idType });
+            } else {
+                return sqlTemplateDirty.queryForCursor(getDataSelectSql("", orderBy, channelId), pageSize,
+                        dataMapper, new Object[] { batch.getBatchId(), batch.getTargetNodeId() },
+                        new int[] { idType, Types.VARCHAR });
+            }
+        }
+
+        public void close() {
+            if (cursor != null) {
+                cursor.close();
+                cursor = null;
+            }
+        }
+    }
+
+    protected String getDataSelectSql(String whereSql, String orderBy, String channelId) {
+        return symmetricDialect.massageDataExtractionSql(getSql("selectEventDataToExtractSql", whereSql, orderBy),
+                engine.getConfigurationService().getNodeChannel(channelId, false).getChannel());
+    }
+
     public class LastCaptureByChannelMapper implements ISqlRowMapper<String> {
         private Map<String, Date> captureMap;
         
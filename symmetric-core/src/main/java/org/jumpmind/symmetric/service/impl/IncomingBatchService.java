@@ -45,6 +45,7 @@ import org.jumpmind.symmetric.service.IClusterService;
 import org.jumpmind.symmetric.service.IIncomingBatchService;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.util.FormatUtils;
+import org.jumpmind.util.LongList;
 
 /**
  * @see IIncomingBatchService
@@ -431,8 +432,25 @@ public class IncomingBatchService extends AbstractService implements IIncomingBa
     }
 
     @Override
-    public List<BatchId> getAllBatches() {
-        return sqlTemplateDirty.query(getSql("getAllBatchesSql"), new BatchIdMapper());
+    public Map<String, LongList> getAllBatchIdsByNode() {
+        final Map<String, LongList> batchIdsByNode = new HashMap<String, LongList>();
+        sqlTemplateDirty.query(getSql("getAllBatchesSql"), new ISqlRowMapper<Object>() {
+            public Object mapRow(Row row) {
+                String nodeId = row.getString("node_id");
+                LongList batchIds = batchIdsByNode.get(nodeId);
+                if (batchIds == null) {
+                    batchIds = new LongList();
+                    batchIdsByNode.put(nodeId, batchIds);
+                }
+                batchIds.add(row.getLong("batch_id"));
+                return null;
+            }
+        });
+        for (LongList batchIds : batchIdsByNode.values()) {
+            batchIds.sort();
+            batchIds.trimToSize();
+        }
+        return batchIdsByNode;
     }
 
     class BatchIdMapper implements ISqlRowMapper<BatchId> {
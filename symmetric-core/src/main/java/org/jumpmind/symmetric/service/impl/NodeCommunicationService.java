@@ -190,6 +190,9 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
             case OFF_FSPULL:
                 nodesToCommunicateWith = getNodesToCommunicateWithOffline(CommunicationType.PULL);
                 break;
+            case PRE_XTRCT:
+                nodesToCommunicateWith = removeOfflineNodes(nodeService.findNodesWhoPullFromMe());
+                break;
             default:
                 nodesToCommunicateWith = new ArrayList<Node>(0);
                 break;
@@ -429,6 +432,9 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
             case EXTRACT:
                 threadCountParameter = ParameterConstants.INITIAL_LOAD_EXTRACT_THREAD_COUNT_PER_SERVER;                
                 break;
+            case PRE_XTRCT:
+                threadCountParameter = ParameterConstants.PRE_EXTRACT_THREAD_COUNT_PER_SERVER;
+                break;
             default:
                 break;
         }
@@ -493,6 +499,9 @@ public class NodeCommunicationService extends AbstractService implements INodeCo
             case EXTRACT:
                 parameter = ParameterConstants.INITIAL_LOAD_EXTRACT_TIMEOUT_MS;
                 break;
+            case PRE_XTRCT:
+                parameter = ParameterConstants.PRE_EXTRACT_LOCK_TIMEOUT_MS;
+                break;
             default:
                 break;
         }
@@ -41,7 +41,6 @@ import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.Row;
-import org.jumpmind.db.sql.mapper.LongMapper;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.symmetric.common.Constants;
 import org.jumpmind.symmetric.common.ParameterConstants;
@@ -68,6 +67,7 @@ import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.symmetric.service.ISequenceService;
 import org.jumpmind.util.AppUtils;
 import org.jumpmind.util.FormatUtils;
+import org.jumpmind.util.LongList;
 
 /**
  * @see IOutgoingBatchService
@@ -1018,8 +1018,17 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
     }
 
     @Override
-    public List<Long> getAllBatches() {
-        return sqlTemplateDirty.query(getSql("getAllBatchesSql"), new LongMapper());
+    public LongList getAllBatchIds() {
+        final LongList batchIds = new LongList();
+        sqlTemplateDirty.query(getSql("getAllBatchesSql"), new ISqlRowMapper<Object>() {
+            public Object mapRow(Row row) {
+                batchIds.add(row.getLong("batch_id"));
+                return null;
+            }
+        });
+        batchIds.sort();
+        batchIds.trimToSize();
+        return batchIds;
     }
 
     class OutgoingBatchSummaryMapper implements ISqlRowMapper<OutgoingBatchSummary> {
@@ -23,6 +23,7 @@ package org.jumpmind.symmetric.service.impl;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.jumpmind.symmetric.common.Constants.LOG_PROCESS_SUMMARY_THRESHOLD;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,9 +32,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -42,6 +50,7 @@ import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
 import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.SyntaxParsingException;
@@ -80,7 +89,10 @@ import org.jumpmind.symmetric.route.ConfigurationChangedDataRouter;
 import org.jumpmind.symmetric.route.DBFRouter;
 import org.jumpmind.symmetric.route.DataGapDetector;
 import org.jumpmind.symmetric.route.DataGapFastDetector;
+import org.jumpmind.symmetric.route.DataGapRangeDetector;
 import org.jumpmind.symmetric.route.DataGapRouteReader;
+import org.jumpmind.symmetric.route.DataRoutingPipeline;
+import org.jumpmind.symmetric.route.DataRoutingWindow;
 import org.jumpmind.symmetric.route.DefaultBatchAlgorithm;
 import org.jumpmind.symmetric.route.DefaultDataRouter;
 import org.jumpmind.symmetric.route.DelayRoutingException;
@@ -88,8 +100,11 @@ import org.jumpmind.symmetric.route.FileSyncDataRouter;
 import org.jumpmind.symmetric.route.IBatchAlgorithm;
 import org.jumpmind.symmetric.route.IDataRouter;
 import org.jumpmind.symmetric.route.IDataToRouteReader;
+import org.jumpmind.symmetric.route.IThreadSafeDataRouter;
+import org.jumpmind.symmetric.route.IWindowedDataRouter;
 import org.jumpmind.symmetric.route.LookupTableDataRouter;
 import org.jumpmind.symmetric.route.NonTransactionalBatchAlgorithm;
+import org.jumpmind.symmetric.route.RoutedData;
 import org.jumpmind.symmetric.route.SimpleRouterContext;
 import org.jumpmind.symmetric.route.SubSelectDataRouter;
 import org.jumpmind.symmetric.route.TPSRouter;
@@ -101,7 +116,9 @@ import org.jumpmind.symmetric.service.IExtensionService;
 import org.jumpmind.symmetric.service.INodeService;
 import org.jumpmind.symmetric.service.IRouterService;
 import org.jumpmind.symmetric.service.ITriggerRouterService;
+import org.jumpmind.symmetric.statistic.LatencyHistogram;
 import org.jumpmind.symmetric.statistic.StatisticConstants;
+import org.jumpmind.util.CustomizableThreadFactory;
 import org.jumpmind.util.FormatUtils;
 
 /**
@@ -111,22 +128,40 @@ public class RouterService extends AbstractService implements IRouterService {
     
     final int MAX_LOGGING_LENGTH = 512;
 
-    protected Map<String, Boolean> commonBatchesLastKnownState = new HashMap<String, Boolean>();
+    protected Map<String, Boolean> commonBatchesLastKnownState = new ConcurrentHashMap<String, Boolean>();
     
     protected long commonBatchesCacheTime;
 
-    protected Map<String, Boolean> defaultRouterOnlyLastKnownState = new HashMap<String, Boolean>();
+    protected Map<String, Boolean> defaultRouterOnlyLastKnownState = new ConcurrentHashMap<String, Boolean>();
     
     protected long defaultRoutersCacheTime;
 
     protected transient ExecutorService readThread = null;
 
+    /**
+     * Guards readThread, which channels that are routed in parallel start
+     * readers on. The service itself is locked for the whole routing run.
+     */
+    protected final Object readThreadLock = new Object();
+
+    protected transient ExecutorService channelRouterThreads = null;
+
+    protected transient ExecutorService routingWorkerThreads = null;
+
+    protected int channelRouterThreadCount;
+
     protected ISymmetricEngine engine;
     
     protected IExtensionService extensionService;
     
     protected DataGapDetector gapDetector;
 
+    /**
+     * Set once the full gap analysis flag has been saved during the current
+     * routing run.
+     */
+    protected final AtomicBoolean fullGapAnalysisSaved = new AtomicBoolean();
+
     protected boolean syncTriggersBeforeInitialLoadAttempted = false;
     
     protected boolean firstTimeCheck = true;
@@ -143,7 +178,7 @@ public class RouterService extends AbstractService implements IRouterService {
 
         extensionService.addExtensionPoint(ConfigurationChangedDataRouter.ROUTER_TYPE, new ConfigurationChangedDataRouter(engine));
         extensionService.addExtensionPoint("bsh", new BshDataRouter(engine));
-        extensionService.addExtensionPoint("subselect", new SubSelectDataRouter(symmetricDialect));
+        extensionService.addExtensionPoint("subselect", new SubSelectDataRouter(symmetricDialect, parameterService));
         extensionService.addExtensionPoint("lookuptable", new LookupTableDataRouter(symmetricDialect));
         extensionService.addExtensionPoint("default", new DefaultDataRouter());
         extensionService.addExtensionPoint("audit", new AuditTableDataRouter(engine));
@@ -174,11 +209,29 @@ public class RouterService extends AbstractService implements IRouterService {
     }
 
     public synchronized void stop() {
-        if (readThread != null) {
+        synchronized (readThreadLock) {
+            if (readThread != null) {
+                try {
+                    log.info("RouterService is shutting down");
+                    readThread.shutdown();
+                    readThread = null;
+                } catch (Exception ex) {
+                    log.error("", ex);
+                }
+            }
+        }
+        if (channelRouterThreads != null) {
+            try {
+                channelRouterThreads.shutdown();
+                channelRouterThreads = null;
+            } catch (Exception ex) {
+                log.error("", ex);
+            }
+        }
+        if (routingWorkerThreads != null) {
             try {
-                log.info("RouterService is shutting down");
-                readThread.shutdown();
-                readThread = null;
+                routingWorkerThreads.shutdown();
+                routingWorkerThreads = null;
             } catch (Exception ex) {
                 log.error("", ex);
             }
@@ -204,7 +257,11 @@ public class RouterService extends AbstractService implements IRouterService {
 
 
                     if (gapDetector == null) {
-                        if (parameterService.is(ParameterConstants.ROUTING_USE_FAST_GAP_DETECTOR)) {
+                        if (parameterService.is(ParameterConstants.ROUTING_USE_FAST_GAP_DETECTOR)
+                                && parameterService.is(ParameterConstants.ROUTING_USE_RANGE_GAP_DETECTOR)) {
+                            gapDetector = new DataGapRangeDetector(engine.getDataService(), parameterService, engine.getContextService(), 
+                                    symmetricDialect, this, engine.getStatisticManager(), engine.getNodeService());
+                        } else if (parameterService.is(ParameterConstants.ROUTING_USE_FAST_GAP_DETECTOR)) {
                             gapDetector = new DataGapFastDetector(engine.getDataService(), parameterService, engine.getContextService(), 
                                     symmetricDialect, this, engine.getStatisticManager(), engine.getNodeService());
                         } else {
@@ -480,10 +537,12 @@ public class RouterService extends AbstractService implements IRouterService {
     }
 
     /**
-     * We route data channel by channel for two reasons. One is that if/when we
-     * decide to multi-thread the routing it is a simple matter of inserting a
-     * thread pool here and waiting for all channels to be processed. The other
-     * reason is to reduce the number of connections we are required to have.
+     * We route data channel by channel for two reasons. One is that each
+     * channel can be routed independently, so when
+     * {@link ParameterConstants#ROUTING_THREAD_COUNT_PER_SERVER} is greater
+     * than one the channels are handed to a thread pool and we wait for all of
+     * them to be processed. The other reason is to reduce the number of
+     * connections we are required to have.
      */
     protected int routeDataForEachChannel() {
         int dataCount = 0;
@@ -497,11 +556,10 @@ public class RouterService extends AbstractService implements IRouterService {
             if (parameterService.is(ParameterConstants.ROUTING_QUERY_CHANNELS_FIRST)) {
                 readyChannels = getReadyChannels();
             }
+            List<NodeChannel> channelsToRoute = new ArrayList<NodeChannel>(channels.size());
             for (NodeChannel nodeChannel : channels) {
-                engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
                 if (nodeChannel.isEnabled() && (readyChannels == null || readyChannels.contains(nodeChannel.getChannelId()))) {
-                    processInfo.setCurrentChannelId(nodeChannel.getChannelId());
-                    dataCount += routeDataForChannel(processInfo, nodeChannel, sourceNode);
+                    channelsToRoute.add(nodeChannel);
                 } else if (!nodeChannel.isEnabled()) {
                     gapDetector.setIsAllDataRead(false);
                     if (log.isDebugEnabled()) {
@@ -509,6 +567,19 @@ public class RouterService extends AbstractService implements IRouterService {
                     }
                 }
             }
+
+            fullGapAnalysisSaved.set(false);
+
+            int threadCount = getNumberOfThreadsToUseForRouting();
+            if (threadCount > 1 && channelsToRoute.size() > 1) {
+                dataCount = routeDataForChannelsInParallel(channelsToRoute, sourceNode, threadCount);
+            } else {
+                for (NodeChannel nodeChannel : channelsToRoute) {
+                    engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
+                    processInfo.setCurrentChannelId(nodeChannel.getChannelId());
+                    dataCount += routeDataForChannel(processInfo, nodeChannel, sourceNode);
+                }
+            }
             processInfo.setStatus(ProcessInfo.ProcessStatus.OK);
         } catch (RuntimeException ex) {
             processInfo.setStatus(ProcessInfo.ProcessStatus.ERROR);
@@ -518,6 +589,91 @@ public class RouterService extends AbstractService implements IRouterService {
         return dataCount;
     }
 
+    /**
+     * Route each channel on its own thread. Every channel still gets its own
+     * {@link ChannelRouterContext}, reader and SQL transaction, so the only
+     * state that is shared between the threads is the gap detector, which
+     * merges the data ids that were routed by each channel.
+     */
+    protected int routeDataForChannelsInParallel(List<NodeChannel> channelsToRoute, final Node sourceNode, int threadCount) {
+        ExecutorService executor = getChannelRouterThreads(threadCount);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(channelsToRoute.size());
+        for (final NodeChannel nodeChannel : channelsToRoute) {
+            futures.add(executor.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    ProcessInfo channelProcessInfo = engine.getStatisticManager().newProcessInfo(
+                            new ProcessInfoKey(sourceNode.getNodeId(), nodeChannel.getChannelId(), null, ProcessType.ROUTER_JOB));
+                    channelProcessInfo.setStatus(ProcessInfo.ProcessStatus.PROCESSING);
+                    channelProcessInfo.setCurrentChannelId(nodeChannel.getChannelId());
+                    try {
+                        int dataCount = routeDataForChannel(channelProcessInfo, nodeChannel, sourceNode);
+                        channelProcessInfo.setStatus(ProcessInfo.ProcessStatus.OK);
+                        return dataCount;
+                    } catch (RuntimeException ex) {
+                        channelProcessInfo.setStatus(ProcessInfo.ProcessStatus.ERROR);
+                        throw ex;
+                    }
+                }
+            }));
+        }
+
+        int dataCount = 0;
+        try {
+            for (Future<Integer> future : futures) {
+                Integer channelDataCount = null;
+                while (channelDataCount == null) {
+                    try {
+                        channelDataCount = future.get(1, TimeUnit.SECONDS);
+                    } catch (TimeoutException ex) {
+                        engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
+                    }
+                }
+                dataCount += channelDataCount;
+            }
+        } catch (InterruptedException ex) {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+            throw new SymmetricException("The routing process was interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SymmetricException(cause != null ? cause : ex);
+        }
+        return dataCount;
+    }
+
+    protected synchronized ExecutorService getChannelRouterThreads(int threadCount) {
+        if (channelRouterThreads != null && channelRouterThreadCount != threadCount) {
+            channelRouterThreads.shutdown();
+            channelRouterThreads = null;
+        }
+        if (channelRouterThreads == null) {
+            channelRouterThreads = Executors.newFixedThreadPool(threadCount, 
+                    new CustomizableThreadFactory(parameterService.getEngineName().toLowerCase() + "-router-channel"));
+            channelRouterThreadCount = threadCount;
+        }
+        return channelRouterThreads;
+    }
+
+    protected synchronized ExecutorService getRoutingWorkerThreads() {
+        if (routingWorkerThreads == null) {
+            routingWorkerThreads = Executors.newCachedThreadPool(
+                    new CustomizableThreadFactory(parameterService.getEngineName().toLowerCase() + "-router-worker"));
+        }
+        return routingWorkerThreads;
+    }
+
+    protected int getNumberOfThreadsToUseForRouting() {
+        int numThreads = parameterService.getInt(ParameterConstants.ROUTING_THREAD_COUNT_PER_SERVER, 1);
+        if (numThreads < 1 || parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS, false)) {
+            numThreads = 1;
+        }
+        return numThreads;
+    }
+
     protected Set<String> getReadyChannels() {
         List<DataGap> dataGaps = gapDetector.getDataGaps();
         int dataIdSqlType = engine.getSymmetricDialect().getSqlTypeForIds();
@@ -745,9 +901,12 @@ public class RouterService extends AbstractService implements IRouterService {
             try {
                 if (dataCount > 0) {
                     long insertTs = System.currentTimeMillis();
+                    long flushTs = System.nanoTime();
                     engine.getDataService().insertDataEvents(context.getSqlTransaction(),
                             context.getDataEventList());
                     context.clearDataEventsList();
+                    engine.getStatisticManager().getRouterLatency(StatisticConstants.ROUTER_LATENCY_DATA_EVENT_INSERT,
+                            nodeChannel.getChannelId(), null).record(System.nanoTime() - flushTs);
                     completeBatchesAndCommit(context);
                     gapDetector.addDataIds(context.getDataIds());
                     gapDetector.setIsAllDataRead(context.getDataIds().size() < context.getChannel().getMaxDataToRoute());
@@ -793,29 +952,44 @@ public class RouterService extends AbstractService implements IRouterService {
         List<OutgoingBatch> batches = new ArrayList<OutgoingBatch>(context.getBatchesByNodes()
                 .values());
 
-        gapDetector.setFullGapAnalysis(context.getSqlTransaction(), true);
-
-        if (engine.getParameterService().is(ParameterConstants.ROUTING_LOG_STATS_ON_BATCH_ERROR)) {
-            engine.getStatisticManager().addRouterStats(context.getStartDataId(), context.getEndDataId(), 
-                    context.getDataReadCount(), context.getPeekAheadFillCount(),
-                    context.getDataGaps(), context.getTransactions(), batches);
+        /*
+         * Committed batches need a full gap analysis until the gap detector has
+         * seen their data ids.  Only the first channel to commit during the run
+         * saves the flag, in the same transaction as its batches.
+         */
+        boolean savedFullGapAnalysis = fullGapAnalysisSaved.compareAndSet(false, true);
+        if (savedFullGapAnalysis) {
+            gapDetector.setFullGapAnalysis(context.getSqlTransaction(), true);
         }
 
-        for (OutgoingBatch batch : batches) {
-            batch.setRouterMillis(System.currentTimeMillis() - batch.getCreateTime().getTime());
-            for (IDataRouter dataRouter : usedRouters) {
-                dataRouter.completeBatch(context, batch);
+        try {
+            if (engine.getParameterService().is(ParameterConstants.ROUTING_LOG_STATS_ON_BATCH_ERROR)) {
+                engine.getStatisticManager().addRouterStats(context.getStartDataId(), context.getEndDataId(), 
+                        context.getDataReadCount(), context.getPeekAheadFillCount(),
+                        context.getDataGaps(), context.getTransactions(), batches);
             }
-            if (Constants.UNROUTED_NODE_ID.equals(batch.getNodeId())) {
-                batch.setStatus(Status.OK);
-            } else {
-                batch.setStatus(Status.NE);
+
+            for (OutgoingBatch batch : batches) {
+                batch.setRouterMillis(System.currentTimeMillis() - batch.getCreateTime().getTime());
+                for (IDataRouter dataRouter : usedRouters) {
+                    dataRouter.completeBatch(context, batch);
+                }
+                if (Constants.UNROUTED_NODE_ID.equals(batch.getNodeId())) {
+                    batch.setStatus(Status.OK);
+                } else {
+                    batch.setStatus(Status.NE);
+                }
+                engine.getOutgoingBatchService().updateOutgoingBatch(context.getSqlTransaction(), batch);
+                context.getBatchesByNodes().remove(batch.getNodeId());
             }
-            engine.getOutgoingBatchService().updateOutgoingBatch(context.getSqlTransaction(), batch);
-            context.getBatchesByNodes().remove(batch.getNodeId());
+
+            context.commit();
+        } catch (RuntimeException ex) {
+            if (savedFullGapAnalysis) {
+                fullGapAnalysisSaved.set(false);
+            }
+            throw ex;
         }
-        
-        context.commit();
 
         for (IDataRouter dataRouter : usedRouters) {
             dataRouter.contextCommitted(context);
@@ -851,26 +1025,28 @@ public class RouterService extends AbstractService implements IRouterService {
 		if (parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS)) {
 			reader.run();
 		} else {
-			if (readThread == null) {
-				readThread = Executors.newCachedThreadPool(new ThreadFactory() {
-					final AtomicInteger threadNumber = new AtomicInteger(1);
-					final String namePrefix = parameterService.getEngineName()
-							.toLowerCase() + "-router-reader-";
-
-					public Thread newThread(Runnable r) {
-						Thread t = new Thread(r);
-						t.setName(namePrefix + threadNumber.getAndIncrement());
-						if (t.isDaemon()) {
-							t.setDaemon(false);
-						}
-						if (t.getPriority() != Thread.NORM_PRIORITY) {
-							t.setPriority(Thread.NORM_PRIORITY);
+			synchronized (readThreadLock) {
+				if (readThread == null) {
+					readThread = Executors.newCachedThreadPool(new ThreadFactory() {
+						final AtomicInteger threadNumber = new AtomicInteger(1);
+						final String namePrefix = parameterService.getEngineName()
+								.toLowerCase() + "-router-reader-";
+
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r);
+							t.setName(namePrefix + threadNumber.getAndIncrement());
+							if (t.isDaemon()) {
+								t.setDaemon(false);
+							}
+							if (t.getPriority() != Thread.NORM_PRIORITY) {
+								t.setPriority(Thread.NORM_PRIORITY);
+							}
+							return t;
 						}
-						return t;
-					}
-				});
+					});
+				}
+				readThread.execute(reader);
 			}
-			readThread.execute(reader);
 		}
 
 		return reader;
@@ -889,6 +1065,14 @@ public class RouterService extends AbstractService implements IRouterService {
      */
     protected int selectDataAndRoute(ProcessInfo processInfo, ChannelRouterContext context) throws InterruptedException {
         IDataToRouteReader reader = startReading(context);
+        DataRoutingWindow window = startWindow(reader, context);
+        if (window != null) {
+            reader = window;
+        }
+        DataRoutingPipeline pipeline = startPipeline(reader, context);
+        if (pipeline != null) {
+            reader = pipeline;
+        }
         Data data = null;
         Data nextData = null;
         int totalDataCount = 0;
@@ -897,6 +1081,11 @@ public class RouterService extends AbstractService implements IRouterService {
         int statsDataEventCount = 0;
         final int maxNumberOfEventsBeforeFlush = parameterService
                 .getInt(ParameterConstants.ROUTING_FLUSH_JDBC_BATCH_SIZE);
+        String channelId = context.getChannel().getChannelId();
+        LatencyHistogram dataReadLatency = engine.getStatisticManager().getRouterLatency(
+                StatisticConstants.ROUTER_LATENCY_DATA_READ, channelId, null);
+        LatencyHistogram dataEventInsertLatency = engine.getStatisticManager().getRouterLatency(
+                StatisticConstants.ROUTER_LATENCY_DATA_EVENT_INSERT, channelId, null);
         try {
             long ts = System.currentTimeMillis();
             long startTime = System.currentTimeMillis();
@@ -904,7 +1093,11 @@ public class RouterService extends AbstractService implements IRouterService {
             do {
                 if (nextData != null) {
                     data = nextData;
+                    long readTs = System.nanoTime();
                     nextData = reader.take();
+                    if (nextData != null) {
+                        dataReadLatency.record(System.nanoTime() - readTs);
+                    }
                     if (data != null) {
                         processInfo.setCurrentTableName(data.getTableName());
                         processInfo.incrementCurrentDataCount();
@@ -917,16 +1110,27 @@ public class RouterService extends AbstractService implements IRouterService {
                         context.setEncountedTransactionBoundary(atTransactionBoundary);
                         statsDataCount++;
                         totalDataCount++;
-                        int dataEventsInserted = routeData(processInfo, data, context);
+                        int dataEventsInserted = 0;
+                        if (pipeline != null) {
+                            RoutedData routedData = pipeline.getRoutedData(data);
+                            if (routedData.isDeferred()) {
+                                resolveNodeIds(routedData, context);
+                            }
+                            dataEventsInserted = insertDataEvents(processInfo, context, routedData);
+                        } else {
+                            dataEventsInserted = routeData(processInfo, data, context);
+                        }
                         statsDataEventCount += dataEventsInserted;
                         totalDataEventCount += dataEventsInserted;
                         long insertTs = System.currentTimeMillis();
                         try {
                             if (maxNumberOfEventsBeforeFlush <= context.getDataEventList().size()
                                     || context.isNeedsCommitted()) {
+                                long flushTs = System.nanoTime();
                                 engine.getDataService().insertDataEvents(
                                         context.getSqlTransaction(), context.getDataEventList());
                                 context.clearDataEventsList();
+                                dataEventInsertLatency.record(System.nanoTime() - flushTs);
                             }
                             if (context.isNeedsCommitted()) {
                                 completeBatchesAndCommit(context);
@@ -975,6 +1179,14 @@ public class RouterService extends AbstractService implements IRouterService {
 
         } finally {
             reader.setReading(false);
+            if (window != null) {
+                context.incrementStats(window.getWindowContext());
+            }
+            if (pipeline != null) {
+                for (ChannelRouterContext workerContext : pipeline.getWorkerContexts()) {
+                    context.incrementStats(workerContext);
+                }
+            }
             if (statsDataCount > 0) {
                 engine.getStatisticManager().incrementDataRouted(
                         context.getChannel().getChannelId(), statsDataCount);
@@ -989,9 +1201,170 @@ public class RouterService extends AbstractService implements IRouterService {
 
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Read the data a window at a time when
+     * {@link ParameterConstants#ROUTING_WINDOW_SIZE} is greater than one and a
+     * router configured for the channel is an {@link IWindowedDataRouter}, so
+     * that router can resolve the rows of each window together.
+     * 
+     * @return the window to take data from, or null if the data should be
+     *         taken from the reader as it is read
+     */
+    protected DataRoutingWindow startWindow(IDataToRouteReader reader, ChannelRouterContext context) {
+        int windowSize = parameterService.getInt(ParameterConstants.ROUTING_WINDOW_SIZE, 0);
+        NodeChannel channel = context.getChannel();
+        if (windowSize > 1 && !channel.isIgnoreEnabled() && isWindowed(channel)) {
+            return new DataRoutingWindow(reader, new DataRoutingWindow.IWindowPreparer() {
+                public void prepare(List<Data> window, SimpleRouterContext windowContext) {
+                    prepareToRoute(window, windowContext);
+                }
+            }, new SimpleRouterContext(context.getSourceNodeId(), channel), windowSize);
+        }
+        return null;
+    }
+
+    /**
+     * @return whether a router of the trigger routers that capture data for
+     *         the channel can resolve a window of rows at a time
+     */
+    protected boolean isWindowed(NodeChannel channel) {
+        String channelId = channel.getChannelId();
+        for (List<TriggerRouter> triggerRouters : engine.getTriggerRouterService()
+                .getTriggerRoutersForCurrentNode(false).values()) {
+            for (TriggerRouter triggerRouter : triggerRouters) {
+                Trigger trigger = triggerRouter.getTrigger();
+                if ((channelId.equals(trigger.getChannelId()) || channelId.equals(trigger.getReloadChannelId()))
+                        && getDataRouter(triggerRouter.getRouter()) instanceof IWindowedDataRouter) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hand the rows of a window to each {@link IWindowedDataRouter} that will
+     * route them. Rows that name their target nodes are skipped because their
+     * routers are not run.
+     */
+    protected void prepareToRoute(List<Data> window, SimpleRouterContext windowContext) {
+        Map<IWindowedDataRouter, List<DataMetaData>> dataMetaDataByRouter = new HashMap<IWindowedDataRouter, List<DataMetaData>>();
+        for (Data data : window) {
+            List<TriggerRouter> triggerRouters = getTriggerRoutersForData(data);
+            if (triggerRouters == null || StringUtils.isNotBlank(data.getNodeList())) {
+                continue;
+            }
+            Table table = null;
+            for (TriggerRouter triggerRouter : triggerRouters) {
+                IDataRouter dataRouter = getDataRouter(triggerRouter.getRouter());
+                if (dataRouter instanceof IWindowedDataRouter && triggerRouter.isRouted(data.getDataEventType())) {
+                    if (table == null) {
+                        table = symmetricDialect.getTable(data.getTriggerHistory(), true);
+                        if (table == null) {
+                            table = buildTableFromTriggerHistory(data.getTriggerHistory());
+                        }
+                    }
+                    List<DataMetaData> dataMetaData = dataMetaDataByRouter.get(dataRouter);
+                    if (dataMetaData == null) {
+                        dataMetaData = new ArrayList<DataMetaData>(window.size());
+                        dataMetaDataByRouter.put((IWindowedDataRouter) dataRouter, dataMetaData);
+                    }
+                    dataMetaData.add(new DataMetaData(data, table, triggerRouter.getRouter(), windowContext.getChannel()));
+                }
+            }
+        }
+        for (Map.Entry<IWindowedDataRouter, List<DataMetaData>> entry : dataMetaDataByRouter.entrySet()) {
+            entry.getKey().prepareToRoute(windowContext, entry.getValue());
+        }
+    }
+
+    /**
+     * Start routing the data on worker threads when
+     * {@link ParameterConstants#ROUTING_PIPELINE_WORKER_COUNT} is greater than
+     * one and every router configured for the channel is an
+     * {@link IThreadSafeDataRouter}. Other routers, like the configuration,
+     * file sync and xml publishing routers, act on the context when batches
+     * complete or the context is committed, so their data is routed on the
+     * calling thread.
+     * 
+     * @return the pipeline to take data from, or null if the data should be
+     *         routed as it is read
+     */
+    protected DataRoutingPipeline startPipeline(IDataToRouteReader reader, ChannelRouterContext context) {
+        int workerCount = parameterService.getInt(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 1);
+        NodeChannel channel = context.getChannel();
+        if (workerCount > 1 && !parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS, false)
+                && isThreadSafe(channel)) {
+            List<ChannelRouterContext> workerContexts = new ArrayList<ChannelRouterContext>(workerCount);
+            try {
+                for (int i = 0; i < workerCount; i++) {
+                    workerContexts.add(new ChannelRouterContext(context.getSourceNodeId(), channel,
+                            context.getSqlTransaction()));
+                }
+            } catch (SQLException ex) {
+                throw new SqlException(ex);
+            }
+            int queueSize = Math.max(1,
+                    parameterService.getInt(ParameterConstants.ROUTING_PEEK_AHEAD_WINDOW) / workerCount);
+            DataRoutingPipeline pipeline = new DataRoutingPipeline(reader, new DataRoutingPipeline.IDataResolver() {
+                public void resolve(RoutedData routedData, ChannelRouterContext workerContext) {
+                    if (isThreadSafe(getTriggerRoutersForData(routedData.getData()))) {
+                        resolveNodeIds(routedData, workerContext);
+                    } else {
+                        routedData.setDeferred(true);
+                    }
+                }
+            }, workerContexts, queueSize);
+            pipeline.start(getRoutingWorkerThreads());
+            return pipeline;
+        }
+        return null;
+    }
+
+    /**
+     * @return whether every router of the trigger routers that capture data
+     *         for the channel can be run by routing workers
+     */
+    protected boolean isThreadSafe(NodeChannel channel) {
+        String channelId = channel.getChannelId();
+        for (List<TriggerRouter> triggerRouters : engine.getTriggerRouterService()
+                .getTriggerRoutersForCurrentNode(false).values()) {
+            for (TriggerRouter triggerRouter : triggerRouters) {
+                Trigger trigger = triggerRouter.getTrigger();
+                if ((channelId.equals(trigger.getChannelId()) || channelId.equals(trigger.getReloadChannelId()))
+                        && !(getDataRouter(triggerRouter.getRouter()) instanceof IThreadSafeDataRouter)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    protected boolean isThreadSafe(List<TriggerRouter> triggerRouters) {
+        if (triggerRouters != null) {
+            for (TriggerRouter triggerRouter : triggerRouters) {
+                if (!(getDataRouter(triggerRouter.getRouter()) instanceof IThreadSafeDataRouter)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     protected int routeData(ProcessInfo processInfo, Data data, ChannelRouterContext context) {
-        int numberOfDataEventsInserted = 0;
+        RoutedData routedData = new RoutedData(data);
+        resolveNodeIds(routedData, context);
+        return insertDataEvents(processInfo, context, routedData);
+    }
+
+    /**
+     * Run the routers for each trigger router of the data and record the
+     * target node ids. Nothing is written here, so this may run on a routing
+     * worker with a context of its own.
+     */
+    @SuppressWarnings("unchecked")
+    protected void resolveNodeIds(RoutedData routedData, ChannelRouterContext context) {
+        Data data = routedData.getData();
         List<TriggerRouter> triggerRouters = getTriggerRoutersForData(data);
         Table table = symmetricDialect.getTable(data.getTriggerHistory(), true);
         if (table == null) {
@@ -1018,11 +1391,14 @@ public class RouterService extends AbstractService implements IRouterService {
                     } else {
                         try {
                             IDataRouter dataRouter = getDataRouter(triggerRouter.getRouter());
-                            context.addUsedDataRouter(dataRouter);
+                            routedData.addUsedDataRouter(dataRouter);
+                            LatencyHistogram routerLatency = getRouterLatency(context, triggerRouter.getRouter());
                             long ts = System.currentTimeMillis();
+                            long nanoTs = System.nanoTime();
                             nodeIds = dataRouter.routeToNodes(context, dataMetaData,
                                     findAvailableNodes(triggerRouter, context), false, false,
                                     triggerRouter);
+                            routerLatency.record(System.nanoTime() - nanoTs);
                             context.incrementStat(System.currentTimeMillis() - ts,
                                     ChannelRouterContext.STAT_DATA_ROUTER_MS);
                         } catch (DelayRoutingException ex) {
@@ -1050,7 +1426,7 @@ public class RouterService extends AbstractService implements IRouterService {
                     }
                 }
 
-                numberOfDataEventsInserted += insertDataEvents(processInfo, context, dataMetaData, nodeIds);
+                routedData.add(dataMetaData, nodeIds);
             }
 
         } else {
@@ -1060,8 +1436,26 @@ public class RouterService extends AbstractService implements IRouterService {
                     + "There is a good chance that data was captured and the trigger router link was removed before the data could be routed, or "
                     + "that there is an orphaned symmetric trigger on the table.",
                     data.getTriggerHistory().getTriggerHistoryId(), data.getTableName(), data.getDataId(), data.getChannelId());
-            numberOfDataEventsInserted += insertDataEvents(processInfo, context, new DataMetaData(data, table,
-                    null, context.getChannel()), new HashSet<String>(0));
+            routedData.add(new DataMetaData(data, table, null, context.getChannel()), new HashSet<String>(0));
+        }
+    }
+
+    /**
+     * Assign the routed data to batches and queue up its data events. This has
+     * to be called in data order by the thread that owns the context.
+     */
+    protected int insertDataEvents(ProcessInfo processInfo, ChannelRouterContext context, RoutedData routedData) {
+        if (routedData.getError() != null) {
+            throw routedData.getError();
+        }
+        int numberOfDataEventsInserted = 0;
+        for (IDataRouter dataRouter : routedData.getUsedDataRouters()) {
+            context.addUsedDataRouter(dataRouter);
+        }
+        List<DataMetaData> dataMetaData = routedData.getDataMetaData();
+        List<Collection<String>> nodeIds = routedData.getNodeIds();
+        for (int i = 0; i < dataMetaData.size(); i++) {
+            numberOfDataEventsInserted += insertDataEvents(processInfo, context, dataMetaData.get(i), nodeIds.get(i));
         }
 
         context.incrementStat(numberOfDataEventsInserted,
@@ -1144,6 +1538,16 @@ public class RouterService extends AbstractService implements IRouterService {
         return numberOfDataEventsInserted;
     }
 
+    protected LatencyHistogram getRouterLatency(ChannelRouterContext context, Router router) {
+        LatencyHistogram histogram = context.getRouterLatencies().get(router.getRouterId());
+        if (histogram == null) {
+            histogram = engine.getStatisticManager().getRouterLatency(StatisticConstants.ROUTER_LATENCY_ROUTER,
+                    context.getChannel().getChannelId(), router.getRouterId());
+            context.getRouterLatencies().put(router.getRouterId(), histogram);
+        }
+        return histogram;
+    }
+
     protected IDataRouter getDataRouter(Router router) {
         IDataRouter dataRouter = null;
         Map<String, IDataRouter> routers = getRouters();
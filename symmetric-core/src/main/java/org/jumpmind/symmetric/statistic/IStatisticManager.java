@@ -59,6 +59,24 @@ public interface IStatisticManager {
     
     public void removeRouterStatsByBatch(Long batchId);
 
+    /**
+     * Get the latency histogram for a stage of routing on a channel.
+     * 
+     * @param stage
+     *            one of the ROUTER_LATENCY constants in
+     *            {@link StatisticConstants}
+     * @param routerId
+     *            the router for the {@link StatisticConstants#ROUTER_LATENCY_ROUTER}
+     *            stage, or null for the stages that are measured by channel
+     */
+    public LatencyHistogram getRouterLatency(String stage, String channelId, String routerId);
+
+    /**
+     * @return the routing latency histograms keyed by stage, channel id and
+     *         router id separated by colons
+     */
+    public Map<String, LatencyHistogram> getRouterLatencies();
+
     public void incrementDataLoadedErrors(String channelId, long count);
 
     public void incrementDataBytesLoaded(String channelId, long count);
@@ -21,6 +21,7 @@
 package org.jumpmind.symmetric.statistic;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jumpmind.symmetric.model.DataGap;
@@ -38,6 +39,8 @@ public class RouterStats {
     private List<DataGap> dataGaps;
     
     private Set<String> transactions;
+
+    private Map<String, String> latencies;
     
     public RouterStats() {
     }
@@ -56,7 +59,8 @@ public class RouterStats {
     public String toString() {
         return "{ startDataId: " + startDataId + ", endDataId: " + endDataId + ", dataReadCount: " + dataReadCount +
                 ", peekAheadFillCount: " + peekAheadFillCount + ", dataGaps: " + dataGaps.toString() + 
-                ", transactions: " + transactions.toString() + " }";
+                ", transactions: " + transactions.toString() +
+                (latencies != null ? ", latencies: " + latencies.toString() : "") + " }";
     }
 
     public long getStartDataId() {
@@ -106,4 +110,12 @@ public class RouterStats {
     public void setTransactions(Set<String> transactions) {
         this.transactions = transactions;
     }
+
+    public Map<String, String> getLatencies() {
+        return latencies;
+    }
+
+    public void setLatencies(Map<String, String> latencies) {
+        this.latencies = latencies;
+    }
 }
@@ -31,5 +31,9 @@ public final class StatisticConstants {
     public static final int FLUSH_SIZE_LINES = 512;
     public static final int FLUSH_SIZE_BYTES = 1024;
     public static final int FLUSH_SIZE_ROUTER_DATA = 1024;
+
+    public static final String ROUTER_LATENCY_DATA_READ = "data.read";
+    public static final String ROUTER_LATENCY_ROUTER = "router";
+    public static final String ROUTER_LATENCY_DATA_EVENT_INSERT = "data.event.insert";
     
 }
\ No newline at end of file
@@ -71,6 +71,8 @@ public class StatisticManager implements IStatisticManager {
 
     private ConcurrentHashMap<Long, RouterStats> routerStatsByBatch = new ConcurrentHashMap<Long, RouterStats>();
 
+    private ConcurrentHashMap<String, LatencyHistogram> routerLatencies = new ConcurrentHashMap<String, LatencyHistogram>();
+
     protected INodeService nodeService;
 
     protected IStatisticService statisticService;
@@ -196,6 +198,16 @@ public class StatisticManager implements IStatisticManager {
             Collection<OutgoingBatch> batches) {
         RouterStats routerStats = new RouterStats(startDataId, endDataId, dataReadCount,
                 peekAheadFillCount, dataGaps, transactions);
+        if (batches.size() > 0) {
+            String channelId = batches.iterator().next().getChannelId();
+            Map<String, String> latencies = new TreeMap<String, String>();
+            for (Map.Entry<String, LatencyHistogram> entry : routerLatencies.entrySet()) {
+                if (channelId.equals(entry.getKey().split(":")[1])) {
+                    latencies.put(entry.getKey(), entry.getValue().toString());
+                }
+            }
+            routerStats.setLatencies(latencies);
+        }
         for (OutgoingBatch batch : batches) {
             if (!batch.getNodeId().equals(Constants.UNROUTED_NODE_ID)) {
                 routerStatsByBatch.put(batch.getBatchId(), routerStats);
@@ -207,6 +219,23 @@ public class StatisticManager implements IStatisticManager {
         routerStatsByBatch.remove(batchId);
     }
 
+    public LatencyHistogram getRouterLatency(String stage, String channelId, String routerId) {
+        String key = stage + ":" + channelId + (routerId != null ? ":" + routerId : "");
+        LatencyHistogram histogram = routerLatencies.get(key);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = routerLatencies.putIfAbsent(key, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    public Map<String, LatencyHistogram> getRouterLatencies() {
+        return new TreeMap<String, LatencyHistogram>(routerLatencies);
+    }
+
     public void incrementDataRouted(String channelId, long count) {
         channelStatsLock.acquireUninterruptibly();
         try {
@@ -0,0 +1,46 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads every member of a gzip stream. {@link GZIPInputStream} only looks for
+ * another member when the underlying stream says that bytes are available, so
+ * a member that has not arrived over the network yet is taken for the end of
+ * the stream. This stream always looks, and stops at the end of the
+ * underlying stream.
+ */
+public class GzipMemberInputStream extends GZIPInputStream {
+
+    public GzipMemberInputStream(InputStream in) throws IOException {
+        super(new FilterInputStream(in) {
+            @Override
+            public int available() throws IOException {
+                return Math.max(super.available(), 1);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A stream that compresses what is written to it in gzip format and can also
+ * take content that is already compressed in gzip format.
+ */
+public interface IGzipOutputStream {
+
+    /**
+     * @return whether the reader on the other end reads gzip members that
+     *         follow one another as one stream
+     */
+    public boolean isGzipMembersAccepted();
+
+    /**
+     * Finish the gzip member that is being written and copy bytes from the
+     * file channel to the underlying stream as is. The bytes must be whole
+     * gzip members. What is written afterwards starts a new member.
+     * 
+     * @return the number of bytes copied
+     */
+    public long transferGzipMembers(FileChannel source, long position, long count) throws IOException;
+
+}
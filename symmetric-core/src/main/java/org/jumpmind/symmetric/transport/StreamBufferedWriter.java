@@ -0,0 +1,102 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A {@link BufferedWriter} that remembers the stream and character set it
+ * writes to, so content that is already encoded can be copied to the stream
+ * as bytes.
+ */
+public class StreamBufferedWriter extends BufferedWriter {
+
+    private OutputStream out;
+
+    private Charset charset;
+
+    private WritableByteChannel channel;
+
+    public StreamBufferedWriter(OutputStream out, String charsetName) throws UnsupportedEncodingException {
+        super(new OutputStreamWriter(out, charsetName));
+        this.out = out;
+        this.charset = Charset.forName(charsetName);
+    }
+
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Flush any buffered characters and then copy bytes from the file channel
+     * to the stream. When the stream is backed by a file or socket channel the
+     * copy is done by the operating system.
+     * 
+     * @return the number of bytes copied
+     */
+    public long transferFrom(FileChannel source, long position, long count) throws IOException {
+        flush();
+        if (channel == null) {
+            channel = Channels.newChannel(out);
+        }
+        long transferred = 0;
+        while (transferred < count) {
+            long bytes = source.transferTo(position + transferred, count - transferred, channel);
+            if (bytes <= 0) {
+                break;
+            }
+            transferred += bytes;
+        }
+        return transferred;
+    }
+
+    /**
+     * @return whether the stream compresses in gzip format and can take
+     *         content that is already compressed
+     */
+    public boolean isGzipMembersAccepted() {
+        return out instanceof IGzipOutputStream && ((IGzipOutputStream) out).isGzipMembersAccepted();
+    }
+
+    /**
+     * Flush any buffered characters and then copy whole gzip members from the
+     * file channel to the stream as is.
+     * 
+     * @return the number of bytes copied
+     */
+    public long transferGzipMembers(FileChannel source, long position, long count) throws IOException {
+        flush();
+        return ((IGzipOutputStream) out).transferGzipMembers(source, position, count);
+    }
+
+}
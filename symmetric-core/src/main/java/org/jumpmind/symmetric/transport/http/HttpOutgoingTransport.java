@@ -24,7 +24,6 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
@@ -43,6 +42,7 @@ import org.jumpmind.symmetric.transport.AuthenticationException;
 import org.jumpmind.symmetric.transport.ConnectionRejectedException;
 import org.jumpmind.symmetric.transport.IOutgoingWithResponseTransport;
 import org.jumpmind.symmetric.transport.ServiceUnavailableException;
+import org.jumpmind.symmetric.transport.StreamBufferedWriter;
 import org.jumpmind.symmetric.transport.SyncDisabledException;
 import org.jumpmind.symmetric.web.WebConstants;
 
@@ -268,8 +268,7 @@ public class HttpOutgoingTransport implements IOutgoingWithResponseTransport {
 
     public BufferedWriter openWriter() {
         try {
-            OutputStreamWriter wout = new OutputStreamWriter(openStream(), IoConstants.ENCODING);
-            writer = new BufferedWriter(wout);
+            writer = new StreamBufferedWriter(openStream(), IoConstants.ENCODING);
             return writer;
         } catch (IOException ex) {
             throw new IoException(ex);
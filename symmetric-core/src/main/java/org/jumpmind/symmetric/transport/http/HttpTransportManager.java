@@ -34,7 +34,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.IOUtils;
@@ -49,6 +48,7 @@ import org.jumpmind.symmetric.model.BatchId;
 import org.jumpmind.symmetric.model.IncomingBatch;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.transport.AbstractTransportManager;
+import org.jumpmind.symmetric.transport.GzipMemberInputStream;
 import org.jumpmind.symmetric.transport.IIncomingTransport;
 import org.jumpmind.symmetric.transport.IOutgoingWithResponseTransport;
 import org.jumpmind.symmetric.transport.ITransportManager;
@@ -225,6 +225,7 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
             Map<String, String> requestProperties, String registrationUrl) throws IOException {
         HttpURLConnection conn = createGetConnectionFor(new URL(buildURL("pull", remote, local,
                 securityToken, registrationUrl)));
+        conn.setRequestProperty(WebConstants.HEADER_ACCEPT_GZIP_MEMBERS, Boolean.TRUE.toString());
         if (requestProperties != null) {
             for (String key : requestProperties.keySet()) {
                 conn.addRequestProperty(key, requestProperties.get(key));
@@ -307,7 +308,7 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
         String type = connection.getContentEncoding();
         InputStream in = connection.getInputStream();
         if (!StringUtils.isBlank(type) && type.equals("gzip")) {
-            in = new GZIPInputStream(in);
+            in = new GzipMemberInputStream(in);
         }
         return in;
     }
@@ -319,7 +320,7 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
         String type = connection.getContentEncoding();
         InputStream in = connection.getInputStream();
         if (!StringUtils.isBlank(type) && type.equals("gzip")) {
-            in = new GZIPInputStream(in);
+            in = new GzipMemberInputStream(in);
         }
         return TransportUtils.toReader(in);
     }
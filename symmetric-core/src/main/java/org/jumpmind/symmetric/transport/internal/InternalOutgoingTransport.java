@@ -22,7 +22,6 @@ package org.jumpmind.symmetric.transport.internal;
 
 import java.io.BufferedWriter;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 
@@ -31,6 +30,7 @@ import org.jumpmind.symmetric.model.ChannelMap;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.service.IConfigurationService;
 import org.jumpmind.symmetric.transport.IOutgoingTransport;
+import org.jumpmind.symmetric.transport.StreamBufferedWriter;
 
 public class InternalOutgoingTransport implements IOutgoingTransport {
 
@@ -48,7 +48,7 @@ public class InternalOutgoingTransport implements IOutgoingTransport {
 
     public InternalOutgoingTransport(OutputStream os, ChannelMap map, String encoding) throws UnsupportedEncodingException {
         this.os = os;
-        this.writer = new BufferedWriter(new OutputStreamWriter(os, encoding == null ? Charset.defaultCharset().name() : encoding));
+        this.writer = new StreamBufferedWriter(os, encoding == null ? Charset.defaultCharset().name() : encoding);
         this.map = map;
     }
 
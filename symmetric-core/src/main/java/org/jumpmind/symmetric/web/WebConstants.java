@@ -26,6 +26,8 @@ package org.jumpmind.symmetric.web;
 public class WebConstants {
 
     public static final String HEADER_ACCEPT_CHARSET = "Accept-Charset";
+
+    public static final String HEADER_ACCEPT_GZIP_MEMBERS = "Accept-Gzip-Members";
     
     public static final String METHOD_GET = "GET";
     
@@ -140,6 +142,12 @@ public class WebConstants {
     public static final String BATCH_TO_SEND_COUNT = "Batch-To-Send-Count";
     
     public static final String CHANNEL_QUEUE = "threadChannel";
+
+    public static final String HEADER_ACCEPT_PROTOCOL = "Accept-Protocol";
+
+    public static final String HEADER_PROTOCOL = "Protocol";
+
+    public static final String PROTOCOL_BINARY = "binary";
     
     public static final String CONFIG_VERSION = "configVersion";
 
@@ -0,0 +1,149 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.jumpmind.util.SimpleClassCompiler;
+import org.jumpmind.util.SimpleClassCompilerException;
+import org.junit.Test;
+
+import bsh.Interpreter;
+
+public class BshDataRouterTest {
+
+    static final String[] COLUMNS = { "store_id", "status" };
+
+    SimpleClassCompiler compiler = new SimpleClassCompiler();
+
+    BshDataRouter router = new BshDataRouter(null);
+
+    @Test
+    public void testExpression() throws Exception {
+        BshDataRouter.IRouterScript script = compile("STATUS != null && !STATUS.equals(OLD_STATUS)");
+        Map<String, Object> columns = new HashMap<String, Object>();
+        columns.put("STATUS", "A");
+        columns.put("OLD_STATUS", "B");
+        assertEquals(Boolean.TRUE, route(script, columns, new HashSet<String>()));
+        columns.put("OLD_STATUS", "A");
+        assertEquals(Boolean.FALSE, route(script, columns, new HashSet<String>()));
+    }
+
+    @Test
+    public void testTargetNodes() throws Exception {
+        BshDataRouter.IRouterScript script = compile(
+                "targetNodes.add(STORE_ID); if (OLD_STORE_ID != void) { targetNodes.add(OLD_STORE_ID); }");
+        Map<String, Object> columns = new HashMap<String, Object>();
+        columns.put("STORE_ID", "1");
+        Set<String> targetNodes = new HashSet<String>();
+        assertNull(route(script, columns, targetNodes));
+        assertEquals(1, targetNodes.size());
+        assertTrue(targetNodes.contains("1"));
+
+        columns.put("OLD_STORE_ID", "2");
+        targetNodes.clear();
+        route(script, columns, targetNodes);
+        assertEquals(2, targetNodes.size());
+        assertTrue(targetNodes.contains("2"));
+    }
+
+    @Test
+    public void testReturn() throws Exception {
+        BshDataRouter.IRouterScript script = compile("if (\"1\".equals(STORE_ID)) {\n return \"00001\";\n}\nreturn null");
+        Map<String, Object> columns = new HashMap<String, Object>();
+        columns.put("STORE_ID", "1");
+        assertEquals("00001", route(script, columns, new HashSet<String>()));
+        columns.put("STORE_ID", "2");
+        assertNull(route(script, columns, new HashSet<String>()));
+    }
+
+    @Test
+    public void testTrailingExpressionIsTheValue() throws Exception {
+        String[] expressions = { "String t = (String) STATUS; t.equals(\"A\")",
+                "if (STATUS == null) { return false; }\nString t = (String) STATUS;\nt.equals(\"A\");",
+                "for (int i = 0; i < 2; i++) { targetNodes.size(); } \"A\".equals(STATUS)" };
+        for (String expression : expressions) {
+            BshDataRouter.IRouterScript script = compile(expression);
+            Map<String, Object> columns = new HashMap<String, Object>();
+            columns.put("STATUS", "A");
+            assertEquals(Boolean.TRUE, interpret(expression, columns));
+            assertEquals(Boolean.TRUE, route(script, columns, new HashSet<String>()));
+            columns.put("STATUS", "B");
+            assertEquals(Boolean.FALSE, interpret(expression, columns));
+            assertEquals(Boolean.FALSE, route(script, columns, new HashSet<String>()));
+        }
+    }
+
+    @Test
+    public void testLiteralsAreNotParsedAsCode() throws Exception {
+        BshDataRouter.IRouterScript script = compile(
+                "\"a;b\".equals(STATUS) || \"STATUS != void\".equals(STATUS) || String.valueOf(';').equals(STATUS) // return; }");
+        Map<String, Object> columns = new HashMap<String, Object>();
+        columns.put("STATUS", "a;b");
+        assertEquals(Boolean.TRUE, route(script, columns, new HashSet<String>()));
+        columns.put("STATUS", "STATUS != void");
+        assertEquals(Boolean.TRUE, route(script, columns, new HashSet<String>()));
+        columns.put("STATUS", "c");
+        assertEquals(Boolean.FALSE, route(script, columns, new HashSet<String>()));
+    }
+
+    @Test
+    public void testUnterminatedLiteralIsInterpreted() throws Exception {
+        assertNull(router.toJavaCode("\"a;b\".equals(STATUS) || \"c", COLUMNS));
+        assertNull(router.toJavaCode("STATUS != null /* comment", COLUMNS));
+    }
+
+    @Test
+    public void testLooselyTypedScriptDoesNotCompile() throws Exception {
+        try {
+            compile("id = STORE_ID; targetNodes.add(id);");
+            fail("Expected the script to fail to compile");
+        } catch (SimpleClassCompilerException e) {
+        }
+    }
+
+    protected BshDataRouter.IRouterScript compile(String expression) throws Exception {
+        return (BshDataRouter.IRouterScript) compiler.getCompiledClass(router.toJavaCode(expression, COLUMNS));
+    }
+
+    protected Object interpret(String expression, Map<String, Object> columns) throws Exception {
+        Interpreter interpreter = new Interpreter();
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            interpreter.set(column.getKey(), column.getValue());
+        }
+        interpreter.set("targetNodes", new HashSet<String>());
+        return interpreter.eval(expression);
+    }
+
+    protected Object route(BshDataRouter.IRouterScript script, Map<String, Object> columns, Set<String> targetNodes)
+            throws Exception {
+        return script.route(null, false, null, null, null, "00000", targetNodes, null, columns);
+    }
+
+}
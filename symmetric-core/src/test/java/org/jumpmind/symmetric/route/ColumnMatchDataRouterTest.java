@@ -362,4 +362,72 @@ public class ColumnMatchDataRouterTest {
         assertEquals(true, result.contains("100"));
         assertEquals(true, result.contains("300"));
     }
+
+    @Test
+    public void testExpressionEqualsExternalIdManyNodes() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        for (int i = 0; i < 12000; i++) {
+            nodes.add(new Node(String.valueOf(i), "client"));
+        }
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","ID","ID,STORE_ID,COLUMN2");
+        Table table = new Table();
+        NodeChannel nodeChannel = new NodeChannel();
+        Router route = new Router();
+        route.setRouterExpression("STORE_ID = :EXTERNAL_ID");
+        route.setRouterId("route1");
+
+        for (int i = 0; i < 1000; i++) {
+            Data data = new Data();
+            data.setDataId(i);
+            data.setDataEventType(DataEventType.INSERT);
+            data.setRowData("1," + (i * 7) + ",Super Dooper");
+            data.setTriggerHistory(triggerHist);
+            DataMetaData dataMetaData = new DataMetaData(data, table, route, nodeChannel);
+            Set<String> result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+            assertEquals(1, result.size());
+            assertEquals(true, result.contains(String.valueOf(i * 7)));
+        }
+        assertEquals(true, routingContext.getContextCache().containsKey(ColumnMatchDataRouter.NODE_INDEX_KEY + "route1"));
+    }
+
+    @Test
+    public void testNodeIndexReusedForEqualNodeSets() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(new Node(String.valueOf(i), "client"));
+        }
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","ID","ID,STORE_ID,COLUMN2");
+        Table table = new Table();
+        NodeChannel nodeChannel = new NodeChannel();
+        Router route = new Router();
+        route.setRouterExpression("STORE_ID = :NODE_ID");
+        route.setRouterId("route1");
+
+        for (int i = 0; i < 100; i++) {
+            Data data = new Data();
+            data.setDataId(i);
+            data.setDataEventType(DataEventType.INSERT);
+            data.setRowData("1," + i + ",Super Dooper");
+            data.setTriggerHistory(triggerHist);
+            DataMetaData dataMetaData = new DataMetaData(data, table, route, nodeChannel);
+            Set<String> result = router.routeToNodes(routingContext, dataMetaData, new HashSet<Node>(nodes), false, false, null);
+            assertEquals(1, result.size());
+            assertEquals(true, result.contains(String.valueOf(i)));
+        }
+        ColumnMatchDataRouter.NodeIndexes indexes = (ColumnMatchDataRouter.NodeIndexes) routingContext.getContextCache().get(
+                ColumnMatchDataRouter.NODE_INDEX_KEY + "route1");
+        assertEquals(1, indexes.size());
+
+        for (int i = 0; i < ColumnMatchDataRouter.NodeIndexes.MAX_SIZE * 2; i++) {
+            nodes.add(new Node("extra" + i, "client"));
+            router.getNodeIndex(routingContext, route, new HashSet<Node>(nodes));
+        }
+        assertEquals(ColumnMatchDataRouter.NodeIndexes.MAX_SIZE, indexes.size());
+    }
 }
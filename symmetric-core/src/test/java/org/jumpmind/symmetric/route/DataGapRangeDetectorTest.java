@@ -0,0 +1,155 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.symmetric.common.ContextConstants;
+import org.jumpmind.symmetric.model.DataGap;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Runs all of the gap detector tests against the range detector. The range
+ * query is answered by asking the per gap query mocks of each test for the
+ * gaps that fall inside of the range, so both detectors are fed the same data.
+ */
+public class DataGapRangeDetectorTest extends DataGapDetectorTest {
+
+    List<Long> rangeDataIds;
+
+    @Override
+    protected DataGapFastDetector newGapDetector() {
+        return new DataGapRangeDetector(dataService, parameterService, contextService, symmetricDialect, routerService, statisticManager, nodeService);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUpRangeQuery() throws Exception {
+        rangeDataIds = null;
+        ISqlRowMapper<Long> mapper = (ISqlRowMapper<Long>) Matchers.anyObject();
+        when(sqlTemplate.queryForCursor(Matchers.anyString(), mapper, (Object[]) Matchers.any(), (int[]) Matchers.any())).thenAnswer(
+                new Answer<ISqlReadCursor<Long>>() {
+                    public ISqlReadCursor<Long> answer(InvocationOnMock invocation) {
+                        String sql = (String) invocation.getArguments()[0];
+                        ISqlRowMapper<Long> mapper = (ISqlRowMapper<Long>) invocation.getArguments()[1];
+                        Object[] args = (Object[]) invocation.getArguments()[2];
+                        long startId = (Long) args[0];
+                        long endId = (Long) args[1];
+                        List<Long> ids = new ArrayList<Long>();
+                        if (rangeDataIds != null) {
+                            ids.addAll(rangeDataIds);
+                        } else {
+                            for (DataGap gap : detector.getDataGaps()) {
+                                if (gap.getStartId() >= startId && gap.getEndId() <= endId) {
+                                    ids.addAll(sqlTemplate.query(sql, mapper, gap.getStartId(), gap.getEndId()));
+                                }
+                            }
+                        }
+                        return new ListCursor(ids);
+                    }
+                });
+    }
+
+    @Test
+    public void testRangeIgnoresDataOutsideOfGaps() throws Exception {
+        detector.setFullGapAnalysis(true);
+        when(contextService.is(ContextConstants.ROUTING_FULL_GAP_ANALYSIS)).thenReturn(true);
+
+        rangeDataIds = new ArrayList<Long>();
+        rangeDataIds.add(4L);
+        rangeDataIds.add(8L);
+        rangeDataIds.add(12L);
+        rangeDataIds.add(25L);
+
+        List<DataGap> dataGaps = new ArrayList<DataGap>();
+        dataGaps.add(new DataGap(5, 10));
+        dataGaps.add(new DataGap(20, 50000020));
+
+        runGapDetector(dataGaps, new ArrayList<Long>(), true);
+
+        verify(dataService).findDataGaps();
+        verify(dataService).deleteDataGap(sqlTransaction, new DataGap(5, 10));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(5, 7));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(9, 10));
+        verify(dataService).deleteDataGap(sqlTransaction, new DataGap(20, 50000020));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(20, 24));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(26, 50000025));
+        verifyNoMoreInteractions(dataService);
+    }
+
+    @Test
+    public void testUnsortedDataIdsFromChannels() throws Exception {
+        List<DataGap> dataGaps = new ArrayList<DataGap>();
+        dataGaps.add(new DataGap(3, 10));
+        dataGaps.add(new DataGap(11, 50000010));
+
+        when(dataService.findDataGaps()).thenReturn(dataGaps);
+        detector.beforeRouting();
+        List<Long> channel1 = new ArrayList<Long>();
+        channel1.add(12L);
+        channel1.add(14L);
+        detector.addDataIds(channel1);
+        List<Long> channel2 = new ArrayList<Long>();
+        channel2.add(5L);
+        channel2.add(13L);
+        detector.addDataIds(channel2);
+        detector.setIsAllDataRead(true);
+        detector.afterRouting();
+
+        verify(dataService).findDataGaps();
+        verify(dataService).deleteDataGap(sqlTransaction, new DataGap(3, 10));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(3, 4));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(6, 10));
+        verify(dataService).deleteDataGap(sqlTransaction, new DataGap(11, 50000010));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(11, 11));
+        verify(dataService).insertDataGap(sqlTransaction, new DataGap(15, 50000014));
+        verifyNoMoreInteractions(dataService);
+    }
+
+    static class ListCursor implements ISqlReadCursor<Long> {
+
+        Iterator<Long> iterator;
+
+        ListCursor(List<Long> ids) {
+            this.iterator = ids.iterator();
+        }
+
+        public Long next() {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataMemoryCursorTest {
+
+    static final File DIR = new File("target/tmp/memorycursor");
+
+    StagingManager stagingManager;
+
+    ChannelRouterContext context;
+
+    TriggerHistory triggerHistory;
+
+    @Before
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+        DIR.mkdirs();
+        stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        context = new ChannelRouterContext("00000", new NodeChannel("test"), mock(ISqlTransaction.class));
+        triggerHistory = new TriggerHistory(5);
+    }
+
+    @Test
+    public void testSortInMemory() throws Exception {
+        List<Data> datas = createData(100);
+        DataMemoryCursor cursor = new DataMemoryCursor(new ListCursor(datas), context, DataMemoryCursor.SORT_BY_ID,
+                stagingManager, Long.MAX_VALUE);
+        assertEquals(0, cursor.getNumberOfRuns());
+        assertSortedById(cursor, 100);
+    }
+
+    @Test
+    public void testSortWithRunsInStaging() throws Exception {
+        List<Data> datas = createData(1000);
+        DataMemoryCursor cursor = new DataMemoryCursor(new ListCursor(datas), context, DataMemoryCursor.SORT_BY_ID,
+                stagingManager, 50 * 1024);
+        assertTrue(cursor.getNumberOfRuns() > 1);
+        assertTrue(new File(DIR, Constants.STAGING_CATEGORY_ROUTING).exists());
+        assertSortedById(cursor, 1000);
+        cursor.close();
+        assertEquals(0, FileUtils.listFiles(new File(DIR, Constants.STAGING_CATEGORY_ROUTING), null, true).size());
+    }
+
+    @Test
+    public void testSortByTimeKeepsReadOrderForEqualTimes() throws Exception {
+        List<Data> datas = createData(500);
+        Date createTime = new Date();
+        for (Data data : datas) {
+            data.setCreateTime(createTime);
+        }
+        DataMemoryCursor cursor = new DataMemoryCursor(new ListCursor(datas), context, DataMemoryCursor.SORT_BY_TIME,
+                stagingManager, 10 * 1024);
+        assertTrue(cursor.getNumberOfRuns() > 1);
+        for (Data expected : datas) {
+            Data data = cursor.next();
+            assertEquals(expected.getDataId(), data.getDataId());
+            assertEquals(createTime, data.getCreateTime());
+        }
+        assertNull(cursor.next());
+        cursor.close();
+    }
+
+    @Test
+    public void testNoSortWithRunsInStaging() throws Exception {
+        List<Data> datas = createData(300);
+        DataMemoryCursor cursor = new DataMemoryCursor(new ListCursor(datas), context, null, stagingManager, 10 * 1024);
+        assertTrue(cursor.getNumberOfRuns() > 1);
+        for (Data expected : datas) {
+            assertEquals(expected.getDataId(), cursor.next().getDataId());
+        }
+        assertNull(cursor.next());
+        cursor.close();
+    }
+
+    protected void assertSortedById(DataMemoryCursor cursor, int count) {
+        long lastDataId = -1;
+        int readCount = 0;
+        Data data = null;
+        while ((data = cursor.next()) != null) {
+            assertTrue(data.getDataId() > lastDataId);
+            lastDataId = data.getDataId();
+            assertEquals("\"" + data.getDataId() + "\",\"row\"", data.getRowData());
+            assertEquals("\"" + data.getDataId() + "\"", data.getPkData());
+            assertNull(data.getOldData());
+            assertEquals(DataEventType.INSERT, data.getDataEventType());
+            assertEquals("test_table", data.getTableName());
+            assertEquals("test", data.getChannelId());
+            assertEquals("tx" + data.getDataId(), data.getTransactionId());
+            assertEquals("00001", data.getSourceNodeId());
+            assertSame(triggerHistory, data.getTriggerHistory());
+            readCount++;
+        }
+        assertEquals(count, readCount);
+    }
+
+    protected List<Data> createData(int count) {
+        List<Data> datas = new ArrayList<Data>(count);
+        for (int i = 0; i < count; i++) {
+            datas.add(new Data(i, "\"" + i + "\"", "\"" + i + "\",\"row\"", DataEventType.INSERT, "test_table",
+                    new Date(), triggerHistory, "test", "tx" + i, "00001"));
+        }
+        Collections.shuffle(datas, new Random(10));
+        return datas;
+    }
+
+    static class ListCursor implements ISqlReadCursor<Data> {
+
+        List<Data> datas;
+
+        int index;
+
+        ListCursor(List<Data> datas) {
+            this.datas = datas;
+        }
+
+        public Data next() {
+            return index < datas.size() ? datas.get(index++) : null;
+        }
+
+        public void close() {
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.SymmetricException;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataRoutingPipelineTest {
+
+    protected ExecutorService executor;
+
+    protected List<ChannelRouterContext> workerContexts;
+
+    @Before
+    public void setup() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        workerContexts = new ArrayList<ChannelRouterContext>();
+        for (int i = 0; i < 4; i++) {
+            workerContexts.add(new ChannelRouterContext("00000", new NodeChannel("test"),
+                    mock(ISqlTransaction.class)));
+        }
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testDataIsTakenInOrderAndTransactionsStayOnOneWorker() throws Exception {
+        List<Data> dataList = new ArrayList<Data>();
+        for (int i = 0; i < 1000; i++) {
+            Data data = new Data();
+            data.setDataId(i);
+            data.setTransactionId("tx" + (i / 7));
+            dataList.add(data);
+        }
+
+        final Map<String, ChannelRouterContext> contextByTransaction = new ConcurrentHashMap<String, ChannelRouterContext>();
+        DataRoutingPipeline pipeline = new DataRoutingPipeline(new ListReader(dataList),
+                new DataRoutingPipeline.IDataResolver() {
+                    public void resolve(RoutedData routedData, ChannelRouterContext workerContext) {
+                        String transactionId = routedData.getData().getTransactionId();
+                        ChannelRouterContext previous = contextByTransaction.put(transactionId, workerContext);
+                        if (previous != null && previous != workerContext) {
+                            routedData.setError(new IllegalStateException(transactionId + " was split"));
+                        }
+                        workerContext.incrementStat(1, "resolved");
+                    }
+                }, workerContexts, 10);
+        pipeline.start(executor);
+
+        for (Data expected : dataList) {
+            Data data = pipeline.take();
+            assertSame(expected, data);
+            RoutedData routedData = pipeline.getRoutedData(data);
+            assertNull(routedData.getError());
+        }
+        assertNull(pipeline.take());
+
+        SimpleRouterContext context = new SimpleRouterContext();
+        for (ChannelRouterContext workerContext : workerContexts) {
+            context.incrementStats(workerContext);
+        }
+        assertEquals(dataList.size(), context.getStat("resolved"));
+    }
+
+    @Test
+    public void testResolveErrorIsReturnedWithTheData() throws Exception {
+        List<Data> dataList = new ArrayList<Data>();
+        for (int i = 0; i < 3; i++) {
+            Data data = new Data();
+            data.setDataId(i);
+            dataList.add(data);
+        }
+        DataRoutingPipeline pipeline = new DataRoutingPipeline(new ListReader(dataList),
+                new DataRoutingPipeline.IDataResolver() {
+                    public void resolve(RoutedData routedData, ChannelRouterContext workerContext) {
+                        if (routedData.getData().getDataId() == 1) {
+                            throw new SymmetricException("failed");
+                        }
+                    }
+                }, workerContexts, 10);
+        pipeline.start(executor);
+
+        assertNull(pipeline.getRoutedData(pipeline.take()).getError());
+        RoutedData routedData = pipeline.getRoutedData(pipeline.take());
+        assertEquals(1, routedData.getData().getDataId());
+        try {
+            throw routedData.getError();
+        } catch (SymmetricException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+        pipeline.setReading(false);
+        try {
+            pipeline.getRoutedData(dataList.get(2));
+            fail("Expected an exception because the data was never taken");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    static class ListReader implements IDataToRouteReader {
+
+        Iterator<Data> iterator;
+
+        boolean reading = true;
+
+        ListReader(List<Data> dataList) {
+            this.iterator = dataList.iterator();
+        }
+
+        public void run() {
+        }
+
+        public Data take() throws InterruptedException {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+
+        public boolean isReading() {
+            return reading;
+        }
+
+        public void setReading(boolean reading) {
+            this.reading = reading;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.junit.Test;
+
+public class DataRowMapTest {
+
+    protected TriggerHistory triggerHistory = new TriggerHistory("mytable", "ID", "ID,node_id,Column2");
+
+    protected DataRowMap newMap(String[] newData, String[] oldData, boolean hasOldColumns) {
+        return new DataRowMap(triggerHistory.getParsedColumnNames(),
+                triggerHistory.getColumnOrdinals(), newData, oldData, hasOldColumns, "ext");
+    }
+
+    @Test
+    public void testUpdateLookups() {
+        DataRowMap map = newMap(new String[] { "1", "100", "new" },
+                new String[] { "1", "200", "old" }, true);
+        assertEquals("1", map.get("ID"));
+        assertEquals("100", map.get("node_id"));
+        assertEquals("100", map.get("NODE_ID"));
+        assertEquals("new", map.get("column2"));
+        assertEquals("200", map.get("OLD_NODE_ID"));
+        assertEquals("old", map.get("old_Column2"));
+        assertEquals("ext", map.get("EXTERNAL_DATA"));
+        assertTrue(map.containsKey("OLD_ID"));
+        assertFalse(map.containsKey("OLD_"));
+        assertFalse(map.containsKey("MISSING"));
+        assertNull(map.get("MISSING"));
+    }
+
+    @Test
+    public void testInsertHasNullOldColumns() {
+        DataRowMap map = newMap(new String[] { "1", "100", "new" }, null, true);
+        assertEquals("100", map.get("NODE_ID"));
+        assertTrue(map.containsKey("OLD_NODE_ID"));
+        assertNull(map.get("OLD_NODE_ID"));
+    }
+
+    @Test
+    public void testNoNewData() {
+        DataRowMap map = newMap(null, new String[] { "1", "200", "old" }, true);
+        assertFalse(map.containsKey("NODE_ID"));
+        assertNull(map.get("NODE_ID"));
+        assertEquals("200", map.get("OLD_NODE_ID"));
+    }
+
+    @Test
+    public void testMaterializedEntries() {
+        DataRowMap map = newMap(new String[] { "1", "100", "new" },
+                new String[] { "1", "200", "old" }, true);
+        assertEquals(11, map.size());
+        assertEquals("200", map.get("OLD_NODE_ID"));
+        assertEquals("old", map.get("OLD_COLUMN2"));
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey().toLowerCase()));
+        }
+
+        map.put("NODE_ID", "300");
+        assertEquals("300", map.get("node_id"));
+        map.remove("EXTERNAL_DATA");
+        assertFalse(map.containsKey("EXTERNAL_DATA"));
+    }
+
+}
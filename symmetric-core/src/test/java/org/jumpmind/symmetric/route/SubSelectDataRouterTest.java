@@ -0,0 +1,187 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.mapper.StringMapper;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class SubSelectDataRouterTest {
+
+    ISymmetricDialect symmetricDialect;
+
+    IParameterService parameterService;
+
+    ISqlTemplate sqlTemplate;
+
+    Router router;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception {
+        sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getObjectValues(any(), any(Table.class), any(String[].class), any(String[].class))).thenAnswer(
+                new Answer<Object[]>() {
+                    public Object[] answer(InvocationOnMock invocation) {
+                        return (Object[]) invocation.getArguments()[3];
+                    }
+                });
+        symmetricDialect = mock(ISymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getTablePrefix()).thenReturn("sym");
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getLong(ParameterConstants.ROUTING_SUBSELECT_CACHE_TTL_MS)).thenReturn(60000l);
+
+        List<String> nodeIds = new ArrayList<String>();
+        nodeIds.add("100");
+        when(sqlTemplate.query(anyString(), any(StringMapper.class), any(Map.class))).thenReturn(nodeIds);
+
+        router = new Router("route1", "server", "client", "subselect");
+        router.setRouterExpression("c.external_id in (select store_id from store where store_id=:STORE_ID)");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testQueryForEveryRowWithoutCache() throws Exception {
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        route(dataRouter, 3);
+        verify(sqlTemplate, times(3)).query(anyString(), any(StringMapper.class), any(Map.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCacheByReferencedParameters() throws Exception {
+        when(parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_SIZE)).thenReturn(100);
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        SimpleRouterContext context = route(dataRouter, 3);
+        verify(sqlTemplate, times(1)).query(anyString(), any(StringMapper.class), any(Map.class));
+        assertEquals(2l, context.getStat("subselect.cache.hit"));
+        assertEquals(1l, context.getStat("subselect.cache.miss"));
+        assertTrue(dataRouter.getCacheHitRate() > 0.6);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCacheExpires() throws Exception {
+        when(parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_SIZE)).thenReturn(100);
+        when(parameterService.getLong(ParameterConstants.ROUTING_SUBSELECT_CACHE_TTL_MS)).thenReturn(-1l);
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        route(dataRouter, 3);
+        verify(sqlTemplate, times(3)).query(anyString(), any(StringMapper.class), any(Map.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testWindowQueriesDistinctValuesOnce() throws Exception {
+        when(parameterService.getInt(ParameterConstants.ROUTING_WINDOW_SIZE, 0)).thenReturn(10);
+        List<Row> rows = new ArrayList<Row>();
+        rows.add(newWindowRow(0, "100"));
+        rows.add(newWindowRow(1, "200"));
+        rows.add(newWindowRow(1, "201"));
+        when(sqlTemplate.query(anyString(), any(Object[].class), any(int[].class))).thenReturn(rows);
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect, parameterService);
+        List<DataMetaData> window = new ArrayList<DataMetaData>();
+        window.add(newDataMetaData(0, "100"));
+        window.add(newDataMetaData(1, "200"));
+        window.add(newDataMetaData(2, "100"));
+
+        SimpleRouterContext context = new SimpleRouterContext();
+        dataRouter.prepareToRoute(context, window);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(sqlTemplate, times(1)).query(sql.capture(), args.capture(), any(int[].class));
+        assertTrue(sql.getValue().contains(" union all "));
+        assertEquals(4, args.getValue().length);
+        assertEquals(2l, context.getStat("subselect.window.values.count"));
+
+        assertEquals(new HashSet<String>(Arrays.asList("100")), route(dataRouter, context, window.get(0)));
+        assertEquals(new HashSet<String>(Arrays.asList("200", "201")), route(dataRouter, context, window.get(1)));
+        assertEquals(new HashSet<String>(Arrays.asList("100")), route(dataRouter, context, window.get(2)));
+        verify(sqlTemplate, times(0)).query(anyString(), any(StringMapper.class), any(Map.class));
+        assertEquals(3l, context.getStat("subselect.cache.hit"));
+    }
+
+    protected SimpleRouterContext route(SubSelectDataRouter dataRouter, int count) {
+        SimpleRouterContext context = new SimpleRouterContext();
+        for (int i = 0; i < count; i++) {
+            Set<String> nodeIds = route(dataRouter, context, newDataMetaData(i, "100"));
+            assertEquals(1, nodeIds.size());
+            assertTrue(nodeIds.contains("100"));
+        }
+        return context;
+    }
+
+    protected Set<String> route(SubSelectDataRouter dataRouter, SimpleRouterContext context, DataMetaData dataMetaData) {
+        return dataRouter.routeToNodes(context, dataMetaData, new HashSet<Node>(), false, false, null);
+    }
+
+    protected DataMetaData newDataMetaData(int dataId, String storeId) {
+        Data data = new Data();
+        data.setDataId(dataId);
+        data.setDataEventType(DataEventType.INSERT);
+        data.setRowData(dataId + "," + storeId + "," + (dataId * 10));
+        data.setTriggerHistory(new TriggerHistory("orders", "ID", "ID,STORE_ID,AMOUNT"));
+        return new DataMetaData(data, new Table(), router, new NodeChannel());
+    }
+
+    protected Row newWindowRow(int windowRow, String nodeId) {
+        Row row = new Row(2);
+        row.put("window_row", windowRow);
+        row.put("node_id", nodeId);
+        return row;
+    }
+
+}
@@ -21,19 +21,45 @@
 package org.jumpmind.symmetric.service.impl;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 
 import org.apache.commons.lang.StringUtils;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.db.sql.Row;
 import org.jumpmind.symmetric.TestConstants;
+import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.reader.BinaryProtocolDataReader;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeCommunication;
+import org.jumpmind.symmetric.model.NodeCommunication.CommunicationType;
 import org.jumpmind.symmetric.model.OutgoingBatch;
 import org.jumpmind.symmetric.model.ProcessInfo;
 import org.jumpmind.symmetric.model.Router;
 import org.jumpmind.symmetric.model.Trigger;
+import org.jumpmind.symmetric.model.TriggerHistory;
 import org.jumpmind.symmetric.model.TriggerRouter;
 import org.jumpmind.symmetric.service.IDataExtractorService;
 import org.jumpmind.symmetric.service.ITriggerRouterService;
@@ -113,6 +139,341 @@ public abstract class AbstractDataExtractorServiceTest extends AbstractServiceTe
 
     }
 
+    @Test
+    public void testExtractManyBatchesInParallel() {
+        for (int i = 0; i < 5; i++) {
+            save(new TestExtract(id++, "abc 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                    System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                    Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+            routeAndCreateGaps();
+        }
+        getParameterService().saveParameter(ParameterConstants.EXTRACT_THREAD_COUNT_PER_NODE, 3, "unittest");
+        try {
+            ExtractResults results = extract();
+            int testChannelBatchCount = 0;
+            int lastIndex = -1;
+            for (OutgoingBatch batch : results.getBatches()) {
+                if (batch.getChannelId().equals(TestConstants.TEST_CHANNEL_ID)) {
+                    testChannelBatchCount++;
+                }
+                int index = results.getCsv().indexOf("batch," + batch.getBatchId());
+                assertTrue(index > lastIndex);
+                lastIndex = index;
+            }
+            assertEquals(testChannelBatchCount, 5);
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.EXTRACT_THREAD_COUNT_PER_NODE, 1, "unittest");
+        }
+    }
+
+    @Test
+    public void testExtractTransferBytesFromStaging() throws Exception {
+        save(new TestExtract(id++, "abc xyz 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        routeAndCreateGaps();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        InternalOutgoingTransport transport = new InternalOutgoingTransport(os, IoConstants.ENCODING);
+        List<OutgoingBatch> batches = getDataExtractorService().extract(new ProcessInfo(), TestConstants.TEST_CLIENT_NODE, transport);
+        transport.close();
+        String csv = new String(os.toByteArray(), IoConstants.ENCODING);
+
+        assertNotNull(batches);
+        assertEquals(batches.size(), 1);
+        long batchId = batches.get(0).getBatchId();
+        assertNumberOfLinesThatStartWith(1, "batch," + batchId, csv);
+        assertNumberOfLinesThatStartWith(1, "insert,", csv);
+        assertNumberOfLinesThatStartWith(1, "commit," + batchId, csv);
+        assertTrue(csv.contains("abc xyz 123"));
+    }
+
+    @Test
+    public void testExtractBinaryProtocol() throws Exception {
+        save(new TestExtract(id++, "binary 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        routeAndCreateGaps();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        InternalOutgoingTransport transport = new InternalOutgoingTransport(os, IoConstants.ENCODING);
+        List<OutgoingBatch> batches = getDataExtractorService().extract(new ProcessInfo(), TestConstants.TEST_CLIENT_NODE,
+                null, transport, true);
+        transport.close();
+
+        assertNotNull(batches);
+        assertEquals(batches.size(), 1);
+        assertNotNull(getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING, batches.get(0).getStagedLocation(),
+                batches.get(0).getBatchId()));
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, TestConstants.TEST_CLIENT_EXTERNAL_ID,
+                new ByteArrayInputStream(os.toByteArray()));
+        reader.open(new DataContext(reader));
+        Batch batch = reader.nextBatch();
+        assertEquals(batches.get(0).getBatchId(), batch.getBatchId());
+        Table table = reader.nextTable();
+        assertTrue(table.getName().equalsIgnoreCase(TEST_TABLE));
+        CsvData data = reader.nextData();
+        assertEquals(DataEventType.INSERT, data.getDataEventType());
+        assertTrue(Arrays.asList(data.getParsedData(CsvData.ROW_DATA)).contains("binary 123"));
+        assertNull(reader.nextData());
+        assertNull(reader.nextTable());
+        assertTrue(batch.isComplete());
+        assertNull(reader.nextBatch());
+        reader.close();
+    }
+
+    @Test
+    public void testRetriedBinaryPullIsSentFromStaging() throws Exception {
+        save(new TestExtract(id++, "binary retry 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        routeAndCreateGaps();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        InternalOutgoingTransport transport = new InternalOutgoingTransport(os, IoConstants.ENCODING);
+        List<OutgoingBatch> batches = getDataExtractorService().extract(new ProcessInfo(), TestConstants.TEST_CLIENT_NODE,
+                null, transport, true);
+        transport.close();
+        assertEquals(batches.size(), 1);
+        long batchId = batches.get(0).getBatchId();
+
+        /* the batch was not acknowledged, so it is sent again, but there is nothing left to extract it from */
+        String dataEventTable = TableConstants.getTableName(getSymmetricEngine().getTablePrefix(),
+                TableConstants.SYM_DATA_EVENT);
+        getSqlTemplate().update(String.format("delete from %s where batch_id=?", dataEventTable), batchId);
+
+        os = new ByteArrayOutputStream();
+        transport = new InternalOutgoingTransport(os, IoConstants.ENCODING);
+        batches = getDataExtractorService().extract(new ProcessInfo(), TestConstants.TEST_CLIENT_NODE, null, transport, true);
+        transport.close();
+        assertEquals(batches.size(), 1);
+        assertEquals(batchId, batches.get(0).getBatchId());
+        assertTrue(batches.get(0).getSentCount() > 1);
+
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, TestConstants.TEST_CLIENT_EXTERNAL_ID,
+                new ByteArrayInputStream(os.toByteArray()));
+        reader.open(new DataContext(reader));
+        assertEquals(batchId, reader.nextBatch().getBatchId());
+        assertTrue(reader.nextTable().getName().equalsIgnoreCase(TEST_TABLE));
+        CsvData data = reader.nextData();
+        assertTrue(Arrays.asList(data.getParsedData(CsvData.ROW_DATA)).contains("binary retry 123"));
+        assertNull(reader.nextData());
+        reader.close();
+    }
+
+    @Test
+    public void testExtractFromCompressedStaging() throws Exception {
+        save(new TestExtract(id++, "compressed 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        routeAndCreateGaps();
+        getParameterService().saveParameter(ParameterConstants.STREAM_TO_FILE_COMPRESSION_ENABLED, true, "unittest");
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            InternalOutgoingTransport transport = new InternalOutgoingTransport(os, IoConstants.ENCODING);
+            List<OutgoingBatch> batches = getDataExtractorService().extract(new ProcessInfo(), TestConstants.TEST_CLIENT_NODE, transport);
+            transport.close();
+            String csv = new String(os.toByteArray(), IoConstants.ENCODING);
+
+            OutgoingBatch batch = null;
+            for (OutgoingBatch outgoingBatch : batches) {
+                if (outgoingBatch.getChannelId().equals(TestConstants.TEST_CHANNEL_ID)) {
+                    batch = outgoingBatch;
+                }
+            }
+            assertNotNull(batch);
+            long batchId = batch.getBatchId();
+            IStagedResource resource = getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING,
+                    batch.getStagedLocation(), batchId);
+            assertTrue(resource.isCompressed());
+            assertNumberOfLinesThatStartWith(1, "batch," + batchId, csv);
+            assertNumberOfLinesThatStartWith(1, "commit," + batchId, csv);
+            assertTrue(csv.contains("compressed 123"));
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.STREAM_TO_FILE_COMPRESSION_ENABLED, false, "unittest");
+        }
+    }
+
+    @Test
+    public void testStagingPurgeKeepsBatchesThatExist() throws Exception {
+        save(new TestExtract(id++, "purge 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        routeAndCreateGaps();
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        InternalOutgoingTransport transport = new InternalOutgoingTransport(os, IoConstants.ENCODING);
+        List<OutgoingBatch> batches = getDataExtractorService().extract(new ProcessInfo(), TestConstants.TEST_CLIENT_NODE, transport);
+        transport.close();
+
+        OutgoingBatch batch = null;
+        for (OutgoingBatch outgoingBatch : batches) {
+            if (outgoingBatch.getChannelId().equals(TestConstants.TEST_CHANNEL_ID)) {
+                batch = outgoingBatch;
+            }
+        }
+        assertNotNull(batch);
+        assertTrue(getOutgoingBatchService().getAllBatchIds().contains(batch.getBatchId()));
+
+        long purgedBatchId = Integer.MAX_VALUE;
+        assertFalse(getOutgoingBatchService().getAllBatchIds().contains(purgedBatchId));
+        IStagedResource purged = getStagingManager().create(Constants.STAGING_CATEGORY_OUTGOING,
+                batch.getStagedLocation(), purgedBatchId);
+        BufferedWriter writer = purged.getWriter(0);
+        writer.write("batch," + purgedBatchId);
+        writer.newLine();
+        purged.close();
+        purged.setState(State.DONE);
+
+        getStagingManager().clean(1);
+        assertNotNull(getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING, batch.getStagedLocation(), batch.getBatchId()));
+        assertNull(getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING, batch.getStagedLocation(), purgedBatchId));
+    }
+
+    @Test
+    public void testPreExtractForPullingNode() {
+        save(new TestExtract(id++, "abc 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        routeAndCreateGaps();
+
+        NodeCommunication nodeCommunication = new NodeCommunication();
+        nodeCommunication.setNodeId(TestConstants.TEST_CLIENT_EXTERNAL_ID);
+        nodeCommunication.setCommunicationType(CommunicationType.PRE_XTRCT);
+        ((DataExtractorService) getDataExtractorService()).preExtract(nodeCommunication);
+
+        int stagedCount = 0;
+        for (OutgoingBatch batch : getOutgoingBatchService().getOutgoingBatches(TestConstants.TEST_CLIENT_EXTERNAL_ID,
+                false).getBatches()) {
+            if (batch.getChannelId().equals(TestConstants.TEST_CHANNEL_ID)) {
+                assertEquals(batch.getStatus(), OutgoingBatch.Status.NE);
+                IStagedResource resource = getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING,
+                        batch.getStagedLocation(), batch.getBatchId());
+                assertNotNull(resource);
+                assertEquals(resource.getState(), State.DONE);
+                stagedCount++;
+            }
+        }
+        assertEquals(stagedCount, 1);
+
+        ExtractResults results = extract();
+        assertNumberOfLinesThatStartWith(1, "insert,", results.getCsv());
+    }
+
+    @Test
+    public void testTableCacheSharedAcrossBatches() {
+        DataExtractorService dataExtractorService = (DataExtractorService) getDataExtractorService();
+        ITriggerRouterService triggerRouterService = getTriggerRouterService();
+        TriggerHistory history = triggerRouterService.getNewestTriggerHistoryForTrigger(TEST_TABLE, null, null,
+                TEST_TABLE);
+        Node sourceNode = getNodeService().findIdentity();
+
+        Table table = dataExtractorService.new ColumnsAccordingToTriggerHistory(sourceNode,
+                TestConstants.TEST_CLIENT_NODE).lookup(TestConstants.ROUTER_ID_ROOT_2_TEST, history, true, true);
+        Table cachedTable = dataExtractorService.new ColumnsAccordingToTriggerHistory(sourceNode,
+                TestConstants.TEST_CLIENT_NODE).lookup(TestConstants.ROUTER_ID_ROOT_2_TEST, history, true, true);
+        assertTrue(table == cachedTable);
+
+        Router router = triggerRouterService.getRouterById(TestConstants.ROUTER_ID_ROOT_2_TEST, false);
+        triggerRouterService.saveRouter(router);
+        Table refreshedTable = dataExtractorService.new ColumnsAccordingToTriggerHistory(sourceNode,
+                TestConstants.TEST_CLIENT_NODE).lookup(TestConstants.ROUTER_ID_ROOT_2_TEST, history, true, true);
+        assertTrue(table != refreshedTable);
+        assertEquals(refreshedTable.getColumnCount(), table.getColumnCount());
+    }
+
+    @Test
+    public void testExtractDataInPages() {
+        for (int i = 0; i < 5; i++) {
+            save(new TestExtract(id++, "page row " + i, "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                    System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                    Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        }
+        routeAndCreateGaps();
+        getParameterService().saveParameter(ParameterConstants.EXTRACT_DATA_PAGE_SIZE, 2, "unittest");
+        try {
+            ExtractResults results = extract();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(StringUtils.countMatches(results.getCsv(), "page row " + i), 1);
+            }
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.EXTRACT_DATA_PAGE_SIZE, 100000, "unittest");
+        }
+    }
+
+    @Test
+    public void testSelectDataInPagesWithSeveralRoutersPerData() {
+        long startDataId = getDataService().findMaxDataId();
+        for (int i = 0; i < 3; i++) {
+            save(new TestExtract(id++, "router page row " + i, "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                    System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                    Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        }
+        routeAndCreateGaps();
+        String dataEventTable = TableConstants.getTableName(getSymmetricEngine().getTablePrefix(),
+                TableConstants.SYM_DATA_EVENT);
+        String dataTable = TableConstants.getTableName(getSymmetricEngine().getTablePrefix(), TableConstants.SYM_DATA);
+        String batchTable = TableConstants.getTableName(getSymmetricEngine().getTablePrefix(),
+                TableConstants.SYM_OUTGOING_BATCH);
+        List<Row> events = getSqlTemplate().query(String.format(
+                "select e.batch_id, e.data_id from %s e inner join %s d on d.data_id=e.data_id where d.data_id > ? and d.row_data like '%%router page row%%' "
+                        + "and e.batch_id = (select min(batch_id) from %s where data_id > ?)", dataEventTable, dataTable, dataEventTable),
+                new Object[] { startDataId, startDataId }, new int[] { Types.NUMERIC, Types.NUMERIC });
+        assertEquals(3, events.size());
+        long batchId = events.get(0).getLong("batch_id");
+        for (Row event : events) {
+            for (String routerId : new String[] { "a_extra_router", "z_extra_router" }) {
+                getSqlTemplate().update(String.format("insert into %s (data_id, batch_id, router_id) values(?,?,?)",
+                        dataEventTable), event.getLong("data_id"), batchId, routerId);
+            }
+        }
+        Row outgoingBatch = getSqlTemplate().queryForRow(String.format(
+                "select node_id, channel_id from %s where batch_id=?", batchTable), batchId);
+        Batch batch = new Batch(BatchType.EXTRACT, batchId, outgoingBatch.getString("channel_id"), null,
+                getNodeService().findIdentity().getNodeId(), outgoingBatch.getString("node_id"), false);
+
+        getParameterService().saveParameter(ParameterConstants.EXTRACT_DATA_PAGE_SIZE, 2, "unittest");
+        ISqlReadCursor<Data> cursor = null;
+        try {
+            List<String> keys = new ArrayList<String>();
+            cursor = getDataService().selectDataFor(batch);
+            Data data = null;
+            while ((data = cursor.next()) != null) {
+                keys.add(String.format("%020d %s", data.getDataId(), data.getAttribute(CsvData.ATTRIBUTE_ROUTER_ID)));
+            }
+            assertEquals(9, keys.size());
+            List<String> sortedKeys = new ArrayList<String>(new TreeSet<String>(keys));
+            assertEquals(sortedKeys, keys);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            getParameterService().saveParameter(ParameterConstants.EXTRACT_DATA_PAGE_SIZE, 100000, "unittest");
+            getSqlTemplate().update(String.format("delete from %s where router_id in (?,?)", dataEventTable),
+                    "a_extra_router", "z_extra_router");
+        }
+    }
+
+    @Test
+    public void testPrimaryKeyRangesForReload() {
+        for (int i = 0; i < 7; i++) {
+            save(new TestExtract(id++, "abc 123", "abcdefghijklmnopqrstuvwxyz", new Timestamp(
+                    System.currentTimeMillis()), new Date(System.currentTimeMillis()), true,
+                    Integer.MAX_VALUE, new BigDecimal(Double.toString(Math.PI))));
+        }
+        Table table = getPlatform().getTableFromCache(null, null, TEST_TABLE, true);
+        long rowCount = getSqlTemplate().queryForLong(String.format("select count(*) from %s", TEST_TABLE));
+
+        Map<String, Long> rangeSelects = ((DataService) getDataService()).getPrimaryKeyRangesForReload(table,
+                TestConstants.TEST_CLIENT_NODE, "1=1", rowCount, 3);
+        assertEquals(rangeSelects.size(), 3);
+        long rangeRowCount = 0;
+        long estimatedRowCount = 0;
+        for (Map.Entry<String, Long> rangeSelect : rangeSelects.entrySet()) {
+            rangeRowCount += getSqlTemplate().queryForLong(
+                    String.format("select count(*) from %s t where %s", TEST_TABLE, rangeSelect.getKey()));
+            estimatedRowCount += rangeSelect.getValue();
+        }
+        assertEquals(rangeRowCount, rowCount);
+        assertEquals(estimatedRowCount, rowCount);
+    }
+
     protected ExtractResults extract() {
         IDataExtractorService service = getDataExtractorService();
         StringWriter writer = new StringWriter();
@@ -63,12 +63,18 @@ abstract public class AbstractRouterServiceTest extends AbstractServiceTest {
     @Test
     public void testRoutingScenarios() throws Exception {
         testMultiChannelRoutingToEveryone();
+        testMultiChannelRoutingInParallel();
+        testMultiChannelRoutingWithBulkDataEventInsert();
+        testMultiChannelRoutingWithPipeline();
         testLookupTableRouting();
+        testLookupTableRoutingWithPipeline();
         testColumnMatchTransactionalOnlyRoutingToNode1();
+        testColumnMatchTransactionalOnlyRoutingToNode1WithPipeline();
         testSubSelectNonTransactionalRoutingToNode1();
         testSyncIncomingBatch();
         // testLargeNumberOfEventsToManyNodes();
         testBshTransactionalRoutingOnUpdate();
+        testBshTransactionalRoutingOnUpdateCompiled();
         testBshRoutingDeletesToNode3();
         testColumnMatchSubtableRoutingToNode1();
         testColumnMatchOnNull();
@@ -154,6 +160,51 @@ abstract public class AbstractRouterServiceTest extends AbstractServiceTest {
         Assert.assertEquals(getDbDialect().supportsTransactionId() ? 1 : 15, countBatchesForChannel(batches, otherChannel));
     }
 
+    public void testMultiChannelRoutingInParallel() {
+        boolean synchronizeAllJobs = getParameterService().is(ParameterConstants.SYNCHRONIZE_ALL_JOBS);
+        getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, false, "unittest");
+        getParameterService().saveParameter(ParameterConstants.ROUTING_THREAD_COUNT_PER_SERVER, 2, "unittest");
+        try {
+            testMultiChannelRoutingToEveryone();
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.ROUTING_THREAD_COUNT_PER_SERVER, 1, "unittest");
+            getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, synchronizeAllJobs, "unittest");
+        }
+    }
+
+    public void testMultiChannelRoutingWithBulkDataEventInsert() {
+        getParameterService().saveParameter(ParameterConstants.ROUTING_DATA_EVENT_BULK_INSERT_ENABLED, true, "unittest");
+        try {
+            testMultiChannelRoutingToEveryone();
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.ROUTING_DATA_EVENT_BULK_INSERT_ENABLED, false, "unittest");
+        }
+    }
+
+    public void testMultiChannelRoutingWithPipeline() {
+        boolean synchronizeAllJobs = getParameterService().is(ParameterConstants.SYNCHRONIZE_ALL_JOBS);
+        getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, false, "unittest");
+        getParameterService().saveParameter(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 4, "unittest");
+        try {
+            testMultiChannelRoutingToEveryone();
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 1, "unittest");
+            getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, synchronizeAllJobs, "unittest");
+        }
+    }
+
+    public void testLookupTableRoutingWithPipeline() {
+        boolean synchronizeAllJobs = getParameterService().is(ParameterConstants.SYNCHRONIZE_ALL_JOBS);
+        getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, false, "unittest");
+        getParameterService().saveParameter(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 4, "unittest");
+        try {
+            testLookupTableRouting();
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 1, "unittest");
+            getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, synchronizeAllJobs, "unittest");
+        }
+    }
+
     public void testLookupTableRouting() {
 
         getDbDialect().truncateTable("test_lookup_table");
@@ -282,6 +333,18 @@ abstract public class AbstractRouterServiceTest extends AbstractServiceTest {
 
     }
 
+    public void testColumnMatchTransactionalOnlyRoutingToNode1WithPipeline() {
+        boolean synchronizeAllJobs = getParameterService().is(ParameterConstants.SYNCHRONIZE_ALL_JOBS);
+        getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, false, "unittest");
+        getParameterService().saveParameter(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 3, "unittest");
+        try {
+            testColumnMatchTransactionalOnlyRoutingToNode1();
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.ROUTING_PIPELINE_WORKER_COUNT, 1, "unittest");
+            getParameterService().saveParameter(ParameterConstants.SYNCHRONIZE_ALL_JOBS, synchronizeAllJobs, "unittest");
+        }
+    }
+
     public void testSubSelectNonTransactionalRoutingToNode1() {
         resetBatches();
 
@@ -447,6 +510,16 @@ abstract public class AbstractRouterServiceTest extends AbstractServiceTest {
         resetBatches();
     }
 
+    public void testBshTransactionalRoutingOnUpdateCompiled() {
+        getSqlTemplate().update(String.format("update %s set routing_varchar=?", TEST_TABLE_1), NODE_GROUP_NODE_1.getNodeId());
+        getParameterService().saveParameter(ParameterConstants.ROUTING_BSH_COMPILE_ENABLED, true, "unittest");
+        try {
+            testBshTransactionalRoutingOnUpdate();
+        } finally {
+            getParameterService().saveParameter(ParameterConstants.ROUTING_BSH_COMPILE_ENABLED, false, "unittest");
+        }
+    }
+
     public void testBshRoutingDeletesToNode3() {
         resetBatches();
 
@@ -22,6 +22,7 @@ package org.jumpmind.symmetric.statistic;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -173,6 +174,14 @@ public class MockStatisticManager implements IStatisticManager {
     public void removeRouterStatsByBatch(Long batchId) {
     }
 
+    public LatencyHistogram getRouterLatency(String stage, String channelId, String routerId) {
+        return new LatencyHistogram();
+    }
+
+    public Map<String, LatencyHistogram> getRouterLatencies() {
+        return new HashMap<String, LatencyHistogram>();
+    }
+
     @Override
     public void addJobStats(String targetNodeId, int targetNodeCount, String jobName, long startTime, long endTime, long processedCount) {
         // TODO Auto-generated method stub
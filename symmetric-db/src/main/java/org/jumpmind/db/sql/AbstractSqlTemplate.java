@@ -20,11 +20,22 @@
  */
 package org.jumpmind.db.sql;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.exception.IoException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +59,85 @@ abstract public class AbstractSqlTemplate implements ISqlTemplate {
         }
     }
 
+    public boolean streamBlob(String sql, int jdbcTypeCode, String jdbcTypeName,
+            BinaryEncoding encoding, Writer writer, Object... args) {
+        byte[] binaryData = queryForBlob(sql, jdbcTypeCode, jdbcTypeName, args);
+        if (binaryData != null) {
+            try {
+                encodeBlob(new ByteArrayInputStream(binaryData), encoding, binaryData.length, writer);
+                return true;
+            } catch (IOException e) {
+                throw new IoException(e);
+            }
+        } else {
+            return false;
+        }
+    }
+
+    public boolean streamClob(String sql, int jdbcTypeCode, String jdbcTypeName, Writer writer,
+            Object... args) {
+        String value = queryForClob(sql, jdbcTypeCode, jdbcTypeName, args);
+        if (value != null) {
+            try {
+                writer.write(value);
+                return true;
+            } catch (IOException e) {
+                throw new IoException(e);
+            }
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Encode a binary stream to a writer, reading at most chunkSize bytes at
+     * a time.  Base64 chunks are kept to a multiple of three bytes so they can
+     * be encoded independently without padding in the middle of the value.
+     */
+    protected static void encodeBlob(InputStream is, BinaryEncoding encoding, int chunkSize, Writer writer)
+            throws IOException {
+        if (encoding == BinaryEncoding.BASE64 || encoding == BinaryEncoding.HEX) {
+            if (encoding == BinaryEncoding.BASE64) {
+                chunkSize = Math.max(3, chunkSize - chunkSize % 3);
+            } else {
+                chunkSize = Math.max(1, chunkSize);
+            }
+            byte[] buffer = new byte[chunkSize];
+            int length = 0;
+            while ((length = fill(is, buffer)) > 0) {
+                byte[] chunk = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+                if (encoding == BinaryEncoding.BASE64) {
+                    writer.write(new String(Base64.encodeBase64(chunk), "US-ASCII"));
+                } else {
+                    writer.write(Hex.encodeHex(chunk));
+                }
+            }
+        } else {
+            copy(new InputStreamReader(is), chunkSize, writer);
+        }
+    }
+
+    /**
+     * Copy a character stream to a writer, reading at most chunkSize
+     * characters at a time.
+     */
+    protected static void copy(Reader reader, int chunkSize, Writer writer) throws IOException {
+        char[] buffer = new char[Math.max(1, chunkSize)];
+        int length = 0;
+        while ((length = reader.read(buffer)) != -1) {
+            writer.write(buffer, 0, length);
+        }
+    }
+
+    private static int fill(InputStream is, byte[] buffer) throws IOException {
+        int offset = 0;
+        int length = 0;
+        while (offset < buffer.length && (length = is.read(buffer, offset, buffer.length - offset)) != -1) {
+            offset += length;
+        }
+        return offset;
+    }
+
     public String queryForString(String sql, Object... args) {
         return queryForObject(sql, String.class, args);
     }
@@ -112,6 +202,11 @@ abstract public class AbstractSqlTemplate implements ISqlTemplate {
         int[] types) {
         return queryForCursor(sql, mapper, args, types);
     }
+
+    public <T> ISqlReadCursor<T> queryForCursor(String sql, int maxRowsToFetch, ISqlRowMapper<T> mapper,
+            Object[] args, int[] types) {
+        return queryForCursor(sql, mapper, args, types);
+    }
     
     public List<Row> query(String sql) {
         return query(sql, (Object[])null, (int[]) null);
@@ -20,10 +20,13 @@
  */
 package org.jumpmind.db.sql;
 
+import java.io.Writer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.jumpmind.db.util.BinaryEncoding;
+
 /**
  * This interface insulates the application from the data connection technology.
  */
@@ -33,12 +36,30 @@ public interface ISqlTemplate {
     public byte[] queryForBlob(String sql, Object... args);
 
     public byte[] queryForBlob(String sql, int jdbcTypeCode, String jdbcTypeName, Object... args);
+
+    /**
+     * Select a single blob and write it encoded to the writer.  Implementations
+     * should read and encode the blob in chunks so that neither the raw bytes
+     * nor the encoded value are held in memory all at once.
+     * 
+     * @return false if no row was selected or the blob was null
+     */
+    public boolean streamBlob(String sql, int jdbcTypeCode, String jdbcTypeName,
+            BinaryEncoding encoding, Writer writer, Object... args);
     
     @Deprecated
     public String queryForClob(final String sql, final Object... args);
 
     public String queryForClob(String sql, int jdbcTypeCode, String jdbcTypeName, Object... args);
 
+    /**
+     * Select a single clob and write it to the writer in chunks.
+     * 
+     * @return false if no row was selected or the clob was null
+     */
+    public boolean streamClob(String sql, int jdbcTypeCode, String jdbcTypeName, Writer writer,
+            Object... args);
+
     public <T> T queryForObject(String sql, Class<T> clazz, Object... params);
     
     public <T> T queryForObject(String sql, ISqlRowMapper<T> mapper, Object... params);
@@ -69,6 +90,14 @@ public interface ISqlTemplate {
     
     public <T> ISqlReadCursor<T> queryForCursor(String sql, ISqlRowMapper<T> mapper);
 
+    /**
+     * Open a cursor that the database stops after maxRowsToFetch rows, so
+     * that closing it early does not leave the rest of the results to be
+     * read or discarded.
+     */
+    public <T> ISqlReadCursor<T> queryForCursor(String sql, int maxRowsToFetch, ISqlRowMapper<T> mapper,
+            Object[] params, int[] types);
+
     public List<Row> query(String sql);
 
     public List<Row> query(String sql, Object[] params, int[] types);
@@ -26,6 +26,7 @@ public class SqlTemplateSettings {
     protected int queryTimeout;
     protected int batchSize = 100;
     protected int batchBulkLoaderSize = 25;
+    protected int lobChunkSize = 65536;
     protected boolean readStringsAsBytes;
     protected boolean treatBinaryAsLob;
     protected boolean rightTrimCharValues;
@@ -124,6 +125,14 @@ public class SqlTemplateSettings {
     public void setBatchBulkLoaderSize(int batchBulkLoaderSize) {
         this.batchBulkLoaderSize = batchBulkLoaderSize;
     }
+
+    public int getLobChunkSize() {
+        return lobChunkSize;
+    }
+
+    public void setLobChunkSize(int lobChunkSize) {
+        this.lobChunkSize = lobChunkSize;
+    }
     
     
 
@@ -0,0 +1,94 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constants for the binary version of the data protocol. A stream starts with
+ * the {@link #MAGIC} bytes and the {@link #VERSION}. Each line that the csv
+ * protocol would write is a record made up of a one byte record type followed
+ * by its fields. Fields are written as a varint field count, a null bitmap with
+ * one bit per field and a varint byte length and UTF-8 bytes for each field
+ * that is not null. Tables are defined once per batch with a
+ * {@link #TABLE_DEFINITION} record and referenced by id afterwards.
+ */
+final public class BinaryProtocolConstants {
+
+    private BinaryProtocolConstants() {
+    }
+
+    public static final byte[] MAGIC = { 'S', 'Y', 'M', 'B' };
+
+    public static final int VERSION = 1;
+
+    /**
+     * A line whose key has no record type. The key is the first field.
+     */
+    public static final int KEYED = 0;
+
+    /**
+     * A varint table id, the catalog, schema and table name fields, the key
+     * column fields and the column fields
+     */
+    public static final int TABLE_DEFINITION = 1;
+
+    /**
+     * A varint table id of a table that was already defined
+     */
+    public static final int TABLE_REFERENCE = 2;
+
+    private static final String[] KEYS = { null, null, null, CsvConstants.NODEID, CsvConstants.BINARY,
+            CsvConstants.CHANNEL, CsvConstants.BATCH, CsvConstants.RETRY, CsvConstants.NO_BINARY_OLD_DATA,
+            CsvConstants.CATALOG, CsvConstants.SCHEMA, CsvConstants.TABLE, CsvConstants.KEYS, CsvConstants.COLUMNS,
+            CsvConstants.INSERT, CsvConstants.OLD, CsvConstants.UPDATE, CsvConstants.DELETE, CsvConstants.SQL,
+            CsvConstants.BSH, CsvConstants.CREATE, CsvConstants.IGNORE, CsvConstants.COMMIT, CsvConstants.STATS_COLUMNS,
+            CsvConstants.STATS };
+
+    private static final Map<String, Integer> RECORD_TYPES = new HashMap<String, Integer>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            if (KEYS[i] != null) {
+                RECORD_TYPES.put(KEYS[i], i);
+            }
+        }
+    }
+
+    /**
+     * @return the record type for a line key or {@link #KEYED} if the key has
+     *         no record type of its own
+     */
+    public static int getRecordType(String key) {
+        Integer recordType = RECORD_TYPES.get(key);
+        return recordType != null ? recordType : KEYED;
+    }
+
+    /**
+     * @return the line key for a record type or null if the record type does
+     *         not stand for a line key
+     */
+    public static String getKey(int recordType) {
+        return recordType >= 0 && recordType < KEYS.length ? KEYS[recordType] : null;
+    }
+
+}
@@ -20,6 +20,9 @@
  */
 package org.jumpmind.symmetric.io.data;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -27,6 +30,7 @@ import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
+import org.jumpmind.exception.IoException;
 import org.jumpmind.util.LinkedCaseInsensitiveMap;
 
 /**
@@ -56,6 +60,8 @@ public class CsvData {
 
     private Map<String, String> csvData = null;
 
+    private Map<String, IStreamedValue[]> streamedData = null;
+
     private Map<String, Object> attributes;
     
     private boolean noBinaryOldData = false;
@@ -130,6 +136,9 @@ public class CsvData {
     public void removeAllData(String key) {
         removeParsedData(key);
         removeCsvData(key);
+        if (streamedData != null) {
+            streamedData.remove(key);
+        }
     }
 
     public void putCsvData(String key, String data) {
@@ -142,6 +151,7 @@ public class CsvData {
     }
 
     public String getCsvData(String key) {
+        readStreamedData(key);
         String data = null;
         if (csvData != null) {
             data = csvData.get(key);
@@ -193,6 +203,7 @@ public class CsvData {
     }
     
     public String[] getParsedData(String key) {
+        readStreamedData(key);
         String[] values = null;
         if (parsedCsvData != null && parsedCsvData.containsKey(key)) {
             values = parsedCsvData.get(key);
@@ -206,6 +217,77 @@ public class CsvData {
         return values;
     }
 
+    /**
+     * Stream some of the values of parsed data when the data is written by
+     * {@link #writeCsvData(String, Writer)}. The parsed data for the key has
+     * to be put first. A value is only held in memory if the parsed or csv
+     * data for the key is asked for.
+     * 
+     * @param values
+     *            the streamed value for each column, or null for a column
+     *            whose parsed value is used
+     */
+    public void putStreamedData(String key, IStreamedValue[] values) {
+        if (streamedData == null) {
+            streamedData = new HashMap<String, IStreamedValue[]>(2);
+        }
+        changedDataIndicators = null;
+        streamedData.put(key, values);
+    }
+
+    public boolean hasStreamedData(String key) {
+        return streamedData != null && streamedData.containsKey(key);
+    }
+
+    /**
+     * Write the same csv that {@link #getCsvData(String)} returns, streaming
+     * any values that were put with
+     * {@link #putStreamedData(String, IStreamedValue[])} straight to the
+     * writer.
+     */
+    public void writeCsvData(String key, Writer writer) throws IOException {
+        IStreamedValue[] streamedValues = streamedData != null ? streamedData.get(key) : null;
+        if (streamedValues == null) {
+            String data = getCsvData(key);
+            if (data != null) {
+                writer.write(data);
+            }
+        } else {
+            String[] values = parsedCsvData.get(key);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                QuotedValueWriter valueWriter = new QuotedValueWriter(writer);
+                if (i < streamedValues.length && streamedValues[i] != null) {
+                    if (streamedValues[i].write(valueWriter)) {
+                        valueWriter.end();
+                    }
+                } else if (values[i] != null) {
+                    valueWriter.write(values[i]);
+                    valueWriter.end();
+                }
+            }
+        }
+    }
+
+    protected void readStreamedData(String key) {
+        IStreamedValue[] streamedValues = streamedData != null ? streamedData.remove(key) : null;
+        if (streamedValues != null) {
+            String[] values = parsedCsvData.get(key);
+            for (int i = 0; i < values.length && i < streamedValues.length; i++) {
+                if (streamedValues[i] != null) {
+                    StringWriter writer = new StringWriter();
+                    try {
+                        values[i] = streamedValues[i].write(writer) ? writer.toString() : null;
+                    } catch (IOException e) {
+                        throw new IoException(e);
+                    }
+                }
+            }
+        }
+    }
+
     public Map<String, String> toKeyColumnValuePairs(Table table) {
         Map<String, String> data = toColumnNameValuePairs(table.getPrimaryKeyColumnNames(), CsvData.PK_DATA);
         if (data.size() == 0) {
@@ -312,4 +394,60 @@ public class CsvData {
         }
         return size;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes a value as a quoted field the same way
+     * {@link CsvUtils#escapeCsvData(String[])} does. The opening quote is
+     * written with the first character so that a null value writes nothing.
+     */
+    static class QuotedValueWriter extends Writer {
+
+        private Writer writer;
+
+        private boolean quoted;
+
+        QuotedValueWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (!quoted) {
+                writer.write('"');
+                quoted = true;
+            }
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                char c = cbuf[i];
+                if (c == '\\' || c == '"') {
+                    writer.write(cbuf, start, i - start);
+                    writer.write('\\');
+                    start = i;
+                }
+            }
+            writer.write(cbuf, start, off + len - start);
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+            write(str.toCharArray(), 0, str.length());
+        }
+
+        public void end() throws IOException {
+            if (!quoted) {
+                writer.write('"');
+            }
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+}
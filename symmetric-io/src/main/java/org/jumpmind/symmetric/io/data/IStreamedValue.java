@@ -0,0 +1,39 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A column value that is written straight to the output when its row is
+ * written, so that large values do not have to be held in memory.
+ */
+public interface IStreamedValue {
+
+    /**
+     * Write the unescaped value to the writer.
+     * 
+     * @return false if the value is null, in which case nothing was written
+     */
+    public boolean write(Writer writer) throws IOException;
+
+}
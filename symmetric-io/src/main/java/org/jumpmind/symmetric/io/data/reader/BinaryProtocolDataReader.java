@@ -0,0 +1,231 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.reader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.exception.IoException;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.BinaryProtocolConstants;
+import org.jumpmind.symmetric.io.data.CsvConstants;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+
+/**
+ * Reads the binary form of the data protocol written by
+ * {@link org.jumpmind.symmetric.io.data.writer.BinaryProtocolDataWriter}. Each
+ * record is turned into the same tokens that the csv protocol would produce, so
+ * batches, tables and rows are handled exactly as in {@link ProtocolDataReader}.
+ */
+public class BinaryProtocolDataReader extends ProtocolDataReader {
+
+    private static final Charset CHARSET = Charset.forName(IoConstants.ENCODING);
+
+    protected InputStream inputStream;
+
+    protected DataInputStream in;
+
+    protected Map<Integer, String[][]> tableDefinitions = new HashMap<Integer, String[][]>();
+
+    protected Map<String, Integer> definedTableIds = new HashMap<String, Integer>();
+
+    protected ArrayDeque<String[]> pendingTokens = new ArrayDeque<String[]>();
+
+    protected byte[] buffer = new byte[1024];
+
+    public BinaryProtocolDataReader(BatchType batchType, String targetNodeId, InputStream inputStream) {
+        super(batchType, targetNodeId, (Reader) null);
+        this.inputStream = inputStream;
+    }
+
+    public BinaryProtocolDataReader(BatchType batchType, String targetNodeId, IStagedResource stagedResource) {
+        super(batchType, targetNodeId, stagedResource);
+    }
+
+    @Override
+    public void open(DataContext context) {
+        if (this.stagedResource != null && this.inputStream == null) {
+            this.inputStream = this.stagedResource.getInputStream();
+        }
+        this.lineNumber = 0;
+        this.context = context;
+        this.in = new DataInputStream(inputStream instanceof BufferedInputStream ? inputStream
+                : new BufferedInputStream(inputStream));
+        readHeader();
+        this.next = readNext();
+    }
+
+    protected void readHeader() {
+        try {
+            byte[] magic = new byte[BinaryProtocolConstants.MAGIC.length];
+            int length = IOUtils.read(in, magic);
+            if (length == 0) {
+                return;
+            } else if (length < magic.length || !Arrays.equals(magic, BinaryProtocolConstants.MAGIC)) {
+                throw new IllegalStateException("The input does not start with the binary protocol header");
+            }
+            int version = (int) readVarint();
+            if (version > BinaryProtocolConstants.VERSION) {
+                throw new IllegalStateException(String.format(
+                        "Binary protocol version %d is newer than the supported version %d", version,
+                        BinaryProtocolConstants.VERSION));
+            }
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        }
+    }
+
+    @Override
+    protected String[] readTokens() throws IOException {
+        if (!pendingTokens.isEmpty()) {
+            return pendingTokens.poll();
+        }
+
+        int recordType = in.read();
+        if (recordType < 0) {
+            return null;
+        } else if (recordType == BinaryProtocolConstants.KEYED) {
+            return readFields(0);
+        } else if (recordType == BinaryProtocolConstants.TABLE_DEFINITION) {
+            int tableId = (int) readVarint();
+            String[] names = readFields(0);
+            String[] keys = readFields(1);
+            keys[0] = CsvConstants.KEYS;
+            String[] columns = readFields(1);
+            columns[0] = CsvConstants.COLUMNS;
+            String[][] definition = { new String[] { CsvConstants.CATALOG, toToken(names[0]) },
+                    new String[] { CsvConstants.SCHEMA, toToken(names[1]) },
+                    new String[] { CsvConstants.TABLE, names[2] }, keys, columns };
+            tableDefinitions.put(tableId, definition);
+            return queueTable(tableId, definition, true);
+        } else if (recordType == BinaryProtocolConstants.TABLE_REFERENCE) {
+            int tableId = (int) readVarint();
+            String[][] definition = tableDefinitions.get(tableId);
+            if (definition == null) {
+                throw new IllegalStateException(String.format(
+                        "Table id %d was referenced before it was defined", tableId));
+            }
+            return queueTable(tableId, definition, false);
+        } else {
+            String key = BinaryProtocolConstants.getKey(recordType);
+            if (key == null) {
+                throw new IllegalStateException(String.format("Unknown binary protocol record type %d",
+                        recordType));
+            }
+            String[] tokens = readFields(1);
+            tokens[0] = key;
+            return tokens;
+        }
+    }
+
+    /**
+     * Queue the lines for a table. The keys and columns are always needed for
+     * a new definition, because table ids are reused by every batch. For a
+     * reference they are only needed when a different table definition with
+     * the same name was read since this one.
+     */
+    protected String[] queueTable(int tableId, String[][] definition, boolean newDefinition) {
+        String fullyQualifiedTableName = Table.getFullyQualifiedTableName(definition[0][1], definition[1][1],
+                definition[2][1]);
+        Integer definedTableId = definedTableIds.put(fullyQualifiedTableName, tableId);
+        int lineCount = !newDefinition && definedTableId != null && definedTableId == tableId ? 3
+                : definition.length;
+        for (int i = 1; i < lineCount; i++) {
+            pendingTokens.add(definition[i]);
+        }
+        return definition[0];
+    }
+
+    /**
+     * Staged batches are in the binary form when they start with the
+     * {@link BinaryProtocolConstants#MAGIC} bytes, which can never start a csv
+     * or gzip file.
+     */
+    public static boolean isBinary(IStagedResource resource) {
+        if (!resource.isFileResource()) {
+            return false;
+        }
+        InputStream is = null;
+        try {
+            is = new FileInputStream(resource.getFile());
+            byte[] magic = new byte[BinaryProtocolConstants.MAGIC.length];
+            return IOUtils.read(is, magic) == magic.length && Arrays.equals(magic, BinaryProtocolConstants.MAGIC);
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    protected String toToken(String value) {
+        return value != null ? value : "";
+    }
+
+    protected String[] readFields(int offset) throws IOException {
+        int count = (int) readVarint();
+        String[] values = new String[offset + count];
+        byte[] nullBitmap = new byte[(count + 7) / 8];
+        in.readFully(nullBitmap);
+        for (int i = 0; i < count; i++) {
+            if ((nullBitmap[i / 8] & (1 << (i % 8))) == 0) {
+                int length = (int) readVarint();
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                in.readFully(buffer, 0, length);
+                values[offset + i] = new String(buffer, 0, length, CHARSET);
+            }
+        }
+        return values;
+    }
+
+    protected long readVarint() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public void close() {
+        IOUtils.closeQuietly(in);
+        super.close();
+    }
+
+}
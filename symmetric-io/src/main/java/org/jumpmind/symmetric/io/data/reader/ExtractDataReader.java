@@ -20,13 +20,13 @@
  */
 package org.jumpmind.symmetric.io.data.reader;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.ArrayUtils;
 import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
@@ -39,6 +39,7 @@ import org.jumpmind.symmetric.io.data.CsvData;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.IDataReader;
+import org.jumpmind.symmetric.io.data.IStreamedValue;
 import org.jumpmind.util.CollectionUtils;
 import org.jumpmind.util.FormatUtils;
 import org.jumpmind.util.Statistics;
@@ -190,31 +191,17 @@ public class ExtractDataReader implements IDataReader {
                     args[i] = columnDataMap.get(pkColumns[i].getName());
                 }
 
+                IStreamedValue[] lobValues = new IStreamedValue[rowData.length];
                 for (Column lobColumn : lobColumns) {
                     String sql = buildSelect(table, lobColumn, pkColumns);
-                    String valueForCsv = null;
-                    if (platform.isBlob(lobColumn.getMappedTypeCode())) {
-                        byte[] binaryData = sqlTemplate.queryForBlob(sql, lobColumn.getJdbcTypeCode(),lobColumn.getJdbcTypeName(), args);
-                        if (binaryData != null) {
-                            if (batch.getBinaryEncoding() == BinaryEncoding.BASE64) {
-                                valueForCsv = new String(Base64.encodeBase64(binaryData));
-                            } else if (batch.getBinaryEncoding() == BinaryEncoding.HEX) {
-                                valueForCsv = new String(Hex.encodeHex(binaryData));
-                            } else {
-                                valueForCsv = new String(binaryData);
-                            }
-                            binaryData = null;
-                        }
-                    } else {
-                        valueForCsv = sqlTemplate.queryForClob(sql, lobColumn.getJdbcTypeCode(),lobColumn.getJdbcTypeName(), args);
-                    }
-
                     int index = ArrayUtils.indexOf(columnNames, lobColumn.getName());
-                    rowData[index] = valueForCsv;
-
+                    rowData[index] = null;
+                    lobValues[index] = new LobFromSource(sqlTemplate, sql, lobColumn,
+                            platform.isBlob(lobColumn.getMappedTypeCode()), batch.getBinaryEncoding(), args);
                 }
 
                 data.putParsedData(CsvData.ROW_DATA, rowData);
+                data.putStreamedData(CsvData.ROW_DATA, lobValues);
             }
         }
         return data;
@@ -252,4 +239,44 @@ public class ExtractDataReader implements IDataReader {
         return sql.toString();
     }
 
+    /**
+     * A lob that is selected from the source table when its row is written,
+     * so the encoded value goes straight to the writer a chunk at a time.
+     */
+    static class LobFromSource implements IStreamedValue {
+
+        private ISqlTemplate sqlTemplate;
+
+        private String sql;
+
+        private Column lobColumn;
+
+        private boolean blob;
+
+        private BinaryEncoding encoding;
+
+        private Object[] args;
+
+        LobFromSource(ISqlTemplate sqlTemplate, String sql, Column lobColumn, boolean blob,
+                BinaryEncoding encoding, Object[] args) {
+            this.sqlTemplate = sqlTemplate;
+            this.sql = sql;
+            this.lobColumn = lobColumn;
+            this.blob = blob;
+            this.encoding = encoding;
+            this.args = args;
+        }
+
+        public boolean write(Writer writer) throws IOException {
+            if (blob) {
+                return sqlTemplate.streamBlob(sql, lobColumn.getJdbcTypeCode(), lobColumn.getJdbcTypeName(),
+                        encoding, writer, args);
+            } else {
+                return sqlTemplate.streamClob(sql, lobColumn.getJdbcTypeCode(), lobColumn.getJdbcTypeName(),
+                        writer, args);
+            }
+        }
+
+    }
+
 }
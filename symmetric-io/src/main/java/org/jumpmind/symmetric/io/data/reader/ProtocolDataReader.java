@@ -142,12 +142,9 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
             String[] statsColumns = null;
             String[] statsValues = null;
             Table table = null;
-            while (tokens != null || csvReader.readRecord()) {
+            while (tokens != null || (tokens = readTokens()) != null) {
                 lineNumber++;
                 context.put(CTX_LINE_NUMBER, lineNumber);
-                if (tokens == null) {
-                    tokens = csvReader.getValues();
-                }
                 bytesRead += logDebugAndCountBytes(tokens);
                 Statistics stats = null;             
                 
@@ -312,6 +309,15 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
 
     }
 
+    /**
+     * Read the next line of the protocol. The first value is the line key.
+     * 
+     * @return null when there are no more lines
+     */
+    protected String[] readTokens() throws IOException {
+        return csvReader.readRecord() ? csvReader.getValues() : null;
+    }
+
     public Batch nextBatch() {
         if (next instanceof Batch) {
             this.batch = (Batch) next;
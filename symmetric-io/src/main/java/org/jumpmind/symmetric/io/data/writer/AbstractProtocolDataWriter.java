@@ -20,6 +20,8 @@
  */
 package org.jumpmind.symmetric.io.data.writer;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +30,7 @@ import org.apache.commons.lang.StringUtils;
 import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
 import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.exception.IoException;
 import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.CsvConstants;
 import org.jumpmind.symmetric.io.data.CsvData;
@@ -158,7 +161,7 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
             statistics.get(batch).increment(DataWriterStatisticConstants.LINENUMBER);
             switch (data.getDataEventType()) {
                 case INSERT:
-                    println(CsvConstants.INSERT, data.getCsvData(CsvData.ROW_DATA));
+                    printData(CsvConstants.INSERT, data, CsvData.ROW_DATA);
                     statistics.get(batch).increment(DataWriterStatisticConstants.INSERTCOUNT);
                     break;
 
@@ -166,11 +169,10 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
                     if (!backwardsCompatible) {
                         String oldData = data.getCsvData(CsvData.OLD_DATA);
                         if (StringUtils.isNotBlank(oldData)) {
-                            println(CsvConstants.OLD, oldData);
+                            printData(CsvConstants.OLD, data, CsvData.OLD_DATA);
                         }
                     }
-                    println(CsvConstants.UPDATE, data.getCsvData(CsvData.ROW_DATA),
-                            data.getCsvData(CsvData.PK_DATA));
+                    printData(CsvConstants.UPDATE, data, CsvData.ROW_DATA, CsvData.PK_DATA);
                     statistics.get(batch).increment(DataWriterStatisticConstants.UPDATECOUNT);
                     break;
 
@@ -178,23 +180,23 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
                     if (!backwardsCompatible) {
                         String oldData = data.getCsvData(CsvData.OLD_DATA);
                         if (StringUtils.isNotBlank(oldData)) {
-                            println(CsvConstants.OLD, oldData);
+                            printData(CsvConstants.OLD, data, CsvData.OLD_DATA);
                         }
                     }
-                    println(CsvConstants.DELETE, data.getCsvData(CsvData.PK_DATA));
+                    printData(CsvConstants.DELETE, data, CsvData.PK_DATA);
                     statistics.get(batch).increment(DataWriterStatisticConstants.DELETECOUNT);
                     break;
 
                 case CREATE:
-                    println(CsvConstants.CREATE, data.getCsvData(CsvData.ROW_DATA));
+                    printData(CsvConstants.CREATE, data, CsvData.ROW_DATA);
                     break;
 
                 case BSH:
-                    println(CsvConstants.BSH, data.getCsvData(CsvData.ROW_DATA));
+                    printData(CsvConstants.BSH, data, CsvData.ROW_DATA);
                     break;
 
                 case SQL:
-                    println(CsvConstants.SQL, data.getCsvData(CsvData.ROW_DATA));
+                    printData(CsvConstants.SQL, data, CsvData.ROW_DATA);
                     break;
                     
                 case RELOAD:
@@ -214,6 +216,7 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
         }
         
         if (!inError) {
+            printStats(batch);
             println(CsvConstants.COMMIT, Long.toString(batch.getBatchId()));
             endBatch(batch);
         }
@@ -225,6 +228,13 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
         }
     }
 
+    /**
+     * Print the statistics of a batch just before it is committed. Nothing is
+     * printed by default.
+     */
+    protected void printStats(Batch batch) {
+    }
+
     abstract protected void endBatch(Batch batch);
 
     abstract protected void notifyEndBatch(Batch batch, IProtocolDataWriterListener listener);
@@ -246,6 +256,41 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
 
     abstract protected void print(Batch batch, String data);
 
+    /**
+     * Print a line made up of the key followed by the values stored in the
+     * data under each of the data keys. Streamed values are printed as they
+     * are read instead of being built into one string first.
+     */
+    protected long printData(String key, CsvData data, String... dataKeys) {
+        for (String dataKey : dataKeys) {
+            if (data.hasStreamedData(dataKey)) {
+                return printStreamedData(key, data, dataKeys);
+            }
+        }
+        String[] values = new String[dataKeys.length + 1];
+        values[0] = key;
+        for (int i = 0; i < dataKeys.length; i++) {
+            values[i + 1] = data.getCsvData(dataKeys[i]);
+        }
+        return println(values);
+    }
+
+    protected long printStreamedData(String key, CsvData data, String... dataKeys) {
+        PrintedDataWriter writer = new PrintedDataWriter();
+        try {
+            writer.write(key);
+            for (String dataKey : dataKeys) {
+                writer.write(delimiter);
+                data.writeCsvData(dataKey, writer);
+            }
+            writer.write("\n");
+        } catch (IOException e) {
+            throw new IoException(e);
+        }
+        statistics.get(batch).increment(DataWriterStatisticConstants.BYTECOUNT, writer.byteCount);
+        return writer.byteCount;
+    }
+
     protected long println(String... data) {
         long byteCount = 0;
         for (int i = 0; i < data.length; i++) {
@@ -274,4 +319,33 @@ abstract public class AbstractProtocolDataWriter implements IDataWriter {
         return statistics;
     }
 
+    /**
+     * Hands everything written to it to
+     * {@link AbstractProtocolDataWriter#print(Batch, String)}.
+     */
+    class PrintedDataWriter extends Writer {
+
+        long byteCount;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            write(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+            print(batch, str);
+            byteCount += str.length();
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
 }
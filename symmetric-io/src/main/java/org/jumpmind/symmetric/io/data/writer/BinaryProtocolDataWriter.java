@@ -0,0 +1,302 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.exception.IoException;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.BinaryProtocolConstants;
+import org.jumpmind.symmetric.io.data.CsvConstants;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvUtils;
+
+/**
+ * Writes the data protocol in its binary form. Row values are taken from the
+ * parsed data and written as length prefixed fields, so they are never escaped
+ * or quoted. Table metadata is written once per batch and referenced by id, so
+ * each batch can be read on its own. See {@link BinaryProtocolConstants} for the
+ * layout.
+ */
+public class BinaryProtocolDataWriter extends AbstractProtocolDataWriter {
+
+    private static final Charset CHARSET = Charset.forName(IoConstants.ENCODING);
+
+    private static final String[] NO_VALUES = new String[0];
+
+    private OutputStream out;
+
+    private Map<String, Integer> tableIds = new HashMap<String, Integer>();
+
+    private boolean headerWritten = false;
+
+    private long bytesWritten;
+
+    private StringBuilder printedLine = new StringBuilder();
+
+    private boolean printedQuote = false;
+
+    private boolean printedEscape = false;
+
+    public BinaryProtocolDataWriter(String sourceNodeId, OutputStream out) {
+        this(sourceNodeId, null, out);
+    }
+
+    public BinaryProtocolDataWriter(String sourceNodeId, List<IProtocolDataWriterListener> listeners,
+            OutputStream out) {
+        super(sourceNodeId, listeners, false);
+        if (out instanceof BufferedOutputStream) {
+            this.out = out;
+        } else {
+            this.out = new BufferedOutputStream(out);
+        }
+    }
+
+    @Override
+    public void start(Batch batch) {
+        tableIds.clear();
+        super.start(batch);
+    }
+
+    @Override
+    public boolean start(Table table) {
+        if (!batch.isIgnored()) {
+            this.table = table;
+            long start = bytesWritten;
+            String tableKey = table.getTableKey();
+            Integer tableId = tableIds.get(tableKey);
+            if (tableId == null) {
+                tableId = tableIds.size() + 1;
+                tableIds.put(tableKey, tableId);
+                writeRecordType(BinaryProtocolConstants.TABLE_DEFINITION);
+                writeVarint(tableId);
+                writeFields(new String[] { table.getCatalog(), table.getSchema(), table.getName() });
+                writeFields(getColumnNames(table.getPrimaryKeyColumns()));
+                writeFields(getColumnNames(table.getColumns()));
+            } else {
+                writeRecordType(BinaryProtocolConstants.TABLE_REFERENCE);
+                writeVarint(tableId);
+            }
+            countBytes(start);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    protected long printData(String key, CsvData data, String... dataKeys) {
+        long start = bytesWritten;
+        writeRecordType(BinaryProtocolConstants.getRecordType(key));
+        String[][] values = new String[dataKeys.length][];
+        for (int i = 0; i < dataKeys.length; i++) {
+            values[i] = getParsedData(data, dataKeys[i]);
+        }
+        writeFields(values);
+        return countBytes(start);
+    }
+
+    @Override
+    protected long println(String... data) {
+        long start = bytesWritten;
+        writeLine(data);
+        return countBytes(start);
+    }
+
+    @Override
+    protected int println(String key, Column[] columns) {
+        String[] data = new String[columns.length + 1];
+        data[0] = key;
+        for (int i = 0; i < columns.length; i++) {
+            data[i + 1] = columns[i].getName();
+        }
+        return (int) println(data);
+    }
+
+    /**
+     * Printed text is taken to be lines of the csv protocol. Each line is
+     * written as a record once its line feed is printed. A line feed inside a
+     * quoted value does not end the line.
+     */
+    @Override
+    protected void print(Batch batch, String data) {
+        int start = 0;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (printedEscape) {
+                printedEscape = false;
+            } else if (c == '\\') {
+                printedEscape = true;
+            } else if (c == '"') {
+                printedQuote = !printedQuote;
+            } else if (c == '\n' && !printedQuote) {
+                printedLine.append(data, start, i);
+                start = i + 1;
+                String[] tokens = CsvUtils.tokenizeCsvData(printedLine.toString());
+                printedLine.setLength(0);
+                if (tokens != null && tokens.length > 0) {
+                    println(tokens);
+                }
+            }
+        }
+        printedLine.append(data, start, data.length());
+    }
+
+    @Override
+    protected void endBatch(Batch batch) {
+        flush();
+    }
+
+    /**
+     * Write a node id line and flush it, so the reader knows the stream is
+     * still alive while no batch is being written
+     */
+    public void writeKeepAlive() {
+        writeLine(CsvConstants.NODEID, sourceNodeId);
+        flush();
+    }
+
+    @Override
+    protected void notifyEndBatch(Batch batch, IProtocolDataWriterListener listener) {
+    }
+
+    protected String[] getParsedData(CsvData data, String dataKey) {
+        String[] values = data.getParsedData(dataKey);
+        return values != null ? values : NO_VALUES;
+    }
+
+    protected String[] getColumnNames(Column[] columns) {
+        String[] names = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].getName();
+        }
+        return names;
+    }
+
+    protected long countBytes(long start) {
+        long byteCount = bytesWritten - start;
+        statistics.get(batch).increment(DataWriterStatisticConstants.BYTECOUNT, byteCount);
+        return byteCount;
+    }
+
+    /**
+     * Write one line of the protocol as a record without counting its bytes
+     * for the current batch
+     */
+    protected void writeLine(String... data) {
+        int recordType = BinaryProtocolConstants.getRecordType(data[0]);
+        writeRecordType(recordType);
+        if (recordType == BinaryProtocolConstants.KEYED) {
+            writeFields(data);
+        } else {
+            writeFields(Arrays.copyOfRange(data, 1, data.length));
+        }
+    }
+
+    protected void writeRecordType(int recordType) {
+        if (!headerWritten) {
+            write(BinaryProtocolConstants.MAGIC, BinaryProtocolConstants.MAGIC.length);
+            writeVarint(BinaryProtocolConstants.VERSION);
+            headerWritten = true;
+        }
+        writeByte(recordType);
+    }
+
+    /**
+     * Write one or more arrays of values as one set of fields
+     */
+    protected void writeFields(String[]... values) {
+        int count = 0;
+        for (String[] array : values) {
+            count += array.length;
+        }
+        writeVarint(count);
+        byte[] nullBitmap = new byte[(count + 7) / 8];
+        int index = 0;
+        for (String[] array : values) {
+            for (String value : array) {
+                if (value == null) {
+                    nullBitmap[index / 8] |= 1 << (index % 8);
+                }
+                index++;
+            }
+        }
+        write(nullBitmap, nullBitmap.length);
+        for (String[] array : values) {
+            for (String value : array) {
+                writeValue(value);
+            }
+        }
+    }
+
+    protected void writeValue(String value) {
+        if (value != null) {
+            byte[] bytes = value.getBytes(CHARSET);
+            writeVarint(bytes.length);
+            write(bytes, bytes.length);
+        }
+    }
+
+    protected void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    protected void writeByte(int value) {
+        try {
+            out.write(value);
+            bytesWritten++;
+        } catch (IOException e) {
+            throw new IoException(e);
+        }
+    }
+
+    protected void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new IoException(e);
+        }
+    }
+
+    protected void write(byte[] bytes, int length) {
+        try {
+            out.write(bytes, 0, length);
+            bytesWritten += length;
+        } catch (IOException e) {
+            throw new IoException(e);
+        }
+    }
+
+}
@@ -22,10 +22,13 @@ package org.jumpmind.symmetric.io.data.writer;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.jumpmind.exception.IoException;
@@ -34,9 +37,19 @@ import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.symmetric.io.stage.IStagedResource.State;
 import org.jumpmind.symmetric.io.stage.IStagingManager;
 import org.jumpmind.util.FormatUtils;
+import org.jumpmind.util.Statistics;
 
 public class StagingDataWriter extends AbstractProtocolDataWriter {
 
+    private static final String CHECKPOINT_MARKER = "marker";
+
+    private static final String CHECKPOINT_NO_BINARY_OLD_DATA = "noBinaryOldData";
+
+    private static final String[] CHECKPOINT_STATISTICS = { DataWriterStatisticConstants.ROWCOUNT,
+            DataWriterStatisticConstants.INSERTCOUNT, DataWriterStatisticConstants.UPDATECOUNT,
+            DataWriterStatisticConstants.DELETECOUNT, DataWriterStatisticConstants.BYTECOUNT,
+            DataWriterStatisticConstants.LINENUMBER };
+
     private IStagingManager stagingManager;
     
     private String category;
@@ -46,6 +59,8 @@ public class StagingDataWriter extends AbstractProtocolDataWriter {
     private long memoryThresholdInBytes;
     
     private boolean acquireReference = false;
+    
+    private Map<Batch, Statistics> resumedStatistics = new ConcurrentHashMap<Batch, Statistics>();
 
     public StagingDataWriter(long memoryThresholdInBytes, boolean acquireReference, String sourceNodeId, String category, IStagingManager stagingManager,
             IProtocolDataWriterListener... listeners) {
@@ -74,6 +89,91 @@ public class StagingDataWriter extends AbstractProtocolDataWriter {
         }
     }
 
+    @Override
+    public void start(Batch batch) {
+        Statistics resumed = resumedStatistics.remove(batch);
+        if (resumed != null) {
+            /*
+             * The header for the batch is already staged. Pick up the
+             * statistics where the checkpoint left off instead.
+             */
+            this.statistics.put(batch, resumed);
+            this.batch = batch;
+            if (listeners != null) {
+                for (IProtocolDataWriterListener listener : listeners) {
+                    listener.start(context, batch);
+                }
+            }
+            flushNodeId = false;
+        } else {
+            super.start(batch);
+            getStagedResource(batch).endHeader();
+        }
+    }
+
+    /**
+     * Record that everything staged so far for the batch is complete. The
+     * marker is handed back by {@link #resume(Batch)} if the batch has to be
+     * written again.
+     */
+    public void checkpoint(Batch batch, String marker) {
+        IStagedResource resource = stagedResources.get(batch);
+        Statistics stats = statistics.get(batch);
+        if (resource != null && stats != null) {
+            Properties properties = new Properties();
+            for (String category : CHECKPOINT_STATISTICS) {
+                properties.setProperty(category, Long.toString(stats.get(category)));
+            }
+            properties.setProperty(CHECKPOINT_NO_BINARY_OLD_DATA, Boolean.toString(noBinaryOldData));
+            properties.setProperty(CHECKPOINT_MARKER, marker);
+            StringWriter checkpoint = new StringWriter();
+            try {
+                properties.store(checkpoint, null);
+            } catch (IOException ex) {
+                throw new IoException(ex);
+            }
+            resource.checkpoint(checkpoint.toString());
+        }
+    }
+
+    /**
+     * Reopen a partially staged batch at its last checkpoint so that writing
+     * continues where it left off. Must be called before
+     * {@link #start(Batch)}.
+     * 
+     * @return the marker that was passed to the last checkpoint, or null if
+     *         the batch will be staged from the beginning
+     */
+    public String resume(Batch batch) {
+        IStagedResource resource = stagingManager.find(category, batch.getStagedLocation(), batch.getBatchId());
+        String checkpoint = resource != null ? resource.getCheckpoint() : null;
+        if (checkpoint != null) {
+            Properties properties = new Properties();
+            try {
+                properties.load(new StringReader(checkpoint));
+            } catch (IOException ex) {
+                throw new IoException(ex);
+            }
+            String marker = properties.getProperty(CHECKPOINT_MARKER);
+            if (marker != null) {
+                Statistics stats = new Statistics();
+                for (String category : CHECKPOINT_STATISTICS) {
+                    stats.set(category, Long.parseLong(properties.getProperty(category, "0")));
+                }
+                noBinaryOldData = Boolean.parseBoolean(properties.getProperty(CHECKPOINT_NO_BINARY_OLD_DATA));
+                resource.resumeWriter();
+                if (acquireReference) {
+                    resource.reference();
+                }
+                stagedResources.put(batch, resource);
+                resumedStatistics.put(batch, stats);
+                log.info("Resuming the staging of batch {} from its last checkpoint", batch.getNodeBatchId());
+            }
+            return marker;
+        }
+        return null;
+    }
+
     @Override
     protected void notifyEndBatch(Batch batch, IProtocolDataWriterListener listener) {
         listener.end(context, batch, getStagedResource(batch));
@@ -40,6 +40,32 @@ public interface IStagedResource {
     public BufferedReader getReader();
 
     public BufferedWriter getWriter(long threshold);
+
+    /**
+     * Record that everything written so far is complete so that a failed
+     * write can be resumed from this point.  The marker is returned by
+     * {@link #getCheckpoint()}.
+     */
+    public void checkpoint(String marker);
+
+    /**
+     * @return the marker of the last checkpoint of a resource that is still
+     *         being created, or null if it cannot be resumed
+     */
+    public String getCheckpoint();
+
+    /**
+     * Discard anything written after the last checkpoint and open a writer
+     * that appends to the resource.
+     */
+    public BufferedWriter resumeWriter();
+
+    /**
+     * Mark the end of the batch header. A compressed file starts a new gzip
+     * member after it, so the rest of the file can be sent as is while the
+     * header is decompressed and added to.
+     */
+    public void endHeader();
     
     public OutputStream getOutputStream();
 
@@ -63,6 +89,8 @@ public interface IStagedResource {
     
     public boolean isFileResource();
     
+    public boolean isCompressed();
+    
     public boolean delete();
     
     public boolean exists();
@@ -36,4 +36,19 @@ public interface IStagingManager {
 
     public StagingFileLock acquireFileLock(String serverInfo, Object... path);
 
+    public StagingQuota getQuota();
+
+    /**
+     * @return true if staged files are using enough of the quota that work
+     *         that stages ahead of time should wait
+     */
+    public boolean isNearQuota();
+
+    /**
+     * Evict least recently used files if staged files are over the quota.
+     * 
+     * @return true if staged files are still over the quota
+     */
+    public boolean isOverQuota();
+
 }
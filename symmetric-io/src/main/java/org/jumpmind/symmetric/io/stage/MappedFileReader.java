@@ -0,0 +1,192 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.jumpmind.symmetric.io.IoConstants;
+
+/**
+ * Reads a staged file by memory mapping it one window at a time and decoding
+ * the mapped bytes straight into the caller's buffer. A large read from this
+ * reader skips the copy from the file into a byte buffer and from a char
+ * buffer into the caller's buffer that a reader over a file stream makes.
+ */
+public class MappedFileReader extends Reader {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private static final Charset CHARSET = Charset.forName(IoConstants.ENCODING);
+
+    private RandomAccessFile file;
+
+    private FileChannel channel;
+
+    private long fileSize;
+
+    private int windowSize;
+
+    private long windowStart;
+
+    private MappedByteBuffer window;
+
+    private CharsetDecoder decoder;
+
+    private CharBuffer pair;
+
+    private boolean flushed;
+
+    public MappedFileReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedFileReader(File file, int windowSize) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.fileSize = channel.size();
+        this.windowSize = Math.max(windowSize, MAX_BYTES_PER_CHAR);
+        this.decoder = CHARSET.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            map(0);
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (channel == null) {
+            throw new IOException("The reader is closed");
+        } else if (len == 0) {
+            return 0;
+        }
+
+        if (pair != null && pair.hasRemaining()) {
+            cbuf[off] = pair.get();
+            return 1;
+        } else if (flushed) {
+            return -1;
+        }
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            boolean last = windowStart + window.limit() >= fileSize;
+            CoderResult result = decoder.decode(window, out, last);
+            int count = out.position() - off;
+            if (result.isUnderflow()) {
+                if (!last) {
+                    map(windowStart + window.position());
+                    if (count > 0) {
+                        return count;
+                    }
+                } else {
+                    if (!flushed) {
+                        flushed = decoder.flush(out).isUnderflow();
+                        count = out.position() - off;
+                    }
+                    return count > 0 ? count : -1;
+                }
+            } else if (result.isOverflow()) {
+                if (count > 0) {
+                    return count;
+                }
+                /*
+                 * There is only room for one char and the next code point
+                 * needs two
+                 */
+                pair = CharBuffer.allocate(2);
+                decoder.decode(window, pair, last);
+                pair.flip();
+                cbuf[off] = pair.get();
+                return 1;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return channel != null && ((pair != null && pair.hasRemaining()) || windowStart + window.position() < fileSize);
+    }
+
+    /**
+     * Map the next window of the file starting at the given position. The
+     * bytes of a character that was split by the end of the last window are
+     * mapped again at the start of this one.
+     */
+    protected void map(long position) throws IOException {
+        unmap(window);
+        long size = Math.min(windowSize, fileSize - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowStart = position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        MappedByteBuffer mapped = window;
+        window = null;
+        channel = null;
+        unmap(mapped);
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    /**
+     * Release the mapping now instead of waiting for garbage collection, so
+     * the staged file can be deleted right away on platforms that will not
+     * delete a mapped file. This is best effort and is skipped when the JVM
+     * does not allow it.
+     */
+    protected static void unmap(MappedByteBuffer buffer) {
+        if (buffer != null) {
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    Method cleanMethod = cleaner.getClass().getMethod("clean");
+                    cleanMethod.setAccessible(true);
+                    cleanMethod.invoke(cleaner);
+                }
+            } catch (Exception ex) {
+            }
+        }
+    }
+
+}
@@ -32,11 +32,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.StringReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -48,16 +49,20 @@ import org.slf4j.LoggerFactory;
 public class StagedResource implements IStagedResource {
 
     static final Logger log = LoggerFactory.getLogger(StagedResource.class);
-    
-    private AtomicInteger references = new AtomicInteger(0);
 
+    /**
+     * No bigger than the buffer the CSV reader fills, so its reads from a
+     * memory mapped file skip this buffer and decode straight into its own.
+     */
+    private static final int MAPPED_READ_BUFFER_SIZE = 1024;
+    
     protected File directory;
     
     protected File file;
 
     protected String path;
 
-    protected StringBuilder memoryBuffer;
+    protected StagingMemoryBuffer memoryBuffer;
 
     protected long lastUpdateTime;
 
@@ -70,9 +75,15 @@ public class StagedResource implements IStagedResource {
     protected Map<Thread, BufferedReader> readers = null;
 
     protected BufferedWriter writer;
+
+    protected ThresholdFileWriter thresholdWriter;
     
     protected StagingManager stagingManager;
     
+    protected Boolean compressed;
+
+    protected boolean checkpointSkipLogged;
+    
     public StagedResource(File directory, String path, StagingManager stagingManager) {
         this.directory = directory;
         this.path = path;
@@ -109,18 +120,18 @@ public class StagedResource implements IStagedResource {
     
     @Override
     public void reference() {
-        references.incrementAndGet();
-        log.debug("Increased reference to {} for {} by {}", references, path, Thread.currentThread().getName());
+        stagingManager.reference(path);
+        log.debug("Increased reference to {} by {}", path, Thread.currentThread().getName());
     }
     
     @Override
     public void dereference() {
-        references.decrementAndGet();
-        log.debug("Decreased reference to {} for {} by {}", references, path, Thread.currentThread().getName());
+        stagingManager.dereference(path);
+        log.debug("Decreased reference to {} by {}", path, Thread.currentThread().getName());
     }
     
     public boolean isInUse() {
-        return references.get() > 0 || (readers != null && readers.size() > 0) || writer != null || 
+        return stagingManager.isReferenced(path) || (readers != null && readers.size() > 0) || writer != null || 
                 (inputStreams != null && inputStreams.size() > 0) ||
                 outputStream != null;
     }
@@ -171,9 +182,14 @@ public class StagedResource implements IStagedResource {
             }
         } 
         
+        if (state == State.DONE) {
+            deleteCheckpoint();
+        }
+        
         refreshLastUpdateTime();
         this.state = state;
         this.file = buildFile(state);
+        stagingManager.resourceStateChanged(path, state, file.length());
     }
     
     protected void handleFailedRename(File oldFile, File newFile) {
@@ -234,7 +250,7 @@ public class StagedResource implements IStagedResource {
                     throw new IoException(ex);
                 }
             } else if (memoryBuffer != null && memoryBuffer.length() > 0) {
-                reader = new BufferedReader(new StringReader(memoryBuffer.toString()));
+                reader = new BufferedReader(memoryBuffer.getReader());
                 createReadersMap();
                 readers.put(thread, reader);
             } else {
@@ -247,8 +263,49 @@ public class StagedResource implements IStagedResource {
     }
     
     protected BufferedReader createReader() throws IOException {
-        return new BufferedReader(new InputStreamReader(new FileInputStream(file),
-                IoConstants.ENCODING));
+        if (stagingManager.isMappedReadEnabled() && file.length() >= stagingManager.getMappedReadThreshold() && !isCompressed()) {
+            try {
+                return new BufferedReader(new MappedFileReader(file), MAPPED_READ_BUFFER_SIZE);
+            } catch (IOException ex) {
+                log.debug("Could not memory map {}.  Reading it as a stream instead.  {}", file.getAbsolutePath(), ex.getMessage());
+            }
+        }
+        return new BufferedReader(new InputStreamReader(isCompressed() ? new GZIPInputStream(new FileInputStream(file),
+                8192) : new FileInputStream(file), IoConstants.ENCODING));
+    }
+
+    public boolean isCompressed() {
+        if (compressed == null && file != null && file.exists() && file.length() > 1) {
+            compressed = isCompressed(file);
+        }
+        return compressed != null && compressed;
+    }
+
+    /**
+     * Staged files are compressed in gzip format. Look for the gzip magic
+     * number, which can never start a CSV file.
+     */
+    protected static boolean isCompressed(File file) {
+        FileInputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            return is.read() == (GZIPInputStream.GZIP_MAGIC & 0xff) && is.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Open a staged file for reading, decompressing it if it was compressed.
+     */
+    public static InputStream openInputStream(File file) throws IOException {
+        if (isCompressed(file)) {
+            return new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 8192));
+        } else {
+            return new BufferedInputStream(new FileInputStream(file));
+        }
     }
 
     private synchronized final void createReadersMap() {
@@ -294,6 +351,7 @@ public class StagedResource implements IStagedResource {
         if (writer != null) {
             IOUtils.closeQuietly(writer);
             writer = null;
+            thresholdWriter = null;
         }
         
         if (outputStream != null) {
@@ -343,6 +401,10 @@ public class StagedResource implements IStagedResource {
                 } catch (IOException ex) {
                     throw new IoException(ex);
                 }
+            } else if (memoryBuffer != null && memoryBuffer.length() > 0) {
+                reader = memoryBuffer.getInputStream();
+                createInputStreamsMap();
+                inputStreams.put(thread, reader);
             } else {
                 throw new IllegalStateException("There is no content to read. "
                         + file.getAbsolutePath() + " was not found.");
@@ -351,8 +413,12 @@ public class StagedResource implements IStagedResource {
         return reader;
     }
     
-    protected InputStream createInputStream() throws FileNotFoundException {
-    	return new BufferedInputStream(new FileInputStream(file));
+    protected InputStream createInputStream() throws IOException {
+        if (isCompressed()) {
+            return new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 8192));
+        } else {
+            return new BufferedInputStream(new FileInputStream(file));
+        }
     }
     
     public BufferedWriter getWriter(long threshold) {
@@ -363,16 +429,95 @@ public class StagedResource implements IStagedResource {
                 file.delete();
             } else if (this.memoryBuffer != null) {
                 log.warn("We had to delete the memory buffer for {} because it already existed", getPath());
+                this.memoryBuffer.release();
                 this.memoryBuffer = null;
             }
-            this.memoryBuffer = threshold > 0 ? new StringBuilder() : null;
+            this.memoryBuffer = threshold > 0 ? stagingManager.createMemoryBuffer() : null;
             writer = createWriter(threshold);
         }
         return writer;
     }
 
     protected BufferedWriter createWriter(long threshold) {
-        return new BufferedWriter(new ThresholdFileWriter(threshold, this.memoryBuffer, file));    	
+        compressed = null;
+        thresholdWriter = new ThresholdFileWriter(threshold, this.memoryBuffer, file,
+                stagingManager.isCompressionEnabled(path), stagingManager.getCompressionLevel());
+        return new BufferedWriter(thresholdWriter);
+    }
+
+    public void endHeader() {
+        if (writer != null && thresholdWriter != null) {
+            try {
+                writer.flush();
+                thresholdWriter.startGzipMember();
+            } catch (IOException ex) {
+                throw new IoException(ex);
+            }
+        }
+    }
+
+    protected File buildCheckpointFile() {
+        return new File(directory, String.format("%s.checkpoint", path));
+    }
+
+    public void checkpoint(String marker) {
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (file != null && file.exists() && !isCompressed()) {
+                FileUtils.writeStringToFile(buildCheckpointFile(), file.length() + "\n" + marker, IoConstants.ENCODING);
+            } else if (!checkpointSkipLogged) {
+                checkpointSkipLogged = true;
+                log.debug("Not checkpointing {} because it is {}", path, isCompressed() ? "compressed"
+                        : "still held in memory");
+            }
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        }
+    }
+
+    public String getCheckpoint() {
+        File checkpointFile = buildCheckpointFile();
+        if (state == State.CREATE && file != null && file.exists() && checkpointFile.exists()) {
+            try {
+                String[] contents = FileUtils.readFileToString(checkpointFile, IoConstants.ENCODING).split("\n", 2);
+                if (contents.length == 2 && file.length() >= Long.parseLong(contents[0])) {
+                    return contents[1];
+                }
+            } catch (IOException ex) {
+                log.warn("Failed to read the checkpoint for {}: {}", path, ex.getMessage());
+            } catch (NumberFormatException ex) {
+                log.warn("Failed to read the checkpoint for {}: {}", path, ex.getMessage());
+            }
+        }
+        return null;
+    }
+
+    public BufferedWriter resumeWriter() {
+        RandomAccessFile raf = null;
+        try {
+            String size = FileUtils.readFileToString(buildCheckpointFile(), IoConstants.ENCODING).split("\n", 2)[0];
+            closeInternal();
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(Long.parseLong(size));
+            raf.close();
+            raf = null;
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), IoConstants.ENCODING));
+            stagingManager.inUse.put(path, this);
+            return writer;
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    protected void deleteCheckpoint() {
+        File checkpointFile = buildCheckpointFile();
+        if (checkpointFile.exists()) {
+            FileUtils.deleteQuietly(checkpointFile);
+        }
     }
 
     public long getSize() {
@@ -404,11 +549,17 @@ public class StagedResource implements IStagedResource {
             FileUtils.deleteQuietly(file);
             deleted = !file.exists();
         }
+        
+        if (state == State.CREATE) {
+            deleteCheckpoint();
+        }
 
         if (memoryBuffer != null) {
+            memoryBuffer.release();
             memoryBuffer = null;
             deleted = true;
         }
+        compressed = null;
 
         if (deleted) {
             stagingManager.removeResourcePath(path);
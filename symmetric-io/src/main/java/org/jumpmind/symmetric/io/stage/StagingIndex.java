@@ -0,0 +1,327 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.exception.IoException;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the resources in the staging directory and their state so
+ * they can be found and purged without walking the directory. Every change is
+ * appended to a manifest file in the staging directory, which is replayed to
+ * rebuild the index at startup. The directory is only walked when there is no
+ * manifest to replay. Appends are flushed in groups, so the changes made just
+ * before a crash can be missing from the manifest. The first purge after the
+ * index is loaded walks the directory once to pick those up.
+ * <p>
+ * Appends to the manifest take their own lock, so resources can be staged
+ * while the index is being recovered or the manifest rewritten. Changes made
+ * during a rewrite are held and appended to the new manifest once it is in
+ * place.
+ * <p>
+ * When the staging directory is shared by a cluster, there is no manifest.
+ * Each server keeps its own index in memory and walks the directory to
+ * rebuild it.
+ */
+public class StagingIndex {
+
+    public static final String MANIFEST_NAME = "staging.manifest";
+
+    private static final String REMOVED = "REMOVED";
+
+    private static final int FLUSH_LINES = 1000;
+
+    private static final long FLUSH_MILLIS = 1000;
+
+    protected static final Logger log = LoggerFactory.getLogger(StagingIndex.class);
+
+    private File directory;
+
+    private File manifestFile;
+
+    private Map<String, State> entries = new ConcurrentHashMap<String, State>();
+
+    private Writer manifest;
+
+    private final Object manifestLock = new Object();
+
+    private List<String> heldLines;
+
+    private boolean manifestEnabled;
+
+    private boolean recovered;
+
+    private int unflushedLines;
+
+    private long lastFlushTime;
+
+    public StagingIndex(File directory) {
+        this(directory, true);
+    }
+
+    public StagingIndex(File directory, boolean manifestEnabled) {
+        this.directory = directory;
+        this.manifestFile = new File(directory, MANIFEST_NAME);
+        this.manifestEnabled = manifestEnabled;
+    }
+
+    /**
+     * Rebuild the index from the manifest, or from the staging directory if
+     * the manifest is missing or cannot be read.
+     */
+    public synchronized void load() {
+        entries.clear();
+        recovered = false;
+        if (manifestEnabled && manifestFile.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), IoConstants.ENCODING));
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    int index = line.indexOf(' ');
+                    if (index > 0) {
+                        String op = line.substring(0, index);
+                        String path = line.substring(index + 1);
+                        if (op.equals(REMOVED)) {
+                            entries.remove(path);
+                        } else {
+                            entries.put(path, State.valueOf(op));
+                        }
+                    }
+                }
+                log.info("Loaded {} staging resources from {}", entries.size(), manifestFile.getAbsolutePath());
+                return;
+            } catch (Exception ex) {
+                log.warn("Could not read the staging manifest {}.  Scanning the staging directory instead.  {}",
+                        manifestFile.getAbsolutePath(), ex.getMessage());
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+        recover();
+    }
+
+    /**
+     * Add what is found by walking the staging directory to the index, then
+     * rewrite the manifest to match. Entries that were added while the
+     * directory was walked are kept. Entries for files that are gone are
+     * removed by the purge.
+     */
+    public synchronized void recover() {
+        long ts = System.currentTimeMillis();
+        Map<String, State> found = new HashMap<String, State>();
+        try {
+            scan(directory.toPath(), found);
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        }
+        for (Map.Entry<String, State> entry : found.entrySet()) {
+            if (entry.getValue() == State.DONE) {
+                entries.put(entry.getKey(), State.DONE);
+            } else {
+                entries.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        rewrite();
+        recovered = true;
+        log.info("Scanned {} staging resources in {} ms", entries.size(), System.currentTimeMillis() - ts);
+    }
+
+    /**
+     * @return whether the directory was walked since the index was loaded
+     */
+    public boolean isRecovered() {
+        return recovered;
+    }
+
+    protected void scan(Path path, Map<String, State> found) throws IOException {
+        DirectoryStream<Path> stream = Files.newDirectoryStream(path, StagingManager.STAGING_FILE_FILTER);
+        try {
+            for (Path entry : stream) {
+                if (Files.isDirectory(entry)) {
+                    scan(entry, found);
+                } else {
+                    try {
+                        String fileName = entry.getFileName().toString();
+                        String stagingPath = StagedResource.toPath(directory, entry.toFile());
+                        State state = fileName.endsWith("." + State.DONE.getExtensionName()) ? State.DONE : State.CREATE;
+                        if (found.get(stagingPath) != State.DONE) {
+                            found.put(stagingPath, state);
+                        }
+                    } catch (IllegalStateException ex) {
+                        log.warn("Failure while scanning the staging directory", ex);
+                    }
+                }
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Rewrite the manifest with only the current entries so that it does not
+     * grow without bound.
+     */
+    public synchronized void rewrite() {
+        if (!manifestEnabled) {
+            return;
+        }
+        synchronized (manifestLock) {
+            closeManifest();
+            heldLines = new ArrayList<String>();
+        }
+        File tmpFile = new File(directory, MANIFEST_NAME + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), IoConstants.ENCODING));
+            for (Map.Entry<String, State> entry : snapshot().entrySet()) {
+                writer.write(entry.getValue().name() + " " + entry.getKey() + "\n");
+            }
+            writer.close();
+            writer = null;
+            synchronized (manifestLock) {
+                FileUtils.deleteQuietly(manifestFile);
+                if (!tmpFile.renameTo(manifestFile)) {
+                    log.warn("Could not rename {} to {}", tmpFile.getAbsolutePath(), manifestFile.getAbsolutePath());
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Could not rewrite the staging manifest {}: {}", manifestFile.getAbsolutePath(), ex.getMessage());
+        } finally {
+            IOUtils.closeQuietly(writer);
+            synchronized (manifestLock) {
+                List<String> lines = heldLines;
+                heldLines = null;
+                for (String line : lines) {
+                    writeLine(line);
+                }
+            }
+        }
+    }
+
+    public void put(String path, State state) {
+        if (entries.put(path, state) != state) {
+            append(state.name(), path);
+        }
+    }
+
+    public void remove(String path) {
+        if (entries.remove(path) != null) {
+            append(REMOVED, path);
+        }
+    }
+
+    public boolean contains(String path) {
+        return entries.containsKey(path);
+    }
+
+    public State getState(String path) {
+        return entries.get(path);
+    }
+
+    public Set<String> getPaths() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return a copy of the index that is safe to iterate while resources are
+     *         being staged
+     */
+    public Map<String, State> snapshot() {
+        return new HashMap<String, State>(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    protected void append(String op, String path) {
+        if (!manifestEnabled) {
+            return;
+        }
+        String line = op + " " + path + "\n";
+        synchronized (manifestLock) {
+            if (heldLines != null) {
+                heldLines.add(line);
+            } else {
+                writeLine(line);
+            }
+        }
+    }
+
+    protected void writeLine(String line) {
+        try {
+            if (manifest == null) {
+                directory.mkdirs();
+                manifest = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifestFile, true), IoConstants.ENCODING));
+                lastFlushTime = System.currentTimeMillis();
+            }
+            manifest.write(line);
+            unflushedLines++;
+            long now = System.currentTimeMillis();
+            if (unflushedLines >= FLUSH_LINES || now - lastFlushTime >= FLUSH_MILLIS) {
+                manifest.flush();
+                unflushedLines = 0;
+                lastFlushTime = now;
+            }
+        } catch (IOException ex) {
+            log.warn("Could not write to the staging manifest {}: {}", manifestFile.getAbsolutePath(), ex.getMessage());
+            closeManifest();
+        }
+    }
+
+    public void close() {
+        synchronized (manifestLock) {
+            closeManifest();
+        }
+    }
+
+    protected void closeManifest() {
+        IOUtils.closeQuietly(manifest);
+        manifest = null;
+        unflushedLines = 0;
+    }
+
+}
@@ -23,13 +23,14 @@ package org.jumpmind.symmetric.io.stage;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -46,21 +47,222 @@ public class StagingManager implements IStagingManager {
 
     protected File directory;
 
-    private Map<String, String> resourcePathsCache = new ConcurrentHashMap<String, String>();
+    protected StagingIndex index;
     protected Map<String, IStagedResource> inUse = new ConcurrentHashMap<String, IStagedResource>();
 
+    /**
+     * Reference counts by path. A new resource is created each time a done
+     * path is found, so the counts are kept here where all of them see it.
+     */
+    protected Map<String, AtomicInteger> references = new ConcurrentHashMap<String, AtomicInteger>();
+
     boolean clusterEnabled;
 
+    private boolean compressionEnabled;
+
+    private int compressionLevel = 1;
+
+    private boolean mappedReadEnabled;
+
+    private long mappedReadThreshold = 8 * 1024 * 1024;
+
+    protected StagingMemoryPool memoryPool = new StagingMemoryPool(StagingMemoryPool.DEFAULT_BUDGET,
+            StagingMemoryPool.DEFAULT_CHUNK_SIZE);
+
+    protected StagingQuota quota = new StagingQuota();
+
+    /**
+     * Held by the purge and by eviction. Staging resources never waits on it.
+     */
+    private final Object cleanLock = new Object();
+
     public StagingManager(String directory, boolean clusterEnabled) {
         log.info("The staging directory was initialized at the following location: " + directory);
         this.directory = new File(directory);
         this.directory.mkdirs();
         this.clusterEnabled = clusterEnabled;
+        this.index = new StagingIndex(this.directory, !clusterEnabled);
+        this.index.load();
+        seedQuota();
+    }
+
+    /**
+     * Count the done files in the index against the quota, so that staging
+     * that was filled before a restart is held to the quota right away
+     */
+    protected void seedQuota() {
+        for (Map.Entry<String, State> entry : index.snapshot().entrySet()) {
+            if (entry.getValue() == State.DONE) {
+                File file = new File(directory, entry.getKey() + "." + State.DONE.getExtensionName());
+                long size = file.length();
+                if (size > 0) {
+                    quota.put(entry.getKey(), size, file.lastModified());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether staged resources that are written to a file should be
+     *         compressed
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * @return whether the staged resource at the path should be compressed
+     *         when it is written to a file
+     */
+    public boolean isCompressionEnabled(String path) {
+        return isCompressionEnabled();
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return whether staged files at least as big as the mapped read
+     *         threshold should be memory mapped when they are read
+     */
+    public boolean isMappedReadEnabled() {
+        return mappedReadEnabled;
+    }
+
+    public void setMappedReadEnabled(boolean mappedReadEnabled) {
+        this.mappedReadEnabled = mappedReadEnabled;
+    }
+
+    public long getMappedReadThreshold() {
+        return mappedReadThreshold;
+    }
+
+    public void setMappedReadThreshold(long mappedReadThreshold) {
+        this.mappedReadThreshold = mappedReadThreshold;
+    }
+
+    /**
+     * Create a buffer that holds a staged resource in memory until it reaches
+     * the threshold or the memory pool runs out of budget.
+     */
+    public StagingMemoryBuffer createMemoryBuffer() {
+        return new StagingMemoryBuffer(memoryPool);
+    }
+
+    public StagingMemoryPool getMemoryPool() {
+        return memoryPool;
+    }
+
+    @Override
+    public StagingQuota getQuota() {
+        return quota;
+    }
+
+    @Override
+    public boolean isNearQuota() {
+        return getQuota().isNearLimit();
+    }
+
+    @Override
+    public boolean isOverQuota() {
+        StagingQuota quota = getQuota();
+        if (quota.isOverLimit()) {
+            synchronized (cleanLock) {
+                evict(quota);
+            }
+        }
+        return quota.isOverLimit();
+    }
+
+    /**
+     * Delete done files that are not in use, least recently used first, until
+     * staging is back under the near limit of the quota.
+     * 
+     * @return the number of bytes freed
+     */
+    protected long evict(StagingQuota quota) {
+        long freedBytes = 0;
+        int freedCount = 0;
+        if (quota.isOverLimit()) {
+            List<String> paths = quota.getLeastRecentlyUsed();
+            for (String path : paths) {
+                if (!quota.isNearLimit()) {
+                    break;
+                }
+                if (!inUse.containsKey(path) && !isReferenced(path)) {
+                    IStagedResource resource = createStagedResource(path);
+                    if (shouldEvict(resource)) {
+                        long size = resource.getSize();
+                        if (resource.delete()) {
+                            quota.evicted(size);
+                            freedBytes += size;
+                            freedCount++;
+                        }
+                    } else if (!resource.exists()) {
+                        quota.remove(path);
+                    }
+                }
+            }
+            if (freedCount > 0) {
+                log.info("Evicted {} staging files to free {}.  Staging is using {} of its {} quota.", freedCount,
+                        FileUtils.byteCountToDisplaySize(freedBytes), FileUtils.byteCountToDisplaySize(quota.getUsedBytes()),
+                        FileUtils.byteCountToDisplaySize(quota.getQuotaBytes()));
+            } else {
+                log.debug("Could not evict any staging files.  Staging is using {} of its {} quota.",
+                        FileUtils.byteCountToDisplaySize(quota.getUsedBytes()), FileUtils.byteCountToDisplaySize(quota.getQuotaBytes()));
+            }
+        }
+        return freedBytes;
+    }
+
+    /**
+     * Only resources that can be staged again should be evicted
+     */
+    protected boolean shouldEvict(IStagedResource resource) {
+        return resource.getState() == State.DONE && resource.getFile() != null && resource.exists() && !resource.isInUse();
+    }
+
+    protected void reference(String path) {
+        synchronized (references) {
+            AtomicInteger count = references.get(path);
+            if (count == null) {
+                count = new AtomicInteger();
+                references.put(path, count);
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    protected void dereference(String path) {
+        synchronized (references) {
+            AtomicInteger count = references.get(path);
+            if (count != null && count.decrementAndGet() <= 0) {
+                references.remove(path);
+            }
+        }
+    }
+
+    /**
+     * @return whether a resource at the path was referenced and not yet
+     *         dereferenced, by any of the resources created for the path
+     */
+    public boolean isReferenced(String path) {
+        AtomicInteger count = references.get(path);
+        return count != null && count.get() > 0;
     }
 
     @Override
     public Set<String> getResourceReferences() {
-        return new TreeSet<String>(resourcePathsCache.keySet());
+        return new TreeSet<String>(index.getPaths());
     }
 
     @Override
@@ -68,7 +270,20 @@ public class StagingManager implements IStagingManager {
         return clean(ttlInMs, null);
     }
     
-    public synchronized long clean(long ttlInMs, StagingPurgeContext context) {
+    /**
+     * Purge the resources in the staging index. Other threads can keep
+     * creating and finding resources while this runs. The staging directory is
+     * scanned when clustering is enabled, because other servers can stage
+     * resources that this server's index does not know about. It is also
+     * scanned by the first purge after the index was loaded from its manifest.
+     */
+    public long clean(long ttlInMs, StagingPurgeContext context) {
+        synchronized (cleanLock) {
+            return cleanIndex(ttlInMs, context);
+        }
+    }
+
+    protected long cleanIndex(long ttlInMs, StagingPurgeContext context) {
         try {
             log.info("Cleaning staging...");
             if (context == null) {
@@ -77,11 +292,25 @@ public class StagingManager implements IStagingManager {
             long start = System.currentTimeMillis();
             context.setStartTime(start);
             
-            resourcePathsCache.clear();
-            clean(FileSystems.getDefault().getPath(this.directory.getAbsolutePath()), ttlInMs, context);
+            if (clusterEnabled || !index.isRecovered()) {
+                index.recover();
+            }
+            clean(index.snapshot(), ttlInMs, context);
+            evict(getQuota());
+            index.rewrite();
             logCleaningProgress(context);
             long end = System.currentTimeMillis();
             log.info("Finished cleaning staging in " + DurationFormatUtils.formatDurationWords(end-start, true, true) + ".");
+            if (memoryPool.getUsedBytes() > 0 || memoryPool.getExhaustedCount() > 0) {
+                log.info("Staging memory buffers are using {} of {}.  {} of direct memory is allocated.  Buffers spilled to disk {} times because the budget was used up.",
+                        FileUtils.byteCountToDisplaySize(memoryPool.getUsedBytes()), FileUtils.byteCountToDisplaySize(memoryPool.getBudget()),
+                        FileUtils.byteCountToDisplaySize(memoryPool.getAllocatedBytes()), memoryPool.getExhaustedCount());
+            }
+            if (quota.getQuotaBytes() > 0) {
+                log.info("Staging files are using {} of the {} quota.  {} files have been evicted to stay under the quota.",
+                        FileUtils.byteCountToDisplaySize(quota.getUsedBytes()), FileUtils.byteCountToDisplaySize(quota.getQuotaBytes()),
+                        quota.getEvictedCount());
+            }
             return context.getPurgedFileSize() + context.getPurgedMemSize();
         } catch (Exception ex) {
             throw new RuntimeException("Failure while cleaning staging.", ex);
@@ -99,23 +328,20 @@ public class StagingManager implements IStagingManager {
         }
     }
 
-    protected void clean(Path path, long ttlInMs, StagingPurgeContext context) throws IOException {
-        DirectoryStream<Path> stream = Files.newDirectoryStream(path, STAGING_FILE_FILTER);
-        
-        if (context.shouldLogStatus()) {
-            logCleaningProgress(context);
-            context.setLastLogTime(System.currentTimeMillis());
-        }
-        
-        for (Path entry : stream) {
-            if (Files.isDirectory(entry)) {
-                clean(entry, ttlInMs, context);
-            } else {     
+    protected void clean(Map<String, State> entries, long ttlInMs, StagingPurgeContext context) {
+        for (Map.Entry<String, State> entry : entries.entrySet()) {
+            if (context.shouldLogStatus()) {
+                logCleaningProgress(context);
+                context.setLastLogTime(System.currentTimeMillis());
+            }
+
+            String stagingPath = entry.getKey();
+            if (entry.getValue() == State.DONE) {
                 try {
-                    String stagingPath = StagedResource.toPath(directory, 
-                            new File((entry.getParent().toString() + "/" + entry.getFileName().toString())));
                     IStagedResource resource = createStagedResource(stagingPath);  
-                    if (stagingPath != null) {
+                    if (!resource.exists() && !inUse.containsKey(stagingPath)) {
+                        removeResourcePath(stagingPath);
+                    } else {
                         if (shouldCleanPath(resource, ttlInMs, context)) {
                             if (resource.getFile() != null) {
                                 context.incrementPurgedFileCount();
@@ -127,18 +353,44 @@ public class StagingManager implements IStagingManager {
                             
                             cleanPath(resource, ttlInMs, context); // this comes after stat collection because 
                                                                    // once the file is gone we loose visibility to size
-                        } else {
-                            resourcePathsCache.put(stagingPath,stagingPath);                            
+                        } else if (resource.getFile() != null && resource.getFile().exists()) {
+                            quota.put(stagingPath, resource.getSize(), resource.getLastUpdateTime());
                         }
                     }
                 } catch (IllegalStateException ex) {
                     log.warn("Failure during refreshResourceList ", ex);
                 }                
+            } else if (entry.getValue() == State.CREATE && !inUse.containsKey(stagingPath)) {
+                IStagedResource resource = createStagedResource(stagingPath);
+                if (!resource.exists()) {
+                    removeResourcePath(stagingPath);
+                } else if (shouldCleanAbandonedPath(resource, ttlInMs)) {
+                    log.info("Purging the partially written staging file {} because it was abandoned", stagingPath);
+                    context.incrementPurgedFileCount();
+                    context.addPurgedFileBytes(resource.getSize());
+                    cleanPath(resource, ttlInMs, context);
+                }
             }
         }
-
-        stream.close();
     } 
+
+    /**
+     * A file that is still being created but was abandoned. It is purged once
+     * it is older than the time to live.
+     */
+    protected boolean shouldCleanAbandonedPath(IStagedResource resource, long ttlInMs) {
+        boolean resourceIsOld = (System.currentTimeMillis() - resource.getLastUpdateTime()) > ttlInMs;
+        return resourceIsOld && resource.getFile() != null && !resource.isInUse() && isAbandoned(resource);
+    }
+
+    /**
+     * A file that was left behind with a checkpoint so that it could be resumed
+     * is abandoned, because the batch might never be extracted again. Other
+     * files that are still being created are left alone.
+     */
+    protected boolean isAbandoned(IStagedResource resource) {
+        return resource.getCheckpoint() != null;
+    }
     
     protected boolean shouldCleanPath(IStagedResource resource, long ttlInMs, StagingPurgeContext context) {
         boolean resourceIsOld = (System.currentTimeMillis() - resource.getLastUpdateTime()) > ttlInMs;
@@ -163,7 +415,7 @@ public class StagingManager implements IStagingManager {
             resource.delete();
         }
         this.inUse.put(filePath, resource);
-        this.resourcePathsCache.put(filePath, filePath);
+        this.index.put(filePath, State.CREATE);
         return resource;
     }
     
@@ -189,12 +441,12 @@ public class StagingManager implements IStagingManager {
     public IStagedResource find(String path) {
         IStagedResource resource = inUse.get(path);
         if (resource == null) {
-            boolean foundResourcePath = resourcePathsCache.containsKey(path);
+            boolean foundResourcePath = index.contains(path);
             if (!foundResourcePath && clusterEnabled) {
                 synchronized (this) {
                     IStagedResource staged = createStagedResource(path);
                     if (staged.exists() && staged.getState() == State.DONE) {
-                        resourcePathsCache.put(path, path);
+                        index.put(path, State.DONE);
                         resource = staged;
                         foundResourcePath = true;
                     }
@@ -203,6 +455,9 @@ public class StagingManager implements IStagingManager {
                 resource = createStagedResource(path);           
             }
         }
+        if (resource != null) {
+            quota.touch(path);
+        }
         return resource;
     }
 
@@ -211,10 +466,24 @@ public class StagingManager implements IStagingManager {
     }
 
     public void removeResourcePath(String path) {
-        resourcePathsCache.remove(path);
+        index.remove(path);
         inUse.remove(path);
+        quota.remove(path);
     }        
 
+    public void resourceStateChanged(String path, State state, long fileSize) {
+        index.put(path, state);
+        if (state == State.DONE && fileSize > 0) {
+            quota.put(path, fileSize, System.currentTimeMillis());
+        } else {
+            quota.remove(path);
+        }
+    }
+
+    public StagingIndex getIndex() {
+        return index;
+    }
+
     @Override
     public StagingFileLock acquireFileLock(String serverInfo, Object... path) {
         String lockFilePath = String.format("%s/%s%s", directory, buildFilePath(path), LOCK_EXTENSION);
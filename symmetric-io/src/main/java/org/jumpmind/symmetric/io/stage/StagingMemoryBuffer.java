@@ -0,0 +1,314 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jumpmind.symmetric.io.IoConstants;
+
+/**
+ * Holds a staged resource in memory as encoded bytes in chunks taken from a
+ * {@link StagingMemoryPool}.
+ */
+public class StagingMemoryBuffer {
+
+    private static final Charset CHARSET = Charset.forName(IoConstants.ENCODING);
+
+    private StagingMemoryPool pool;
+
+    private List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+    private long length;
+
+    private CharsetEncoder encoder;
+
+    private ByteBuffer encoded;
+
+    private char pending;
+
+    private boolean hasPending;
+
+    private int openStreams;
+
+    private boolean released;
+
+    public StagingMemoryBuffer(StagingMemoryPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Encode and append characters to the buffer.
+     * 
+     * @return false if the buffer could not grow enough to hold the
+     *         characters, in which case nothing is appended
+     */
+    public boolean append(char[] cbuf, int off, int len) {
+        return append(cbuf, off, len, Long.MAX_VALUE);
+    }
+
+    /**
+     * Encode and append characters to the buffer as long as it stays within
+     * the given number of bytes.
+     * 
+     * @return false if the characters would make the buffer longer than
+     *         maxLength bytes or the buffer could not grow enough to hold
+     *         them, in which case nothing is appended
+     */
+    public synchronized boolean append(char[] cbuf, int off, int len, long maxLength) {
+        if (released) {
+            throw new IllegalStateException("The staging memory buffer was already released");
+        } else if (len == 0) {
+            return true;
+        }
+
+        int end = off + len;
+        char last = cbuf[end - 1];
+        /*
+         * Hold back half of a surrogate pair until the other half is written
+         */
+        boolean holdBack = Character.isHighSurrogate(last);
+        if (holdBack) {
+            end--;
+        }
+        CharBuffer head = null;
+        if (hasPending) {
+            head = off < end && Character.isLowSurrogate(cbuf[off]) ? CharBuffer.wrap(new char[] { pending, cbuf[off++] })
+                    : CharBuffer.wrap(new char[] { pending });
+        }
+
+        long byteCount = (head != null ? encodedLength(head.array(), 0, head.length()) : 0)
+                + encodedLength(cbuf, off, end);
+        if (length + byteCount > maxLength) {
+            return false;
+        }
+        long capacity = (long) chunks.size() * pool.getChunkSize();
+        if (length + byteCount > capacity) {
+            int needed = (int) ((length + byteCount - capacity + pool.getChunkSize() - 1) / pool.getChunkSize());
+            ByteBuffer[] newChunks = pool.acquire(needed);
+            if (newChunks == null) {
+                return false;
+            }
+            for (ByteBuffer chunk : newChunks) {
+                chunks.add(chunk);
+            }
+        }
+
+        if (head != null) {
+            encode(head);
+        }
+        encode(CharBuffer.wrap(cbuf, off, end - off));
+        hasPending = holdBack;
+        pending = last;
+        return true;
+    }
+
+    /**
+     * @return the number of bytes the characters take in UTF-8, where a
+     *         surrogate without its other half is replaced by a single byte
+     */
+    protected static long encodedLength(char[] cbuf, int off, int end) {
+        long count = 0;
+        for (int i = off; i < end; i++) {
+            char c = cbuf[i];
+            if (c < 0x80) {
+                count++;
+            } else if (c < 0x800) {
+                count += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(cbuf[i + 1])) {
+                count += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                count++;
+            } else {
+                count += 3;
+            }
+        }
+        return count;
+    }
+
+    protected void encode(CharBuffer in) {
+        if (encoder == null) {
+            encoder = CHARSET.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            encoded = ByteBuffer.allocate(Math.min(pool.getChunkSize(), 8192));
+        }
+        encoder.reset();
+        CoderResult result = null;
+        do {
+            result = encoder.encode(in, encoded, true);
+            encoded.flip();
+            while (encoded.hasRemaining()) {
+                ByteBuffer chunk = chunks.get((int) (length / pool.getChunkSize()));
+                int count = Math.min(chunk.remaining(), encoded.remaining());
+                chunk.put(encoded.array(), encoded.position(), count);
+                encoded.position(encoded.position() + count);
+                length += count;
+            }
+            encoded.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * @return the number of encoded bytes in the buffer
+     */
+    public synchronized long length() {
+        return length;
+    }
+
+    /**
+     * @return characters that were appended but cannot be encoded until more
+     *         characters are appended
+     */
+    public synchronized String getUnencoded() {
+        return hasPending ? String.valueOf(pending) : "";
+    }
+
+    public synchronized void writeTo(OutputStream os) throws IOException {
+        byte[] bytes = new byte[pool.getChunkSize()];
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer view = chunk.duplicate();
+            view.flip();
+            int count = view.remaining();
+            view.get(bytes, 0, count);
+            os.write(bytes, 0, count);
+        }
+    }
+
+    /**
+     * @return a stream of the encoded bytes. Each stream reads independently
+     *         of the others. The chunks are not returned to the pool until
+     *         every stream is closed, and a stream that is read after the
+     *         buffer was released throws an {@link IOException}.
+     */
+    public synchronized InputStream getInputStream() {
+        if (released) {
+            throw new IllegalStateException("The staging memory buffer was already released");
+        }
+        final List<ByteBuffer> views = new ArrayList<ByteBuffer>(chunks.size());
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer view = chunk.duplicate();
+            view.flip();
+            views.add(view);
+        }
+        openStreams++;
+        return new InputStream() {
+            int index = 0;
+
+            boolean closed;
+
+            @Override
+            public int read() throws IOException {
+                synchronized (StagingMemoryBuffer.this) {
+                    ByteBuffer view = current();
+                    return view != null ? view.get() & 0xff : -1;
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                synchronized (StagingMemoryBuffer.this) {
+                    ByteBuffer view = current();
+                    if (view == null) {
+                        return -1;
+                    }
+                    int count = Math.min(len, view.remaining());
+                    view.get(b, off, count);
+                    return count;
+                }
+            }
+
+            @Override
+            public int available() throws IOException {
+                synchronized (StagingMemoryBuffer.this) {
+                    ByteBuffer view = current();
+                    return view != null ? view.remaining() : 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                synchronized (StagingMemoryBuffer.this) {
+                    if (!closed) {
+                        closed = true;
+                        openStreams--;
+                        if (released && openStreams == 0) {
+                            returnChunks();
+                        }
+                    }
+                }
+            }
+
+            private ByteBuffer current() throws IOException {
+                if (closed) {
+                    throw new IOException("The staging memory stream is closed");
+                } else if (released) {
+                    close();
+                    throw new IOException("The staging memory buffer was released while it was being read");
+                }
+                while (index < views.size() && !views.get(index).hasRemaining()) {
+                    index++;
+                }
+                return index < views.size() ? views.get(index) : null;
+            }
+        };
+    }
+
+    public Reader getReader() {
+        return new InputStreamReader(getInputStream(), CHARSET);
+    }
+
+    /**
+     * Return the memory to the pool. The buffer is empty afterwards. If
+     * streams are still open on the buffer, they fail on their next read and
+     * the memory is returned when the last of them is closed.
+     */
+    public synchronized void release() {
+        released = true;
+        length = 0;
+        hasPending = false;
+        if (openStreams == 0) {
+            returnChunks();
+        }
+    }
+
+    protected void returnChunks() {
+        if (chunks.size() > 0) {
+            pool.release(chunks);
+            chunks = new ArrayList<ByteBuffer>();
+        }
+    }
+
+}
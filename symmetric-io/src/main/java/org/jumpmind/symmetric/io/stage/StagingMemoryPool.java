@@ -0,0 +1,131 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out fixed size chunks of direct memory for staging memory buffers.
+ * The chunks in use across all buffers are held to a byte budget. Released
+ * chunks are kept and reused, so the memory held by the pool never grows
+ * past the most that was in use at one time.
+ */
+public class StagingMemoryPool {
+
+    public static final long DEFAULT_BUDGET = 64 * 1024 * 1024;
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final int chunkSize;
+
+    private volatile long budget;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    private final Queue<ByteBuffer> freeChunks = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    public StagingMemoryPool(long budget, int chunkSize) {
+        this.budget = budget;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the requested number of empty chunks, or null if they would
+     *         take the pool over its budget
+     */
+    public ByteBuffer[] acquire(int count) {
+        long bytes = (long) count * chunkSize;
+        long used = usedBytes.get();
+        while (true) {
+            if (used + bytes > budget) {
+                exhaustedCount.incrementAndGet();
+                return null;
+            } else if (usedBytes.compareAndSet(used, used + bytes)) {
+                break;
+            }
+            used = usedBytes.get();
+        }
+
+        ByteBuffer[] chunks = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            ByteBuffer chunk = freeChunks.poll();
+            if (chunk == null) {
+                chunk = ByteBuffer.allocateDirect(chunkSize);
+                allocatedBytes.addAndGet(chunkSize);
+            } else {
+                chunk.clear();
+            }
+            chunks[i] = chunk;
+        }
+        return chunks;
+    }
+
+    public void release(List<ByteBuffer> chunks) {
+        for (ByteBuffer chunk : chunks) {
+            freeChunks.offer(chunk);
+        }
+        usedBytes.addAndGet(-(long) chunks.size() * chunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return the bytes held by buffers that are in use
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return the bytes of direct memory the pool has allocated, including
+     *         free chunks waiting to be reused
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return the number of times a buffer could not grow because the budget
+     *         was used up
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps count of the disk space used by staged files that are done, and when
+ * each was last used, so staging can be held to a byte quota. Files that are
+ * still being written are not counted until they are done.
+ */
+public class StagingQuota {
+
+    private volatile long quotaBytes;
+
+    private volatile int nearLimitPercent = 80;
+
+    private final Map<String, Usage> usages = new ConcurrentHashMap<String, Usage>();
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    private final AtomicLong evictedBytes = new AtomicLong();
+
+    /**
+     * Record the size of a staged file. The last access time is kept if the
+     * file was already known.
+     */
+    public void put(String path, long size, long lastAccessTime) {
+        Usage usage = new Usage(size, lastAccessTime);
+        Usage old = usages.put(path, usage);
+        if (old != null) {
+            usage.lastAccessTime = Math.max(old.lastAccessTime, lastAccessTime);
+            usedBytes.addAndGet(size - old.size);
+        } else {
+            usedBytes.addAndGet(size);
+        }
+    }
+
+    public void remove(String path) {
+        Usage old = usages.remove(path);
+        if (old != null) {
+            usedBytes.addAndGet(-old.size);
+        }
+    }
+
+    public void touch(String path) {
+        Usage usage = usages.get(path);
+        if (usage != null) {
+            usage.lastAccessTime = System.currentTimeMillis();
+        }
+    }
+
+    public boolean contains(String path) {
+        return usages.containsKey(path);
+    }
+
+    /**
+     * @return the paths of the staged files, least recently used first
+     */
+    public List<String> getLeastRecentlyUsed() {
+        final Map<String, Long> accessTimes = new HashMap<String, Long>(usages.size());
+        for (Map.Entry<String, Usage> entry : usages.entrySet()) {
+            accessTimes.put(entry.getKey(), entry.getValue().lastAccessTime);
+        }
+        List<String> paths = new ArrayList<String>(accessTimes.keySet());
+        Collections.sort(paths, new Comparator<String>() {
+            public int compare(String path1, String path2) {
+                return Long.compare(accessTimes.get(path1), accessTimes.get(path2));
+            }
+        });
+        return paths;
+    }
+
+    public void evicted(long bytes) {
+        evictedCount.incrementAndGet();
+        evictedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return true if a quota is set and the staged files have reached the
+     *         near limit percentage of it
+     */
+    public boolean isNearLimit() {
+        return quotaBytes > 0 && usedBytes.get() >= getNearLimitBytes();
+    }
+
+    /**
+     * @return true if a quota is set and the staged files have reached it
+     */
+    public boolean isOverLimit() {
+        return quotaBytes > 0 && usedBytes.get() >= quotaBytes;
+    }
+
+    public long getNearLimitBytes() {
+        return quotaBytes * nearLimitPercent / 100;
+    }
+
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    /**
+     * @param quotaBytes
+     *            the most disk space staged files should use, or 0 for no
+     *            limit
+     */
+    public void setQuotaBytes(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    public int getNearLimitPercent() {
+        return nearLimitPercent;
+    }
+
+    public void setNearLimitPercent(int nearLimitPercent) {
+        this.nearLimitPercent = Math.max(0, Math.min(100, nearLimitPercent));
+    }
+
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes.get();
+    }
+
+    public int size() {
+        return usages.size();
+    }
+
+    static class Usage {
+        final long size;
+        volatile long lastAccessTime;
+
+        Usage(long size, long lastAccessTime) {
+            this.size = size;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+
+}
@@ -23,13 +23,14 @@ package org.jumpmind.symmetric.io.stage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
 
 import org.jumpmind.symmetric.io.IoConstants;
 
@@ -46,16 +47,47 @@ public class ThresholdFileWriter extends Writer {
 
     protected StringBuilder buffer;
 
+    protected StagingMemoryBuffer memoryBuffer;
+
     protected long threshhold;
 
+    protected boolean compress;
+
+    protected int compressionLevel;
+
+    protected OutputStream fileStream;
+
+    protected GZIPOutputStream gzipStream;
+
+    protected boolean gzipMemberPending;
+
     /**
      * @param threshold The number of bytes at which to start writing to a file
      * @param file The file to write to after the threshold has been reached
      */
     public ThresholdFileWriter(long threshold, StringBuilder buffer, File file) {
+        this(threshold, buffer, file, false, 0);
+    }
+
+    /**
+     * @param compress Whether the file is written in gzip format
+     * @param compressionLevel The deflate level to compress the file with
+     */
+    public ThresholdFileWriter(long threshold, StringBuilder buffer, File file, boolean compress, int compressionLevel) {
         this.file = file;
         this.buffer = buffer;
         this.threshhold = threshold;
+        this.compress = compress;
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @param memoryBuffer The buffer to write to until the threshold is
+     *        reached or the buffer cannot get any more memory from its pool
+     */
+    public ThresholdFileWriter(long threshold, StagingMemoryBuffer memoryBuffer, File file, boolean compress, int compressionLevel) {
+        this(threshold, (StringBuilder) null, file, compress, compressionLevel);
+        this.memoryBuffer = memoryBuffer;
     }
     
     public File getFile() {
@@ -85,6 +117,19 @@ public class ThresholdFileWriter extends Writer {
     public void write(char[] cbuf, int off, int len) throws IOException {
         if (fileWriter != null) {
             fileWriter.write(cbuf, off, len);
+        } else if (memoryBuffer != null) {
+            if (!memoryBuffer.append(cbuf, off, len, threshhold)) {
+                file.getParentFile().mkdirs();
+                OutputStream os = getOutputStream();
+                memoryBuffer.writeTo(os);
+                fileWriter = new BufferedWriter(new OutputStreamWriter(os, IoConstants.ENCODING));
+                fileWriter.write(memoryBuffer.getUnencoded());
+                memoryBuffer.release();
+                memoryBuffer = null;
+                startPendingGzipMember();
+                fileWriter.write(cbuf, off, len);
+                fileWriter.flush();
+            }
         } else if (buffer == null || len + buffer.length() > threshhold) {
             file.getParentFile().mkdirs();
             fileWriter = getWriter();
@@ -93,6 +138,7 @@ public class ThresholdFileWriter extends Writer {
                 buffer.setLength(0);
                 buffer = null;
             }
+            startPendingGzipMember();
             fileWriter.write(cbuf, off, len);
             fileWriter.flush();            
         } else {
@@ -101,12 +147,56 @@ public class ThresholdFileWriter extends Writer {
     }
     
     protected BufferedWriter getWriter() throws IOException {
-    	 return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), IoConstants.ENCODING));
+        return new BufferedWriter(new OutputStreamWriter(getOutputStream(), IoConstants.ENCODING));
+    }
+
+    protected OutputStream getOutputStream() throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        if (compress) {
+            fileStream = os;
+            os = gzipStream = newGzipStream();
+        }
+        return os;
+    }
+
+    protected GZIPOutputStream newGzipStream() throws IOException {
+        return new GZIPOutputStream(fileStream, 8192) {
+            {
+                this.def.setLevel(compressionLevel);
+            }
+        };
+    }
+
+    /**
+     * When the file is compressed, finish the gzip member written so far and
+     * start a new one for what is written next. Content that is still held in
+     * memory is split where it is written to the file.
+     */
+    public void startGzipMember() throws IOException {
+        if (compress) {
+            if (gzipStream != null) {
+                fileWriter.flush();
+                gzipStream.finish();
+                gzipStream = newGzipStream();
+                fileWriter = new BufferedWriter(new OutputStreamWriter(gzipStream, IoConstants.ENCODING));
+            } else {
+                gzipMemberPending = true;
+            }
+        }
+    }
+
+    protected void startPendingGzipMember() throws IOException {
+        if (gzipMemberPending) {
+            gzipMemberPending = false;
+            startGzipMember();
+        }
     }
 
     public BufferedReader getReader() throws IOException {
         if (file != null && file.exists()) {
-            return new BufferedReader(new InputStreamReader(new FileInputStream(file), IoConstants.ENCODING));
+            return new BufferedReader(new InputStreamReader(StagedResource.openInputStream(file), IoConstants.ENCODING));
+        } else if (memoryBuffer != null) {
+            return new BufferedReader(memoryBuffer.getReader());
         } else {
             return new BufferedReader(new StringReader(buffer.toString()));
         }
@@ -121,6 +211,9 @@ public class ThresholdFileWriter extends Writer {
             buffer.setLength(0);
             buffer.trimToSize();
         }
+        if (memoryBuffer != null) {
+            memoryBuffer.release();
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.BinaryProtocolConstants;
+import org.jumpmind.symmetric.io.data.CsvConstants;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.IDataReader;
+import org.jumpmind.symmetric.io.data.writer.AbstractProtocolDataWriter;
+import org.jumpmind.symmetric.io.data.writer.BinaryProtocolDataWriter;
+import org.jumpmind.symmetric.io.data.writer.ProtocolDataWriter;
+import org.jumpmind.util.Statistics;
+import org.junit.Test;
+
+public class BinaryProtocolDataReaderTest {
+
+    @Test
+    public void testReadsWhatTheCsvProtocolReads() throws Exception {
+        StringWriter csv = new StringWriter();
+        write(new ProtocolDataWriter("00000", csv, false), "a,\"b\"\n");
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        write(new BinaryProtocolDataWriter("00000", binary), "a,\"b\"\n");
+
+        List<String> csvEvents = read(new ProtocolDataReader(BatchType.LOAD, "00001", csv.toString()));
+        List<String> binaryEvents = read(new BinaryProtocolDataReader(BatchType.LOAD, "00001",
+                new ByteArrayInputStream(binary.toByteArray())));
+        assertEquals(18, csvEvents.size());
+        assertEquals(csvEvents, binaryEvents);
+    }
+
+    @Test
+    public void testNullsAndEmptyStrings() throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        write(new BinaryProtocolDataWriter("00000", binary), "a,\"b\"\n\u00e9");
+
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, "00001",
+                new ByteArrayInputStream(binary.toByteArray()));
+        reader.open(new DataContext(reader));
+        Batch batch = reader.nextBatch();
+        assertEquals(1, batch.getBatchId());
+        assertEquals("00000", batch.getSourceNodeId());
+        assertEquals("testchannel", batch.getChannelId());
+        assertEquals(BinaryEncoding.BASE64, batch.getBinaryEncoding());
+        Table table = reader.nextTable();
+        assertEquals("test1", table.getName());
+        assertEquals(1, table.getPrimaryKeyColumnCount());
+        assertArrayEquals(new String[] { "1", "a,\"b\"\n\u00e9" }, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        assertArrayEquals(new String[] { "2", null }, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        assertArrayEquals(new String[] { "3", "" }, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        reader.close();
+    }
+
+    @Test
+    public void testPrintedCsvLines() throws Exception {
+        class PrintingWriter extends BinaryProtocolDataWriter {
+            PrintingWriter(ByteArrayOutputStream out) {
+                super("00000", out);
+            }
+
+            void print(String data) {
+                print(batch, data);
+            }
+        }
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        PrintingWriter writer = new PrintingWriter(binary);
+        writer.open(new DataContext());
+        Batch batch = new Batch(BatchType.EXTRACT, 1, "testchannel", BinaryEncoding.BASE64, "00000", "00001", false);
+        writer.start(batch);
+        writer.start(new Table("test1", new Column("id", true), new Column("text")));
+        writer.print("insert,\"1\",");
+        writer.print("\"a\nb\"\ninsert,\"2\",\"\\\"c\\\"\"\n");
+        writer.end(batch, false);
+        writer.close();
+
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, "00001",
+                new ByteArrayInputStream(binary.toByteArray()));
+        reader.open(new DataContext(reader));
+        assertEquals(1, reader.nextBatch().getBatchId());
+        assertEquals("test1", reader.nextTable().getName());
+        assertArrayEquals(new String[] { "1", "a\nb" }, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        assertArrayEquals(new String[] { "2", "\"c\"" }, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        assertNull(reader.nextData());
+        reader.close();
+    }
+
+    @Test
+    public void testBatchesCanBeReadOnTheirOwn() throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinaryProtocolDataWriter writer = new BinaryProtocolDataWriter("00000", binary);
+        writer.open(new DataContext());
+        Table table = new Table("test1", new Column("id", true), new Column("text"));
+        for (int batchId = 1; batchId <= 2; batchId++) {
+            Batch batch = new Batch(BatchType.EXTRACT, batchId, "testchannel", BinaryEncoding.BASE64, "00000",
+                    "00001", false);
+            writer.start(batch);
+            writer.start(table);
+            writer.write(new CsvData(DataEventType.INSERT, new String[] { Integer.toString(batchId), "a" }));
+            writer.end(table);
+            writer.end(batch, false);
+            if (batchId == 1) {
+                binary.reset();
+                binary.write(BinaryProtocolConstants.MAGIC);
+                binary.write(BinaryProtocolConstants.VERSION);
+            }
+        }
+        writer.close();
+
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, "00001",
+                new ByteArrayInputStream(binary.toByteArray()));
+        reader.open(new DataContext(reader));
+        assertEquals(2, reader.nextBatch().getBatchId());
+        Table readTable = reader.nextTable();
+        assertEquals("test1", readTable.getName());
+        assertEquals(2, readTable.getColumnCount());
+        assertArrayEquals(new String[] { "2", "a" }, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        assertNull(reader.nextData());
+        reader.close();
+    }
+
+    @Test
+    public void testKeepAliveAndStats() throws Exception {
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        BinaryProtocolDataWriter writer = new BinaryProtocolDataWriter("00000", binary) {
+            @Override
+            protected void printStats(Batch batch) {
+                writeLine(CsvConstants.STATS_COLUMNS, DataReaderStatistics.LOAD_ID,
+                        DataReaderStatistics.EXTRACT_MILLIS);
+                writeLine(CsvConstants.STATS, "7", "42");
+            }
+        };
+        writer.writeKeepAlive();
+        assertEquals(BinaryProtocolConstants.MAGIC.length + 1 + 9, binary.size());
+        write(writer, "a");
+
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, "00001",
+                new ByteArrayInputStream(binary.toByteArray()));
+        reader.open(new DataContext(reader));
+        Batch batch = reader.nextBatch();
+        assertEquals(1, batch.getBatchId());
+        assertEquals("00000", batch.getSourceNodeId());
+        while (reader.nextTable() != null) {
+            while (reader.nextData() != null) {
+            }
+        }
+        Statistics stats = reader.getStatistics().get(batch);
+        assertEquals(7, stats.get(DataReaderStatistics.LOAD_ID));
+        assertEquals(42, stats.get(DataReaderStatistics.EXTRACT_MILLIS));
+        assertTrue(batch.isComplete());
+        reader.close();
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        BinaryProtocolDataReader reader = new BinaryProtocolDataReader(BatchType.LOAD, "00001",
+                new ByteArrayInputStream(new byte[0]));
+        reader.open(new DataContext(reader));
+        assertNull(reader.nextBatch());
+        reader.close();
+    }
+
+    protected void write(AbstractProtocolDataWriter writer, String text) {
+        Table table1 = new Table("test1", new Column("id", true), new Column("text"));
+        Table table2 = new Table("test2", new Column("id", true), new Column("note"));
+        Table table1Altered = new Table("test1", new Column("id", true), new Column("text"), new Column("extra"));
+
+        writer.open(new DataContext());
+        Batch batch = new Batch(BatchType.EXTRACT, 1, "testchannel", BinaryEncoding.BASE64, "00000", "00001", false);
+        writer.start(batch);
+        writer.start(table1);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "1", text }));
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "2", null }));
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "3", "" }));
+        writer.end(table1);
+        writer.start(table2);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "1", "note" }));
+        writer.end(table2);
+        writer.start(table1);
+        CsvData update = new CsvData(DataEventType.UPDATE);
+        update.putParsedData(CsvData.ROW_DATA, new String[] { "1", "x" });
+        update.putParsedData(CsvData.PK_DATA, new String[] { "1" });
+        update.putParsedData(CsvData.OLD_DATA, new String[] { "1", "a" });
+        writer.write(update);
+        writer.write(new CsvData(DataEventType.DELETE, new String[] { "2" }, null));
+        writer.write(new CsvData(DataEventType.SQL, new String[] { "delete from test1 where id > 3" }));
+        writer.end(table1);
+        writer.end(batch, false);
+
+        batch = new Batch(BatchType.EXTRACT, 2, "testchannel", BinaryEncoding.BASE64, "00000", "00001", false);
+        writer.start(batch);
+        writer.start(table1Altered);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "4", "y", null }));
+        writer.end(table1Altered);
+        writer.start(table1);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "5", "z" }));
+        writer.end(table1);
+        writer.end(batch, false);
+        writer.close();
+    }
+
+    protected List<String> read(IDataReader reader) {
+        List<String> events = new ArrayList<String>();
+        reader.open(new DataContext(reader));
+        Batch batch = null;
+        while ((batch = reader.nextBatch()) != null) {
+            events.add(String.format("batch %d %s %s %s", batch.getBatchId(), batch.getChannelId(),
+                    batch.getSourceNodeId(), batch.getBinaryEncoding()));
+            Table table = null;
+            while ((table = reader.nextTable()) != null) {
+                events.add(String.format("table %s %s %s", table.getFullyQualifiedTableName(),
+                        Arrays.toString(table.getColumnNames()), Arrays.toString(table.getPrimaryKeyColumnNames())));
+                CsvData data = null;
+                while ((data = reader.nextData()) != null) {
+                    events.add(String.format("%s %s %s %s", data.getDataEventType(),
+                            Arrays.toString(data.getParsedData(CsvData.ROW_DATA)),
+                            Arrays.toString(data.getParsedData(CsvData.PK_DATA)),
+                            Arrays.toString(data.getParsedData(CsvData.OLD_DATA))));
+                }
+            }
+            events.add("complete " + batch.isComplete());
+        }
+        reader.close();
+        return events;
+    }
+
+}
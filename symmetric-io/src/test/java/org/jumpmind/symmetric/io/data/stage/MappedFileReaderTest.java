@@ -0,0 +1,107 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.Reader;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.io.stage.MappedFileReader;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedFileReaderTest {
+
+    static final File DIR = new File("target/tmp/mapped.reader");
+
+    static final String TEXT = "insert,1,\"café\",\"日本語\",\"😀\"\ninsert,2,\"plain\",\"üñ\",\"👍👍\"\n";
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+        DIR.mkdirs();
+    }
+
+    @Test
+    public void testReadAcrossWindows() throws Exception {
+        File file = new File(DIR, "batch.done");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            expected.append(TEXT);
+        }
+        FileUtils.write(file, expected.toString(), IoConstants.ENCODING);
+
+        for (int windowSize : new int[] { 1, 5, 7, 64, MappedFileReader.DEFAULT_WINDOW_SIZE }) {
+            for (int bufferSize : new int[] { 1, 3, 1024 }) {
+                assertEquals("window " + windowSize + " buffer " + bufferSize, expected.toString(),
+                        read(new MappedFileReader(file, windowSize), bufferSize));
+            }
+        }
+    }
+
+    @Test
+    public void testReadEmptyFile() throws Exception {
+        File file = new File(DIR, "empty.done");
+        assertTrue(file.createNewFile());
+        MappedFileReader reader = new MappedFileReader(file);
+        assertEquals(-1, reader.read());
+        reader.close();
+    }
+
+    @Test
+    public void testStagedResourceReadsMappedFile() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        stagingManager.setMappedReadEnabled(true);
+        stagingManager.setMappedReadThreshold(0);
+        IStagedResource resource = stagingManager.create("test", "node", 1);
+        BufferedWriter writer = resource.getWriter(0);
+        writer.write(TEXT);
+        resource.close();
+        resource.setState(State.DONE);
+
+        BufferedReader reader = resource.getReader();
+        assertEquals(TEXT, IOUtils.toString(reader));
+        resource.close();
+        assertTrue(resource.delete());
+    }
+
+    protected String read(Reader reader, int bufferSize) throws Exception {
+        StringBuilder buffer = new StringBuilder();
+        char[] chars = new char[bufferSize];
+        int count = 0;
+        while ((count = reader.read(chars)) != -1) {
+            buffer.append(chars, 0, count);
+        }
+        reader.close();
+        return buffer.toString();
+    }
+
+}
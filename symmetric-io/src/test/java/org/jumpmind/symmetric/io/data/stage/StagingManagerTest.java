@@ -0,0 +1,308 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.io.stage.StagingIndex;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.jumpmind.symmetric.io.stage.StagingPurgeContext;
+import org.jumpmind.symmetric.io.stage.StagingQuota;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagingManagerTest {
+
+    static final File DIR = new File("target/tmp/staging.manager");
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+    }
+
+    @Test
+    public void testIndexReloadedFromManifest() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        stage(stagingManager, 1, State.DONE);
+        stage(stagingManager, 2, State.CREATE);
+        stage(stagingManager, 3, State.DONE).delete();
+        stagingManager.getIndex().close();
+
+        stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        assertEquals(2, stagingManager.getResourceReferences().size());
+        assertEquals(State.DONE, stagingManager.getIndex().getState("test/node/0000000001"));
+        assertEquals(State.CREATE, stagingManager.getIndex().getState("test/node/0000000002"));
+        assertNotNull(stagingManager.find("test", "node", 1));
+        assertNull(stagingManager.find("test", "node", 3));
+    }
+
+    @Test
+    public void testIndexRecoveredFromDirectory() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        stage(stagingManager, 1, State.DONE);
+        stage(stagingManager, 2, State.CREATE);
+        stagingManager.getIndex().close();
+        assertTrue(new File(DIR, StagingIndex.MANIFEST_NAME).delete());
+
+        stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        assertEquals(State.DONE, stagingManager.getIndex().getState("test/node/0000000001"));
+        assertEquals(State.CREATE, stagingManager.getIndex().getState("test/node/0000000002"));
+        assertTrue(new File(DIR, StagingIndex.MANIFEST_NAME).exists());
+    }
+
+    @Test
+    public void testClusteredIndexScansDirectory() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), true);
+        stage(stagingManager, 1, State.DONE);
+        assertFalse(new File(DIR, StagingIndex.MANIFEST_NAME).exists());
+
+        StagingManager otherServer = new StagingManager(DIR.getAbsolutePath(), true);
+        stage(otherServer, 2, State.DONE);
+        stagingManager.clean(Long.MAX_VALUE);
+        assertEquals(State.DONE, stagingManager.getIndex().getState("test/node/0000000002"));
+        assertFalse(new File(DIR, StagingIndex.MANIFEST_NAME).exists());
+    }
+
+    @Test
+    public void testCleanPurgesFromIndex() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        IStagedResource done = stage(stagingManager, 1, State.DONE);
+        IStagedResource created = stage(stagingManager, 2, State.CREATE);
+        FileUtils.deleteQuietly(stage(stagingManager, 3, State.DONE).getFile());
+        assertTrue(done.getFile().setLastModified(System.currentTimeMillis() - 60000));
+
+        stagingManager.clean(1000);
+        assertFalse(done.getFile().exists());
+        assertTrue(created.getFile().exists());
+        assertEquals(1, stagingManager.getResourceReferences().size());
+        assertNull(stagingManager.find("test", "node", 3));
+
+        stagingManager.getIndex().load();
+        assertEquals(1, stagingManager.getIndex().size());
+    }
+
+    @Test
+    public void testCleanPurgesAbandonedCheckpoint() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        IStagedResource resumable = stagingManager.create("test", "node", 1);
+        resumable.getWriter(0).write("batch,1\n");
+        resumable.checkpoint("1");
+        resumable.close();
+        File checkpointFile = new File(DIR, resumable.getPath() + ".checkpoint");
+        assertTrue(checkpointFile.exists());
+
+        stagingManager.clean(60000);
+        assertTrue(resumable.getFile().exists());
+
+        assertTrue(resumable.getFile().setLastModified(System.currentTimeMillis() - 120000));
+        stagingManager.clean(60000);
+        assertFalse(resumable.getFile().exists());
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test(timeout = 10000)
+    public void testCreateWhilePurgeIsRunning() throws Exception {
+        final CountDownLatch purging = new CountDownLatch(1);
+        final CountDownLatch finishPurge = new CountDownLatch(1);
+        final StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false) {
+            @Override
+            protected void clean(Map<String, State> entries, long ttlInMs, StagingPurgeContext context) {
+                purging.countDown();
+                try {
+                    finishPurge.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                super.clean(entries, ttlInMs, context);
+            }
+        };
+        stage(stagingManager, 1, State.DONE);
+        Thread purge = new Thread() {
+            public void run() {
+                stagingManager.clean(60000);
+            }
+        };
+        purge.start();
+        try {
+            purging.await();
+            IStagedResource resource = stage(stagingManager, 2, State.DONE);
+            assertNotNull(stagingManager.find("test", "node", 2));
+            assertEquals(State.DONE, resource.getState());
+        } finally {
+            finishPurge.countDown();
+            purge.join();
+        }
+
+        stagingManager.getIndex().close();
+        StagingIndex index = new StagingIndex(DIR);
+        index.load();
+        assertEquals(State.DONE, index.getState("test/node/0000000002"));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsedOverQuota() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        StagingQuota quota = stagingManager.getQuota();
+        IStagedResource[] resources = new IStagedResource[5];
+        for (int i = 1; i <= 4; i++) {
+            resources[i] = stage(stagingManager, i, State.DONE);
+            Thread.sleep(5);
+        }
+        long size = resources[1].getSize();
+        assertEquals(4 * size, quota.getUsedBytes());
+        assertNotNull(stagingManager.find("test", "node", 1));
+
+        quota.setQuotaBytes(4 * size);
+        quota.setNearLimitPercent(75);
+        assertTrue(stagingManager.isNearQuota());
+        assertFalse(stagingManager.isOverQuota());
+        assertEquals(2, quota.getEvictedCount());
+        assertTrue(resources[1].exists());
+        assertFalse(resources[2].exists());
+        assertFalse(resources[3].exists());
+        assertTrue(resources[4].exists());
+        assertEquals(2 * size, quota.getUsedBytes());
+        assertNull(stagingManager.find("test", "node", 2));
+        stagingManager.getIndex().close();
+
+        stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        assertEquals(2 * size, stagingManager.getQuota().getUsedBytes());
+        stagingManager.clean(Long.MAX_VALUE);
+        assertEquals(2 * size, stagingManager.getQuota().getUsedBytes());
+    }
+
+    @Test
+    public void testReferencedResourceSurvivesEviction() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        StagingQuota quota = stagingManager.getQuota();
+        IStagedResource[] resources = new IStagedResource[5];
+        for (int i = 1; i <= 4; i++) {
+            resources[i] = stage(stagingManager, i, State.DONE);
+            Thread.sleep(5);
+        }
+        long size = resources[1].getSize();
+        assertNotNull(stagingManager.find("test", "node", 1));
+        resources[2].reference();
+
+        quota.setQuotaBytes(4 * size);
+        quota.setNearLimitPercent(75);
+        assertFalse(stagingManager.isOverQuota());
+        assertEquals(2, quota.getEvictedCount());
+        assertTrue(resources[1].exists());
+        assertTrue(resources[2].exists());
+        assertFalse(resources[3].exists());
+        assertFalse(resources[4].exists());
+        assertTrue(stagingManager.find("test", "node", 2).isInUse());
+
+        resources[2].dereference();
+        assertFalse(stagingManager.find("test", "node", 2).isInUse());
+        quota.setQuotaBytes(size);
+        assertFalse(stagingManager.isOverQuota());
+        assertFalse(resources[2].exists());
+    }
+
+    @Test(timeout = 10000)
+    public void testDeleteWhileReadingFromMemory() throws Exception {
+        final StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        final IStagedResource resource = stageInMemory(stagingManager, 1, 'a');
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch deleted = new CountDownLatch(1);
+        final AtomicReference<String> firstLine = new AtomicReference<String>();
+        final AtomicReference<Throwable> readError = new AtomicReference<Throwable>();
+        Thread sender = new Thread() {
+            public void run() {
+                try {
+                    BufferedReader reader = resource.getReader();
+                    char[] line = new char[10];
+                    reader.read(line);
+                    firstLine.set(new String(line));
+                    reading.countDown();
+                    deleted.await();
+                    while (reader.readLine() != null) {
+                    }
+                } catch (Throwable ex) {
+                    readError.set(ex);
+                } finally {
+                    reading.countDown();
+                    resource.close();
+                }
+            }
+        };
+        sender.start();
+        reading.await();
+        assertTrue(resource.isInUse());
+        assertTrue(resource.delete());
+        assertTrue(stagingManager.getMemoryPool().getUsedBytes() > 0);
+
+        IStagedResource next = stageInMemory(stagingManager, 2, 'b');
+        deleted.countDown();
+        sender.join();
+
+        assertEquals("aaaaaaaaaa", firstLine.get());
+        assertNotNull(readError.get());
+        assertTrue(readError.get() instanceof IOException);
+        next.delete();
+        assertEquals(0, stagingManager.getMemoryPool().getUsedBytes());
+    }
+
+    protected IStagedResource stageInMemory(StagingManager stagingManager, long batchId, char c) throws Exception {
+        IStagedResource resource = stagingManager.create("test", "node", batchId);
+        BufferedWriter writer = resource.getWriter(1024 * 1024);
+        for (int i = 0; i < 10000; i++) {
+            writer.write(StringUtils.repeat(String.valueOf(c), 79));
+            writer.newLine();
+        }
+        resource.close();
+        resource.setState(State.DONE);
+        if (resource.isFileResource()) {
+            fail("Expected " + resource.getPath() + " to be held in memory");
+        }
+        return resource;
+    }
+
+    protected IStagedResource stage(StagingManager stagingManager, long batchId, State state) throws Exception {
+        IStagedResource resource = stagingManager.create("test", "node", batchId);
+        BufferedWriter writer = resource.getWriter(0);
+        writer.write("batch," + batchId);
+        writer.newLine();
+        resource.close();
+        resource.setState(state);
+        return resource;
+    }
+
+}
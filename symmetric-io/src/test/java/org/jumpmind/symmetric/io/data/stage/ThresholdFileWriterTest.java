@@ -24,6 +24,8 @@ import java.io.BufferedReader;
 import java.io.File;
 
 import org.apache.commons.io.IOUtils;
+import org.jumpmind.symmetric.io.stage.StagingMemoryBuffer;
+import org.jumpmind.symmetric.io.stage.StagingMemoryPool;
 import org.jumpmind.symmetric.io.stage.ThresholdFileWriter;
 import static org.junit.Assert.*;
 import org.junit.Test;
@@ -66,6 +68,84 @@ public class ThresholdFileWriterTest {
         assertTrue(file.delete());
     }
 
+    @Test
+    public void testWriteToMemoryBuffer() throws Exception {
+        File file = getTestFile();
+        StagingMemoryPool pool = new StagingMemoryPool(1024, 16);
+        ThresholdFileWriter writer = new ThresholdFileWriter(TEST_STR.length() + 1, new StagingMemoryBuffer(pool), file,
+                false, 0);
+        writer.write(TEST_STR.substring(0, 10));
+        writer.write(TEST_STR.substring(10));
+
+        assertFalse(file.exists());
+        assertEquals(48, pool.getUsedBytes());
+        BufferedReader reader = writer.getReader();
+        assertEquals(TEST_STR, IOUtils.toString(reader));
+
+        writer.close();
+        writer.delete();
+        assertEquals(48, pool.getUsedBytes());
+        reader.close();
+        assertEquals(0, pool.getUsedBytes());
+    }
+
+    @Test
+    public void testMemoryBufferThresholdCountsBytes() throws Exception {
+        File file = getTestFile();
+        StagingMemoryPool pool = new StagingMemoryPool(1024, 16);
+        StagingMemoryBuffer memoryBuffer = new StagingMemoryBuffer(pool);
+        ThresholdFileWriter writer = new ThresholdFileWriter(12, memoryBuffer, file, false, 0);
+        String multiByte = "\u00e9\u00e9\u00e9\u00e9\u00e9";
+        writer.write(multiByte);
+        assertFalse(file.exists());
+        assertEquals(10, memoryBuffer.length());
+        writer.write(multiByte);
+        writer.close();
+
+        assertTrue(file.exists());
+        assertEquals(0, pool.getUsedBytes());
+        BufferedReader reader = writer.getReader();
+        assertEquals(multiByte + multiByte, IOUtils.toString(reader));
+        reader.close();
+
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testMemoryBufferHoldsBackSplitSurrogatePair() throws Exception {
+        StagingMemoryBuffer memoryBuffer = new StagingMemoryBuffer(new StagingMemoryPool(1024, 16));
+        String value = "a\ud83d\ude00b";
+        assertTrue(memoryBuffer.append(value.toCharArray(), 0, 2));
+        assertEquals(1, memoryBuffer.length());
+        assertEquals("\ud83d", memoryBuffer.getUnencoded());
+        assertTrue(memoryBuffer.append(value.toCharArray(), 2, 2));
+        assertEquals(6, memoryBuffer.length());
+        assertEquals("", memoryBuffer.getUnencoded());
+        assertEquals(value, IOUtils.toString(memoryBuffer.getReader()));
+        memoryBuffer.release();
+    }
+
+    @Test
+    public void testWriteToFileWhenMemoryBudgetIsUsed() throws Exception {
+        File file = getTestFile();
+        StagingMemoryPool pool = new StagingMemoryPool(32, 16);
+        ThresholdFileWriter writer = new ThresholdFileWriter(TEST_STR.length() + 1, new StagingMemoryBuffer(pool), file,
+                false, 0);
+        writer.write(TEST_STR.substring(0, 20));
+        assertFalse(file.exists());
+        writer.write(TEST_STR.substring(20));
+        writer.close();
+
+        assertTrue(file.exists());
+        assertEquals(0, pool.getUsedBytes());
+        assertEquals(1, pool.getExhaustedCount());
+        BufferedReader reader = writer.getReader();
+        assertEquals(TEST_STR, IOUtils.toString(reader));
+        reader.close();
+
+        assertTrue(file.delete());
+    }
+
     private File getTestFile() {
         File file = new File("target/test/buffered.file.writer.tst");
         file.getParentFile().mkdirs();
@@ -20,6 +20,7 @@
  */
 package org.jumpmind.symmetric.io.data.writer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -29,16 +30,25 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Inflater;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
 import org.jumpmind.exception.IoException;
 import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvUtils;
 import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.DataProcessor;
+import org.jumpmind.symmetric.io.data.IStreamedValue;
 import org.jumpmind.symmetric.io.data.reader.ProtocolDataReader;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
 import org.jumpmind.symmetric.io.stage.StagingManager;
@@ -72,13 +82,28 @@ public class StagingDataWriterTest {
         readThenWrite(10000000);
     }
 
+    @Test
+    public void testReadThenWriteToCompressedFile() throws Exception {
+        readThenWrite(0, true);
+    }
+
+    @Test
+    public void testReadThenWriteToMemoryWithCompression() throws Exception {
+        readThenWrite(10000000, true);
+    }
+
     public void readThenWrite(long threshold) throws Exception {
+        readThenWrite(threshold, false);
+    }
+
+    public void readThenWrite(long threshold, boolean compress) throws Exception {
 
         InputStreamReader is = new InputStreamReader(getClass().getResourceAsStream("FileCsvDataWriterTest.1.csv"));
         String origCsv = IOUtils.toString(is);
         is.close();
 
         StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(),false);
+        stagingManager.setCompressionEnabled(compress);
         ProtocolDataReader reader = new ProtocolDataReader(BatchType.LOAD, "test", origCsv);
         StagingDataWriter writer = new StagingDataWriter(threshold, false, "aaa", "test", stagingManager, new BatchListener());
         DataProcessor processor = new DataProcessor(reader, writer, "test");
@@ -91,8 +116,12 @@ public class StagingDataWriterTest {
         assertNotNull(resource);
         if (threshold > origCsv.length()) {
             assertFalse(resource.getFile().exists());
+            assertFalse(resource.isCompressed());
         } else {
             assertTrue(resource.getFile().exists());
+            assertEquals(compress, resource.isCompressed());
+            assertEquals(convertEol(origCsv), convertEol(IOUtils.toString(resource.getInputStream(), "UTF-8")));
+            resource.close();
         }
         
         resource.delete();
@@ -100,6 +129,139 @@ public class StagingDataWriterTest {
 
     }
     
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        Table table = new Table("resume_table", new Column("id", true), new Column("name"));
+        Batch batch = new Batch(BatchType.EXTRACT, 2, "default", null, "aaa", "bbb", false);
+
+        StagingDataWriter writer = new StagingDataWriter(0, false, "aaa", "test", stagingManager, new BatchListener());
+        writer.open(new DataContext());
+        writer.start(batch);
+        writer.start(table);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "1", "one" }));
+        writer.checkpoint(batch, "1");
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "2", "lost" }));
+        stagingManager.find("test", "bbb", 2).close();
+
+        batch = new Batch(BatchType.EXTRACT, 2, "default", null, "aaa", "bbb", false);
+        writer = new StagingDataWriter(0, false, "aaa", "test", stagingManager, new BatchListener());
+        assertEquals("1", writer.resume(batch));
+        writer.open(new DataContext());
+        writer.start(batch);
+        writer.start(table);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "2", "two" }));
+        writer.end(table);
+        writer.end(batch, false);
+
+        assertEquals(1, batchesWritten.size());
+        String csv = batchesWritten.get(0);
+        assertEquals(1, StringUtils.countMatches(csv, "batch,2"));
+        assertEquals(2, StringUtils.countMatches(csv, "insert,"));
+        assertFalse(csv.contains("lost"));
+        assertEquals(2, writer.getStatistics().get(batch).get(DataWriterStatisticConstants.ROWCOUNT));
+
+        IStagedResource resource = stagingManager.find("test", "bbb", 2);
+        assertNotNull(resource.getCheckpoint());
+        resource.delete();
+        assertFalse(new File(DIR, "test/bbb/0000000002.checkpoint").exists());
+    }
+
+    @Test
+    public void testCompressedHeaderInGzipMemberOfItsOwn() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        stagingManager.setCompressionEnabled(true);
+        Table table = new Table("member_table", new Column("id", true), new Column("name"));
+        Batch batch = new Batch(BatchType.EXTRACT, 6, "default", null, "aaa", "bbb", false);
+        StagingDataWriter writer = new StagingDataWriter(0, false, "aaa", "test", stagingManager, new BatchListener());
+        writer.open(new DataContext());
+        writer.start(batch);
+        writer.start(table);
+        writer.write(new CsvData(DataEventType.INSERT, new String[] { "1", "one" }));
+        writer.end(table);
+        writer.end(batch, false);
+
+        IStagedResource resource = stagingManager.find("test", "bbb", 6);
+        assertTrue(resource.isCompressed());
+        byte[] bytes = FileUtils.readFileToByteArray(resource.getFile());
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(bytes, 10, bytes.length - 10);
+        byte[] header = new byte[1024];
+        int length = inflater.inflate(header);
+        assertTrue(inflater.finished());
+        assertTrue(new String(header, 0, length, "UTF-8").trim().endsWith("batch,6"));
+        assertTrue(inflater.getRemaining() > 8);
+        inflater.end();
+
+        assertEquals(convertEol(batchesWritten.get(0)), convertEol(IOUtils.toString(resource.getInputStream(), "UTF-8")));
+        resource.close();
+        resource.delete();
+    }
+
+    @Test
+    public void testWriteStreamedData() throws Exception {
+        StagingManager stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        Table table = new Table("streamed_table", new Column("id", true), new Column("a"), new Column("b"),
+                new Column("c"), new Column("d"));
+        String[] values = { "1", "a \"quoted\" \\ value,\nwith a line feed", "", null, "d" };
+        Batch batch = new Batch(BatchType.EXTRACT, 5, "default", null, "aaa", "bbb", false);
+        StagingDataWriter writer = new StagingDataWriter(0, false, "aaa", "test", stagingManager, new BatchListener());
+        writer.open(new DataContext());
+        writer.start(batch);
+        writer.start(table);
+        writer.write(new CsvData(DataEventType.INSERT, values));
+        StreamedString[] streamedValues = { null, new StreamedString(values[1]), new StreamedString(values[2]),
+                new StreamedString(values[3]), null };
+        CsvData data = new CsvData(DataEventType.INSERT, new String[] { "1", null, null, null, "d" });
+        data.putStreamedData(CsvData.ROW_DATA, streamedValues);
+        writer.write(data);
+        writer.end(table);
+        writer.end(batch, false);
+
+        for (int i = 1; i < 4; i++) {
+            assertEquals(1, streamedValues[i].writes);
+        }
+        String insert = "insert," + CsvUtils.escapeCsvData(values) + "\n";
+        assertEquals(2, StringUtils.countMatches(batchesWritten.get(0), insert));
+
+        ProtocolDataReader reader = new ProtocolDataReader(BatchType.LOAD, "bbb", stagingManager.find("test", "bbb", 5));
+        reader.open(new DataContext());
+        reader.nextBatch();
+        reader.nextTable();
+        assertArrayEquals(values, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        assertArrayEquals(values, reader.nextData().getParsedData(CsvData.ROW_DATA));
+        reader.close();
+        stagingManager.find("test", "bbb", 5).delete();
+
+        data = new CsvData(DataEventType.INSERT, new String[] { "1", null, null, null, "d" });
+        data.putStreamedData(CsvData.ROW_DATA, new StreamedString[] { null, new StreamedString(values[1]),
+                new StreamedString(values[2]), new StreamedString(values[3]), null });
+        assertEquals(CsvUtils.escapeCsvData(values), data.getCsvData(CsvData.ROW_DATA));
+        assertFalse(data.hasStreamedData(CsvData.ROW_DATA));
+    }
+
+    static class StreamedString implements IStreamedValue {
+
+        String value;
+
+        int writes;
+
+        StreamedString(String value) {
+            this.value = value;
+        }
+
+        public boolean write(Writer writer) throws IOException {
+            writes++;
+            if (value != null) {
+                /* write in two chunks to split escaped characters across writes */
+                writer.write(value.substring(0, value.length() / 2));
+                writer.write(value.substring(value.length() / 2));
+            }
+            return value != null;
+        }
+
+    }
+
     private String convertEol(String str) {
         return str.replaceAll("\\r\\n", "\n").replaceAll("\\r", "\n");
     }
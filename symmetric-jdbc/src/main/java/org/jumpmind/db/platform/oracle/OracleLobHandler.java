@@ -1,5 +1,6 @@
 package org.jumpmind.db.platform.oracle;
 
+import java.io.Reader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -34,4 +35,14 @@ public class OracleLobHandler extends SymmetricLobHandler {
         }
     }
 
+    @Override
+    public Reader getClobAsCharacterStream(ResultSet rs, int columnIndex, int jdbcTypeCode,
+            String jdbcTypeName) throws SQLException {
+        if ("LONG".equalsIgnoreCase(jdbcTypeName)) {
+            return longHandler.getClobAsCharacterStream(rs, columnIndex);
+        } else {
+            return super.getClobAsCharacterStream(rs, columnIndex, jdbcTypeCode, jdbcTypeName);
+        }
+    }
+
 }
@@ -20,6 +20,7 @@
  */
 package org.jumpmind.db.platform.postgresql;
 
+import java.io.InputStream;
 import java.sql.Blob;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -46,6 +47,17 @@ public class PostgresLobHandler extends SymmetricLobHandler {
         }
     }
     
+    public InputStream getBlobAsBinaryStream(ResultSet rs, int columnIndex, int jdbcTypeCode,
+            String jdbcTypeName) throws SQLException {
+
+        if (PostgreSqlDatabasePlatform.isBlobStoredByReference(jdbcTypeName)) {
+            Blob blob = rs.getBlob(columnIndex);
+            return blob != null ? blob.getBinaryStream() : null;
+        } else {
+            return getDefaultHandler().getBlobAsBinaryStream(rs, columnIndex);
+        }
+    }
+    
     public static byte[] getLoColumnAsBytes(ResultSet rs, int columnIndex) throws SQLException {
         Blob blob = rs.getBlob(columnIndex);
         if (blob != null) {
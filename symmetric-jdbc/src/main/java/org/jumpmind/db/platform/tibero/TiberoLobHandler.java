@@ -1,5 +1,6 @@
 package org.jumpmind.db.platform.tibero;
 
+import java.io.Reader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -31,4 +32,14 @@ public class TiberoLobHandler extends SymmetricLobHandler {
         }
     }
 
+    @Override
+    public Reader getClobAsCharacterStream(ResultSet rs, int columnIndex, int jdbcTypeCode,
+            String jdbcTypeName) throws SQLException {
+        if ("LONG".equalsIgnoreCase(jdbcTypeName)) {
+            return longHandler.getClobAsCharacterStream(rs, columnIndex);
+        } else {
+            return super.getClobAsCharacterStream(rs, columnIndex, jdbcTypeCode, jdbcTypeName);
+        }
+    }
+
 }
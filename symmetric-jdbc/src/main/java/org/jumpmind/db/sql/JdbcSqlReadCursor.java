@@ -66,6 +66,11 @@ public class JdbcSqlReadCursor<T> implements ISqlReadCursor<T> {
 
     public JdbcSqlReadCursor(JdbcSqlTemplate sqlTemplate, ISqlRowMapper<T> mapper, String sql,
             Object[] values, int[] types, IConnectionHandler connectionHandler) {
+        this(sqlTemplate, mapper, sql, values, types, connectionHandler, 0);
+    }
+
+    public JdbcSqlReadCursor(JdbcSqlTemplate sqlTemplate, ISqlRowMapper<T> mapper, String sql,
+            Object[] values, int[] types, IConnectionHandler connectionHandler, int maxRows) {
         this.sqlTemplate = sqlTemplate;
         this.mapper = mapper;
         this.connectionHandler = connectionHandler;
@@ -94,6 +99,9 @@ public class JdbcSqlReadCursor<T> implements ISqlReadCursor<T> {
                     st = pstmt;                    
                     st.setQueryTimeout(sqlTemplate.getSettings().getQueryTimeout());
                     st.setFetchSize(sqlTemplate.getSettings().getFetchSize());
+                    if (maxRows > 0) {
+                        st.setMaxRows(maxRows);
+                    }
                     rs = pstmt.executeQuery();
 
                 } else {
@@ -101,6 +109,9 @@ public class JdbcSqlReadCursor<T> implements ISqlReadCursor<T> {
                             ResultSet.CONCUR_READ_ONLY);
                     st.setQueryTimeout(sqlTemplate.getSettings().getQueryTimeout());
                     st.setFetchSize(sqlTemplate.getSettings().getFetchSize());
+                    if (maxRows > 0) {
+                        st.setMaxRows(maxRows);
+                    }
                     rs = st.executeQuery(sql);
                 }
             } catch (SQLException e) {
@@ -27,6 +27,7 @@ import static org.jumpmind.db.model.ColumnTypes.ORACLE_TIMESTAMPTZ;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -53,6 +54,7 @@ import org.apache.commons.io.IOUtils;
 import org.jumpmind.db.model.TypeMap;
 import org.jumpmind.db.platform.DatabaseInfo;
 import org.jumpmind.db.platform.postgresql.PostgresLobHandler;
+import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.exception.IoException;
 import org.jumpmind.util.LinkedCaseInsensitiveMap;
 import org.slf4j.Logger;
@@ -144,6 +146,17 @@ public class JdbcSqlTemplate extends AbstractSqlTemplate implements ISqlTemplate
         return cursor;
     }
 
+    @Override
+    public <T> ISqlReadCursor<T> queryForCursor(String sql, int maxRowsToFetch, ISqlRowMapper<T> mapper,
+            Object[] args, int[] types) {
+        long startTime = System.currentTimeMillis();
+        ISqlReadCursor<T> cursor = new JdbcSqlReadCursor<T>(this, mapper, sql, args, types, null, maxRowsToFetch);
+        long endTime = System.currentTimeMillis();
+        logSqlBuilder.logSql(log, sql, args, types, (endTime-startTime));
+
+        return cursor;
+    }
+
     public int getIsolationLevel() {
         return isolationLevel;
     }
@@ -225,6 +238,52 @@ public class JdbcSqlTemplate extends AbstractSqlTemplate implements ISqlTemplate
         });
     }
 
+    @Override
+    public boolean streamBlob(final String sql, final int jdbcTypeCode, final String jdbcTypeName,
+            final BinaryEncoding encoding, final Writer writer, final Object... args) {
+
+        return execute(new IConnectionCallback<Boolean>() {
+            public Boolean execute(Connection con) throws SQLException {
+                if (lobHandler.needsAutoCommitFalseForBlob(jdbcTypeCode, jdbcTypeName)) {
+                    con.setAutoCommit(false);
+                }
+                boolean result = false;
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                InputStream is = null;
+                try {
+                    ps = con.prepareStatement(sql);
+                    ps.setQueryTimeout(settings.getQueryTimeout());
+                    setValues(ps, args);
+                    long startTime = System.currentTimeMillis();
+                    rs = ps.executeQuery();
+                    long endTime = System.currentTimeMillis();
+                    logSqlBuilder.logSql(log, sql, args, null, (endTime-startTime));
+                    if (rs.next()) {
+                        is = lobHandler.getBlobAsBinaryStream(rs, 1, jdbcTypeCode, jdbcTypeName);
+                        if (is != null) {
+                            encodeBlob(is, encoding, settings.getLobChunkSize(), writer);
+                            result = true;
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw logSqlBuilder.logSqlAfterException(log, sql, args, e);
+                } catch (IOException e) {
+                    throw new IoException(e);
+                } finally {
+                    IOUtils.closeQuietly(is);
+                    if (lobHandler.needsAutoCommitFalseForBlob(jdbcTypeCode, jdbcTypeName)
+                            && con != null) {
+                        con.setAutoCommit(true);
+                    }
+                    close(rs);
+                    close(ps);
+                }
+                return result;
+            }
+        });
+    }
+
     @Deprecated
     public String queryForClob(final String sql, final Object... args) {
         return queryForClob(sql, -1, null, args);
@@ -260,6 +319,46 @@ public class JdbcSqlTemplate extends AbstractSqlTemplate implements ISqlTemplate
         });
     }
 
+    @Override
+    public boolean streamClob(final String sql, final int jdbcTypeCode, final String jdbcTypeName,
+            final Writer writer, final Object... args) {
+        return execute(new IConnectionCallback<Boolean>() {
+            public Boolean execute(Connection con) throws SQLException {
+                boolean result = false;
+                PreparedStatement ps = null;
+                ResultSet rs = null;
+                Reader reader = null;
+                try {
+                    ps = con.prepareStatement(sql);
+                    ps.setQueryTimeout(settings.getQueryTimeout());
+                    setValues(ps, args);
+
+                    long startTime = System.currentTimeMillis();
+                    rs = ps.executeQuery();
+                    long endTime = System.currentTimeMillis();
+                    logSqlBuilder.logSql(log, sql, args, null, (endTime-startTime));
+
+                    if (rs.next()) {
+                        reader = lobHandler.getClobAsCharacterStream(rs, 1, jdbcTypeCode, jdbcTypeName);
+                        if (reader != null) {
+                            copy(reader, settings.getLobChunkSize(), writer);
+                            result = true;
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw logSqlBuilder.logSqlAfterException(log, sql, args, e);
+                } catch (IOException e) {
+                    throw new IoException(e);
+                } finally {
+                    IOUtils.closeQuietly(reader);
+                    close(rs);
+                    close(ps);
+                }
+                return result;
+            }
+        });
+    }
+
     public Map<String, Object> queryForMap(final String sql, final Object... args) {
         return execute(new IConnectionCallback<Map<String, Object>>() {
             public Map<String, Object> execute(Connection con) throws SQLException {
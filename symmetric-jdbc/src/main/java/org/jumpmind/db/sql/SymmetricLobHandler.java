@@ -20,6 +20,8 @@
  */
 package org.jumpmind.db.sql;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -44,11 +46,21 @@ public class SymmetricLobHandler {
         return lobHandler.getClobAsString(rs, columnIndex);
     }
 
+    public Reader getClobAsCharacterStream(ResultSet rs, int columnIndex, int jdbcTypeCode,
+            String jdbcTypeName) throws SQLException {
+        return lobHandler.getClobAsCharacterStream(rs, columnIndex);
+    }
+
     public byte[] getBlobAsBytes(ResultSet rs, int columnIndex, int jdbcTypeCode, String jdbcTypeName)
             throws SQLException {
         return lobHandler.getBlobAsBytes(rs, columnIndex);
     }
 
+    public InputStream getBlobAsBinaryStream(ResultSet rs, int columnIndex, int jdbcTypeCode,
+            String jdbcTypeName) throws SQLException {
+        return lobHandler.getBlobAsBinaryStream(rs, columnIndex);
+    }
+
     public LobHandler getDefaultHandler() {
         return lobHandler;
     }
@@ -27,9 +27,12 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.sql.Types;
 import java.util.List;
 
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.jumpmind.db.io.DatabaseXmlUtil;
@@ -45,6 +48,7 @@ import org.jumpmind.db.platform.PermissionResult.Status;
 import org.jumpmind.db.platform.PermissionType;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.SqlScript;
+import org.jumpmind.db.util.BinaryEncoding;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -303,6 +307,64 @@ public class DatabasePlatformTest {
         platform.createTables(true, false, table);
     }
     
+    @Test
+    public void testStreamLobs() throws Exception {
+        Table table = new Table("TEST_STREAM_LOBS");
+        table.addColumn(new Column("ID", true, Types.INTEGER, 0, 0));
+        table.getColumnWithName("ID").setRequired(true);
+        table.addColumn(new Column("DATA", false, Types.BLOB, 0, 0));
+        table.addColumn(new Column("NOTE", false, Types.CLOB, 0, 0));
+        Table tableFromDatabase = dropCreateAndThenReadTable(table);
+        Column blobColumn = tableFromDatabase.getColumnWithName("DATA");
+        Column clobColumn = tableFromDatabase.getColumnWithName("NOTE");
+
+        /* larger than one chunk and not a multiple of three */
+        byte[] data = new byte[200000];
+        StringBuilder note = new StringBuilder();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+            note.append((char) ('a' + i % 26));
+        }
+
+        ISqlTemplate template = platform.getSqlTemplate();
+        String delimiter = platform.getDatabaseInfo().getDelimiterToken();
+        delimiter = delimiter != null ? delimiter : "";
+        String tableName = delimiter + tableFromDatabase.getName() + delimiter;
+        template.update(String.format("insert into %s values(?,?,?)", tableName), new Object[] { 1, data,
+                note.toString() }, new int[] { Types.INTEGER, Types.BLOB, Types.CLOB });
+        template.update(String.format("insert into %s values(?,?,?)", tableName), new Object[] { 2, null, null },
+                new int[] { Types.INTEGER, Types.BLOB, Types.CLOB });
+
+        String blobSql = String.format("select %sDATA%s from %s where %sID%s=?", delimiter, delimiter, tableName,
+                delimiter, delimiter);
+        String clobSql = String.format("select %sNOTE%s from %s where %sID%s=?", delimiter, delimiter, tableName,
+                delimiter, delimiter);
+
+        StringWriter writer = new StringWriter();
+        assertTrue(template.streamBlob(blobSql, blobColumn.getJdbcTypeCode(), blobColumn.getJdbcTypeName(),
+                BinaryEncoding.BASE64, writer, 1));
+        assertEquals(new String(Base64.encodeBase64(data)), writer.toString());
+
+        writer = new StringWriter();
+        assertTrue(template.streamBlob(blobSql, blobColumn.getJdbcTypeCode(), blobColumn.getJdbcTypeName(),
+                BinaryEncoding.HEX, writer, 1));
+        assertEquals(new String(Hex.encodeHex(data)), writer.toString());
+
+        writer = new StringWriter();
+        assertTrue(template.streamClob(clobSql, clobColumn.getJdbcTypeCode(), clobColumn.getJdbcTypeName(),
+                writer, 1));
+        assertEquals(note.toString(), writer.toString());
+
+        writer = new StringWriter();
+        assertFalse(template.streamBlob(blobSql, blobColumn.getJdbcTypeCode(), blobColumn.getJdbcTypeName(),
+                BinaryEncoding.BASE64, writer, 2));
+        assertFalse(template.streamClob(clobSql, clobColumn.getJdbcTypeCode(), clobColumn.getJdbcTypeName(),
+                writer, 2));
+        assertFalse(template.streamClob(clobSql, clobColumn.getJdbcTypeCode(), clobColumn.getJdbcTypeName(),
+                writer, 3));
+        assertEquals("", writer.toString());
+    }
+
     @Test
     public void getPermissionsTest() {
     	List<PermissionResult> results = platform.checkSymTablePermissions(PermissionType.values());
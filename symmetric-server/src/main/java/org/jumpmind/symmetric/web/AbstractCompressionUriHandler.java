@@ -79,6 +79,7 @@ abstract public class AbstractCompressionUriHandler extends AbstractUriHandler {
             } else {
                 CompressionServletResponseWrapper wrappedResponse = new CompressionServletResponseWrapper(
                         res, compressionLevel, compressionStrategy);
+                wrappedResponse.setGzipMembersAccepted(Boolean.parseBoolean(req.getHeader(WebConstants.HEADER_ACCEPT_GZIP_MEMBERS)));
                 log.debug("doFilter gets called with compression");
                 try {
                     handleWithCompression(req, wrappedResponse);
@@ -96,15 +96,19 @@ public class PullUriHandler extends AbstractCompressionUriHandler {
         map.addIgnoreChannels(req.getHeader(WebConstants.IGNORED_CHANNELS));
         map.setChannelQueue(req.getHeader(WebConstants.CHANNEL_QUEUE));
         
+        boolean binaryProtocol = WebConstants.PROTOCOL_BINARY.equals(req.getHeader(WebConstants.HEADER_ACCEPT_PROTOCOL))
+                && parameterService.is(ParameterConstants.TRANSPORT_HTTP_BINARY_PROTOCOL_ENABLED);
+        
         // pull out headers and pass to pull() method
-        handlePull(nodeId, req.getRemoteHost(), req.getRemoteAddr(), res.getOutputStream(), req.getHeader(WebConstants.HEADER_ACCEPT_CHARSET), res, map);
+        handlePull(nodeId, req.getRemoteHost(), req.getRemoteAddr(), res.getOutputStream(), req.getHeader(WebConstants.HEADER_ACCEPT_CHARSET), res, map,
+                binaryProtocol);
 
         log.debug("Done with Pull request from {}", nodeId);
 
     }
         
     protected void handlePull(String nodeId, String remoteHost, String remoteAddress,
-            OutputStream outputStream,  String encoding, HttpServletResponse res, ChannelMap map) throws IOException {
+            OutputStream outputStream,  String encoding, HttpServletResponse res, ChannelMap map, boolean binaryProtocol) throws IOException {
         NodeSecurity nodeSecurity = nodeService.findNodeSecurity(nodeId, true);
         long ts = System.currentTimeMillis();
         try {
@@ -127,8 +131,11 @@ public class PullUriHandler extends AbstractCompressionUriHandler {
                     
                     try {
                         Node targetNode = nodeService.findNode(nodeId, true);
+                        if (binaryProtocol) {
+                            res.setHeader(WebConstants.HEADER_PROTOCOL, WebConstants.PROTOCOL_BINARY);
+                        }
                         List<OutgoingBatch> batchList = dataExtractorService.extract(processInfo, targetNode,
-                        		map.getChannelQueue(), outgoingTransport);
+                        		map.getChannelQueue(), outgoingTransport, binaryProtocol);
                         logDataReceivedFromPull(targetNode, batchList, processInfo, remoteHost);
                         
                         if (processInfo.getStatus() != ProcessStatus.ERROR) {
@@ -21,13 +21,16 @@
 package org.jumpmind.symmetric.web.compression;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 
+import org.jumpmind.symmetric.transport.IGzipOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,14 +46,22 @@ import org.slf4j.LoggerFactory;
  * @author Amy Roh
  * @author Dmitri Valdin
  */
-public class CompressionResponseStream extends ServletOutputStream {
+public class CompressionResponseStream extends ServletOutputStream implements IGzipOutputStream {
 
     static final Logger logger = LoggerFactory.getLogger(CompressionResponseStream.class);
 
     /**
      * The underlying gzip output stream to which we should write data.
      */
-    protected OutputStream gzipstream = null;
+    protected GZIPOutputStream gzipstream = null;
+
+    protected int compressionLevel;
+
+    protected int compressionStrategy;
+
+    protected boolean gzipMembersAccepted;
+
+    protected WritableByteChannel channel;
 
     /**
      * Has this stream been closed?
@@ -71,8 +82,14 @@ public class CompressionResponseStream extends ServletOutputStream {
     public CompressionResponseStream(HttpServletResponse response, final int compressionLevel, final int compressionStrategy) throws IOException {
         this.closed = false;
         this.response = response;
+        this.compressionLevel = compressionLevel;
+        this.compressionStrategy = compressionStrategy;
         response.addHeader("Content-Encoding", "gzip");
-        gzipstream = new GZIPOutputStream(response.getOutputStream()) {
+        gzipstream = newGzipStream();
+    }
+
+    protected GZIPOutputStream newGzipStream() throws IOException {
+        return new GZIPOutputStream(response.getOutputStream()) {
             {
                 this.def.setLevel(compressionLevel);
                 this.def.setStrategy(compressionStrategy);
@@ -93,6 +110,8 @@ public class CompressionResponseStream extends ServletOutputStream {
         if (gzipstream != null) {
             gzipstream.close();
             gzipstream = null;
+        } else {
+            response.getOutputStream().close();
         }
 
         closed = true;
@@ -110,6 +129,8 @@ public class CompressionResponseStream extends ServletOutputStream {
 
         if (gzipstream != null) {
             gzipstream.flush();
+        } else {
+            response.getOutputStream().flush();
         }
 
     }
@@ -165,8 +186,45 @@ public class CompressionResponseStream extends ServletOutputStream {
             return;
         }
 
+        if (gzipstream == null) {
+            gzipstream = newGzipStream();
+        }
         gzipstream.write(b, off, len);
     }
+
+    public void setGzipMembersAccepted(boolean gzipMembersAccepted) {
+        this.gzipMembersAccepted = gzipMembersAccepted;
+    }
+
+    public boolean isGzipMembersAccepted() {
+        return gzipMembersAccepted;
+    }
+
+    /**
+     * Finish the gzip member written so far and copy content that is already
+     * compressed to the response as is.
+     */
+    public long transferGzipMembers(FileChannel source, long position, long count) throws IOException {
+        if (closed) {
+            throw new IOException("The response stream was closed");
+        }
+        if (gzipstream != null) {
+            gzipstream.finish();
+            gzipstream = null;
+        }
+        if (channel == null) {
+            channel = Channels.newChannel(response.getOutputStream());
+        }
+        long transferred = 0;
+        while (transferred < count) {
+            long bytes = source.transferTo(position + transferred, count - transferred, channel);
+            if (bytes <= 0) {
+                break;
+            }
+            transferred += bytes;
+        }
+        return transferred;
+    }
     
     @Override
     public boolean isReady() {
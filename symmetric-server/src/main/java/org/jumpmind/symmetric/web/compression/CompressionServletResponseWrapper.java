@@ -54,6 +54,8 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
 
     int compressionStrategy = Deflater.DEFAULT_STRATEGY;
 
+    boolean gzipMembersAccepted;
+
     /**
      * Calls the parent constructor which creates a ServletResponse adaptor
      * wrapping the given response object.
@@ -119,10 +121,20 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
         log.debug("createOutputStream gets called");
         CompressionResponseStream stream = new CompressionResponseStream(origResponse, compressionLevel,
                 compressionStrategy);
+        stream.setGzipMembersAccepted(gzipMembersAccepted);
         return stream;
 
     }
 
+    /**
+     * Set whether the client reads gzip members that follow one another as
+     * one stream, so that compressed content can be written to the response
+     * as is.
+     */
+    public void setGzipMembersAccepted(boolean gzipMembersAccepted) {
+        this.gzipMembersAccepted = gzipMembersAccepted;
+    }
+
     /**
      * Finish a response.
      */
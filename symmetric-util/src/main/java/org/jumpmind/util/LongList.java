@@ -0,0 +1,161 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A growable list of primitive longs. It is meant for holding large numbers of
+ * ids (data ids, batch ids) without paying for a boxed {@link Long} and a list
+ * entry per value. Values can be added in any order and the list sorts itself
+ * the first time a search is done.
+ */
+public class LongList {
+
+    protected long[] values;
+
+    protected int size;
+
+    protected boolean sorted = true;
+
+    public LongList() {
+        this(1024);
+    }
+
+    public LongList(int initialCapacity) {
+        this.values = new long[Math.max(initialCapacity, 1)];
+    }
+
+    public void add(long value) {
+        ensureCapacity(size + 1);
+        if (sorted && size > 0 && values[size - 1] > value) {
+            sorted = false;
+        }
+        values[size++] = value;
+    }
+
+    public void addAll(Collection<? extends Number> numbers) {
+        ensureCapacity(size + numbers.size());
+        for (Number number : numbers) {
+            add(number.longValue());
+        }
+    }
+
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void sort() {
+        if (!sorted) {
+            Arrays.sort(values, 0, size);
+            sorted = true;
+        }
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Sorts the list if needed and uses a binary search to look for the value
+     */
+    public boolean contains(long value) {
+        sort();
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Sorts the list if needed and returns the index of the first value that is
+     * greater than or equal to the value passed in. Returns {@link #size()} if
+     * all values are less than it.
+     */
+    public int indexOfFirstAtLeast(long value) {
+        sort();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public void clear() {
+        size = 0;
+        sorted = true;
+    }
+
+    public void trimToSize() {
+        if (values.length > size) {
+            values = Arrays.copyOf(values, Math.max(size, 1));
+        }
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * @return The number of bytes held by the backing array
+     */
+    public long getSizeInBytes() {
+        return 8l * values.length;
+    }
+
+    protected void ensureCapacity(int minCapacity) {
+        if (minCapacity > values.length) {
+            int newCapacity = values.length + (values.length >> 1);
+            if (newCapacity < minCapacity) {
+                newCapacity = minCapacity;
+            }
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buff = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                buff.append(", ");
+            }
+            buff.append(values[i]);
+        }
+        return buff.append("]").toString();
+    }
+
+}